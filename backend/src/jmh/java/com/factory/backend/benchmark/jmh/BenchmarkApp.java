@@ -0,0 +1,83 @@
+package com.factory.backend.benchmark.jmh;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.factory.backend.BackendApplication;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.service.DerivedStateRebuilder;
+import com.factory.backend.util.DataGenerator;
+
+/**
+ * Boots the application without the web layer on a private in-memory database,
+ * for use from a JMH @Setup(Level.Trial).
+ */
+final class BenchmarkApp implements AutoCloseable {
+
+    private static final int INSERT_CHUNK = 50_000;
+
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkApp(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    static BenchmarkApp start(String... properties) {
+        List<String> props = new ArrayList<>(List.of(
+                "spring.datasource.url=jdbc:h2:mem:jmh-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "spring.h2.console.enabled=false",
+                "logging.level.root=WARN"));
+        props.addAll(List.of(properties));
+        return new BenchmarkApp(new SpringApplicationBuilder(BackendApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(props.toArray(String[]::new))
+                .run());
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Bulk-loads rows straight into machine_events (no dedupe, ids must be unique)
+     * and rebuilds the derived in-memory state afterwards.
+     */
+    void preload(long rows, DataGenerator.Workload workload, long seed, Instant now) {
+        JdbcTemplate jdbc = bean(JdbcTemplate.class);
+        for (long done = 0, chunk = 0; done < rows; done += INSERT_CHUNK, chunk++) {
+            int size = (int) Math.min(INSERT_CHUNK, rows - done);
+            insert(jdbc, DataGenerator.generateWorkload(size, workload.withResendRatio(0), seed + chunk, now));
+        }
+        bean(DerivedStateRebuilder.class).rebuild();
+    }
+
+    /**
+     * Inserts rows straight into machine_events, then rebuilds the derived state
+     * (dedupe filter, rollups, ...) so that it knows them, as after a restart.
+     */
+    void insert(List<MachineEvent> events) {
+        insert(bean(JdbcTemplate.class), events);
+        bean(DerivedStateRebuilder.class).rebuild();
+    }
+
+    private static void insert(JdbcTemplate jdbc, List<MachineEvent> events) {
+        jdbc.batchUpdate("INSERT INTO machine_events " +
+                "(event_id, machine_id, event_time, received_time, duration_ms, defect_count) VALUES (?, ?, ?, ?, ?, ?)",
+                events.stream().map(e -> new Object[] {e.getEventId(), e.getMachineId(),
+                        Timestamp.from(e.getEventTime()), Timestamp.from(e.getReceivedTime()),
+                        e.getDurationMs(), e.getDefectCount()}).toList());
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,80 @@
+package com.factory.backend.benchmark.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.service.BinaryBatchCodec;
+import com.factory.backend.service.EventRowCodec;
+import com.factory.backend.util.DataGenerator;
+import com.factory.backend.util.DataGenerator.Workload;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Decoding the same /events/batch as JSON (EventRowCodec), as the binary format
+ * (BinaryBatchCodec) and as gzipped binary. Setup prints the body size of each
+ * encoding in bytes per event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryBatchBenchmark {
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    private EventRowCodec jsonCodec;
+    private BinaryBatchCodec binaryCodec;
+    private byte[] json;
+    private byte[] binary;
+    private byte[] gzipped;
+
+    @Setup
+    public void encode() {
+        JsonMapper mapper = JsonMapper.builder().build();
+        jsonCodec = new EventRowCodec(mapper, 65_536);
+        binaryCodec = new BinaryBatchCodec(DataSize.ofMegabytes(16));
+        json = mapper.writeValueAsBytes(
+                DataGenerator.generateWorkload(batchSize, Workload.uniform(1_000), 1, Instant.now()));
+        List<EventRow> rows = jsonCodec.readAll(new ByteArrayInputStream(json));
+        binary = binaryCodec.encode(rows, false);
+        gzipped = binaryCodec.encode(rows, true);
+        System.out.printf("%nbytes/event: json %.1f, binary %.1f, binary+gzip %.1f%n",
+                (double) json.length / batchSize, (double) binary.length / batchSize, (double) gzipped.length / batchSize);
+    }
+
+    @Benchmark
+    public List<EventRow> json() {
+        return jsonCodec.readAll(new ByteArrayInputStream(json));
+    }
+
+    @Benchmark
+    public List<EventRow> binary() {
+        return binaryCodec.decode(ByteBuffer.wrap(binary));
+    }
+
+    @Benchmark
+    public List<EventRow> binaryGzip() {
+        return binaryCodec.decode(new ByteArrayInputStream(gzipped), true);
+    }
+}
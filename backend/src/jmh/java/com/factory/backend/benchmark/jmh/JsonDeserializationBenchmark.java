@@ -0,0 +1,79 @@
+package com.factory.backend.benchmark.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.service.EventRowCodec;
+import com.factory.backend.util.DataGenerator;
+import com.factory.backend.util.DataGenerator.Workload;
+
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Decoding a /events/batch body: reflective Jackson binding into List<MachineEvent>
+ * against EventRowCodec, alone and with the conversion IngestionCoordinator.processRows does.
+ * Compare allocation per op with -Djmh.args="Json -prof gc".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonDeserializationBenchmark {
+
+    private static final TypeReference<List<MachineEvent>> EVENT_LIST = new TypeReference<>() {};
+
+    @Param({"1", "100", "1000"})
+    public int batchSize;
+
+    private JsonMapper mapper;
+    private EventRowCodec codec;
+    private byte[] body;
+
+    @Setup
+    public void encode() {
+        mapper = JsonMapper.builder().build();
+        codec = new EventRowCodec(mapper, 65_536);
+        body = mapper.writeValueAsBytes(
+                DataGenerator.generateWorkload(batchSize, Workload.uniform(1_000), 1, Instant.now()));
+    }
+
+    @Benchmark
+    public List<MachineEvent> bindEventList() {
+        return mapper.readValue(body, EVENT_LIST);
+    }
+
+    @Benchmark
+    public List<EventRow> codecRows() {
+        return codec.readAll(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public List<MachineEvent> codecRowsToEntities() {
+        List<EventRow> rows = codec.readAll(new ByteArrayInputStream(body));
+        List<MachineEvent> events = new ArrayList<>(rows.size());
+        for (EventRow row : rows) {
+            events.add(row.toEntity());
+        }
+        return events;
+    }
+}
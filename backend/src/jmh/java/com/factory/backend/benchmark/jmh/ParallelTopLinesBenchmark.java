@@ -0,0 +1,77 @@
+package com.factory.backend.benchmark.jmh;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.factory.backend.dto.LineStats;
+import com.factory.backend.service.ParallelAggregator;
+import com.factory.backend.util.DataGenerator.Workload;
+
+/**
+ * 30-day top-defect-lines (LIMIT 10) through ParallelAggregator by parallelism,
+ * from the database (time shards) and from the columnar store (machine shards).
+ * parallelism=1 is the single GROUP BY query; the speed-up needs that many cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParallelTopLinesBenchmark {
+
+    @Param({"1000000"})
+    public long storedRows;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"sql", "columnar"})
+    public String source;
+
+    private BenchmarkApp app;
+    private ParallelAggregator aggregator;
+    private Instant from;
+    private Instant to;
+    private long shift;
+
+    @Setup(Level.Trial)
+    public void load() {
+        app = BenchmarkApp.start(
+                "factory.stats.parallelism=" + parallelism,
+                "factory.stats.parallel.min-shard-span=1h",
+                "factory.stats.columnar.enabled=" + source.equals("columnar"));
+        Instant now = Instant.now();
+        app.preload(storedRows, Workload.hotMachines(1_000).withHistory(Duration.ofDays(30)), 42, now);
+        aggregator = app.bean(ParallelAggregator.class);
+        from = now.minus(Duration.ofDays(30)).plusMillis(12_345);
+        to = now.minusMillis(6_789);
+    }
+
+    @Benchmark
+    public List<LineStats> topLinesLimit10() {
+        shift++;
+        return aggregator.topLines(from.plusMillis(shift), to.plusMillis(shift), 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        app.close();
+    }
+}
@@ -0,0 +1,103 @@
+package com.factory.backend.benchmark.jmh;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.service.EventService;
+import com.factory.backend.util.DataGenerator;
+import com.factory.backend.util.DataGenerator.Workload;
+
+/**
+ * EventService.processBatch across batch sizes, resend ratios (copies of already
+ * stored events), workload shapes and persistence strategies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ProcessBatchBenchmark {
+
+    private static final int STORED = 100_000;
+    private static final int MACHINES = 1_000;
+
+    @Param({"100", "1000", "10000"})
+    public int batchSize;
+
+    @Param({"0.0", "0.5", "0.9"})
+    public double duplicateRatio;
+
+    @Param({"uniform", "hotMachines", "lateArrivals"})
+    public String workload;
+
+    @Param({"jpa", "jdbc"})
+    public String persistence;
+
+    private BenchmarkApp app;
+    private EventService eventService;
+    private List<MachineEvent> stored;
+    private Workload shape;
+    private Random random;
+    private long seed;
+    private List<MachineEvent> batch;
+
+    @Setup(Level.Trial)
+    public void startApp() {
+        app = BenchmarkApp.start("factory.ingest.persistence=" + persistence);
+        eventService = app.bean(EventService.class);
+        shape = switch (workload) {
+            case "hotMachines" -> Workload.hotMachines(MACHINES);
+            case "lateArrivals" -> Workload.lateArrivals(MACHINES);
+            default -> Workload.uniform(MACHINES);
+        };
+        shape = shape.withHistory(Duration.ofDays(1));
+
+        // Resends are drawn from what is already in the table
+        stored = DataGenerator.generateWorkload(STORED, shape, 1, Instant.now());
+        app.insert(stored);
+        random = new Random(2);
+        seed = 3;
+    }
+
+    @Setup(Level.Invocation)
+    public void nextBatch() {
+        List<MachineEvent> fresh = DataGenerator.generateWorkload(batchSize, shape, seed++, Instant.now());
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(random.nextDouble() < duplicateRatio
+                    ? stored.get(random.nextInt(STORED)).toBuilder().build()
+                    : fresh.get(i));
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> processBatch() {
+        return eventService.processBatch(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApp() {
+        app.close();
+    }
+}
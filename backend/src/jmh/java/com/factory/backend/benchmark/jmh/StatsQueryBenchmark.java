@@ -0,0 +1,93 @@
+package com.factory.backend.benchmark.jmh;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.dto.MachineStats;
+import com.factory.backend.repository.MachineEventRepository;
+import com.factory.backend.service.StatsService;
+import com.factory.backend.util.DataGenerator.Workload;
+
+/**
+ * /stats and /stats/top-defect-lines at 1M-10M stored rows, 30 days of history on
+ * 1,000 machines with hot lines. Every call shifts the window by 1 ms so H2
+ * cannot answer from its query result cache.
+ * 10M rows need a large heap: run with -Djmh.args="StatsQuery -jvmArgsAppend -Xmx12g" when available.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StatsQueryBenchmark {
+
+    private static final String HOT_MACHINE = "M-00000";
+
+    @Param({"1000000", "10000000"})
+    public long storedRows;
+
+    private BenchmarkApp app;
+    private MachineEventRepository repository;
+    private StatsService statsService;
+    private Instant start;
+    private Instant end;
+    private long shift;
+
+    @Setup(Level.Trial)
+    public void load() {
+        app = BenchmarkApp.start();
+        Instant now = Instant.now();
+        app.preload(storedRows, Workload.hotMachines(1_000).withHistory(Duration.ofDays(30)), 42, now);
+        repository = app.bean(MachineEventRepository.class);
+        statsService = app.bean(StatsService.class);
+        start = now.minus(Duration.ofDays(30)).plusMillis(12_345);
+        end = now.minusMillis(6_789);
+    }
+
+    @Benchmark
+    public MachineStats rawGetStats() {
+        shift++;
+        return repository.getStats(HOT_MACHINE, start.plusMillis(shift), end.plusMillis(shift));
+    }
+
+    @Benchmark
+    public MachineStats serviceGetStats() {
+        shift++;
+        return statsService.getStats(HOT_MACHINE, start.plusMillis(shift), end.plusMillis(shift));
+    }
+
+    @Benchmark
+    public List<LineStatsProjection> fetchWorstMachines() {
+        shift++;
+        return repository.fetchWorstMachines(start.plusMillis(shift), end.plusMillis(shift));
+    }
+
+    @Benchmark
+    public List<? extends LineStatsProjection> topDefectLinesLimit10() {
+        shift++;
+        return statsService.topDefectLines(start.plusMillis(shift), end.plusMillis(shift), 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        app.close();
+    }
+}
@@ -0,0 +1,76 @@
+package com.factory.backend.controller;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.service.AsyncIngestService;
+import com.factory.backend.service.EventRowCodec;
+import com.factory.backend.service.IngestMetrics;
+import com.factory.backend.service.IngestTicket;
+
+@RestController
+@ConditionalOnProperty(name = "factory.ingest.async.enabled", havingValue = "true")
+public class AsyncIngestController {
+
+    private final AsyncIngestService asyncService;
+    private final EventRowCodec codec;
+    private final IngestMetrics metrics;
+    private final String retryAfterSeconds;
+
+    public AsyncIngestController(AsyncIngestService asyncService, EventRowCodec codec, IngestMetrics metrics,
+                                 @Value("${factory.ingest.async.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.asyncService = asyncService;
+        this.codec = codec;
+        this.metrics = metrics;
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+    }
+
+    // 202 + ticket once queued; 429 + Retry-After when the queue is full.
+    // Decoded by EventRowCodec like /events/batch, so both accept and reject the same bodies
+    @PostMapping("/events/batch/async")
+    public ResponseEntity<Map<String, Object>> ingestAsync(InputStream body) {
+        List<EventRow> rows;
+        try {
+            long decodeStart = System.nanoTime();
+            rows = codec.readAll(body);
+            metrics.record(IngestMetrics.Stage.DECODE, decodeStart);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        List<MachineEvent> events = new ArrayList<>(rows.size());
+        for (EventRow row : rows) {
+            events.add(row.toEntity());
+        }
+        IngestTicket ticket = asyncService.submit(events);
+        if (ticket == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                    .body(Map.of("error", "ingest queue is full", "queueDepth", asyncService.queueDepth()));
+        }
+        return ResponseEntity.accepted().body(ticket.toMap());
+    }
+
+    @GetMapping("/events/batch/async/{ticketId}")
+    public ResponseEntity<Map<String, Object>> getTicket(@PathVariable String ticketId) {
+        IngestTicket ticket = asyncService.getTicket(ticketId);
+        if (ticket == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ticket.toMap());
+    }
+}
@@ -1,45 +1,119 @@
 package com.factory.backend.controller;
 
+import java.io.InputStream;
 import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
+import com.factory.backend.dto.DurationStats;
 import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.dto.MachineHealth;
 import com.factory.backend.dto.MachineStats;
-import com.factory.backend.entity.MachineEvent;
-import com.factory.backend.repository.MachineEventRepository;
-import com.factory.backend.service.EventService;
+import com.factory.backend.dto.MachineWatermark;
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.service.BatchTooLargeException;
+import com.factory.backend.service.BinaryBatchCodec;
+import com.factory.backend.service.EventRowCodec;
+import com.factory.backend.service.IngestChangelog;
+import com.factory.backend.service.IngestMetrics;
+import com.factory.backend.service.IngestionCoordinator;
+import com.factory.backend.service.PartialIngestException;
+import com.factory.backend.service.ShardRouter;
+import com.factory.backend.service.ShardUnavailableException;
+import com.factory.backend.service.StatsService;
+import com.factory.backend.service.StreamingIngestService;
+import com.factory.backend.service.TopDefectEngine;
 
 @RestController
 public class EventController {
 
-    private final EventService service;
-    private final MachineEventRepository repository;
+    private final IngestionCoordinator service;
+    private final StatsService statsService;
+    private final StreamingIngestService streamingService;
+    private final EventRowCodec codec;
+    private final BinaryBatchCodec binaryCodec;
+    private final IngestMetrics metrics;
+    private final IngestChangelog changelog;
+    private final ShardRouter router;   // null unless factory.cluster.enabled
 
-    public EventController(EventService service, MachineEventRepository repository) {
+    public EventController(IngestionCoordinator service, StatsService statsService,
+                           StreamingIngestService streamingService, EventRowCodec codec,
+                           BinaryBatchCodec binaryCodec, IngestMetrics metrics, IngestChangelog changelog,
+                           ObjectProvider<ShardRouter> router) {
         this.service = service;
-        this.repository = repository;
+        this.statsService = statsService;
+        this.streamingService = streamingService;
+        this.codec = codec;
+        this.binaryCodec = binaryCodec;
+        this.metrics = metrics;
+        this.changelog = changelog;
+        this.router = router.getIfAvailable();
     }
 
     @PostMapping("/events/batch")
-    public Map<String, Object> ingestBatch(@RequestBody List<MachineEvent> events) {
-        // In a real app, you would map a DTO to the Entity here. 
-        // For this assignment, we use the Entity directly for speed.
-        return service.processBatch(events);
+    public Map<String, Object> ingestBatch(InputStream body) {
+        // The body is decoded into flat EventRows by a hand-written parser instead of
+        // a reflective bind into the entity; they are converted once per event
+        try {
+            long decodeStart = System.nanoTime();
+            List<EventRow> rows = codec.readAll(body);
+            metrics.record(IngestMetrics.Stage.DECODE, decodeStart);
+            return process(rows);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Compact binary batches from edge gateways, optionally gzipped; same summary as JSON
+    @PostMapping(value = "/events/batch", consumes = BinaryBatchCodec.CONTENT_TYPE)
+    public Map<String, Object> ingestBinaryBatch(InputStream body,
+                                                 @RequestHeader(value = "Content-Encoding", required = false) String encoding) {
+        try {
+            long decodeStart = System.nanoTime();
+            List<EventRow> rows = binaryCodec.decode(body, "gzip".equalsIgnoreCase(encoding));
+            metrics.record(IngestMetrics.Stage.DECODE, decodeStart);
+            return process(rows);
+        } catch (BatchTooLargeException e) {
+            throw new ResponseStatusException(HttpStatus.CONTENT_TOO_LARGE, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Same summary as /events/batch, but the body (NDJSON or a JSON array) is
+    // parsed and committed in chunks instead of being bound as one List
+    @PostMapping(value = "/events/batch/stream", consumes = {"application/x-ndjson", "application/json"})
+    public Map<String, Object> ingestStream(InputStream body) {
+        try {
+            return streamingService.ingest(body);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @GetMapping("/stats")
     public Map<String, Object> getStats(@RequestParam String machineId, 
                                         @RequestParam Instant start, 
                                         @RequestParam Instant end) {
-        MachineStats stats = repository.getStats(machineId, start, end);
+        MachineStats stats = router != null
+                ? gather(() -> router.getStats(machineId, start, end))
+                : statsService.getStats(machineId, start, end);
         
         // Calculate Logic
         long count = stats.eventsCount() == 0 ? 0 : stats.eventsCount(); // Avoid /0
@@ -54,7 +128,7 @@ public class EventController {
             defectRate = stats.defectsCount() / windowHours;
         }
 
-        String status = defectRate < 2.0 ? "Healthy" : "Warning";
+        String status = MachineHealth.statusOf(defectRate);
 
         return Map.of(
             "machineId", machineId,
@@ -66,16 +140,65 @@ public class EventController {
             "status", status
         );
     }
+    // Cycle-duration percentiles; repeat machineId to merge machines, omit it for all of them
+    @GetMapping("/stats/durations")
+    public Map<String, Object> getDurations(@RequestParam(required = false) List<String> machineId,
+                                            @RequestParam Instant start,
+                                            @RequestParam Instant end) {
+        List<String> machineIds = machineId == null ? List.of() : List.copyOf(new LinkedHashSet<>(machineId));
+        DurationStats stats = statsService.getDurations(machineIds, start, end);
+
+        // LinkedHashMap: percentiles are null for an empty window
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("machineIds", machineIds);
+        result.put("start", start.toString());
+        result.put("end", end.toString());
+        result.put("eventsCount", stats.eventsCount());
+        result.put("p50DurationMs", stats.p50());
+        result.put("p95DurationMs", stats.p95());
+        result.put("p99DurationMs", stats.p99());
+        result.put("relativeError", stats.relativeError());
+        return result;
+    }
+
+    // Latest eventTime, out-of-order count and lateness percentiles per machine (all without machineId)
+    @GetMapping("/stats/watermarks")
+    public List<MachineWatermark> getWatermarks(@RequestParam(required = false) List<String> machineId) {
+        if (!changelog.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "factory.ingest.changelog.enabled is false");
+        }
+        return changelog.watermarks(machineId == null ? Set.of() : new LinkedHashSet<>(machineId));
+    }
+
+    // window=1h|24h|7d counts whole buckets, not a sliding instant (see TopDefectEngine.Window):
+    // 1h is the current minute plus the previous 59, 24h/7d the current hour plus the previous
+    // 23/167, and accepted future events are included. from/to is exact: [from, to).
     @GetMapping("/stats/top-defect-lines")
     public List<Map<String, Object>> getTopWorstMachine(
-            @RequestParam String machineId, 
-            @RequestParam Instant from, 
-            @RequestParam Instant to, 
+            @RequestParam(required = false) String machineId,
+            @RequestParam(required = false) Instant from, 
+            @RequestParam(required = false) Instant to, 
+            @RequestParam(required = false) String window,
             @RequestParam int limit) {
+        // The ranking always spans every machine; a filter it would silently ignore is refused
+        if (machineId != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "machineId is not supported here; top-defect-lines ranks all machines (use /stats for one machine)");
+        }
 
-        // 1. Fetch raw data from Repository
-        // (This uses the 'fetchWorstMachines' method we added to the Repo earlier)
-        List<LineStatsProjection> rawList = repository.fetchWorstMachines(from, to);
+        // 1. Rolling windows (1h, 24h, 7d) come from the live leaderboard,
+        //    any other range from the database with the limit in the query
+        List<? extends LineStatsProjection> rawList;
+        if (router != null && (window != null || (from != null && to != null))) {
+            TopDefectEngine.Window parsed = window != null ? parseWindow(window) : null;
+            rawList = gather(() -> router.topDefectLines(parsed, from, to, limit));
+        } else if (window != null) {
+            rawList = statsService.topDefectLines(parseWindow(window), limit);
+        } else if (from != null && to != null) {
+            rawList = statsService.topDefectLines(from, to, limit);
+        } else {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Either window or from/to is required");
+        }
 
         // 2. Process logic and build response list
         return rawList.stream()
@@ -99,9 +222,42 @@ public class EventController {
                     "defectsPercent", percent
                 );
             })
-            // 4. Apply Limit
-            .limit(limit) 
             .collect(Collectors.toList());
     }
 
+    // Part of the batch committed before the failure: say what, so the client knows to resend it all
+    @ExceptionHandler(PartialIngestException.class)
+    public ResponseEntity<Map<String, Object>> partiallyCommitted(PartialIngestException e) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", "PARTIAL");
+        body.put("committed", e.committed().get(0));
+        body.put("error", e.getCause().getMessage());
+        body.put("retry", "resend the whole batch; committed events come back deduped");
+        // A malformed streamed body is still the client's error
+        HttpStatus status = e.getCause() instanceof IllegalArgumentException
+                ? HttpStatus.BAD_REQUEST : HttpStatus.INTERNAL_SERVER_ERROR;
+        return ResponseEntity.status(status).body(body);
+    }
+
+    // In sharded mode rows go to the shards owning their machines
+    private Map<String, Object> process(List<EventRow> rows) {
+        return router != null ? gather(() -> router.ingest(rows)) : service.processRows(rows);
+    }
+
+    private static <T> T gather(Supplier<T> call) {
+        try {
+            return call.get();
+        } catch (ShardUnavailableException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, e.getMessage());
+        }
+    }
+
+    private TopDefectEngine.Window parseWindow(String window) {
+        try {
+            return TopDefectEngine.Window.fromLabel(window);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
 }
\ No newline at end of file
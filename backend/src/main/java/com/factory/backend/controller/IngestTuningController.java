@@ -0,0 +1,39 @@
+package com.factory.backend.controller;
+
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.factory.backend.service.IngestTuner;
+
+// Current commit unit and JDBC batch size; PUT pins them, or switches adaptation on or off
+@RestController
+public class IngestTuningController {
+
+    private final IngestTuner tuner;
+
+    public IngestTuningController(IngestTuner tuner) {
+        this.tuner = tuner;
+    }
+
+    @GetMapping("/ingest/tuning")
+    public Map<String, Object> getTuning() {
+        return tuner.settings();
+    }
+
+    @PutMapping("/ingest/tuning")
+    public Map<String, Object> setTuning(@RequestParam(required = false) Integer commitSize,
+                                         @RequestParam(required = false) Integer jdbcBatchSize,
+                                         @RequestParam(required = false) Boolean adaptive) {
+        try {
+            return tuner.set(commitSize, jdbcBatchSize, adaptive);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.factory.backend.controller;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.service.EventRowCodec;
+import com.factory.backend.service.IngestMetrics;
+import com.factory.backend.service.JournalIngestService;
+
+@RestController
+@ConditionalOnProperty(name = "factory.ingest.journal.enabled", havingValue = "true")
+public class JournalIngestController {
+
+    private final JournalIngestService journalService;
+    private final EventRowCodec codec;
+    private final IngestMetrics metrics;
+    private final String retryAfterSeconds;
+
+    public JournalIngestController(JournalIngestService journalService, EventRowCodec codec, IngestMetrics metrics,
+                                   @Value("${factory.ingest.async.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.journalService = journalService;
+        this.codec = codec;
+        this.metrics = metrics;
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+    }
+
+    // 202 + journal sequence once durable; 429 + Retry-After when the applier is too far behind,
+    // 503 once it has stopped at a batch it could not apply
+    @PostMapping("/events/batch/journal")
+    public ResponseEntity<Map<String, Object>> ingestJournaled(InputStream body) {
+        List<EventRow> rows;
+        try {
+            long decodeStart = System.nanoTime();
+            rows = codec.readAll(body);
+            metrics.record(IngestMetrics.Stage.DECODE, decodeStart);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        Map<String, Object> ack;
+        try {
+            ack = journalService.submit(rows);
+        } catch (IllegalStateException e) {
+            // The applier stopped at a dead-lettered batch; see /events/batch/journal/status
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+        if (ack == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                    .body(Map.of("error", "journal backlog is full"));
+        }
+        return ResponseEntity.accepted().body(ack);
+    }
+
+    @GetMapping("/events/batch/journal/status")
+    public Map<String, Object> status() {
+        return journalService.status();
+    }
+}
@@ -0,0 +1,42 @@
+package com.factory.backend.controller;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.factory.backend.dto.MachineHealth;
+import com.factory.backend.service.MachineHealthMonitor;
+
+@RestController
+@ConditionalOnProperty(name = "factory.health.enabled", havingValue = "true", matchIfMissing = true)
+public class MachineHealthController {
+
+    private final MachineHealthMonitor monitor;
+
+    public MachineHealthController(MachineHealthMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    // Last-hour status of the given machines (repeat machineId), all machines without one
+    @GetMapping("/stats/health")
+    public List<MachineHealth> getHealth(@RequestParam(required = false) List<String> machineId) {
+        return monitor.snapshot(machineIds(machineId));
+    }
+
+    // "snapshot" first, then "transition" on status changes and periodic "health" rate updates
+    @GetMapping(value = "/stats/health/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamHealth(@RequestParam(required = false) List<String> machineId) {
+        return monitor.subscribe(machineIds(machineId));
+    }
+
+    private static Set<String> machineIds(List<String> machineId) {
+        return machineId == null ? Set.of() : new LinkedHashSet<>(machineId);
+    }
+}
@@ -0,0 +1,84 @@
+package com.factory.backend.controller;
+
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.dto.LineStats;
+import com.factory.backend.dto.MachineStats;
+import com.factory.backend.service.BinaryBatchCodec;
+import com.factory.backend.service.IngestMetrics;
+import com.factory.backend.service.IngestionCoordinator;
+import com.factory.backend.service.ShardRouter;
+import com.factory.backend.service.StatsService;
+import com.factory.backend.service.TopDefectEngine;
+
+// Node-to-node endpoints of the sharded mode; they answer from this node's shard only
+@RestController
+@ConditionalOnProperty(name = "factory.cluster.enabled", havingValue = "true")
+public class ShardController {
+
+    private final IngestionCoordinator coordinator;
+    private final StatsService statsService;
+    private final ShardRouter router;
+    private final BinaryBatchCodec codec;
+    private final IngestMetrics metrics;
+
+    public ShardController(IngestionCoordinator coordinator, StatsService statsService, ShardRouter router,
+                           BinaryBatchCodec codec, IngestMetrics metrics) {
+        this.coordinator = coordinator;
+        this.statsService = statsService;
+        this.router = router;
+        this.codec = codec;
+        this.metrics = metrics;
+    }
+
+    @PostMapping(value = ShardRouter.SHARD_PATH + "/events/batch", consumes = BinaryBatchCodec.CONTENT_TYPE)
+    public Map<String, Object> ingest(InputStream body) {
+        try {
+            long decodeStart = System.nanoTime();
+            List<EventRow> rows = codec.decode(body, false);
+            metrics.record(IngestMetrics.Stage.DECODE, decodeStart);
+            return coordinator.processRows(rows);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @PostMapping(ShardRouter.SHARD_PATH + "/events/stored")
+    public List<String> storedEventIds(@RequestBody List<String> eventIds) {
+        return router.storedHere(eventIds);
+    }
+
+    @GetMapping(ShardRouter.SHARD_PATH + "/stats")
+    public MachineStats getStats(@RequestParam String machineId, @RequestParam Instant start, @RequestParam Instant end) {
+        return statsService.getStats(machineId, start, end);
+    }
+
+    @GetMapping(ShardRouter.SHARD_PATH + "/top-defect-lines")
+    public List<LineStats> getTopDefectLines(@RequestParam(required = false) String window,
+                                             @RequestParam(required = false) Instant from,
+                                             @RequestParam(required = false) Instant to,
+                                             @RequestParam int limit) {
+        try {
+            TopDefectEngine.Window parsed = window == null ? null : TopDefectEngine.Window.fromLabel(window);
+            if (parsed == null && (from == null || to == null)) {
+                throw new IllegalArgumentException("Either window or from/to is required");
+            }
+            return router.localTopDefectLines(parsed, from, to, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.factory.backend.controller;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+
+import com.factory.backend.util.TrafficCapture;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Records /events and /stats requests to factory.capture.file (see TrafficCapture)
+ * so production traffic can be replayed against a test server with its original
+ * pacing. The body is kept as the controller reads it; a request whose body is
+ * larger than factory.capture.max-body-size is not recorded. Health streams and
+ * the shard-internal endpoints are never recorded.
+ */
+@Component
+@ConditionalOnProperty(name = "factory.capture.enabled", havingValue = "true")
+public class TrafficCaptureFilter extends OncePerRequestFilter {
+
+    private final TrafficCapture.Writer writer;
+    private final int maxBodySize;
+    private final Counter recorded;
+    private final Counter skipped;
+
+    public TrafficCaptureFilter(MeterRegistry meterRegistry,
+                                @Value("${factory.capture.file:data/capture/traffic.ndjson}") Path file,
+                                @Value("${factory.capture.max-body-size:16MB}") DataSize maxBodySize) {
+        this.writer = new TrafficCapture.Writer(file);
+        this.maxBodySize = (int) Math.min(Integer.MAX_VALUE - 1, maxBodySize.toBytes());
+        this.recorded = Counter.builder("factory.capture.requests").tag("outcome", "recorded")
+                .description("Requests written to the traffic capture").register(meterRegistry);
+        this.skipped = Counter.builder("factory.capture.requests").tag("outcome", "skipped")
+                .description("Requests not captured because their body was over max-body-size").register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !(path.startsWith("/events/") || path.startsWith("/stats"))
+                || path.startsWith("/stats/health/stream");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long offsetMicros = writer.offsetMicros();
+        // One byte over the limit tells a body that fits from one that was cut off
+        ContentCachingRequestWrapper wrapped = new ContentCachingRequestWrapper(request, maxBodySize + 1);
+        try {
+            chain.doFilter(wrapped, response);
+        } finally {
+            byte[] body = wrapped.getContentAsByteArray();
+            if (body.length > maxBodySize) {
+                skipped.increment();
+            } else {
+                String query = request.getQueryString();
+                writer.append(new TrafficCapture.Request(offsetMicros, request.getMethod(),
+                        query == null ? request.getRequestURI() : request.getRequestURI() + "?" + query,
+                        request.getContentType(), request.getHeader("Content-Encoding"), body));
+                writer.flush();
+                recorded.increment();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        writer.close();
+    }
+}
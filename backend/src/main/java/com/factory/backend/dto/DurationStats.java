@@ -0,0 +1,35 @@
+package com.factory.backend.dto;
+
+import java.util.Arrays;
+
+import com.factory.backend.util.DurationSketch;
+
+/**
+ * Cycle-duration percentiles (ms) for a window; percentiles are null when the
+ * window has no events. relativeError is the sketch's accuracy bound, 0 for an
+ * exact computation.
+ */
+public record DurationStats(long eventsCount, Long p50, Long p95, Long p99, double relativeError) {
+
+    public static DurationStats of(DurationSketch sketch) {
+        if (sketch.count() == 0) {
+            return new DurationStats(0, null, null, null, sketch.relativeAccuracy());
+        }
+        return new DurationStats(sketch.count(), sketch.quantile(0.50), sketch.quantile(0.95), sketch.quantile(0.99),
+                sketch.relativeAccuracy());
+    }
+
+    // Same rank as DurationSketch.quantile: floor(q * (n - 1))
+    public static DurationStats exact(long[] durations) {
+        if (durations.length == 0) {
+            return new DurationStats(0, null, null, null, 0);
+        }
+        long[] sorted = durations.clone();
+        Arrays.sort(sorted);
+        return new DurationStats(sorted.length, rank(sorted, 0.50), rank(sorted, 0.95), rank(sorted, 0.99), 0);
+    }
+
+    private static long rank(long[] sorted, double q) {
+        return sorted[(int) Math.floor(q * (sorted.length - 1))];
+    }
+}
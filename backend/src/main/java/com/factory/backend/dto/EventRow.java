@@ -0,0 +1,26 @@
+package com.factory.backend.dto;
+
+import java.time.Instant;
+
+import com.factory.backend.entity.MachineEvent;
+
+/**
+ * Flat wire form of an ingested event, filled by EventRowCodec.
+ * Timestamps are epoch millis; a field missing from the payload is null, 0 or
+ * MISSING_TIME, which toEntity turns back into what Jackson would have bound.
+ */
+public record EventRow(String eventId, String machineId, long eventTimeMillis, long receivedTimeMillis,
+                       long durationMs, int defectCount) {
+
+    public static final long MISSING_TIME = Long.MIN_VALUE;
+
+    /** Unmanaged entity for EventService; never attached to a persistence context here. */
+    public MachineEvent toEntity() {
+        return new MachineEvent(eventId, machineId, instant(eventTimeMillis), instant(receivedTimeMillis),
+                durationMs, defectCount);
+    }
+
+    private static Instant instant(long millis) {
+        return millis == MISSING_TIME ? null : Instant.ofEpochMilli(millis);
+    }
+}
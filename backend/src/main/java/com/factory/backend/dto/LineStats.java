@@ -0,0 +1,48 @@
+package com.factory.backend.dto;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// In-memory counterpart of the LineStatsProjection query result
+public record LineStats(String lineId, long eventCount, long totalDefects) implements LineStatsProjection {
+
+    // Same order as the SQL: totalDefects DESC, machineId
+    public static final Comparator<LineStats> WORST_FIRST = Comparator
+            .comparingLong(LineStats::totalDefects).reversed()
+            .thenComparing(LineStats::lineId);
+
+    /** The first limit lines in WORST_FIRST order, via a heap of size limit. */
+    public static List<LineStats> worst(Iterable<LineStats> lines, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        // Head is the best candidate to drop
+        PriorityQueue<LineStats> top = new PriorityQueue<>(Math.min(limit, 64) + 1, WORST_FIRST.reversed());
+        for (LineStats line : lines) {
+            top.add(line);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<LineStats> result = new ArrayList<>(top);
+        result.sort(WORST_FIRST);
+        return result;
+    }
+
+    @Override
+    public String getLineId() {
+        return lineId;
+    }
+
+    @Override
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    @Override
+    public long getTotalDefects() {
+        return totalDefects;
+    }
+}
@@ -0,0 +1,12 @@
+package com.factory.backend.dto;
+
+// A machine's defect rate over the last hour, as pushed on /stats/health/stream
+public record MachineHealth(String machineId, long eventsCount, long defectsCount, double avgDefectRate, String status) {
+
+    // Same rule /stats applies: fewer than 2 defects per hour is healthy
+    public static final double WARNING_RATE = 2.0;
+
+    public static String statusOf(double defectsPerHour) {
+        return defectsPerHour < WARNING_RATE ? "Healthy" : "Warning";
+    }
+}
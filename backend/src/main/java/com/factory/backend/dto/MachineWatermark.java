@@ -0,0 +1,13 @@
+package com.factory.backend.dto;
+
+import java.time.Instant;
+
+/**
+ * Ingest progress of one machine. watermark is the latest eventTime seen;
+ * outOfOrderEvents counts events that arrived behind it since startup.
+ * Lateness is receivedTime - eventTime over the stored events (ms, within 1%),
+ * null when the machine has none.
+ */
+public record MachineWatermark(String machineId, Instant watermark, Instant lastReceivedTime, long eventsCount,
+                               long outOfOrderEvents, Long latenessP50Ms, Long latenessP95Ms, Long latenessP99Ms,
+                               Long latenessMaxMs) {}
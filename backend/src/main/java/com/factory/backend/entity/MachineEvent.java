@@ -18,7 +18,7 @@ import lombok.NoArgsConstructor;
     @Index(name = "idx_machine_time", columnList = "machineId, eventTime") 
 })
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class MachineEvent {
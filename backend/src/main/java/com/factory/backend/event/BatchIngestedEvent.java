@@ -0,0 +1,20 @@
+package com.factory.backend.event;
+
+import java.util.List;
+
+/**
+ * Published by EventService inside the ingest transaction.
+ * Listeners that keep derived state (rollups, caches, ...) consume the changes
+ * instead of re-reading machine_events; dirtyRanges are the same changes
+ * reduced to the (machine, minute) ranges they touched.
+ *
+ * Listeners take it with
+ * {@code @TransactionalEventListener(phase = AFTER_COMMIT, fallbackExecution = true)}:
+ * a rolled back batch never reaches derived state, and a call outside a
+ * transaction (tests, tools) is applied right away. They run in the committing
+ * thread, so once processBatch returns every store includes the batch. Stores
+ * fed from the changes use {@code @Order(0)}; StatsCache and IngestChangelog use
+ * the lowest precedence, so an evicted /stats result reloads from updated
+ * rollups and a changelog sequence only appears once every store has the batch.
+ */
+public record BatchIngestedEvent(List<EventChange> changes, List<DirtyRange> dirtyRanges) {}
@@ -0,0 +1,57 @@
+package com.factory.backend.event;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.factory.backend.entity.MachineEvent;
+
+/**
+ * eventTime range [start, end) of one machine whose aggregates a batch changed,
+ * in whole minutes (the finest rollup bucket). Both versions of an update mark
+ * their minute, so an event moved in time or between machines dirties both sides.
+ */
+public record DirtyRange(String machineId, Instant start, Instant end) {
+
+    public boolean overlaps(Instant from, Instant to) {
+        return start.isBefore(to) && from.isBefore(end);
+    }
+
+    /** The touched minutes of changes, consecutive minutes of a machine coalesced into one range. */
+    public static List<DirtyRange> of(List<EventChange> changes) {
+        Map<String, TreeSet<Long>> minutes = new LinkedHashMap<>();
+        for (EventChange change : changes) {
+            if (change.previous() != null) {
+                mark(minutes, change.previous());
+            }
+            mark(minutes, change.current());
+        }
+
+        List<DirtyRange> ranges = new ArrayList<>();
+        minutes.forEach((machineId, touched) -> {
+            long first = touched.first();
+            long last = first;
+            for (long minute : touched.tailSet(first, false)) {
+                if (minute != last + 1) {
+                    ranges.add(range(machineId, first, last));
+                    first = minute;
+                }
+                last = minute;
+            }
+            ranges.add(range(machineId, first, last));
+        });
+        return ranges;
+    }
+
+    private static void mark(Map<String, TreeSet<Long>> minutes, MachineEvent e) {
+        minutes.computeIfAbsent(e.getMachineId(), id -> new TreeSet<>())
+                .add(Math.floorDiv(e.getEventTime().getEpochSecond(), 60));
+    }
+
+    private static DirtyRange range(String machineId, long firstMinute, long lastMinute) {
+        return new DirtyRange(machineId, Instant.ofEpochSecond(firstMinute * 60), Instant.ofEpochSecond((lastMinute + 1) * 60));
+    }
+}
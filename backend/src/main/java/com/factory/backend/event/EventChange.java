@@ -0,0 +1,23 @@
+package com.factory.backend.event;
+
+import com.factory.backend.entity.MachineEvent;
+
+/**
+ * One persisted change produced by a batch.
+ * previous is null for an insert; both sides are detached snapshots, so they
+ * stay valid after the transaction ends and the managed entity moves on.
+ */
+public record EventChange(MachineEvent previous, MachineEvent current) {
+
+    public static EventChange inserted(MachineEvent current) {
+        return new EventChange(null, current.toBuilder().build());
+    }
+
+    public static EventChange updated(MachineEvent previous, MachineEvent current) {
+        return new EventChange(previous.toBuilder().build(), current.toBuilder().build());
+    }
+
+    public boolean isInsert() {
+        return previous == null;
+    }
+}
@@ -0,0 +1,10 @@
+package com.factory.backend.event;
+
+import java.time.Instant;
+
+/**
+ * Published by the partitioned store after retention dropped partitions:
+ * every event with eventTime before the given instant is gone.
+ * In-memory derived state drops the same range instead of being rebuilt.
+ */
+public record PartitionsDroppedEvent(Instant before) {}
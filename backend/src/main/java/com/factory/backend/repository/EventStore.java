@@ -0,0 +1,69 @@
+package com.factory.backend.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Limit;
+
+import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.dto.MachineStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.event.EventChange;
+
+/**
+ * Persistence strategy, selected with factory.ingest.persistence.
+ * EventService does validation, dedupe and last-write-wins in memory; the store
+ * only loads the current rows and writes the outcome. The read side (raw stats,
+ * worst machines, startup rebuilds) also goes through the store, since not every
+ * strategy keeps rows in machine_events.
+ */
+public interface EventStore {
+
+    /** Current stored versions of the given ids (missing ids are simply absent). */
+    List<MachineEvent> findExisting(Collection<String> eventIds);
+
+    /**
+     * Persists a batch outcome inside the caller's transaction.
+     * inserted holds new events in their final state; updated holds the
+     * last-write-wins changes to rows returned by findExisting.
+     */
+    void write(List<MachineEvent> inserted, List<EventChange> updated);
+
+    /**
+     * Inserts rows known to be absent (the snapshot restore into an empty store)
+     * inside the caller's transaction, without any existence check.
+     */
+    default void bulkInsert(List<MachineEvent> rows) {
+        write(rows, List.of());
+    }
+
+    /**
+     * Rows per JDBC batch or multi-row INSERT for later writes, set by IngestTuner;
+     * 0 restores the configured size.
+     */
+    default void setJdbcBatchSize(int rows) {}
+
+    /** False for an eventTime the store no longer keeps (past its retention); EventService rejects those. */
+    default boolean retains(Instant eventTime) {
+        return true;
+    }
+
+    /** COUNT and defect SUM (-1 counted as 0) for eventTime in [start, end). */
+    MachineStats getStats(String machineId, Instant start, Instant end);
+
+    /** Per-machine totals for eventTime in [from, to), worst first, ties by machineId. */
+    List<LineStatsProjection> fetchWorstMachines(Instant from, Instant to, Limit limit);
+
+    /** durationMs of the events with eventTime in [start, end) of the given machines (all when empty). */
+    List<Long> findDurations(Collection<String> machineIds, Instant start, Instant end);
+
+    /**
+     * Detached copies of the stored events with eventTime >= since (all when since
+     * is null). The caller closes the stream, inside a transaction.
+     */
+    Stream<MachineEvent> streamEvents(Instant since);
+
+    Stream<String> streamEventIds();
+}
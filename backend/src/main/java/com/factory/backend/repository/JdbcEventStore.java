@@ -0,0 +1,156 @@
+package com.factory.backend.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.dto.MachineStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.event.EventChange;
+
+/**
+ * JdbcTemplate strategy: no entity state, no merge-before-insert check.
+ * New rows go out as multi-row INSERTs; updates as a JDBC batch of H2 MERGE
+ * statements whose WHEN MATCHED clause re-checks last-write-wins on receivedTime,
+ * so an older version can never overwrite a newer one even if another
+ * transaction committed in between. Reads use the same JPQL queries as the
+ * JPA store, since the table is the same.
+ */
+@Component
+@ConditionalOnProperty(name = "factory.ingest.persistence", havingValue = "jdbc")
+public class JdbcEventStore implements EventStore {
+
+    static final String COLUMNS = "event_id, machine_id, event_time, received_time, duration_ms, defect_count";
+
+    private static final String UPSERT_SQL =
+            "MERGE INTO machine_events t USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)), " +
+            "CAST(? AS TIMESTAMP(6) WITH TIME ZONE), CAST(? AS TIMESTAMP(6) WITH TIME ZONE), " +
+            "CAST(? AS BIGINT), CAST(? AS INTEGER))) s(" + COLUMNS + ") " +
+            "ON t.event_id = s.event_id " +
+            "WHEN MATCHED AND s.received_time > t.received_time THEN UPDATE SET " +
+            "machine_id = s.machine_id, event_time = s.event_time, received_time = s.received_time, " +
+            "duration_ms = s.duration_ms, defect_count = s.defect_count " +
+            "WHEN NOT MATCHED THEN INSERT (" + COLUMNS + ") VALUES (s.event_id, s.machine_id, " +
+            "s.event_time, s.received_time, s.duration_ms, s.defect_count)";
+
+    private static final int LOOKUP_CHUNK = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final MachineEventRepository repository;
+    private final int configuredRowsPerInsert;
+    private volatile int rowsPerInsert;
+
+    public JdbcEventStore(JdbcTemplate jdbcTemplate, MachineEventRepository repository,
+                          @Value("${factory.ingest.jdbc.rows-per-insert:100}") int rowsPerInsert) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.repository = repository;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.configuredRowsPerInsert = rowsPerInsert;
+        this.rowsPerInsert = rowsPerInsert;
+    }
+
+    @Override
+    public List<MachineEvent> findExisting(Collection<String> eventIds) {
+        List<String> ids = new ArrayList<>(eventIds);
+        List<MachineEvent> found = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += LOOKUP_CHUNK) {
+            found.addAll(namedJdbcTemplate.query(
+                    "SELECT " + COLUMNS + " FROM machine_events WHERE event_id IN (:ids)",
+                    Map.of("ids", ids.subList(i, Math.min(i + LOOKUP_CHUNK, ids.size()))),
+                    (rs, rowNum) -> mapRow(rs)));
+        }
+        return found;
+    }
+
+    @Override
+    public void write(List<MachineEvent> inserted, List<EventChange> updated) {
+        int rows = rowsPerInsert;
+        for (int i = 0; i < inserted.size(); i += rows) {
+            insertRows(jdbcTemplate, "machine_events", inserted.subList(i, Math.min(i + rows, inserted.size())));
+        }
+        for (int i = 0; i < updated.size(); i += rows) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, updated.subList(i, Math.min(i + rows, updated.size())).stream()
+                    .map(c -> values(c.current())).toList());
+        }
+    }
+
+    @Override
+    public void setJdbcBatchSize(int rows) {
+        rowsPerInsert = rows > 0 ? rows : configuredRowsPerInsert;
+    }
+
+    @Override
+    public MachineStats getStats(String machineId, Instant start, Instant end) {
+        return repository.getStats(machineId, start, end);
+    }
+
+    @Override
+    public List<LineStatsProjection> fetchWorstMachines(Instant from, Instant to, Limit limit) {
+        return repository.fetchWorstMachines(from, to, limit);
+    }
+
+    @Override
+    public List<Long> findDurations(Collection<String> machineIds, Instant start, Instant end) {
+        return machineIds.isEmpty()
+                ? repository.findAllDurations(start, end)
+                : repository.findDurations(machineIds, start, end);
+    }
+
+    @Override
+    public Stream<MachineEvent> streamEvents(Instant since) {
+        return since == null ? repository.streamAllDetached() : repository.streamDetachedSince(since);
+    }
+
+    @Override
+    public Stream<String> streamEventIds() {
+        return repository.streamAllEventIds();
+    }
+
+    // One multi-row INSERT; also used by the JPA store's bulk load and by the partitions
+    static void insertRows(JdbcTemplate jdbcTemplate, String table, List<MachineEvent> rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO " + table + " (" + COLUMNS + ") VALUES ");
+        Object[] args = new Object[rows.size() * 6];
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?)");
+            System.arraycopy(values(rows.get(i)), 0, args, i * 6, 6);
+        }
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    static Object[] values(MachineEvent e) {
+        return new Object[] {
+            e.getEventId(), e.getMachineId(), utc(e.getEventTime()), utc(e.getReceivedTime()),
+            e.getDurationMs(), e.getDefectCount()
+        };
+    }
+
+    static MachineEvent mapRow(ResultSet rs) throws SQLException {
+        return new MachineEvent(
+                rs.getString("event_id"),
+                rs.getString("machine_id"),
+                rs.getObject("event_time", OffsetDateTime.class).toInstant(),
+                rs.getObject("received_time", OffsetDateTime.class).toInstant(),
+                rs.getLong("duration_ms"),
+                rs.getInt("defect_count"));
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,103 @@
+package com.factory.backend.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.dto.MachineStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.event.EventChange;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Default strategy: findAllById + persist through Hibernate.
+ * Rows from findExisting are managed, so updates are flushed by dirty checking.
+ * New rows are persisted, not saved: saveAll merges entities with an assigned
+ * id, which costs a SELECT per row, and EventService already knows they are new.
+ * The bulk load skips Hibernate and goes out as multi-row INSERTs on the same
+ * connection.
+ */
+@Component
+@ConditionalOnProperty(name = "factory.ingest.persistence", havingValue = "jpa", matchIfMissing = true)
+public class JpaEventStore implements EventStore {
+
+    private final MachineEventRepository repository;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final int rowsPerInsert;
+    private volatile int jdbcBatchSize;   // 0: hibernate.jdbc.batch_size
+
+    public JpaEventStore(MachineEventRepository repository, EntityManager entityManager, JdbcTemplate jdbcTemplate,
+                         @Value("${factory.ingest.jdbc.rows-per-insert:100}") int rowsPerInsert) {
+        this.repository = repository;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.rowsPerInsert = rowsPerInsert;
+    }
+
+    @Override
+    public List<MachineEvent> findExisting(Collection<String> eventIds) {
+        return repository.findAllById(eventIds);
+    }
+
+    @Override
+    public void write(List<MachineEvent> inserted, List<EventChange> updated) {
+        int batchSize = jdbcBatchSize;
+        if (batchSize > 0) {
+            // Per session, so it applies to this transaction's flush
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+        }
+        inserted.forEach(entityManager::persist);
+        // Send the SQL now rather than at commit, so the write stage timer covers it
+        repository.flush();
+    }
+
+    @Override
+    public void bulkInsert(List<MachineEvent> rows) {
+        for (int i = 0; i < rows.size(); i += rowsPerInsert) {
+            JdbcEventStore.insertRows(jdbcTemplate, "machine_events", rows.subList(i, Math.min(i + rowsPerInsert, rows.size())));
+        }
+    }
+
+    @Override
+    public void setJdbcBatchSize(int rows) {
+        jdbcBatchSize = rows;
+    }
+
+    @Override
+    public MachineStats getStats(String machineId, Instant start, Instant end) {
+        return repository.getStats(machineId, start, end);
+    }
+
+    @Override
+    public List<LineStatsProjection> fetchWorstMachines(Instant from, Instant to, Limit limit) {
+        return repository.fetchWorstMachines(from, to, limit);
+    }
+
+    @Override
+    public List<Long> findDurations(Collection<String> machineIds, Instant start, Instant end) {
+        return machineIds.isEmpty()
+                ? repository.findAllDurations(start, end)
+                : repository.findDurations(machineIds, start, end);
+    }
+
+    @Override
+    public Stream<MachineEvent> streamEvents(Instant since) {
+        return since == null ? repository.streamAllDetached() : repository.streamDetachedSince(since);
+    }
+
+    @Override
+    public Stream<String> streamEventIds() {
+        return repository.streamAllEventIds();
+    }
+}
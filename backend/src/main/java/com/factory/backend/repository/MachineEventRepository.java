@@ -1,8 +1,11 @@
 package com.factory.backend.repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -16,7 +19,7 @@ public interface MachineEventRepository extends JpaRepository<MachineEvent, Stri
 
     @Query("SELECT new com.factory.backend.dto.MachineStats(" +
            "COUNT(e), " +
-           "SUM(CASE WHEN e.defectCount = -1 THEN 0 ELSE e.defectCount END)) " +
+           "COALESCE(SUM(CASE WHEN e.defectCount = -1 THEN 0 ELSE e.defectCount END), 0L)) " +
            "FROM MachineEvent e " +
            "WHERE e.machineId = :machineId " +
            "AND e.eventTime >= :start AND e.eventTime < :end")
@@ -42,9 +45,45 @@ public interface MachineEventRepository extends JpaRepository<MachineEvent, Stri
            "FROM MachineEvent e " +
            "WHERE e.eventTime >= :from AND e.eventTime < :to " +
            "GROUP BY e.machineId " +
-           "ORDER BY totalDefects DESC")
+           "ORDER BY totalDefects DESC, e.machineId")
     List<LineStatsProjection> fetchWorstMachines(@Param("from") Instant from, 
                                                  @Param("to") Instant to);
+
+    // Same query with the limit applied in SQL
+    @Query("SELECT e.machineId as lineId, " +
+           "COUNT(e) as eventCount, " +
+           "COALESCE(SUM(CASE WHEN e.defectCount = -1 THEN 0 ELSE e.defectCount END), 0L) as totalDefects " +
+           "FROM MachineEvent e " +
+           "WHERE e.eventTime >= :from AND e.eventTime < :to " +
+           "GROUP BY e.machineId " +
+           "ORDER BY totalDefects DESC, e.machineId")
+    List<LineStatsProjection> fetchWorstMachines(@Param("from") Instant from,
+                                                 @Param("to") Instant to,
+                                                 Limit limit);
+
+    @Query("SELECT e.durationMs FROM MachineEvent e " +
+           "WHERE e.machineId IN :machineIds AND e.eventTime >= :start AND e.eventTime < :end")
+    List<Long> findDurations(@Param("machineIds") Collection<String> machineIds,
+                             @Param("start") Instant start,
+                             @Param("end") Instant end);
+
+    @Query("SELECT e.durationMs FROM MachineEvent e WHERE e.eventTime >= :start AND e.eventTime < :end")
+    List<Long> findAllDurations(@Param("start") Instant start, @Param("end") Instant end);
+
+    // Detached copies (constructor expression), so streaming the whole table
+    // does not fill the persistence context. Caller must hold a transaction.
+    @Query("SELECT new com.factory.backend.entity.MachineEvent(" +
+           "e.eventId, e.machineId, e.eventTime, e.receivedTime, e.durationMs, e.defectCount) " +
+           "FROM MachineEvent e")
+    Stream<MachineEvent> streamAllDetached();
+
+    @Query("SELECT new com.factory.backend.entity.MachineEvent(" +
+           "e.eventId, e.machineId, e.eventTime, e.receivedTime, e.durationMs, e.defectCount) " +
+           "FROM MachineEvent e WHERE e.eventTime >= :since")
+    Stream<MachineEvent> streamDetachedSince(@Param("since") Instant since);
+
+    @Query("SELECT e.eventId FROM MachineEvent e")
+    Stream<String> streamAllEventIds();
 }
 
 
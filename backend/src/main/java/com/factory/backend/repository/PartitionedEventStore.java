@@ -0,0 +1,472 @@
+package com.factory.backend.repository;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.factory.backend.dto.LineStats;
+import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.dto.MachineStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.event.EventChange;
+import com.factory.backend.event.PartitionsDroppedEvent;
+import com.factory.backend.util.BloomFilter;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Time-partitioned strategy: events live in one table per UTC day (or ISO week)
+ * of eventTime, named machine_events_pYYYYMMDD after the partition's first day,
+ * each with its own primary key and (machine_id, event_time) index.
+ *
+ * Reads only touch partitions that overlap the queried range, and partitions
+ * lying entirely inside it are aggregated without a time predicate. Retention
+ * drops whole partitions (DROP TABLE, no row deletes) once they end before
+ * now - retention. An update that moves an event to another partition is a
+ * guarded DELETE plus INSERT.
+ *
+ * The eventId lookup only asks the partitions that may hold the id: every
+ * partition keeps a Bloom filter of its ids, added to before each insert. The
+ * filters of partitions that existed at startup are filled on ApplicationReadyEvent
+ * from their event_id index; until then those partitions are always asked.
+ *
+ * DDL commits the open transaction in H2, so partitions are created and dropped
+ * on a separate connection (REQUIRES_NEW). Creating one from inside an ingest
+ * transaction would take a second pool connection while the caller holds a
+ * DatabasePermit for one, so every partition from the retention cut-off to the
+ * next day's is created ahead: at startup and on factory.storage.partition.create-cron.
+ * Events older than the retention (or than the last dropped partition) are not
+ * retained and get rejected, rather than recreating a dropped partition.
+ */
+@Component
+@ConditionalOnProperty(name = "factory.ingest.persistence", havingValue = "partitioned")
+public class PartitionedEventStore implements EventStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionedEventStore.class);
+
+    private static final String PREFIX = "machine_events_p";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String DEFECTS = "CASE WHEN defect_count = -1 THEN 0 ELSE defect_count END";
+    private static final int LOOKUP_CHUNK = 1000;
+    private static final double ID_FILTER_FALSE_POSITIVE_RATE = 0.001;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate ddlTransaction;
+    private final ApplicationEventPublisher publisher;
+    private final boolean weekly;
+    private final Duration retention;
+    private final int configuredRowsPerInsert;
+    private final long idFilterExpectedEvents;
+    private volatile int rowsPerInsert;
+
+    // Partition start day -> table name
+    private final NavigableMap<LocalDate, String> partitions = new ConcurrentSkipListMap<>();
+    // Table name -> filter over its event ids
+    private final Map<String, PartitionIds> partitionIds = new ConcurrentHashMap<>();
+    private final ReentrantLock createLock = new ReentrantLock();
+    // End of the newest partition dropped by this process
+    private volatile Instant droppedBefore = Instant.MIN;
+
+    public PartitionedEventStore(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                 ApplicationEventPublisher publisher,
+                                 @Value("${factory.storage.partition.granularity:day}") String granularity,
+                                 @Value("${factory.storage.retention:90d}") Duration retention,
+                                 @Value("${factory.ingest.jdbc.rows-per-insert:100}") int rowsPerInsert,
+                                 @Value("${factory.storage.partition.expected-events:200000}") long idFilterExpectedEvents) {
+        if (!granularity.equals("day") && !granularity.equals("week")) {
+            throw new IllegalArgumentException("factory.storage.partition.granularity must be day or week, got " + granularity);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.ddlTransaction = new TransactionTemplate(transactionManager);
+        this.ddlTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.publisher = publisher;
+        this.weekly = granularity.equals("week");
+        this.retention = retention;
+        this.configuredRowsPerInsert = rowsPerInsert;
+        this.rowsPerInsert = rowsPerInsert;
+        this.idFilterExpectedEvents = idFilterExpectedEvents;
+    }
+
+    @PostConstruct
+    void loadPartitions() {
+        jdbcTemplate.queryForList("SELECT table_name FROM information_schema.tables " +
+                "WHERE table_schema = SCHEMA() AND LOWER(table_name) LIKE '" + PREFIX + "%'", String.class)
+                .forEach(name -> {
+                    String table = name.toLowerCase();
+                    partitions.put(LocalDate.parse(table.substring(PREFIX.length()), SUFFIX), table);
+                    partitionIds.put(table, new PartitionIds(newIdFilter(), false));
+                });
+        createPartitionsAhead();
+    }
+
+    /**
+     * Creates the partitions every retained eventTime can land in, through the
+     * next one, so an ingest transaction never has to run DDL. The next day's
+     * partition exists well before UTC midnight.
+     */
+    @Scheduled(cron = "${factory.storage.partition.create-cron:0 0 * * * *}", zone = "UTC")
+    public void createPartitionsAhead() {
+        Instant now = Instant.now();
+        LocalDate last = startDay(now.plus(weekly ? Duration.ofDays(7) : Duration.ofDays(1)));
+        for (LocalDate day = startDay(retainedFrom(now)); !day.isAfter(last); day = weekly ? day.plusWeeks(1) : day.plusDays(1)) {
+            if (partitions.containsKey(day)) continue;
+            try {
+                createPartition(day);
+            } catch (DataAccessException e) {
+                log.warn("Could not create partition for {}, will retry", day, e);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean retains(Instant eventTime) {
+        return !eventTime.isBefore(retainedFrom(Instant.now()));
+    }
+
+    private Instant retainedFrom(Instant now) {
+        Instant cutoff = now.minus(retention);
+        return cutoff.isAfter(droppedBefore) ? cutoff : droppedBefore;
+    }
+
+    // Fills the filters of the partitions found at startup; new partitions start with a complete, empty one
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexPartitions() {
+        long start = System.nanoTime();
+        int indexed = 0;
+        for (String table : new ArrayList<>(partitions.values())) {
+            PartitionIds ids = partitionIds.get(table);
+            if (ids == null || ids.complete) continue;
+            try {
+                jdbcTemplate.query("SELECT event_id FROM " + table, rs -> {
+                    ids.filter.add(rs.getString(1));
+                });
+            } catch (DataAccessException e) {
+                log.warn("Could not index the ids of partition {}; lookups keep asking it", table, e);
+                continue;
+            }
+            ids.complete = true;
+            indexed++;
+        }
+        log.info("Indexed the event ids of {} partitions in {} ms", indexed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public List<MachineEvent> findExisting(Collection<String> eventIds) {
+        List<String> ids = new ArrayList<>(eventIds);
+        List<MachineEvent> found = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += LOOKUP_CHUNK) {
+            // Only the partitions whose filter may hold an id are asked, each for just those ids
+            Map<String, List<String>> byTable = new LinkedHashMap<>();
+            for (String id : ids.subList(i, Math.min(i + LOOKUP_CHUNK, ids.size()))) {
+                for (String table : partitions.values()) {
+                    PartitionIds partition = partitionIds.get(table);
+                    if (partition == null || partition.mightContain(id)) {
+                        byTable.computeIfAbsent(table, t -> new ArrayList<>()).add(id);
+                    }
+                }
+            }
+            if (byTable.isEmpty()) continue;
+            List<String> parts = new ArrayList<>();
+            Map<String, Object> params = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> t : byTable.entrySet()) {
+                String param = "ids" + params.size();
+                parts.add("SELECT " + JdbcEventStore.COLUMNS + " FROM " + t.getKey() + " WHERE event_id IN (:" + param + ")");
+                params.put(param, t.getValue());
+            }
+            found.addAll(namedJdbcTemplate.query(String.join(" UNION ALL ", parts), params,
+                    (rs, rowNum) -> JdbcEventStore.mapRow(rs)));
+        }
+        return found;
+    }
+
+    @Override
+    public void write(List<MachineEvent> inserted, List<EventChange> updated) {
+        Map<String, List<MachineEvent>> inserts = new LinkedHashMap<>();
+        for (MachineEvent e : inserted) {
+            inserts.computeIfAbsent(partitionFor(e.getEventTime()), t -> new ArrayList<>()).add(e);
+        }
+
+        // Same partition: guarded UPDATE in place. Moved: guarded DELETE, then INSERT if it won
+        Map<String, List<Object[]>> inPlace = new LinkedHashMap<>();
+        for (EventChange change : updated) {
+            MachineEvent current = change.current();
+            String from = partitionFor(change.previous().getEventTime());
+            String to = partitionFor(current.getEventTime());
+            if (from.equals(to)) {
+                Object[] v = JdbcEventStore.values(current);
+                inPlace.computeIfAbsent(from, t -> new ArrayList<>())
+                        .add(new Object[] {v[1], v[2], v[3], v[4], v[5], v[0], v[3]});
+            } else if (jdbcTemplate.update("DELETE FROM " + from + " WHERE event_id = ? AND received_time < ?",
+                    current.getEventId(), utc(current.getReceivedTime())) == 1) {
+                inserts.computeIfAbsent(to, t -> new ArrayList<>()).add(current);
+            }
+        }
+
+        int perInsert = rowsPerInsert;
+        inserts.forEach((table, rows) -> {
+            // Before the insert, like EventIdIndex: a rollback only leaves a false positive
+            PartitionIds ids = partitionIds.get(table);
+            if (ids != null) rows.forEach(e -> ids.filter.add(e.getEventId()));
+            for (int i = 0; i < rows.size(); i += perInsert) {
+                JdbcEventStore.insertRows(jdbcTemplate, table, rows.subList(i, Math.min(i + perInsert, rows.size())));
+            }
+        });
+        inPlace.forEach((table, args) -> jdbcTemplate.batchUpdate("UPDATE " + table + " SET machine_id = ?, " +
+                "event_time = ?, received_time = ?, duration_ms = ?, defect_count = ? " +
+                "WHERE event_id = ? AND received_time < ?", args));
+    }
+
+    @Override
+    public void setJdbcBatchSize(int rows) {
+        rowsPerInsert = rows > 0 ? rows : configuredRowsPerInsert;
+    }
+
+    @Override
+    public MachineStats getStats(String machineId, Instant start, Instant end) {
+        List<String> tables = overlapping(start, end);
+        if (tables.isEmpty() || !start.isBefore(end)) {
+            return new MachineStats(0, 0);
+        }
+        List<Object> args = new ArrayList<>();
+        List<String> parts = new ArrayList<>();
+        for (String table : tables) {
+            parts.add("SELECT COUNT(*) c, COALESCE(SUM(" + DEFECTS + "), 0) d FROM " + table +
+                    " WHERE machine_id = ? AND event_time >= ? AND event_time < ?");
+            args.addAll(List.of(machineId, utc(start), utc(end)));
+        }
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(c), 0), COALESCE(SUM(d), 0) FROM (" +
+                String.join(" UNION ALL ", parts) + ") p",
+                (rs, rowNum) -> new MachineStats(rs.getLong(1), rs.getLong(2)), args.toArray());
+    }
+
+    @Override
+    public List<LineStatsProjection> fetchWorstMachines(Instant from, Instant to, Limit limit) {
+        List<String> parts = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        for (Map.Entry<LocalDate, String> p : overlappingEntries(from, to)) {
+            String sql = "SELECT machine_id, COUNT(*) c, SUM(" + DEFECTS + ") d FROM " + p.getValue();
+            // A partition entirely inside the range needs no time predicate
+            if (start(p.getKey()).isBefore(from) || end(p.getKey()).isAfter(to)) {
+                sql += " WHERE event_time >= ? AND event_time < ?";
+                args.addAll(List.of(utc(from), utc(to)));
+            }
+            parts.add(sql + " GROUP BY machine_id");
+        }
+        if (parts.isEmpty() || !from.isBefore(to)) {
+            return new ArrayList<>();
+        }
+        String sql = "SELECT machine_id, SUM(c) event_count, SUM(d) total_defects FROM (" +
+                String.join(" UNION ALL ", parts) + ") p GROUP BY machine_id " +
+                "ORDER BY total_defects DESC, machine_id";
+        if (limit.isLimited()) {
+            sql += " LIMIT " + limit.max();
+        }
+        return jdbcTemplate.query(sql, (rs, rowNum) -> (LineStatsProjection) new LineStats(
+                rs.getString("machine_id"), rs.getLong("event_count"), rs.getLong("total_defects")), args.toArray());
+    }
+
+    @Override
+    public List<Long> findDurations(Collection<String> machineIds, Instant start, Instant end) {
+        List<String> tables = overlapping(start, end);
+        if (tables.isEmpty() || !start.isBefore(end)) {
+            return List.of();
+        }
+        String machines = machineIds.isEmpty() ? ""
+                : " AND machine_id IN (" + String.join(", ", Collections.nCopies(machineIds.size(), "?")) + ")";
+        List<Object> args = new ArrayList<>();
+        List<String> parts = new ArrayList<>();
+        for (String table : tables) {
+            parts.add("SELECT duration_ms FROM " + table + " WHERE event_time >= ? AND event_time < ?" + machines);
+            args.add(utc(start));
+            args.add(utc(end));
+            args.addAll(machineIds);
+        }
+        return jdbcTemplate.queryForList(String.join(" UNION ALL ", parts), Long.class, args.toArray());
+    }
+
+    @Override
+    public Stream<MachineEvent> streamEvents(Instant since) {
+        return overlappingEntries(since == null ? Instant.MIN : since, Instant.MAX).stream()
+                .flatMap(p -> since == null
+                        ? jdbcTemplate.queryForStream("SELECT " + JdbcEventStore.COLUMNS + " FROM " + p.getValue(),
+                                (rs, rowNum) -> JdbcEventStore.mapRow(rs))
+                        : jdbcTemplate.queryForStream("SELECT " + JdbcEventStore.COLUMNS + " FROM " + p.getValue() +
+                                " WHERE event_time >= ?", (rs, rowNum) -> JdbcEventStore.mapRow(rs), utc(since)));
+    }
+
+    @Override
+    public Stream<String> streamEventIds() {
+        return new ArrayList<>(partitions.values()).stream()
+                .flatMap(t -> jdbcTemplate.queryForStream("SELECT event_id FROM " + t, (rs, rowNum) -> rs.getString(1)));
+    }
+
+    /**
+     * Drops every partition that ends at or before now - retention. A partition
+     * that cannot be dropped right now (e.g. locked by a long reader) is kept and
+     * retried on the next run.
+     *
+     * The DROP runs under the partition lock and the partition is unmapped only
+     * after it: unmapped first, a concurrent late event would recreate the mapping
+     * (CREATE TABLE IF NOT EXISTS on the table still there) just before the DROP,
+     * leaving a mapped partition that no longer exists.
+     */
+    @Scheduled(cron = "${factory.storage.retention.cron:0 5 0 * * *}", zone = "UTC")
+    public void expirePartitions() {
+        expirePartitions(Instant.now().minus(retention));
+    }
+
+    public void expirePartitions(Instant cutoff) {
+        Instant dropped = null;
+        for (Map.Entry<LocalDate, String> p : new ArrayList<>(partitions.entrySet())) {
+            Instant end = end(p.getKey());
+            if (end.isAfter(cutoff)) break;
+            createLock.lock();
+            try {
+                // Raised first, so events for this partition are rejected from now on
+                if (end.isAfter(droppedBefore)) droppedBefore = end;
+                ddlTransaction.executeWithoutResult(status -> jdbcTemplate.execute("DROP TABLE IF EXISTS " + p.getValue()));
+                partitions.remove(p.getKey());
+                partitionIds.remove(p.getValue());
+                dropped = end;
+                log.info("Dropped partition {} (events before {})", p.getValue(), end);
+            } catch (DataAccessException e) {
+                log.warn("Could not drop partition {}, will retry", p.getValue(), e);
+                break;
+            } finally {
+                createLock.unlock();
+            }
+        }
+        if (dropped != null) {
+            publisher.publishEvent(new PartitionsDroppedEvent(dropped));
+        }
+    }
+
+    public List<String> partitionTables() {
+        return new ArrayList<>(partitions.values());
+    }
+
+    private String partitionFor(Instant eventTime) {
+        LocalDate day = startDay(eventTime);
+        String table = partitions.get(day);
+        return table != null ? table : createPartition(day);
+    }
+
+    /*
+     * Normally created ahead; reached from write() only when that failed (or for
+     * rows written straight to the store), at the cost of a second connection.
+     * Also held by expirePartitions around the DROP, so creating and dropping never interleave.
+     */
+    private String createPartition(LocalDate day) {
+        createLock.lock();
+        try {
+            String table = partitions.get(day);
+            if (table != null) {
+                return table;
+            }
+            String name = PREFIX + day.format(SUFFIX);
+            ddlTransaction.executeWithoutResult(status -> {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " (" +
+                        "event_id VARCHAR(255) NOT NULL PRIMARY KEY, " +
+                        "machine_id VARCHAR(255) NOT NULL, " +
+                        "event_time TIMESTAMP(6) WITH TIME ZONE NOT NULL, " +
+                        "received_time TIMESTAMP(6) WITH TIME ZONE NOT NULL, " +
+                        "duration_ms BIGINT NOT NULL, " +
+                        "defect_count INTEGER NOT NULL)");
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + name + "_machine_time ON " + name +
+                        " (machine_id, event_time)");
+            });
+            partitionIds.putIfAbsent(name, new PartitionIds(newIdFilter(), true));
+            partitions.put(day, name);
+            return name;
+        } finally {
+            createLock.unlock();
+        }
+    }
+
+    private BloomFilter newIdFilter() {
+        return new BloomFilter(idFilterExpectedEvents, ID_FILTER_FALSE_POSITIVE_RATE);
+    }
+
+    private List<String> overlapping(Instant from, Instant to) {
+        return overlappingEntries(from, to).stream().map(Map.Entry::getValue).toList();
+    }
+
+    // Partitions whose [start, end) intersects [from, to), oldest first
+    private List<Map.Entry<LocalDate, String>> overlappingEntries(Instant from, Instant to) {
+        LocalDate first = from.equals(Instant.MIN) ? LocalDate.MIN : startDay(from);
+        List<Map.Entry<LocalDate, String>> result = new ArrayList<>();
+        for (Map.Entry<LocalDate, String> p : partitions.tailMap(first, true).entrySet()) {
+            if (!start(p.getKey()).isBefore(to)) break;
+            result.add(p);
+        }
+        return result;
+    }
+
+    private LocalDate startDay(Instant t) {
+        LocalDate day = LocalDate.ofInstant(t, ZoneOffset.UTC);
+        return weekly ? day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : day;
+    }
+
+    private Instant start(LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private Instant end(LocalDate day) {
+        return start(weekly ? day.plusWeeks(1) : day.plusDays(1));
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+
+    // Until complete (a partition found at startup, not indexed yet) every id may be there
+    private static final class PartitionIds {
+        final BloomFilter filter;
+        volatile boolean complete;
+
+        PartitionIds(BloomFilter filter, boolean complete) {
+            this.filter = filter;
+            this.complete = complete;
+        }
+
+        boolean mightContain(String eventId) {
+            return !complete || filter.mightContain(eventId);
+        }
+    }
+}
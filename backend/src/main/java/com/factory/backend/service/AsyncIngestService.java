@@ -0,0 +1,255 @@
+package com.factory.backend.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import com.factory.backend.entity.MachineEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-behind ingestion. Batches are validated on the request thread and put on
+ * a bounded queue; writer threads drain it, merging adjacent batches into one
+ * processBatches call through the IngestionCoordinator (one commit per group).
+ * A full queue is reported to the caller instead of blocking the request thread.
+ * Writers are virtual threads when spring.threads.virtual.enabled is set,
+ * platform threads otherwise.
+ */
+@Service
+@ConditionalOnProperty(name = "factory.ingest.async.enabled", havingValue = "true")
+public class AsyncIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncIngestService.class);
+
+    private final EventService eventService;
+    private final IngestionCoordinator coordinator;
+    private final BlockingQueue<PendingBatch> queue;
+    private final int writers;
+    private final int maxMergeEvents;
+    private final int ticketRetention;
+    private final boolean virtualThreads;
+
+    private final Map<String, IngestTicket> tickets = new ConcurrentHashMap<>();
+    private final Queue<String> finishedTickets = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger finishedCount = new AtomicInteger();
+
+    private final Timer commitTimer;
+    private final Counter queueFullCounter;
+
+    private ExecutorService writerPool;
+    private volatile boolean running;
+
+    public AsyncIngestService(EventService eventService, IngestionCoordinator coordinator, MeterRegistry meterRegistry,
+                              @Value("${factory.ingest.async.queue-capacity:1000}") int queueCapacity,
+                              @Value("${factory.ingest.async.writers:2}") int writers,
+                              @Value("${factory.ingest.async.max-merge-events:5000}") int maxMergeEvents,
+                              @Value("${factory.ingest.async.ticket-retention:10000}") int ticketRetention,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.eventService = eventService;
+        this.coordinator = coordinator;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writers = writers;
+        this.maxMergeEvents = maxMergeEvents;
+        this.ticketRetention = ticketRetention;
+        this.virtualThreads = virtualThreads;
+
+        Gauge.builder("factory.ingest.async.queue.depth", queue, BlockingQueue::size)
+                .description("Batches waiting for a writer")
+                .register(meterRegistry);
+        this.commitTimer = Timer.builder("factory.ingest.async.commit")
+                .description("Time to process and commit one merged group of batches")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.queueFullCounter = Counter.builder("factory.ingest.async.queue.full")
+                .description("Batches refused because the queue was full")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerPool = Executors.newFixedThreadPool(Math.max(writers, 1), writerThreads());
+        for (int i = 0; i < writers; i++) {
+            writerPool.submit(this::drainLoop);
+        }
+    }
+
+    /**
+     * Validates and enqueues the batch.
+     * Returns null when the queue is full; the caller should retry later.
+     */
+    public IngestTicket submit(List<MachineEvent> events) {
+        List<MachineEvent> valid = new ArrayList<>(events.size());
+        for (MachineEvent e : events) {
+            if (eventService.isValid(e)) valid.add(e);
+        }
+
+        IngestTicket ticket = new IngestTicket(UUID.randomUUID().toString(), events.size(), events.size() - valid.size());
+        if (valid.isEmpty()) {
+            ticket.complete(Map.of("accepted", 0, "deduped", 0, "updated", 0, "rejected", 0));
+            remember(ticket);
+            return ticket;
+        }
+
+        tickets.put(ticket.getTicketId(), ticket);
+        if (!queue.offer(new PendingBatch(ticket, valid))) {
+            tickets.remove(ticket.getTicketId());
+            queueFullCounter.increment();
+            return null;
+        }
+        return ticket;
+    }
+
+    public IngestTicket getTicket(String ticketId) {
+        return tickets.get(ticketId);
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    private ThreadFactory writerThreads() {
+        if (virtualThreads) {
+            return new VirtualThreadTaskExecutor("ingest-writer-").getVirtualThreadFactory();
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        return r -> new Thread(r, "ingest-writer-" + threadIndex.incrementAndGet());
+    }
+
+    private void drainLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingBatch first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                // Merge whatever is already waiting, up to maxMergeEvents or the tuned commit size
+                List<PendingBatch> group = new ArrayList<>();
+                group.add(first);
+                int events = first.events().size();
+                int limit = coordinator.mergeLimit(maxMergeEvents);
+                PendingBatch next;
+                while (events < limit && (next = queue.poll()) != null) {
+                    group.add(next);
+                    events += next.events().size();
+                }
+                write(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void write(List<PendingBatch> group) {
+        try {
+            List<Map<String, Object>> results = commitTimer.recordCallable(() ->
+                    coordinator.processBatches(group.stream().map(PendingBatch::events).toList()));
+            for (int i = 0; i < group.size(); i++) {
+                finish(group.get(i).ticket(), results.get(i), null);
+            }
+        } catch (PartialIngestException e) {
+            // Part of the group is stored: settle the batches that fully committed, retry the rest alone
+            for (int i = 0; i < group.size(); i++) {
+                PendingBatch batch = group.get(i);
+                Map<String, Object> committed = e.committed().get(i);
+                if (events(committed) == batch.events().size()) {
+                    finish(batch.ticket(), committed, null);
+                } else if (group.size() == 1) {
+                    log.warn("Async batch {} failed after a partial commit", batch.ticket().getTicketId(), e);
+                    batch.ticket().fail(e.getMessage(), committed);
+                    remember(batch.ticket());
+                } else {
+                    retryAfterPartial(batch, committed);
+                }
+            }
+        } catch (Exception e) {
+            if (group.size() == 1) {
+                log.warn("Async batch {} failed", group.get(0).ticket().getTicketId(), e);
+                finish(group.get(0).ticket(), null, e.getMessage());
+                return;
+            }
+            // One bad batch must not fail its neighbours: retry them one by one
+            for (PendingBatch batch : group) {
+                write(List.of(batch));
+            }
+        }
+    }
+
+    // The retry sees the committed events again and counts them as deduped; count them as the first attempt did
+    private void retryAfterPartial(PendingBatch batch, Map<String, Object> committed) {
+        try {
+            Map<String, Object> retry = coordinator.processBatch(batch.events());
+            int recommitted = (int) committed.get("accepted") + (int) committed.get("updated");
+            Map<String, Object> counts = new LinkedHashMap<>();
+            counts.put("accepted", (int) committed.get("accepted") + (int) retry.get("accepted"));
+            counts.put("deduped", (int) retry.get("deduped") - recommitted);
+            counts.put("updated", (int) committed.get("updated") + (int) retry.get("updated"));
+            counts.put("rejected", retry.get("rejected"));
+            finish(batch.ticket(), counts, null);
+        } catch (RuntimeException e) {
+            log.warn("Async batch {} failed", batch.ticket().getTicketId(), e);
+            batch.ticket().fail(e.getMessage(), committed);
+            remember(batch.ticket());
+        }
+    }
+
+    private static int events(Map<String, Object> counts) {
+        return counts.values().stream().mapToInt(n -> (int) n).sum();
+    }
+
+    private void finish(IngestTicket ticket, Map<String, Object> result, String error) {
+        if (error == null) {
+            ticket.complete(result);
+        } else {
+            ticket.fail(error);
+        }
+        remember(ticket);
+    }
+
+    // Keep the last ticketRetention finished tickets for polling
+    private void remember(IngestTicket ticket) {
+        tickets.put(ticket.getTicketId(), ticket);
+        finishedTickets.add(ticket.getTicketId());
+        if (finishedCount.incrementAndGet() > ticketRetention) {
+            String oldest = finishedTickets.poll();
+            if (oldest != null) {
+                tickets.remove(oldest);
+                finishedCount.decrementAndGet();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false; // writers finish what is queued, then exit
+        writerPool.shutdown();
+        writerPool.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private record PendingBatch(IngestTicket ticket, List<MachineEvent> events) {}
+}
@@ -0,0 +1,9 @@
+package com.factory.backend.service;
+
+/** A batch body larger than the configured limit once decoded (after gzip, if any). */
+public class BatchTooLargeException extends IllegalArgumentException {
+
+    public BatchTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,259 @@
+package com.factory.backend.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.factory.backend.dto.EventRow;
+
+/**
+ * Compact binary batch format for /events/batch (application/x-factory-batch),
+ * meant for edge gateways. Optionally gzip-framed (Content-Encoding: gzip).
+ *
+ * Layout, all integers as LEB128 varints (signed ones zigzag-encoded):
+ * <pre>
+ * "FEB1"
+ * machineCount, then per machine: byteLength, UTF-8 bytes
+ * eventCount, then per event:
+ *   flags              bit 0 eventId is a UUID, 1 no eventId, 2 no machineId,
+ *                      3 no eventTime, 4 no receivedTime
+ *   eventId            16 bytes (UUID, big-endian msb/lsb) or byteLength + UTF-8
+ *   machineIndex       into the machine table
+ *   eventTime          signed delta from the previous event's eventTime (millis)
+ *   receivedTime       signed delta from this event's eventTime (millis)
+ *   durationMs         signed
+ *   defectCount        signed
+ * </pre>
+ * Decoding reads the buffer in place: machine ids become one String per batch,
+ * numbers never go through text. The result is the same EventRows the JSON
+ * codec produces for the same events. Malformed input surfaces as
+ * IllegalArgumentException.
+ *
+ * A body is read into memory only up to factory.ingest.binary.max-body-size,
+ * counted after gunzipping, so a small gzip bomb cannot expand without bound;
+ * anything larger is a BatchTooLargeException.
+ */
+@Component
+public class BinaryBatchCodec {
+
+    public static final String CONTENT_TYPE = "application/x-factory-batch";
+
+    private static final int MAGIC = 0x46454231; // "FEB1"
+    private static final int UUID_ID = 1, NO_EVENT_ID = 2, NO_MACHINE_ID = 4, NO_EVENT_TIME = 8, NO_RECEIVED_TIME = 16;
+
+    private final int maxBodyBytes;
+
+    public BinaryBatchCodec(@Value("${factory.ingest.binary.max-body-size:16MB}") DataSize maxBodySize) {
+        // Leaves room for the one byte read past the limit
+        this.maxBodyBytes = (int) Math.min(maxBodySize.toBytes(), Integer.MAX_VALUE - 16);
+    }
+
+    public List<EventRow> decode(InputStream body, boolean gzip) {
+        try (InputStream in = gzip ? new GZIPInputStream(body) : body) {
+            // One byte past the limit tells a body over it from one exactly at it
+            byte[] bytes = in.readNBytes(maxBodyBytes + 1);
+            if (bytes.length > maxBodyBytes) {
+                throw new BatchTooLargeException("Binary batch larger than " + maxBodyBytes + " bytes"
+                        + (gzip ? " once decompressed" : ""));
+            }
+            return decode(ByteBuffer.wrap(bytes));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unreadable binary batch: " + e.getMessage(), e);
+        }
+    }
+
+    public List<EventRow> decode(ByteBuffer buffer) {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a binary event batch (bad magic)");
+            }
+            String[] machines = new String[count(buffer)];
+            for (int i = 0; i < machines.length; i++) {
+                machines[i] = string(buffer);
+            }
+
+            int events = count(buffer);
+            List<EventRow> rows = new ArrayList<>(events);
+            long previousEventTime = 0;
+            for (int i = 0; i < events; i++) {
+                int flags = buffer.get();
+                String eventId = null;
+                if ((flags & UUID_ID) != 0) {
+                    eventId = new UUID(buffer.getLong(), buffer.getLong()).toString();
+                } else if ((flags & NO_EVENT_ID) == 0) {
+                    eventId = string(buffer);
+                }
+                String machineId = null;
+                if ((flags & NO_MACHINE_ID) == 0) {
+                    long index = unsigned(buffer);
+                    if (index >= machines.length) {
+                        throw new IllegalArgumentException("Machine index " + index + " outside the table of " + machines.length);
+                    }
+                    machineId = machines[(int) index];
+                }
+                long eventTime = EventRow.MISSING_TIME;
+                if ((flags & NO_EVENT_TIME) == 0) {
+                    eventTime = previousEventTime + signed(buffer);
+                    previousEventTime = eventTime;
+                }
+                long receivedTime = EventRow.MISSING_TIME;
+                if ((flags & NO_RECEIVED_TIME) == 0) {
+                    receivedTime = (eventTime == EventRow.MISSING_TIME ? 0 : eventTime) + signed(buffer);
+                }
+                long durationMs = signed(buffer);
+                int defectCount = Math.toIntExact(signed(buffer));
+                rows.add(new EventRow(eventId, machineId, eventTime, receivedTime, durationMs, defectCount));
+            }
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException(buffer.remaining() + " trailing bytes after " + events + " events");
+            }
+            return rows;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary batch", e);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Value out of range in binary batch", e);
+        }
+    }
+
+    /** Encoder used by gateways' reference client, tests and benchmarks. */
+    public byte[] encode(List<EventRow> rows, boolean gzip) {
+        Map<String, Integer> machineIndex = new HashMap<>();
+        List<String> machines = new ArrayList<>();
+        for (EventRow row : rows) {
+            if (row.machineId() != null && machineIndex.putIfAbsent(row.machineId(), machines.size()) == null) {
+                machines.add(row.machineId());
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + rows.size() * 32);
+        ByteBuffer scratch = ByteBuffer.allocate(16);
+        out.write(scratch.putInt(0, MAGIC).array(), 0, 4);
+        unsigned(out, machines.size());
+        for (String machine : machines) {
+            string(out, machine);
+        }
+        unsigned(out, rows.size());
+        long previousEventTime = 0;
+        for (EventRow row : rows) {
+            UUID uuid = uuid(row.eventId());
+            int flags = (uuid != null ? UUID_ID : 0)
+                    | (row.eventId() == null ? NO_EVENT_ID : 0)
+                    | (row.machineId() == null ? NO_MACHINE_ID : 0)
+                    | (row.eventTimeMillis() == EventRow.MISSING_TIME ? NO_EVENT_TIME : 0)
+                    | (row.receivedTimeMillis() == EventRow.MISSING_TIME ? NO_RECEIVED_TIME : 0);
+            out.write(flags);
+            if (uuid != null) {
+                scratch.clear();
+                out.write(scratch.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array(), 0, 16);
+            } else if (row.eventId() != null) {
+                string(out, row.eventId());
+            }
+            if (row.machineId() != null) {
+                unsigned(out, machineIndex.get(row.machineId()));
+            }
+            if (row.eventTimeMillis() != EventRow.MISSING_TIME) {
+                signed(out, row.eventTimeMillis() - previousEventTime);
+                previousEventTime = row.eventTimeMillis();
+            }
+            if (row.receivedTimeMillis() != EventRow.MISSING_TIME) {
+                long base = row.eventTimeMillis() == EventRow.MISSING_TIME ? 0 : row.eventTimeMillis();
+                signed(out, row.receivedTimeMillis() - base);
+            }
+            signed(out, row.durationMs());
+            signed(out, row.defectCount());
+        }
+        return gzip ? gzip(out.toByteArray()) : out.toByteArray();
+    }
+
+    // Only ids whose canonical UUID text is exactly the id, so decoding gives back the same string
+    private static UUID uuid(String id) {
+        if (id == null || id.length() != 36) return null;
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int count(ByteBuffer buffer) {
+        long value = unsigned(buffer);
+        if (value > buffer.remaining()) {
+            // Every counted item takes at least one byte
+            throw new IllegalArgumentException("Count " + value + " exceeds the " + buffer.remaining() + " bytes left");
+        }
+        return (int) value;
+    }
+
+    private static String string(ByteBuffer buffer) {
+        int length = count(buffer);
+        String s;
+        if (buffer.hasArray()) {
+            s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    private static long unsigned(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Varint longer than 10 bytes");
+    }
+
+    private static long signed(ByteBuffer buffer) {
+        long zigzag = unsigned(buffer);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static void string(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        unsigned(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static void unsigned(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void signed(ByteArrayOutputStream out, long value) {
+        unsigned(out, (value << 1) ^ (value >> 63));
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,47 @@
+package com.factory.backend.service;
+
+import java.util.Arrays;
+
+/**
+ * Fixed ring of (count, defects) buckets keyed by epoch minute or epoch hour.
+ * A slot is reset when a newer key claims it; keys older than the slot's
+ * current one are ignored. Not thread-safe, callers hold their own lock.
+ */
+final class BucketRing {
+
+    private final long[] keys;
+    private final long[] counts;
+    private final long[] defects;
+
+    BucketRing(int size) {
+        keys = new long[size];
+        counts = new long[size];
+        defects = new long[size];
+        Arrays.fill(keys, Long.MIN_VALUE);
+    }
+
+    void add(long key, long count, long defectDelta) {
+        int slot = (int) Math.floorMod(key, (long) keys.length);
+        if (keys[slot] != key) {
+            // Older than the ring covers, or removing something that was never counted
+            if (keys[slot] > key || count < 0) return;
+            keys[slot] = key;
+            counts[slot] = 0;
+            defects[slot] = 0;
+        }
+        counts[slot] += count;
+        defects[slot] += defectDelta;
+    }
+
+    /** {count, defects} over every bucket with key >= fromKey. */
+    long[] totalsFrom(long fromKey) {
+        long[] totals = new long[2];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] >= fromKey) {
+                totals[0] += counts[i];
+                totals[1] += defects[i];
+            }
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,417 @@
+package com.factory.backend.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.factory.backend.dto.LineStats;
+import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.dto.MachineStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.event.BatchIngestedEvent;
+import com.factory.backend.event.EventChange;
+import com.factory.backend.event.PartitionsDroppedEvent;
+import com.factory.backend.repository.EventStore;
+
+/**
+ * In-memory columnar mirror of machine_events for the analytical queries.
+ *
+ * Each machine keeps three parallel primitive columns sorted by eventTime:
+ * epoch microseconds (the column's precision, so window bounds compare exactly
+ * as in SQL), defects (-1 already stored as 0) and durations. A window is two
+ * binary searches and a loop over the defects column in between.
+ *
+ * Rows are appended after each ingest commit. An out-of-order eventTime is
+ * appended too, past the sorted part, and the unsorted rows are sorted and
+ * merged in one pass before the machine's next read, instead of shifting the
+ * tail for every late row. A last-write-wins update corrects the previous row in place when it
+ * keeps its machine and eventTime, otherwise it is removed and re-inserted.
+ * The columns are rebuilt from the event store at startup and, when
+ * factory.stats.columnar.verify-on-startup is set, compared per machine with
+ * the SQL totals; on a mismatch the store is switched off and queries go back
+ * to the database.
+ */
+@Service
+public class ColumnarStore implements DerivedState {
+
+    private static final Logger log = LoggerFactory.getLogger(ColumnarStore.class);
+
+    private final EventStore eventStore;
+    private final boolean enabled;
+    private final boolean verifyOnStartup;
+
+    private final Map<String, MachineColumns> machines = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    public ColumnarStore(EventStore eventStore,
+                         @Value("${factory.stats.columnar.enabled:false}") boolean enabled,
+                         @Value("${factory.stats.columnar.verify-on-startup:true}") boolean verifyOnStartup) {
+        this.eventStore = eventStore;
+        this.enabled = enabled;
+        this.verifyOnStartup = verifyOnStartup;
+    }
+
+    /** True once the columns were rebuilt (and verified, if configured). */
+    public boolean isEnabled() {
+        return enabled && ready;
+    }
+
+    // Not before the rebuild is done: the columns would mix batches with the scan,
+    // or refill after a failed verification cleared them
+    @Order(0)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBatchIngested(BatchIngestedEvent batch) {
+        if (!enabled || !ready) return;
+        for (EventChange change : batch.changes()) {
+            MachineEvent previous = change.previous();
+            MachineEvent current = change.current();
+            if (previous != null && previous.getMachineId().equals(current.getMachineId())
+                    && previous.getEventTime().equals(current.getEventTime())) {
+                columns(current.getMachineId()).correct(micros(previous.getEventTime()),
+                        defects(previous), previous.getDurationMs(), defects(current), current.getDurationMs());
+                continue;
+            }
+            if (previous != null) {
+                MachineColumns old = machines.get(previous.getMachineId());
+                if (old != null) {
+                    old.remove(micros(previous.getEventTime()), defects(previous), previous.getDurationMs());
+                }
+            }
+            columns(current.getMachineId()).insert(micros(current.getEventTime()), defects(current),
+                    current.getDurationMs());
+        }
+    }
+
+    @EventListener
+    public void onPartitionsDropped(PartitionsDroppedEvent dropped) {
+        if (!enabled) return;
+        long before = micros(dropped.before());
+        machines.values().forEach(c -> c.dropBefore(before));
+    }
+
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        DerivedStateRebuilder.rebuild(eventStore, List.of(this));
+    }
+
+    @Override
+    public Rebuild startRebuild() {
+        if (!enabled) return null;
+        ready = false;
+        machines.clear();
+        return new Rebuild() {
+            @Override
+            public void accept(MachineEvent e) {
+                columns(e.getMachineId()).append(micros(e.getEventTime()), defects(e), e.getDurationMs());
+            }
+
+            @Override
+            public void finish() {
+                machines.values().forEach(MachineColumns::sort);
+                if (verifyOnStartup && !verify()) {
+                    machines.clear();
+                    return;
+                }
+                ready = true;
+            }
+        };
+    }
+
+    // Whole-history COUNT/SUM per machine, one grouped query
+    private boolean verify() {
+        List<LineStatsProjection> sql = eventStore.fetchWorstMachines(
+                Instant.EPOCH, Instant.parse("9999-01-01T00:00:00Z"), Limit.unlimited());
+        int matched = 0;
+        for (LineStatsProjection line : sql) {
+            MachineColumns c = machines.get(line.getLineId());
+            long[] totals = c == null ? new long[2] : c.totals(Long.MIN_VALUE, Long.MAX_VALUE);
+            if (totals[0] != line.getEventCount() || totals[1] != line.getTotalDefects()) {
+                log.warn("Columnar store disagrees with SQL for machine {}: {}/{} rows, {}/{} defects; "
+                        + "serving stats from the database", line.getLineId(), totals[0], line.getEventCount(),
+                        totals[1], line.getTotalDefects());
+                return false;
+            }
+            matched++;
+        }
+        long nonEmpty = machines.values().stream().filter(c -> c.size() > 0).count();
+        if (nonEmpty != matched) {
+            log.warn("Columnar store has {} machines, SQL has {}; serving stats from the database", nonEmpty, matched);
+            return false;
+        }
+        return true;
+    }
+
+    /** Same result as EventStore.getStats for eventTime in [start, end). */
+    public MachineStats getStats(String machineId, Instant start, Instant end) {
+        MachineColumns c = machines.get(machineId);
+        if (c == null || !start.isBefore(end)) {
+            return new MachineStats(0, 0);
+        }
+        long[] totals = c.totals(micros(start), micros(end));
+        return new MachineStats(totals[0], totals[1]);
+    }
+
+    /** Same result as EventStore.fetchWorstMachines: worst first, ties by machineId. */
+    public List<LineStats> fetchWorstMachines(Instant from, Instant to, int limit) {
+        return fetchWorstMachines(machineIds(), from, to, limit);
+    }
+
+    /** fetchWorstMachines restricted to the given machines (one shard of a parallel query). */
+    public List<LineStats> fetchWorstMachines(Collection<String> machineIds, Instant from, Instant to, int limit) {
+        if (!from.isBefore(to)) {
+            return new ArrayList<>();
+        }
+        long fromMicros = micros(from);
+        long toMicros = micros(to);
+        List<LineStats> lines = new ArrayList<>();
+        for (String machineId : machineIds) {
+            MachineColumns c = machines.get(machineId);
+            long[] totals = c == null ? new long[2] : c.totals(fromMicros, toMicros);
+            if (totals[0] > 0) {
+                lines.add(new LineStats(machineId, totals[0], totals[1]));
+            }
+        }
+        return LineStats.worst(lines, limit);
+    }
+
+    public List<String> machineIds() {
+        return new ArrayList<>(machines.keySet());
+    }
+
+    public long rows() {
+        return machines.values().stream().mapToLong(MachineColumns::size).sum();
+    }
+
+    private MachineColumns columns(String machineId) {
+        return machines.computeIfAbsent(machineId, id -> new MachineColumns());
+    }
+
+    private static int defects(MachineEvent e) {
+        return e.getDefectCount() == -1 ? 0 : e.getDefectCount();
+    }
+
+    private static long micros(Instant t) {
+        return Math.addExact(Math.multiplyExact(t.getEpochSecond(), 1_000_000L), t.getNano() / 1000);
+    }
+
+    // Guarded by its lock; times is sorted ascending over [0, sorted), rows after that are pending
+    private static final class MachineColumns {
+        private final ReentrantLock lock = new ReentrantLock();
+        private long[] times = new long[16];
+        private int[] defects = new int[16];
+        private long[] durations = new long[16];
+        private int sorted;
+        private int size;
+
+        int size() {
+            lock.lock();
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Rebuild only: everything is pending until sort()
+        void append(long time, int defect, long duration) {
+            lock.lock();
+            try {
+                add(time, defect, duration);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void insert(long time, int defect, long duration) {
+            lock.lock();
+            try {
+                // Usually the newest row: it extends the sorted part. A late one waits for the next read
+                boolean inOrder = sorted == size && (size == 0 || time >= times[size - 1]);
+                add(time, defect, duration);
+                if (inOrder) sorted = size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void correct(long time, int oldDefect, long oldDuration, int newDefect, long newDuration) {
+            lock.lock();
+            try {
+                settle();
+                int i = find(time, oldDefect, oldDuration);
+                if (i >= 0) {
+                    defects[i] = newDefect;
+                    durations[i] = newDuration;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Rows with equal values are interchangeable for every aggregate, so any match will do
+        void remove(long time, int defect, long duration) {
+            lock.lock();
+            try {
+                settle();
+                int i = find(time, defect, duration);
+                if (i < 0) return;
+                int tail = size - i - 1;
+                System.arraycopy(times, i + 1, times, i, tail);
+                System.arraycopy(defects, i + 1, defects, i, tail);
+                System.arraycopy(durations, i + 1, durations, i, tail);
+                size--;
+                sorted = size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void dropBefore(long time) {
+            lock.lock();
+            try {
+                settle();
+                int cut = lowerBound(time);
+                if (cut == 0) return;
+                size -= cut;
+                sorted = size;
+                System.arraycopy(times, cut, times, 0, size);
+                System.arraycopy(defects, cut, defects, 0, size);
+                System.arraycopy(durations, cut, durations, 0, size);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // {rows, defect sum} for time in [from, to)
+        long[] totals(long from, long to) {
+            lock.lock();
+            try {
+                settle();
+                int lo = lowerBound(from);
+                int hi = lowerBound(to);
+                long sum = 0;
+                for (int i = lo; i < hi; i++) {
+                    sum += defects[i];
+                }
+                return new long[] {Math.max(0, hi - lo), sum};
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void sort() {
+            lock.lock();
+            try {
+                settle();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void add(long time, int defect, long duration) {
+            grow();
+            times[size] = time;
+            defects[size] = defect;
+            durations[size] = duration;
+            size++;
+        }
+
+        /**
+         * Sorts the pending rows through an index permutation (merge sort, stable)
+         * and merges them back into the columns in place, from the back, so only
+         * the pending tail is copied; the columns already have room for every row.
+         */
+        private void settle() {
+            if (sorted == size) return;
+            int pending = size - sorted;
+            int[] order = new int[pending];
+            for (int i = 0; i < pending; i++) order[i] = sorted + i;
+            int[] buffer = new int[pending];
+            for (int width = 1; width < pending; width *= 2) {
+                for (int lo = 0; lo < pending - width; lo += 2 * width) {
+                    merge(order, buffer, lo, lo + width, Math.min(lo + 2 * width, pending));
+                }
+            }
+            long[] t = new long[pending];
+            int[] d = new int[pending];
+            long[] u = new long[pending];
+            for (int k = 0; k < pending; k++) {
+                t[k] = times[order[k]];
+                d[k] = defects[order[k]];
+                u[k] = durations[order[k]];
+            }
+            // Sorted rows first on equal times, as an insert after them would have placed a late row
+            int i = sorted - 1, j = pending - 1;
+            for (int k = size - 1; j >= 0; k--) {
+                if (i >= 0 && times[i] > t[j]) {
+                    times[k] = times[i];
+                    defects[k] = defects[i];
+                    durations[k] = durations[i];
+                    i--;
+                } else {
+                    times[k] = t[j];
+                    defects[k] = d[j];
+                    durations[k] = u[j];
+                    j--;
+                }
+            }
+            sorted = size;
+        }
+
+        private void merge(int[] order, int[] buffer, int lo, int mid, int hi) {
+            if (times[order[mid - 1]] <= times[order[mid]]) return;
+            System.arraycopy(order, lo, buffer, lo, hi - lo);
+            int i = lo, j = mid;
+            for (int k = lo; k < hi; k++) {
+                if (j >= hi || (i < mid && times[buffer[i]] <= times[buffer[j]])) {
+                    order[k] = buffer[i++];
+                } else {
+                    order[k] = buffer[j++];
+                }
+            }
+        }
+
+        private int find(long time, int defect, long duration) {
+            for (int i = lowerBound(time); i < size && times[i] == time; i++) {
+                if (defects[i] == defect && durations[i] == duration) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // First index with times[i] >= time
+        private int lowerBound(long time) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] < time) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        private void grow() {
+            if (size < times.length) return;
+            int capacity = times.length + (times.length >> 1);
+            times = Arrays.copyOf(times, capacity);
+            defects = Arrays.copyOf(defects, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+        }
+    }
+}
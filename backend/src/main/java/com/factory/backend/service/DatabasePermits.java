@@ -0,0 +1,58 @@
+package com.factory.backend.service;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caps how many callers use the database at once, sized to the connection pool.
+ *
+ * Tomcat's request pool is not the only caller: the async writers, the journal
+ * applier and the shard endpoints add their own threads, and together they
+ * would otherwise queue inside Hikari and fail after its connectionTimeout.
+ * With spring.threads.virtual.enabled every request gets its own thread, so
+ * the number waiting is bounded by nothing but the clients. Here they wait on a
+ * fair semaphore instead (a virtual thread parks, cheaply), take a connection
+ * in arrival order, and fail after factory.db.acquire-timeout if none frees up.
+ *
+ * Only one permit is held at a time per call path (ingest commits,
+ * stats queries that reach the table), so permits cannot deadlock.
+ */
+@Component
+public class DatabasePermits {
+
+    private final Semaphore permits;
+    private final Duration acquireTimeout;
+
+    public DatabasePermits(@Value("${factory.db.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrency,
+                           @Value("${factory.db.acquire-timeout:30s}") Duration acquireTimeout) {
+        this.permits = new Semaphore(Math.max(1, maxConcurrency), true);
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    public <T> T call(Supplier<T> work) {
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new TransientDataAccessResourceException(
+                        "No database permit within " + acquireTimeout + " (" + permits.getQueueLength() + " waiting)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransientDataAccessResourceException("Interrupted waiting for a database permit", e);
+        }
+        try {
+            return work.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int available() {
+        return permits.availablePermits();
+    }
+}
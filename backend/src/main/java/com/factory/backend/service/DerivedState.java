@@ -0,0 +1,30 @@
+package com.factory.backend.service;
+
+import com.factory.backend.entity.MachineEvent;
+
+/**
+ * In-memory state derived from the stored events. At startup
+ * DerivedStateRebuilder streams the event store once and feeds every
+ * rebuild from that one scan, instead of one full scan per store.
+ */
+public interface DerivedState {
+
+    /** Starts a rebuild (taking whatever locks it holds until close); null when switched off. */
+    Rebuild startRebuild();
+
+    /**
+     * Receives every stored event in no particular order, then finish().
+     * close() always runs, also when the scan failed and finish() did not.
+     */
+    interface Rebuild extends AutoCloseable {
+
+        void accept(MachineEvent event);
+
+        default void finish() {
+        }
+
+        @Override
+        default void close() {
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.factory.backend.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.server.context.WebServerApplicationContext;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.EventStore;
+
+/**
+ * Rebuilds every DerivedState (rollups, leaderboards, columns, dedupe filter,
+ * sketches, health windows, changelog clocks) from a single scan of the event
+ * store. After a snapshot restore of millions of rows that one scan is most of
+ * the time to ready.
+ *
+ * The startup rebuild runs as a lifecycle phase just before the web server
+ * starts, so no batch can commit while the scan runs: the rebuilds clear and
+ * refill their state, and a concurrent batch would reach it twice, once from
+ * its after-commit listener and once from the scan. The journal replays and
+ * its applier start later, on top of the rebuilt state. Callers of rebuild()
+ * at runtime must likewise hold ingest.
+ */
+@Service
+public class DerivedStateRebuilder implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(DerivedStateRebuilder.class);
+
+    private final EventStore eventStore;
+    private final List<DerivedState> states;
+    private final TransactionTemplate readOnly;
+    private volatile boolean running;
+
+    public DerivedStateRebuilder(EventStore eventStore, List<DerivedState> states,
+                                 PlatformTransactionManager transactionManager) {
+        this.eventStore = eventStore;
+        this.states = states;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+    }
+
+    @Override
+    public void start() {
+        rebuild();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Ahead of the web server's start phase
+    @Override
+    public int getPhase() {
+        return WebServerApplicationContext.START_STOP_LIFECYCLE_PHASE - 1;
+    }
+
+    public void rebuild() {
+        long start = System.nanoTime();
+        long events = readOnly.execute(status -> rebuild(eventStore, states));
+        log.info("Rebuilt {} derived stores from {} events in {} ms", states.size(), events,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** One scan of the store into the given states, inside the caller's read-only transaction; returns the events read. */
+    static long rebuild(EventStore eventStore, Collection<? extends DerivedState> states) {
+        List<DerivedState.Rebuild> rebuilds = new ArrayList<>(states.size());
+        try {
+            for (DerivedState state : states) {
+                DerivedState.Rebuild rebuild = state.startRebuild();
+                if (rebuild != null) rebuilds.add(rebuild);
+            }
+            if (rebuilds.isEmpty()) return 0;
+            long[] count = new long[1];
+            try (Stream<MachineEvent> events = eventStore.streamEvents(null)) {
+                events.forEach(e -> {
+                    for (DerivedState.Rebuild rebuild : rebuilds) {
+                        rebuild.accept(e);
+                    }
+                    count[0]++;
+                });
+            }
+            rebuilds.forEach(DerivedState.Rebuild::finish);
+            return count[0];
+        } finally {
+            for (int i = rebuilds.size() - 1; i >= 0; i--) {
+                rebuilds.get(i).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.factory.backend.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.factory.backend.dto.DurationStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.event.BatchIngestedEvent;
+import com.factory.backend.event.EventChange;
+import com.factory.backend.event.PartitionsDroppedEvent;
+import com.factory.backend.repository.EventStore;
+import com.factory.backend.util.DurationSketch;
+
+/**
+ * Cycle-duration percentiles from per-machine hour sketches (DurationSketch,
+ * relative accuracy factory.stats.durations.relative-accuracy).
+ *
+ * Every committed change adds its duration to its machine's hour sketch and to
+ * the all-machines sketch for that hour (updates remove the previous version).
+ * A query merges the whole hours of the window, from the all-machines sketches
+ * when no machine is given, and adds the raw durations of the partial hours at
+ * each end. Sketches are kept for retention; the part of a window older than
+ * that is read raw. The result is within the sketch accuracy of the exact
+ * percentile at the same rank.
+ */
+@Service
+public class DurationAnalytics implements DerivedState {
+
+    private final EventStore eventStore;
+    private final boolean enabled;
+    private final double relativeAccuracy;
+    private final Duration retention;
+
+    private final Map<String, HourSketches> machines = new ConcurrentHashMap<>();
+    private volatile HourSketches allMachines;
+
+    public DurationAnalytics(EventStore eventStore,
+                             @Value("${factory.stats.durations.enabled:true}") boolean enabled,
+                             @Value("${factory.stats.durations.relative-accuracy:0.01}") double relativeAccuracy,
+                             @Value("${factory.stats.durations.retention:7d}") Duration retention) {
+        this.eventStore = eventStore;
+        this.enabled = enabled;
+        this.relativeAccuracy = relativeAccuracy;
+        this.retention = retention;
+        this.allMachines = new HourSketches(horizon());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Order(0)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBatchIngested(BatchIngestedEvent batch) {
+        if (!enabled) return;
+        long horizon = horizon();
+        for (EventChange change : batch.changes()) {
+            if (change.previous() != null) {
+                add(change.previous(), -1, horizon);
+            }
+            add(change.current(), 1, horizon);
+        }
+    }
+
+    // Retention dropped whole days, so the sketches before the cut hold exactly the dropped rows
+    @EventListener
+    public void onPartitionsDropped(PartitionsDroppedEvent dropped) {
+        if (!enabled) return;
+        long before = dropped.before().getEpochSecond();
+        allMachines.dropBefore(before);
+        machines.values().forEach(sketches -> sketches.dropBefore(before));
+    }
+
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        DerivedStateRebuilder.rebuild(eventStore, List.of(this));
+    }
+
+    @Override
+    public Rebuild startRebuild() {
+        if (!enabled) return null;
+        long horizon = horizon();
+        machines.clear();
+        allMachines = new HourSketches(horizon);
+        return e -> {
+            if (e.getEventTime().getEpochSecond() >= horizon) add(e, 1, horizon);
+        };
+    }
+
+    /** p50/p95/p99 of durationMs for eventTime in [start, end), over the given machines (all when empty). */
+    public DurationStats getDurations(Collection<String> machineIds, Instant start, Instant end) {
+        DurationSketch merged = new DurationSketch(relativeAccuracy);
+        if (!start.isBefore(end)) {
+            return DurationStats.of(merged);
+        }
+
+        long horizon = horizon();
+        Instant hourStart = ceilHour(start);
+        if (hourStart.getEpochSecond() < horizon) {
+            hourStart = Instant.ofEpochSecond(horizon);
+        }
+        Instant hourEnd = end.truncatedTo(ChronoUnit.HOURS);
+        List<Instant[]> rawRanges = new ArrayList<>(2);
+        if (hourStart.isBefore(hourEnd)) {
+            long from = hourStart.getEpochSecond();
+            long to = hourEnd.getEpochSecond();
+            if (machineIds.isEmpty()) {
+                allMachines.mergeInto(merged, from, to, horizon);
+            } else {
+                for (String machineId : machineIds) {
+                    HourSketches sketches = machines.get(machineId);
+                    if (sketches != null) sketches.mergeInto(merged, from, to, horizon);
+                }
+            }
+            if (start.isBefore(hourStart)) rawRanges.add(new Instant[] {start, hourStart});
+            if (hourEnd.isBefore(end)) rawRanges.add(new Instant[] {hourEnd, end});
+        } else {
+            rawRanges.add(new Instant[] {start, end});
+        }
+
+        for (Instant[] range : rawRanges) {
+            for (Long duration : eventStore.findDurations(machineIds, range[0], range[1])) {
+                merged.add(duration);
+            }
+        }
+        return DurationStats.of(merged);
+    }
+
+    private void add(MachineEvent e, int sign, long horizon) {
+        long hour = Math.floorDiv(e.getEventTime().getEpochSecond(), 3600) * 3600;
+        machines.computeIfAbsent(e.getMachineId(), id -> new HourSketches(horizon))
+                .add(hour, e.getDurationMs(), sign, horizon);
+        allMachines.add(hour, e.getDurationMs(), sign, horizon);
+    }
+
+    private long horizon() {
+        return ceilHour(Instant.now().minus(retention)).getEpochSecond();
+    }
+
+    private static Instant ceilHour(Instant t) {
+        Instant floor = t.truncatedTo(ChronoUnit.HOURS);
+        return floor.equals(t) ? t : floor.plus(1, ChronoUnit.HOURS);
+    }
+
+    // Hour sketches keyed by epoch second; complete for keys >= floor
+    private final class HourSketches {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final TreeMap<Long, DurationSketch> hours = new TreeMap<>();
+        private long floor;
+
+        HourSketches(long floor) {
+            this.floor = floor;
+        }
+
+        void add(long hour, long durationMs, int sign, long horizon) {
+            lock.lock();
+            try {
+                prune(horizon);
+                if (hour < floor) return;
+                DurationSketch sketch = hours.computeIfAbsent(hour, h -> new DurationSketch(relativeAccuracy));
+                sketch.add(durationMs, sign);
+                if (sketch.count() == 0) {
+                    hours.remove(hour);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void mergeInto(DurationSketch target, long from, long to, long horizon) {
+            lock.lock();
+            try {
+                prune(horizon);
+                for (DurationSketch sketch : hours.subMap(from, to).values()) {
+                    target.merge(sketch);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void dropBefore(long before) {
+            lock.lock();
+            try {
+                hours.headMap(before).clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void prune(long horizon) {
+            if (horizon > floor) {
+                hours.headMap(horizon).clear();
+                floor = horizon;
+            }
+        }
+    }
+}
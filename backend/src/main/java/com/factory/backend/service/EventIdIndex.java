@@ -0,0 +1,129 @@
+package com.factory.backend.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.EventStore;
+import com.factory.backend.util.BloomFilter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Membership filter over every stored eventId, so processBatch only sends the
+ * ids that may already exist to findAllById. Brand-new ids (most traffic) skip
+ * the IN query entirely.
+ *
+ * Ids are added before the insert commits. A concurrent batch therefore either
+ * sees the id and looks it up, or does not and inserts; both are exactly what
+ * happens without the filter. Until the startup rebuild finishes every id is
+ * reported as "maybe present".
+ *
+ * A rebuild fills a fresh filter and swaps it in, so the live one keeps
+ * answering meanwhile. Its scan only sees committed ids, so like every
+ * DerivedState rebuild it needs ingest held (see DerivedStateRebuilder): an id
+ * whose insert is still in flight would be missing from the fresh filter and
+ * its later copies would be inserted instead of looked up. The startup rebuild
+ * runs before the web server starts, where nothing can be in flight.
+ */
+@Service
+public class EventIdIndex implements DerivedState {
+
+    private final EventStore eventStore;
+    private final long expectedEvents;
+    private final double falsePositiveRate;
+    private volatile BloomFilter filter;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile boolean enabled;
+    private volatile boolean ready;
+
+    public EventIdIndex(EventStore eventStore, MeterRegistry meterRegistry,
+                        @Value("${factory.ingest.dedupe-index.enabled:true}") boolean enabled,
+                        @Value("${factory.ingest.dedupe-index.expected-events:10000000}") long expectedEvents,
+                        @Value("${factory.ingest.dedupe-index.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.eventStore = eventStore;
+        this.enabled = enabled;
+        this.expectedEvents = expectedEvents;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new BloomFilter(expectedEvents, falsePositiveRate);
+
+        Gauge.builder("factory.ingest.dedupe-index.keys", this, index -> index.filter.insertions())
+                .description("Event ids added to the dedupe filter")
+                .register(meterRegistry);
+    }
+
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            BloomFilter fresh = new BloomFilter(expectedEvents, falsePositiveRate);
+            try (Stream<String> ids = eventStore.streamEventIds()) {
+                ids.forEach(fresh::add);
+            }
+            swapIn(fresh);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    @Override
+    public Rebuild startRebuild() {
+        rebuildLock.lock();
+        BloomFilter fresh = new BloomFilter(expectedEvents, falsePositiveRate);
+        return new Rebuild() {
+            @Override
+            public void accept(MachineEvent e) {
+                fresh.add(e.getEventId());
+            }
+
+            @Override
+            public void finish() {
+                swapIn(fresh);
+            }
+
+            @Override
+            public void close() {
+                rebuildLock.unlock();
+            }
+        };
+    }
+
+    private void swapIn(BloomFilter fresh) {
+        filter = fresh;
+        ready = true;
+    }
+
+    /** Ids that may already be stored; the rest are certainly new. */
+    public List<String> maybeExisting(Collection<String> eventIds) {
+        if (!enabled || !ready) {
+            return new ArrayList<>(eventIds);
+        }
+        BloomFilter current = filter;
+        List<String> candidates = new ArrayList<>();
+        for (String id : eventIds) {
+            if (current.mightContain(id)) candidates.add(id);
+        }
+        return candidates;
+    }
+
+    /** Adds ids about to be inserted; a rollback only leaves false positives. */
+    public void add(Collection<String> eventIds) {
+        BloomFilter current = filter;
+        for (String id : eventIds) {
+            current.add(id);
+        }
+    }
+
+    // Runtime switch, e.g. to compare with and without the filter
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
@@ -0,0 +1,223 @@
+package com.factory.backend.service;
+
+import java.io.InputStream;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.util.MachineIdDictionary;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Hand-written streaming decoder for ingest bodies (a JSON array, or NDJSON /
+ * concatenated objects) into EventRows. It walks the token stream directly, with
+ * no reflective binding or Instant objects: ISO-8601 UTC timestamps are parsed
+ * from the parser's char buffer and machine ids go through a shared
+ * MachineIdDictionary. Accepts what the Jackson binding of MachineEvent accepted
+ * (offsets, numeric epoch seconds, numbers as strings, unknown properties), but
+ * timestamps are kept to millisecond precision.
+ * Malformed input surfaces as IllegalArgumentException.
+ */
+@Component
+public class EventRowCodec {
+
+    private final JsonMapper jsonMapper;
+    private final MachineIdDictionary machineIds;
+
+    public EventRowCodec(JsonMapper jsonMapper,
+                         @Value("${factory.ingest.codec.machine-id-capacity:65536}") int machineIdCapacity) {
+        this.jsonMapper = jsonMapper;
+        this.machineIds = new MachineIdDictionary(machineIdCapacity);
+    }
+
+    public List<EventRow> readAll(InputStream body) {
+        List<EventRow> rows = new ArrayList<>();
+        try (Reader reader = open(body)) {
+            for (EventRow row = reader.next(); row != null; row = reader.next()) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    public Reader open(InputStream body) {
+        try {
+            return new Reader(jsonMapper.createParser(body));
+        } catch (JacksonException e) {
+            throw malformed(e);
+        }
+    }
+
+    /** Pull-style reader; next() returns null at the end of the body. */
+    public class Reader implements AutoCloseable {
+
+        private final JsonParser parser;
+        private boolean inArray;
+
+        private Reader(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        public EventRow next() {
+            try {
+                JsonToken token = parser.nextToken();
+                while (true) {
+                    if (token == JsonToken.START_ARRAY && !inArray) {
+                        inArray = true;
+                    } else if (token == JsonToken.END_ARRAY && inArray) {
+                        inArray = false;
+                    } else {
+                        break;
+                    }
+                    token = parser.nextToken();
+                }
+                if (token == null) {
+                    return null;
+                }
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IllegalArgumentException("Expected an event object but found " + token
+                            + " at " + parser.currentLocation());
+                }
+                return readObject();
+            } catch (JacksonException | DateTimeParseException | NumberFormatException | ArithmeticException e) {
+                throw malformed(e);
+            }
+        }
+
+        private EventRow readObject() {
+            String eventId = null;
+            String machineId = null;
+            long eventTime = EventRow.MISSING_TIME;
+            long receivedTime = EventRow.MISSING_TIME;
+            long durationMs = 0;
+            int defectCount = 0;
+
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (name) {
+                    case "eventId" -> eventId = parser.getString();
+                    case "machineId" -> machineId = value == JsonToken.VALUE_STRING
+                            ? machineIds.intern(parser.getStringCharacters(), parser.getStringOffset(), parser.getStringLength())
+                            : parser.getString();
+                    case "eventTime" -> eventTime = readMillis(value);
+                    case "receivedTime" -> receivedTime = readMillis(value);
+                    case "durationMs" -> durationMs = readLong(value);
+                    case "defectCount" -> defectCount = Math.toIntExact(readLong(value));
+                    default -> parser.skipChildren();
+                }
+            }
+            return new EventRow(eventId, machineId, eventTime, receivedTime, durationMs, defectCount);
+        }
+
+        private long readLong(JsonToken value) {
+            if (value == JsonToken.VALUE_STRING) {
+                return Long.parseLong(parser.getString().trim());
+            }
+            return parser.getValueAsLong();
+        }
+
+        // Numbers are epoch seconds (with an optional fraction), as Jackson reads Instant
+        private long readMillis(JsonToken value) {
+            return switch (value) {
+                case VALUE_STRING -> parseIsoMillis(parser.getStringCharacters(), parser.getStringOffset(), parser.getStringLength());
+                case VALUE_NUMBER_INT -> Math.multiplyExact(parser.getLongValue(), 1000L);
+                case VALUE_NUMBER_FLOAT -> parser.getDecimalValue().movePointRight(3)
+                        .setScale(0, RoundingMode.FLOOR).longValueExact();
+                default -> throw new IllegalArgumentException("Expected a timestamp but found " + value
+                        + " at " + parser.currentLocation());
+            };
+        }
+
+        @Override
+        public void close() {
+            parser.close();
+        }
+    }
+
+    /**
+     * Epoch millis of yyyy-MM-ddTHH:mm:ss[.fraction]Z read in place; anything else
+     * (offsets, leap seconds, out-of-range fields) goes through Instant.parse.
+     */
+    static long parseIsoMillis(char[] c, int off, int len) {
+        int end = off + len;
+        if (len >= 20 && c[off + 4] == '-' && c[off + 7] == '-' && c[off + 10] == 'T'
+                && c[off + 13] == ':' && c[off + 16] == ':' && c[end - 1] == 'Z') {
+            int year = digits(c, off, 4);
+            int month = digits(c, off + 5, 2);
+            int day = digits(c, off + 8, 2);
+            int hour = digits(c, off + 11, 2);
+            int minute = digits(c, off + 14, 2);
+            int second = digits(c, off + 17, 2);
+            int millis = fractionMillis(c, off + 19, end - 1);
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= daysInMonth(year, month)
+                    && hour >= 0 && hour < 24 && minute >= 0 && minute < 60 && second >= 0 && second < 60
+                    && millis >= 0) {
+                long seconds = daysFromCivil(year, month, day) * 86_400L + hour * 3_600L + minute * 60L + second;
+                return seconds * 1000L + millis;
+            }
+        }
+        return Instant.parse(new String(c, off, len)).toEpochMilli();
+    }
+
+    private static int digits(char[] c, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int d = c[i] - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    // Empty, or '.' followed by 1-9 digits; truncated to millis like Instant.toEpochMilli
+    private static int fractionMillis(char[] c, int from, int to) {
+        if (from == to) return 0;
+        int count = to - from - 1;
+        if (c[from] != '.' || count < 1 || count > 9) return -1;
+        int millis = 0;
+        for (int i = 0; i < 3; i++) {
+            int d = i < count ? c[from + 1 + i] - '0' : 0;
+            if (d < 0 || d > 9) return -1;
+            millis = millis * 10 + d;
+        }
+        for (int i = from + 4; i < to; i++) {
+            if (c[i] < '0' || c[i] > '9') return -1;
+        }
+        return millis;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        }
+        return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+    }
+
+    // Days since 1970-01-01 for a proleptic Gregorian date (H. Hinnant's days_from_civil)
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yoe = y - era * 400;
+        int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146_097L + doe - 719_468;
+    }
+
+    private static IllegalArgumentException malformed(RuntimeException e) {
+        return new IllegalArgumentException("Malformed event payload: " + e.getMessage(), e);
+    }
+}
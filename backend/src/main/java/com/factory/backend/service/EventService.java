@@ -3,75 +3,243 @@ package com.factory.backend.service;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.factory.backend.entity.MachineEvent;
-import com.factory.backend.repository.MachineEventRepository;
+import com.factory.backend.event.BatchIngestedEvent;
+import com.factory.backend.event.DirtyRange;
+import com.factory.backend.event.EventChange;
+import com.factory.backend.repository.EventStore;
+import com.factory.backend.service.IngestMetrics.Outcome;
+import com.factory.backend.service.IngestMetrics.Stage;
+import com.factory.backend.util.EventIdTable;
 
 @Service
 public class EventService {
 
-    private final MachineEventRepository repository;
+    // VARCHAR(255) of event_id and machine_id
+    private static final int MAX_ID_LENGTH = 255;
 
-    public EventService(MachineEventRepository repository) {
-        this.repository = repository;
+    private final EventStore eventStore;
+    private final EventIdIndex eventIdIndex;
+    private final ApplicationEventPublisher publisher;
+    private final IngestMetrics metrics;
+    private volatile boolean collapseDuplicates;
+
+    public EventService(EventStore eventStore, EventIdIndex eventIdIndex,
+                        ApplicationEventPublisher publisher, IngestMetrics metrics,
+                        @Value("${factory.ingest.collapse-duplicates:true}") boolean collapseDuplicates) {
+        this.eventStore = eventStore;
+        this.eventIdIndex = eventIdIndex;
+        this.publisher = publisher;
+        this.metrics = metrics;
+        this.collapseDuplicates = collapseDuplicates;
     }
 
     @Transactional
     public Map<String, Object> processBatch(List<MachineEvent> incomingEvents) {
-        int accepted = 0, deduped = 0, updated = 0, rejected = 0;
-        
-        // 1. Bulk Fetch
-        List<String> eventIds = incomingEvents.stream().map(MachineEvent::getEventId).toList();
-        Map<String, MachineEvent> existingMap = repository.findAllById(eventIds)
-                .stream().collect(Collectors.toMap(MachineEvent::getEventId, Function.identity()));
-
-        List<MachineEvent> toSave = new ArrayList<>();
-
-        for (MachineEvent incoming : incomingEvents) {
-            // Validate
-            if (!isValid(incoming)) {
-                rejected++;
-                continue;
+        return processBatches(List.of(incomingEvents)).get(0);
+    }
+
+    /**
+     * Processes several batches in one transaction (one fetch, one write) while
+     * keeping separate counts per batch. Batches are applied in list order, so the
+     * result is the same as calling processBatch on each in turn.
+     *
+     * Copies of the same eventId (gateway retries) are first collapsed: each id's
+     * copies are replayed in arrival order against a running winner, which gives
+     * every copy the outcome it would get one at a time, and only the final
+     * winner is looked up, written and published (one insert or one update from
+     * the stored row) per id.
+     */
+    @Transactional
+    public List<Map<String, Object>> processBatches(List<List<MachineEvent>> batches) {
+        int[][] counts = new int[batches.size()][Outcome.values().length];
+        Map<String, int[]> outcomesByMachine = new HashMap<>();
+        List<MachineEvent> inserted = new ArrayList<>();
+        List<EventChange> updatedChanges = new ArrayList<>();
+        List<EventChange> changes = new ArrayList<>();
+
+        if (collapseDuplicates) {
+            applyCollapsed(batches, counts, outcomesByMachine, inserted, updatedChanges, changes);
+        } else {
+            applySequential(batches, counts, outcomesByMachine, inserted, updatedChanges, changes);
+        }
+
+        long stageStart = System.nanoTime();
+        eventIdIndex.add(inserted.stream().map(MachineEvent::getEventId).toList());
+        eventStore.write(inserted, updatedChanges);
+        metrics.record(Stage.WRITE, stageStart);
+
+        // Derived state (rollups etc.) applies this after commit, see BatchIngestedEvent.
+        // The dirty ranges feed IngestChangelog, so range-based consumers need not look at every change
+        if (!changes.isEmpty()) {
+            publisher.publishEvent(new BatchIngestedEvent(changes, DirtyRange.of(changes)));
+        }
+        metrics.timeCommit();
+        metrics.recordOutcomesOnCommit(outcomesByMachine);
+
+        List<Map<String, Object>> results = new ArrayList<>(batches.size());
+        for (int[] c : counts) {
+            results.add(Map.of("accepted", c[Outcome.ACCEPTED.ordinal()], "deduped", c[Outcome.DEDUPED.ordinal()],
+                    "updated", c[Outcome.UPDATED.ordinal()], "rejected", c[Outcome.REJECTED.ordinal()]));
+        }
+        return results;
+    }
+
+    private void applyCollapsed(List<List<MachineEvent>> batches, int[][] counts, Map<String, int[]> outcomesByMachine,
+                                List<MachineEvent> inserted, List<EventChange> updatedChanges, List<EventChange> changes) {
+        // 0. Collapse: number the distinct ids and chain each id's copies in arrival order
+        long stageStart = System.nanoTime();
+        int total = 0;
+        for (List<MachineEvent> batch : batches) total += batch.size();
+        MachineEvent[] copies = new MachineEvent[total];
+        int[] batchOf = new int[total];
+        int[] next = new int[total];
+        int[] first = new int[total];
+        int[] last = new int[total];
+        EventIdTable ids = new EventIdTable(total);
+        int pos = 0;
+        for (int b = 0; b < batches.size(); b++) {
+            for (MachineEvent incoming : batches.get(b)) {
+                copies[pos] = incoming;
+                batchOf[pos] = b;
+                next[pos] = -1;
+                int known = ids.size();
+                int ordinal = ids.ordinal(incoming.getEventId());
+                if (ordinal == known) {
+                    first[ordinal] = pos;
+                } else {
+                    next[last[ordinal]] = pos;
+                }
+                last[ordinal] = pos++;
+            }
+        }
+        List<String> distinctIds = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) distinctIds.add(ids.key(i));
+        metrics.record(Stage.COLLAPSE, stageStart);
+
+        // 1. Bulk Fetch (distinct ids the index cannot rule out)
+        stageStart = System.nanoTime();
+        Map<String, MachineEvent> existingMap = fetchExisting(distinctIds);
+        metrics.record(Stage.LOOKUP, stageStart);
+
+        // 2. Replay each id's copies against its running winner
+        stageStart = System.nanoTime();
+        for (int ordinal = 0; ordinal < ids.size(); ordinal++) {
+            MachineEvent stored = existingMap.get(ids.key(ordinal));
+            MachineEvent winner = stored;
+            for (int p = first[ordinal]; p != -1; p = next[p]) {
+                MachineEvent incoming = copies[p];
+                Outcome outcome = resolve(winner, incoming);
+                count(counts[batchOf[p]], outcomesByMachine, incoming, outcome);
+                if (outcome == Outcome.ACCEPTED || outcome == Outcome.UPDATED) {
+                    winner = incoming;
+                }
+            }
+
+            if (stored == null && winner != null) {
+                inserted.add(winner);
+                changes.add(EventChange.inserted(winner));
+            } else if (winner != stored) {
+                MachineEvent previous = stored.toBuilder().build();
+                apply(stored, winner);
+                EventChange change = EventChange.updated(previous, stored);
+                updatedChanges.add(change);
+                changes.add(change);
             }
+        }
+        metrics.record(Stage.DEDUPE, stageStart);
+    }
 
-            if (existingMap.containsKey(incoming.getEventId())) {
+    private void applySequential(List<List<MachineEvent>> batches, int[][] counts, Map<String, int[]> outcomesByMachine,
+                                 List<MachineEvent> inserted, List<EventChange> updatedChanges, List<EventChange> changes) {
+        // 1. Bulk Fetch (only ids the index cannot rule out)
+        long stageStart = System.nanoTime();
+        Map<String, MachineEvent> existingMap = fetchExisting(
+                batches.stream().flatMap(List::stream).map(MachineEvent::getEventId).toList());
+        metrics.record(Stage.LOOKUP, stageStart);
+        stageStart = System.nanoTime();
+
+        for (int b = 0; b < batches.size(); b++) {
+            for (MachineEvent incoming : batches.get(b)) {
                 MachineEvent existing = existingMap.get(incoming.getEventId());
-                if (existing.hasSamePayload(incoming)) {
-                    deduped++;
-                } else if (incoming.getReceivedTime().isAfter(existing.getReceivedTime())) {
-                    // Update
-                    existing.setMachineId(incoming.getMachineId());
-                    existing.setDurationMs(incoming.getDurationMs());
-                    existing.setDefectCount(incoming.getDefectCount());
-                    existing.setEventTime(incoming.getEventTime());
-                    existing.setReceivedTime(incoming.getReceivedTime());
-                    toSave.add(existing);
-                    updated++;
-                } else {
-                    deduped++; // Old update ignored
+                Outcome outcome = resolve(existing, incoming);
+                count(counts[b], outcomesByMachine, incoming, outcome);
+
+                if (outcome == Outcome.UPDATED) {
+                    MachineEvent previous = existing.toBuilder().build();
+                    apply(existing, incoming);
+                    EventChange change = EventChange.updated(previous, existing);
+                    updatedChanges.add(change);
+                    changes.add(change);
+                } else if (outcome == Outcome.ACCEPTED) {
+                    inserted.add(incoming);
+                    changes.add(EventChange.inserted(incoming));
+                    existingMap.put(incoming.getEventId(), incoming);
                 }
-            } else {
-                toSave.add(incoming);
-                accepted++;
-                existingMap.put(incoming.getEventId(), incoming);
             }
         }
 
-        repository.saveAll(toSave);
+        metrics.record(Stage.DEDUPE, stageStart);
+    }
 
-        return Map.of("accepted", accepted, "deduped", deduped, "updated", updated, "rejected", rejected);
+    private Map<String, MachineEvent> fetchExisting(List<String> candidateIds) {
+        List<String> eventIds = eventIdIndex.maybeExisting(candidateIds);
+        return eventIds.isEmpty() ? new HashMap<>()
+                : eventStore.findExisting(eventIds).stream()
+                        .collect(Collectors.toMap(MachineEvent::getEventId, Function.identity()));
     }
 
-    private boolean isValid(MachineEvent e) {
+    // What one incoming copy does to the current version of its id (null when there is none)
+    private Outcome resolve(MachineEvent current, MachineEvent incoming) {
+        if (!isValid(incoming)) return Outcome.REJECTED;
+        if (current == null) return Outcome.ACCEPTED;
+        if (current.hasSamePayload(incoming)) return Outcome.DEDUPED;
+        if (incoming.getReceivedTime().isAfter(current.getReceivedTime())) return Outcome.UPDATED;
+        return Outcome.DEDUPED; // Old update ignored
+    }
+
+    private static void count(int[] batchCounts, Map<String, int[]> outcomesByMachine,
+                              MachineEvent incoming, Outcome outcome) {
+        batchCounts[outcome.ordinal()]++;
+        outcomesByMachine.computeIfAbsent(incoming.getMachineId(), id -> new int[Outcome.values().length])
+                [outcome.ordinal()]++;
+    }
+
+    private static void apply(MachineEvent existing, MachineEvent incoming) {
+        existing.setMachineId(incoming.getMachineId());
+        existing.setDurationMs(incoming.getDurationMs());
+        existing.setDefectCount(incoming.getDefectCount());
+        existing.setEventTime(incoming.getEventTime());
+        existing.setReceivedTime(incoming.getReceivedTime());
+    }
+
+    // Runtime switch, e.g. to compare with the copy-by-copy path
+    public void setCollapseDuplicates(boolean collapseDuplicates) {
+        this.collapseDuplicates = collapseDuplicates;
+    }
+
+    // Rejects everything the machine_events columns would refuse, so a bad row never fails its batch
+    boolean isValid(MachineEvent e) {
+        if (!fits(e.getEventId()) || !fits(e.getMachineId())) return false;
+        if (e.getEventTime() == null || e.getReceivedTime() == null) return false;
         if (e.getDurationMs() < 0 || e.getDurationMs() > 21600000) return false; // 6hrs
         if (e.getEventTime().isAfter(Instant.now().plus(15, ChronoUnit.MINUTES))) return false;
+        if (!eventStore.retains(e.getEventTime())) return false; // Past the storage retention
         return true;
     }
+
+    private static boolean fits(String id) {
+        return id != null && id.length() <= MAX_ID_LENGTH;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,323 @@
+package com.factory.backend.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import com.factory.backend.entity.MachineEvent;
+
+/**
+ * Binary snapshot of every stored event, written and read through memory-mapped
+ * windows of the file.
+ *
+ * Layout: a 40-byte header [magic "FSS1"][int version][long createdMillis]
+ * [long journalSequence][long eventCount][long fileLength], then blocks of
+ * [int payload length][int CRC32C of payload][payload]. A payload is a varint
+ * row count and the rows, integers as LEB128 varints (signed ones zigzag):
+ * <pre>
+ *   flags          bit 0 eventId is a UUID
+ *   eventId        16 bytes (UUID) or byteLength + UTF-8
+ *   machineIndex   into the file's machine table; the next free index is
+ *                  followed by the new machine id (byteLength + UTF-8)
+ *   eventTime      signed delta from the previous row's eventTime (micros)
+ *   receivedTime   signed delta from this row's eventTime (micros)
+ *   durationMs     signed
+ *   defectCount    signed
+ * </pre>
+ * The writer fills a temporary file and fills in the header last, then forces
+ * it and renames it over the previous snapshot, so a reader only ever sees a
+ * complete file. The header's fileLength and eventCount are checked before any
+ * row is handed out; a bad block checksum after that is an IllegalStateException.
+ */
+public final class EventSnapshot {
+
+    private static final int MAGIC = 0x46535331; // "FSS1"
+    private static final int VERSION = 1;
+    private static final int HEADER = 40;
+    private static final int BLOCK_HEADER = 8;
+    private static final int BLOCK_SIZE = 1 << 20;
+    private static final int MAX_ROW = 64 * 1024;
+    private static final long WINDOW = 64L << 20;
+    private static final int UUID_ID = 1;
+
+    public record Header(long createdMillis, long journalSequence, long eventCount, long fileLength) {}
+
+    private EventSnapshot() {
+    }
+
+    /** Appends events to a temporary file next to the target; commit() publishes it. */
+    public static final class Writer implements AutoCloseable {
+        private final Path file;
+        private final Path tmp;
+        private final FileChannel channel;
+        private final long journalSequence;
+        private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE + MAX_ROW);
+        private final ByteBuffer rows = ByteBuffer.allocate(BLOCK_SIZE + MAX_ROW);
+        private final Map<String, Integer> machines = new HashMap<>();
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long position = HEADER;
+        private int blockRows;
+        private long eventCount;
+        private long previousEventTime;
+        private boolean committed;
+
+        public Writer(Path file, long journalSequence) {
+            this.file = file;
+            this.tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            this.journalSequence = journalSequence;
+            try {
+                if (file.getParent() != null) Files.createDirectories(file.getParent());
+                channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create snapshot " + tmp, e);
+            }
+        }
+
+        public void append(MachineEvent event) {
+            if (rows.position() >= BLOCK_SIZE) {
+                flushBlock();
+            }
+            UUID uuid = uuid(event.getEventId());
+            rows.put((byte) (uuid != null ? UUID_ID : 0));
+            if (uuid != null) {
+                rows.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+            } else {
+                string(rows, event.getEventId());
+            }
+            Integer index = machines.get(event.getMachineId());
+            if (index == null) {
+                unsigned(rows, machines.size());
+                string(rows, event.getMachineId());
+                machines.put(event.getMachineId(), machines.size());
+            } else {
+                unsigned(rows, index);
+            }
+            long eventTime = micros(event.getEventTime());
+            signed(rows, eventTime - previousEventTime);
+            previousEventTime = eventTime;
+            signed(rows, micros(event.getReceivedTime()) - eventTime);
+            signed(rows, event.getDurationMs());
+            signed(rows, event.getDefectCount());
+            blockRows++;
+            eventCount++;
+        }
+
+        /** Writes the header, forces the file and atomically replaces the target. Returns the header. */
+        public Header commit() {
+            flushBlock();
+            Header header = new Header(System.currentTimeMillis(), journalSequence, eventCount, position);
+            try {
+                if (window != null) window.force();
+                ByteBuffer head = ByteBuffer.allocate(HEADER);
+                head.putInt(MAGIC).putInt(VERSION).putLong(header.createdMillis()).putLong(journalSequence)
+                        .putLong(eventCount).putLong(position).flip();
+                channel.write(head, 0);
+                channel.truncate(position);
+                channel.force(true);
+                channel.close();
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write snapshot " + file, e);
+            }
+            committed = true;
+            return header;
+        }
+
+        @Override
+        public void close() {
+            if (committed) return;
+            try {
+                channel.close();
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot discard snapshot " + tmp, e);
+            }
+        }
+
+        private void flushBlock() {
+            if (blockRows == 0) return;
+            block.clear();
+            unsigned(block, blockRows);
+            rows.flip();
+            block.put(rows).flip();
+            rows.clear();
+            blockRows = 0;
+
+            CRC32C crc = new CRC32C();
+            crc.update(block.duplicate());
+            int length = block.remaining();
+            ByteBuffer out = map(position, BLOCK_HEADER + length);
+            out.putInt(length).putInt((int) crc.getValue()).put(block);
+            position += BLOCK_HEADER + length;
+        }
+
+        // A writable view of [at, at + length); moves the mapped window forward when needed
+        private ByteBuffer map(long at, int length) {
+            if (window == null || at + length > windowStart + window.capacity()) {
+                try {
+                    if (window != null) window.force();
+                    windowStart = at;
+                    window = channel.map(FileChannel.MapMode.READ_WRITE, at, Math.max(WINDOW, length));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot map snapshot " + tmp, e);
+                }
+            }
+            return window.slice((int) (at - windowStart), length);
+        }
+    }
+
+    /**
+     * Validates the header, then hands out the events in batches of up to
+     * batchSize. Returns null (and reads nothing) when the file is not a
+     * complete snapshot.
+     */
+    public static Header read(Path file, int batchSize, Consumer<List<MachineEvent>> consumer) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER) return null;
+            ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            if (head.getInt() != MAGIC || head.getInt() != VERSION) return null;
+            Header header = new Header(head.getLong(), head.getLong(), head.getLong(), head.getLong());
+            if (header.fileLength() != size) return null;
+
+            List<String> machines = new ArrayList<>();
+            List<MachineEvent> batch = new ArrayList<>(batchSize);
+            long read = 0;
+            long previousEventTime = 0;
+            MappedByteBuffer window = null;
+            long windowStart = 0;
+            for (long at = HEADER; at < size; ) {
+                if (at + BLOCK_HEADER > size) {
+                    throw new IllegalStateException("Snapshot " + file + " has a bad block at offset " + at);
+                }
+                if (window == null || at + BLOCK_HEADER > windowStart + window.capacity()) {
+                    windowStart = at;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, at, Math.min(WINDOW, size - at));
+                }
+                int length = window.getInt((int) (at - windowStart));
+                int checksum = window.getInt((int) (at - windowStart) + 4);
+                if (length <= 0 || at + BLOCK_HEADER + length > size) {
+                    throw new IllegalStateException("Snapshot " + file + " has a bad block at offset " + at);
+                }
+                if (at + BLOCK_HEADER + length > windowStart + window.capacity()) {
+                    windowStart = at;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, at, Math.min(Math.max(WINDOW, BLOCK_HEADER + length), size - at));
+                }
+                ByteBuffer payload = window.slice((int) (at - windowStart) + BLOCK_HEADER, length);
+                CRC32C crc = new CRC32C();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    throw new IllegalStateException("Snapshot " + file + " fails its checksum at offset " + at);
+                }
+
+                long count = unsigned(payload);
+                for (long i = 0; i < count; i++) {
+                    int flags = payload.get();
+                    String eventId = (flags & UUID_ID) != 0
+                            ? new UUID(payload.getLong(), payload.getLong()).toString()
+                            : string(payload);
+                    int index = (int) unsigned(payload);
+                    if (index == machines.size()) {
+                        machines.add(string(payload));
+                    }
+                    long eventTime = previousEventTime + signed(payload);
+                    previousEventTime = eventTime;
+                    long receivedTime = eventTime + signed(payload);
+                    batch.add(new MachineEvent(eventId, machines.get(index), instant(eventTime), instant(receivedTime),
+                            signed(payload), (int) signed(payload)));
+                    if (batch.size() == batchSize) {
+                        consumer.accept(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                read += count;
+                at += BLOCK_HEADER + length;
+            }
+            if (!batch.isEmpty()) {
+                consumer.accept(batch);
+            }
+            if (read != header.eventCount()) {
+                throw new IllegalStateException("Snapshot " + file + " holds " + read + " events, header says "
+                        + header.eventCount());
+            }
+            return header;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read snapshot " + file, e);
+        }
+    }
+
+    private static long micros(Instant t) {
+        return Math.addExact(Math.multiplyExact(t.getEpochSecond(), 1_000_000L), t.getNano() / 1_000);
+    }
+
+    private static Instant instant(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+
+    // Only ids whose canonical UUID text is exactly the id, so reading gives back the same string
+    private static UUID uuid(String id) {
+        if (id.length() != 36) return null;
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void string(ByteBuffer buffer, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        unsigned(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[(int) unsigned(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void unsigned(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static void signed(ByteBuffer buffer, long value) {
+        unsigned(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    private static long unsigned(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalStateException("Varint longer than 10 bytes in snapshot");
+    }
+
+    private static long signed(ByteBuffer buffer) {
+        long zigzag = unsigned(buffer);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
@@ -0,0 +1,241 @@
+package com.factory.backend.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.factory.backend.dto.MachineHealth;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Server-sent-event fan-out of machine health updates.
+ *
+ * Subscribers are indexed by machine id (plus a set of subscribers to all
+ * machines), so an update only visits the streams that want it. Each update is
+ * rendered to an SSE frame once and the same frame is queued for every
+ * recipient. Every subscriber has its own bounded buffer, drained by a small
+ * pool of sender threads, one drain per subscriber at a time; the publisher
+ * (the ingest thread or the periodic tick) never writes to a socket. A client
+ * that lets its buffer fill up is disconnected and can reconnect for a fresh
+ * snapshot.
+ */
+@Component
+@ConditionalOnProperty(name = "factory.health.enabled", havingValue = "true", matchIfMissing = true)
+public class HealthBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(HealthBroadcaster.class);
+
+    private final JsonMapper jsonMapper;
+    private final Executor senders;
+    private final int bufferSize;
+    private final long timeoutMillis;
+
+    private final Set<Subscriber> allMachines = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<Subscriber>> byMachine = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final Counter droppedCounter;
+
+    @Autowired
+    public HealthBroadcaster(JsonMapper jsonMapper, MeterRegistry meterRegistry,
+                             @Value("${factory.health.stream.buffer-size:1024}") int bufferSize,
+                             @Value("${factory.health.stream.timeout:30m}") Duration timeout,
+                             @Value("${factory.health.stream.senders:4}") int senders,
+                             @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this(jsonMapper, meterRegistry, bufferSize, timeout.toMillis(), senderPool(senders, virtualThreads));
+    }
+
+    HealthBroadcaster(JsonMapper jsonMapper, MeterRegistry meterRegistry, int bufferSize, long timeoutMillis,
+                      Executor senders) {
+        this.jsonMapper = jsonMapper;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+        this.senders = senders;
+        this.droppedCounter = Counter.builder("factory.health.stream.dropped")
+                .description("Health streams closed because the client fell a full buffer behind")
+                .register(meterRegistry);
+        Gauge.builder("factory.health.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open /stats/health/stream connections")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream for the given machines (all machines when empty). The
+     * snapshot is sent first as one "snapshot" event.
+     */
+    public SseEmitter subscribe(Set<String> machineIds, List<MachineHealth> snapshot) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, machineIds);
+        emitter.onCompletion(subscriber::unregister);
+        emitter.onTimeout(subscriber::unregister);
+        emitter.onError(e -> subscriber.unregister());
+
+        subscriber.offer(render("snapshot", snapshot));
+        if (machineIds.isEmpty()) {
+            allMachines.add(subscriber);
+        } else {
+            for (String machineId : machineIds) {
+                byMachine.computeIfAbsent(machineId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+            }
+        }
+        subscriberCount.incrementAndGet();
+        return emitter;
+    }
+
+    /** Queues one event per update for the subscribers of its machine. */
+    public void publish(String type, Collection<MachineHealth> updates) {
+        if (subscriberCount.get() == 0) return;
+        for (MachineHealth health : updates) {
+            Set<Subscriber> machineSubscribers = byMachine.get(health.machineId());
+            if (allMachines.isEmpty() && (machineSubscribers == null || machineSubscribers.isEmpty())) continue;
+
+            Set<DataWithMediaType> frame = render(type, health);
+            allMachines.forEach(s -> s.offer(frame));
+            if (machineSubscribers != null) {
+                machineSubscribers.forEach(s -> s.offer(frame));
+            }
+        }
+    }
+
+    public int subscribers() {
+        return subscriberCount.get();
+    }
+
+    private Set<DataWithMediaType> render(String type, Object data) {
+        return SseEmitter.event().name(type).data(jsonMapper.writeValueAsString(data)).build();
+    }
+
+    // Virtual senders are not pooled; one drain per subscriber at a time still holds
+    private static Executor senderPool(int senders, boolean virtualThreads) {
+        if (virtualThreads) {
+            return new VirtualThreadTaskExecutor("health-sender-");
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threads = r -> {
+            Thread thread = new Thread(r, "health-sender-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(senders, threads);
+    }
+
+    // Streams never end on their own; completing them before the web server stops
+    // keeps graceful shutdown from waiting for every open connection
+    @EventListener(ContextClosedEvent.class)
+    public void closeAll() {
+        allMachines.forEach(Subscriber::close);
+        byMachine.values().forEach(subscribers -> subscribers.forEach(Subscriber::close));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (senders instanceof ExecutorService pool) {
+            pool.shutdown();
+        }
+    }
+
+    private final class Subscriber implements Runnable {
+        private final SseEmitter emitter;
+        private final Set<String> machineIds;
+        private final BlockingQueue<Set<DataWithMediaType>> buffer;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter, Set<String> machineIds) {
+            this.emitter = emitter;
+            this.machineIds = machineIds;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        void offer(Set<DataWithMediaType> frame) {
+            if (closed.get()) return;
+            if (!buffer.offer(frame)) {
+                droppedCounter.increment();
+                log.debug("Closing a health stream that is {} events behind", bufferSize);
+                close();
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                senders.execute(this);
+            }
+        }
+
+        // Drains on a sender thread; a concurrent offer that lost the race to
+        // schedule() is picked up by the re-check after scheduled is released
+        @Override
+        public void run() {
+            try {
+                Set<DataWithMediaType> frame;
+                while (!closed.get() && (frame = buffer.poll()) != null) {
+                    emitter.send(frame);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client went away; the container reports it through onError/onCompletion as well
+                unregister();
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            if (closed.get()) {
+                emitter.complete();
+            } else if (!buffer.isEmpty()) {
+                schedule();
+            }
+        }
+
+        // Completing from the publisher could wait on a send in progress, so the
+        // emitter is completed by the drain (now, or when the current one ends)
+        void close() {
+            if (!unregister()) return;
+            buffer.clear();
+            schedule();
+        }
+
+        boolean unregister() {
+            if (!closed.compareAndSet(false, true)) return false;
+            if (machineIds.isEmpty()) {
+                allMachines.remove(this);
+            } else {
+                for (String machineId : machineIds) {
+                    Set<Subscriber> subscribers = byMachine.get(machineId);
+                    if (subscribers != null) subscribers.remove(this);
+                }
+            }
+            subscriberCount.decrementAndGet();
+            return true;
+        }
+    }
+}
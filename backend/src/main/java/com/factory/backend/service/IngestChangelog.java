@@ -0,0 +1,261 @@
+package com.factory.backend.service;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.factory.backend.dto.MachineWatermark;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.event.BatchIngestedEvent;
+import com.factory.backend.event.DirtyRange;
+import com.factory.backend.event.EventChange;
+import com.factory.backend.event.PartitionsDroppedEvent;
+import com.factory.backend.repository.EventStore;
+import com.factory.backend.util.DurationSketch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Sequenced log of the (machine, minute) ranges each committed batch dirtied,
+ * plus per-machine eventTime watermarks and lateness.
+ *
+ * Every committed batch gets the next sequence number. A consumer that
+ * materializes something remembers the sequence it read before computing and
+ * later asks changedSince(sequence, from, to) or changesSince(sequence) to
+ * recompute only what a late or out-of-order batch touched. Sequences are
+ * assigned after every other after-commit listener, so the derived stores
+ * already include a batch once its sequence is visible. The last capacity
+ * batches are kept; asking about anything older (or about a time before a
+ * retention drop) reports everything as changed.
+ */
+@Service
+public class IngestChangelog implements DerivedState {
+
+    private static final double LATENESS_ACCURACY = 0.01;
+
+    public record Changes(long sequence, List<DirtyRange> ranges, boolean complete) {}
+
+    private record Entry(long sequence, List<DirtyRange> ranges) {}
+
+    private final EventStore eventStore;
+    private final boolean enabled;
+    private final int capacity;
+    private final DistributionSummary latenessSummary;
+    private final Counter outOfOrderCounter;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Entry> log = new ArrayDeque<>();
+    private final Map<String, MachineClock> machines = new HashMap<>();
+    private long sequence;
+    private long floor;     // every batch after floor is still in the log
+
+    public IngestChangelog(EventStore eventStore, MeterRegistry meterRegistry,
+                           @Value("${factory.ingest.changelog.enabled:true}") boolean enabled,
+                           @Value("${factory.ingest.changelog.capacity:10000}") int capacity) {
+        this.eventStore = eventStore;
+        this.enabled = enabled;
+        this.capacity = Math.max(1, capacity);
+        this.latenessSummary = DistributionSummary.builder("factory.ingest.lateness")
+                .description("receivedTime - eventTime of ingested events")
+                .baseUnit("milliseconds")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.outOfOrderCounter = Counter.builder("factory.ingest.out-of-order")
+                .description("Events that arrived with an eventTime behind their machine's watermark")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBatchIngested(BatchIngestedEvent batch) {
+        if (!enabled) return;
+        lock.lock();
+        try {
+            log.addLast(new Entry(++sequence, batch.dirtyRanges()));
+            while (log.size() > capacity) {
+                floor = log.removeFirst().sequence();
+            }
+            for (EventChange change : batch.changes()) {
+                if (change.previous() != null) {
+                    clock(change.previous()).remove(change.previous());
+                }
+                clock(change.current()).add(change.current(), true);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Rows before the cut are gone without a batch: invalidate everything and recount
+    @EventListener
+    public void onPartitionsDropped(PartitionsDroppedEvent dropped) {
+        if (!enabled) return;
+        lock.lock();
+        try {
+            floor = ++sequence;
+            log.clear();
+        } finally {
+            lock.unlock();
+        }
+        rebuild();
+    }
+
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        DerivedStateRebuilder.rebuild(eventStore, List.of(this));
+    }
+
+    @Override
+    public Rebuild startRebuild() {
+        if (!enabled) return null;
+        lock.lock();
+        // Arrival order is not stored, so out-of-order counts carry over
+        Map<String, MachineClock> previous = new HashMap<>(machines);
+        machines.clear();
+        return new Rebuild() {
+            @Override
+            public void accept(MachineEvent e) {
+                clock(e).add(e, false);
+            }
+
+            @Override
+            public void finish() {
+                previous.forEach((machineId, old) -> {
+                    MachineClock clock = machines.get(machineId);
+                    if (clock != null) clock.outOfOrder = old.outOfOrder;
+                });
+            }
+
+            @Override
+            public void close() {
+                lock.unlock();
+            }
+        };
+    }
+
+    /** Sequence of the last batch applied everywhere; read it before computing something to materialize. */
+    public long sequence() {
+        lock.lock();
+        try {
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Whether a batch after since touched eventTime [from, to) of any machine (true when unknown). */
+    public boolean changedSince(long since, Instant from, Instant to) {
+        if (!enabled) return true;
+        lock.lock();
+        try {
+            if (since < floor) return true;
+            for (Iterator<Entry> it = log.descendingIterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (entry.sequence() <= since) break;
+                for (DirtyRange range : entry.ranges()) {
+                    if (range.overlaps(from, to)) return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Ranges dirtied after since, oldest first; complete is false when the log no longer reaches back that far. */
+    public Changes changesSince(long since) {
+        lock.lock();
+        try {
+            List<DirtyRange> ranges = new ArrayList<>();
+            for (Entry entry : log) {
+                if (entry.sequence() > since) ranges.addAll(entry.ranges());
+            }
+            return new Changes(sequence, ranges, enabled && since >= floor);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Watermarks of the given machines (all when empty), ordered by machine id. */
+    public List<MachineWatermark> watermarks(Set<String> machineIds) {
+        lock.lock();
+        try {
+            Collection<String> ids = machineIds.isEmpty() ? machines.keySet() : machineIds;
+            List<MachineWatermark> result = new ArrayList<>(ids.size());
+            for (String machineId : ids) {
+                MachineClock clock = machines.get(machineId);
+                result.add(clock != null
+                        ? clock.watermark(machineId)
+                        : new MachineWatermark(machineId, null, null, 0, 0, null, null, null, null));
+            }
+            result.sort((a, b) -> a.machineId().compareTo(b.machineId()));
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private MachineClock clock(MachineEvent e) {
+        return machines.computeIfAbsent(e.getMachineId(), id -> new MachineClock());
+    }
+
+    private static long lateness(MachineEvent e) {
+        return Math.max(0, e.getReceivedTime().toEpochMilli() - e.getEventTime().toEpochMilli());
+    }
+
+    private final class MachineClock {
+        private Instant watermark;
+        private Instant lastReceivedTime;
+        private long events;
+        private long outOfOrder;
+        private final DurationSketch lateness = new DurationSketch(LATENESS_ACCURACY);
+
+        void add(MachineEvent e, boolean live) {
+            if (live && watermark != null && e.getEventTime().isBefore(watermark)) {
+                outOfOrder++;
+                outOfOrderCounter.increment();
+            }
+            if (watermark == null || e.getEventTime().isAfter(watermark)) watermark = e.getEventTime();
+            if (lastReceivedTime == null || e.getReceivedTime().isAfter(lastReceivedTime)) lastReceivedTime = e.getReceivedTime();
+            events++;
+            long late = IngestChangelog.lateness(e);
+            lateness.add(late);
+            if (live) latenessSummary.record(late);
+        }
+
+        // The watermarks stay: they are the furthest eventTime ever seen, not of the stored rows
+        void remove(MachineEvent e) {
+            events--;
+            lateness.add(IngestChangelog.lateness(e), -1);
+        }
+
+        MachineWatermark watermark(String machineId) {
+            boolean empty = lateness.count() == 0;
+            return new MachineWatermark(machineId, watermark, lastReceivedTime, events, outOfOrder,
+                    empty ? null : lateness.quantile(0.50), empty ? null : lateness.quantile(0.95),
+                    empty ? null : lateness.quantile(0.99), empty ? null : lateness.quantile(1.0));
+        }
+    }
+}
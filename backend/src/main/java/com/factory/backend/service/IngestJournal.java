@@ -0,0 +1,460 @@
+package com.factory.backend.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import com.factory.backend.dto.EventRow;
+
+/**
+ * Append-only, segmented binary log of ingest batches on memory-mapped files.
+ *
+ * A record is [int payload length][int CRC32C of payload][long sequence] plus
+ * the payload: an int row count and the rows. Segments are preallocated and
+ * zero-filled, so a zero length marks the end; a bad checksum or an unexpected
+ * sequence marks a torn tail, which was never acknowledged.
+ *
+ * Group commit: appenders copy their record into the active segment under the
+ * lock, then wait for it to be forced. The first waiter becomes the leader and
+ * forces everything written so far, outside the lock, while later appenders
+ * keep writing; one msync therefore acknowledges every record that arrived
+ * during the previous one.
+ *
+ * Records are also queued in memory, in sequence order, for the applier
+ * (takeDurable). After a restart the writer starts a new segment; replay reads
+ * the older ones. checkpoint persists the last applied sequence and deletes
+ * segments whose records are all at or below it.
+ *
+ * A record the applier cannot apply is copied, in the same record format, to
+ * dead-letter.log before anything moves past it.
+ */
+public class IngestJournal implements AutoCloseable {
+
+    private static final int HEADER = 16;
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String DEAD_LETTER = "dead-letter.log";
+
+    public record Entry(long sequence, List<EventRow> rows) {}
+
+    private final Path dir;
+    private final int segmentSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition durableChanged = lock.newCondition();
+    // Guarded by lock
+    private final List<Segment> segments = new ArrayList<>();
+    private final ArrayDeque<Entry> tail = new ArrayDeque<>();
+    private Segment active;
+    private long writtenSeq;
+    private long durableSeq;
+    private long tailEvents;
+    private boolean flushing;
+    private boolean closed;
+
+    private final long recoveredSeq;
+    private volatile long checkpointSeq;
+
+    public IngestJournal(Path dir, int segmentSize) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(dir);
+            Path checkpoint = dir.resolve(CHECKPOINT);
+            checkpointSeq = Files.exists(checkpoint) ? Long.parseLong(Files.readString(checkpoint).trim()) : 0;
+            long last = checkpointSeq;
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".seg")).sorted().toList()) {
+                    Segment segment = Segment.open(file);
+                    if (segment.position == 0) {
+                        // Created just before a crash, nothing acknowledged in it
+                        Files.delete(file);
+                        continue;
+                    }
+                    segments.add(segment);
+                    last = Math.max(last, segment.lastSeq);
+                }
+            }
+            recoveredSeq = last;
+            writtenSeq = last;
+            durableSeq = last;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open ingest journal in " + dir, e);
+        }
+    }
+
+    /** Appends a batch and returns its sequence once it is on disk. */
+    public long append(List<EventRow> rows) {
+        byte[] payload = encode(rows);
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        int checksum = (int) crc.getValue();
+
+        long seq;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Ingest journal is closed");
+            }
+            if (active == null || active.remaining() < HEADER + payload.length) {
+                rotate(HEADER + payload.length);
+            }
+            seq = ++writtenSeq;
+            active.write(seq, checksum, payload);
+            tail.add(new Entry(seq, rows));
+            tailEvents += rows.size();
+            awaitDurable(seq);
+        } finally {
+            lock.unlock();
+        }
+        return seq;
+    }
+
+    /**
+     * Waits up to timeoutMillis for the oldest unapplied record to be durable,
+     * then removes and returns durable records from the head, up to maxEvents
+     * rows (at least one record). Empty on timeout. Single consumer.
+     */
+    public List<Entry> takeDurable(int maxEvents, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (tail.isEmpty() || tail.peek().sequence() > durableSeq) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0 || closed) return List.of();
+                durableChanged.awaitNanos(left);
+            }
+            List<Entry> entries = new ArrayList<>();
+            int events = 0;
+            while (!tail.isEmpty() && tail.peek().sequence() <= durableSeq
+                    && (entries.isEmpty() || events + tail.peek().rows().size() <= maxEvents)) {
+                Entry entry = tail.poll();
+                entries.add(entry);
+                events += entry.rows().size();
+                tailEvents -= entry.rows().size();
+            }
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Records left by the previous run with sequence above the checkpoint, oldest first. */
+    public void replay(Consumer<Entry> consumer) {
+        List<Segment> recovered;
+        lock.lock();
+        try {
+            recovered = new ArrayList<>(segments);
+            recovered.remove(active);
+        } finally {
+            lock.unlock();
+        }
+        for (Segment segment : recovered) {
+            segment.read(entry -> {
+                if (entry.sequence() > checkpointSeq) consumer.accept(entry);
+            });
+        }
+    }
+
+    /** Persists the last applied sequence and drops segments that hold nothing newer. */
+    public void checkpoint(long appliedSeq) {
+        if (appliedSeq <= checkpointSeq) return;
+        try {
+            Path tmp = dir.resolve(CHECKPOINT + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap(Long.toString(appliedSeq).getBytes(StandardCharsets.US_ASCII)));
+                channel.force(true);
+            }
+            Files.move(tmp, dir.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            checkpointSeq = appliedSeq;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write journal checkpoint", e);
+        }
+
+        List<Segment> obsolete = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Segment segment : segments) {
+                if (segment != active && segment.lastSeq <= appliedSeq) obsolete.add(segment);
+            }
+            segments.removeAll(obsolete);
+        } finally {
+            lock.unlock();
+        }
+        for (Segment segment : obsolete) {
+            try {
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot delete journal segment " + segment.file, e);
+            }
+        }
+    }
+
+    /** Appends a record the applier gave up on to the dead-letter file; it is on disk when this returns. */
+    public void deadLetter(Entry entry) {
+        byte[] payload = encode(entry.rows());
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).putLong(entry.sequence()).put(payload).flip();
+        try (FileChannel channel = FileChannel.open(dir.resolve(DEAD_LETTER), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write journal dead letter " + entry.sequence(), e);
+        }
+    }
+
+    /** Sequences of the records in the dead-letter file. */
+    public Set<Long> deadLetterSequences() {
+        Path file = dir.resolve(DEAD_LETTER);
+        if (!Files.exists(file)) return Set.of();
+        Set<Long> sequences = new HashSet<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            new Segment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()))
+                    .read(entry -> sequences.add(entry.sequence()), false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read journal dead letters " + file, e);
+        }
+        return sequences;
+    }
+
+    /** Highest sequence found on disk at open; new records continue after it. */
+    public long recoveredSequence() {
+        return recoveredSeq;
+    }
+
+    public long checkpointSequence() {
+        return checkpointSeq;
+    }
+
+    public long durableSequence() {
+        lock.lock();
+        try {
+            return durableSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Rows written but not yet taken by the applier. */
+    public long pendingEvents() {
+        lock.lock();
+        try {
+            return tailEvents;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int segmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (active != null) {
+                active.buffer.force();
+            }
+            durableSeq = writtenSeq;
+            closed = true;
+            durableChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held; the leader releases it while forcing
+    private void awaitDurable(long seq) {
+        while (durableSeq < seq) {
+            if (flushing) {
+                durableChanged.awaitUninterruptibly();
+                continue;
+            }
+            flushing = true;
+            Segment segment = active;
+            long target = writtenSeq;
+            int from = segment.forced;
+            int to = segment.position;
+            lock.unlock();
+            try {
+                segment.buffer.force(from, to - from);
+            } finally {
+                lock.lock();
+                flushing = false;
+                durableChanged.signalAll();
+            }
+            segment.forced = Math.max(segment.forced, to);
+            durableSeq = Math.max(durableSeq, target);
+        }
+    }
+
+    // Called with the lock held. Everything in the old segment is made durable first.
+    private void rotate(int needed) {
+        if (active != null) {
+            active.buffer.force();
+            active.forced = active.position;
+            durableSeq = writtenSeq;
+            durableChanged.signalAll();
+        }
+        Path file = dir.resolve(String.format("%020d.seg", writtenSeq + 1));
+        active = Segment.create(file, Math.max(segmentSize, needed));
+        segments.add(active);
+    }
+
+    private static byte[] encode(List<EventRow> rows) {
+        int size = 4;
+        List<byte[]> strings = new ArrayList<>(rows.size() * 2);
+        for (EventRow row : rows) {
+            byte[] eventId = utf8(row.eventId());
+            byte[] machineId = utf8(row.machineId());
+            strings.add(eventId);
+            strings.add(machineId);
+            size += 4 + length(eventId) + 4 + length(machineId) + 8 + 8 + 8 + 4;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            EventRow row = rows.get(i);
+            putString(buffer, strings.get(2 * i));
+            putString(buffer, strings.get(2 * i + 1));
+            buffer.putLong(row.eventTimeMillis());
+            buffer.putLong(row.receivedTimeMillis());
+            buffer.putLong(row.durationMs());
+            buffer.putInt(row.defectCount());
+        }
+        return buffer.array();
+    }
+
+    private static List<EventRow> decode(ByteBuffer payload) {
+        int count = payload.getInt();
+        List<EventRow> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new EventRow(getString(payload), getString(payload), payload.getLong(), payload.getLong(),
+                    payload.getLong(), payload.getInt()));
+        }
+        return rows;
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    // Length -1 is a null string (a field missing from the payload)
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return s;
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private int forced;
+        private long lastSeq;
+
+        private Segment(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path file, int size) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new Segment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create journal segment " + file, e);
+            }
+        }
+
+        // Existing segment from an earlier run: finds the last intact record
+        static Segment open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                Segment segment = new Segment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+                segment.read(entry -> segment.lastSeq = entry.sequence());
+                segment.forced = segment.position;
+                return segment;
+            }
+        }
+
+        int remaining() {
+            return buffer.capacity() - position;
+        }
+
+        void write(long seq, int checksum, byte[] payload) {
+            buffer.putInt(position + 4, checksum);
+            buffer.putLong(position + 8, seq);
+            buffer.put(position + HEADER, payload);
+            // Length last: a reader never sees a length without the bytes behind it
+            buffer.putInt(position, payload.length);
+            position += HEADER + payload.length;
+            lastSeq = seq;
+        }
+
+        // Reads intact records from the start and leaves position after the last one
+        void read(Consumer<Entry> consumer) {
+            read(consumer, true);
+        }
+
+        // Dead letters are not consecutive, so their sequences are not checked
+        void read(Consumer<Entry> consumer, boolean consecutive) {
+            int at = 0;
+            long expected = -1;
+            while (at + HEADER <= buffer.capacity()) {
+                int length = buffer.getInt(at);
+                if (length <= 0 || at + HEADER + length > buffer.capacity()) break;
+                int checksum = buffer.getInt(at + 4);
+                long seq = buffer.getLong(at + 8);
+                byte[] payload = new byte[length];
+                buffer.get(at + HEADER, payload);
+                CRC32C crc = new CRC32C();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum || (consecutive && expected != -1 && seq != expected)) break;
+                consumer.accept(new Entry(seq, decode(ByteBuffer.wrap(payload))));
+                expected = seq + 1;
+                at += HEADER + length;
+            }
+            position = at;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.factory.backend.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters for the ingest and query hot paths. All meters are created up front or
+ * cached, so recording is a map lookup plus the meter's own cost.
+ *
+ * factory.ingest.stage{stage}   decode, collapse, lookup, dedupe, write, commit, derive (after-commit listeners)
+ * factory.ingest.batch.size     events per client batch, once as it enters IngestionCoordinator
+ * factory.ingest.events{outcome, machine}
+ *                               per-machine outcomes of committed transactions; machines past
+ *                               machineTagLimit share machine="other"
+ * factory.stats.query{query}    stats, top-lines, top-lines-window
+ */
+@Component
+public class IngestMetrics {
+
+    public enum Stage { DECODE, COLLAPSE, LOOKUP, DEDUPE, WRITE, COMMIT, DERIVE }
+
+    public enum Outcome { ACCEPTED, DEDUPED, UPDATED, REJECTED }
+
+    private static final String OTHER_MACHINE = "other";
+
+    private final MeterRegistry registry;
+    private final int machineTagLimit;
+    private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+    private final Map<String, Timer> queries = new ConcurrentHashMap<>();
+    private final Map<String, Counter[]> machineCounters = new ConcurrentHashMap<>();
+    private final DistributionSummary batchSize;
+
+    public IngestMetrics(MeterRegistry registry,
+                         @Value("${factory.metrics.machine-tag-limit:1000}") int machineTagLimit) {
+        this.registry = registry;
+        this.machineTagLimit = machineTagLimit;
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, Timer.builder("factory.ingest.stage")
+                    .description("Time spent per ingest stage")
+                    .tag("stage", stage.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        this.batchSize = DistributionSummary.builder("factory.ingest.batch.size")
+                .description("Events per client batch")
+                .baseUnit("events")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /** Records the time since startNanos (a System.nanoTime() value) against the stage. */
+    public void record(Stage stage, long startNanos) {
+        stages.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public <T> T timeQuery(String query, Supplier<T> work) {
+        Timer timer = queries.computeIfAbsent(query, q -> Timer.builder("factory.stats.query")
+                .description("Stats endpoint latency by query")
+                .tag("query", q)
+                .publishPercentileHistogram()
+                .register(registry));
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordBatchSize(int events) {
+        batchSize.record(events);
+    }
+
+    /** Records the outcomes once the current transaction commits (right away outside one); nothing on rollback. */
+    public void recordOutcomesOnCommit(Map<String, int[]> outcomesByMachine) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            outcomesByMachine.forEach(this::recordOutcomes);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outcomesByMachine.forEach(IngestMetrics.this::recordOutcomes);
+            }
+        });
+    }
+
+    /** counts is indexed by Outcome.ordinal(); callers aggregate per batch first. */
+    public void recordOutcomes(String machineId, int[] counts) {
+        Counter[] counters = machineCounters.get(machineId == null ? OTHER_MACHINE : machineId);
+        if (counters == null) {
+            String tag = machineId != null && machineCounters.size() < machineTagLimit ? machineId : OTHER_MACHINE;
+            counters = machineCounters.computeIfAbsent(tag, this::outcomeCounters);
+        }
+        for (Outcome outcome : Outcome.values()) {
+            if (counts[outcome.ordinal()] > 0) {
+                counters[outcome.ordinal()].increment(counts[outcome.ordinal()]);
+            }
+        }
+    }
+
+    /**
+     * Times the commit of the current transaction and the after-commit listeners
+     * that follow it. Call once the changes have been published: AFTER_COMMIT
+     * listeners run in afterCompletion, so the derive clock has to be registered
+     * after theirs to sort behind them at equal order.
+     */
+    public void timeCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        long[] committedAt = new long[1];
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long commitStart;
+
+            @Override
+            public int getOrder() {
+                return Ordered.HIGHEST_PRECEDENCE;
+            }
+
+            @Override
+            public void beforeCompletion() {
+                commitStart = System.nanoTime();
+            }
+
+            @Override
+            public void afterCommit() {
+                committedAt[0] = System.nanoTime();
+                record(Stage.COMMIT, commitStart);
+            }
+        });
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                return Ordered.LOWEST_PRECEDENCE;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    record(Stage.DERIVE, committedAt[0]);
+                }
+            }
+        });
+    }
+
+    private Counter[] outcomeCounters(String machine) {
+        Counter[] counters = new Counter[Outcome.values().length];
+        for (Outcome outcome : Outcome.values()) {
+            counters[outcome.ordinal()] = Counter.builder("factory.ingest.events")
+                    .description("Ingested events by outcome and machine")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .tag("machine", machine)
+                    .register(registry);
+        }
+        return counters;
+    }
+}
@@ -0,0 +1,69 @@
+package com.factory.backend.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Handle for a batch accepted by the async pipeline. Written by one writer
+ * thread, read by pollers.
+ */
+public class IngestTicket {
+
+    public enum Status { QUEUED, DONE, FAILED }
+
+    private final String ticketId;
+    private final int size;
+    private final int rejectedOnSubmit;
+    private volatile Status status = Status.QUEUED;
+    private volatile Map<String, Object> counts;
+    private volatile String error;
+    private volatile Map<String, Object> committed;
+
+    IngestTicket(String ticketId, int size, int rejectedOnSubmit) {
+        this.ticketId = ticketId;
+        this.size = size;
+        this.rejectedOnSubmit = rejectedOnSubmit;
+    }
+
+    public String getTicketId() {
+        return ticketId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    void complete(Map<String, Object> result) {
+        Map<String, Object> merged = new LinkedHashMap<>(result);
+        merged.merge("rejected", rejectedOnSubmit, (a, b) -> (int) a + (int) b);
+        this.counts = merged;
+        this.status = Status.DONE;
+    }
+
+    void fail(String message) {
+        fail(message, null);
+    }
+
+    // committed: what of the batch is stored despite the failure, if anything
+    void fail(String message, Map<String, Object> committed) {
+        this.error = message;
+        this.committed = committed;
+        this.status = Status.FAILED;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("ticketId", ticketId);
+        body.put("status", status.name());
+        body.put("events", size);
+        if (status == Status.DONE) {
+            body.putAll(counts);
+        } else if (status == Status.FAILED) {
+            body.put("error", error);
+            if (committed != null) {
+                body.put("committed", committed);
+            }
+        }
+        return body;
+    }
+}
@@ -0,0 +1,202 @@
+package com.factory.backend.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.factory.backend.repository.EventStore;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Sizes ingest commit units at runtime. The async and journal writers coalesce
+ * queued batches into one transaction of up to commitSize events; a client
+ * batch is never split, so a synchronous request is one transaction whatever
+ * its size. The EventStore's JDBC batch (Hibernate batch size, or rows per
+ * multi-row INSERT) follows as min(commitSize, max-jdbc-batch-size).
+ *
+ * Every window commits, the tuner looks at their p99 latency and their
+ * throughput (rows per second of commit time). Over target-p99 it halves
+ * commitSize. Otherwise it hill-climbs: it keeps growing (x1.5) or shrinking
+ * (/1.5) while throughput improves and turns around when it drops by more than
+ * 5%, and it stops growing once p99 is within 80% of the target. A window whose
+ * commits were mostly well under the limit says nothing about the limit, so it
+ * only applies the p99 check.
+ *
+ * set() pins the settings (adaptation off) until adaptation is switched back on.
+ * With factory.ingest.adaptive.enabled=false the writers merge up to their own
+ * max-merge-events and the store keeps its configured batch size until
+ * something is pinned.
+ */
+@Service
+public class IngestTuner {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestTuner.class);
+
+    private static final double TOLERANCE = 0.05;
+
+    private final EventStore eventStore;
+    private final long targetP99Nanos;
+    private final int minCommitSize;
+    private final int maxCommitSize;
+    private final int maxJdbcBatchSize;
+
+    private volatile boolean adaptive;
+    private volatile int commitSize;       // 0: unlimited
+    private volatile int jdbcBatchSize;    // 0: the store's configured default
+
+    // Guarded by this
+    private final long[] latencies;
+    private int observed;
+    private long windowRows;
+    private long windowNanos;
+    private int direction = 1;
+    private double lastThroughput;
+    private long adjustments;
+
+    public IngestTuner(EventStore eventStore, MeterRegistry meterRegistry,
+                       @Value("${factory.ingest.adaptive.enabled:true}") boolean enabled,
+                       @Value("${factory.ingest.adaptive.target-p99:250ms}") Duration targetP99,
+                       @Value("${factory.ingest.adaptive.initial-commit-size:1000}") int initialCommitSize,
+                       @Value("${factory.ingest.adaptive.min-commit-size:100}") int minCommitSize,
+                       @Value("${factory.ingest.adaptive.max-commit-size:20000}") int maxCommitSize,
+                       @Value("${factory.ingest.adaptive.max-jdbc-batch-size:500}") int maxJdbcBatchSize,
+                       @Value("${factory.ingest.adaptive.window:32}") int window) {
+        this.eventStore = eventStore;
+        this.targetP99Nanos = targetP99.toNanos();
+        this.minCommitSize = Math.max(1, minCommitSize);
+        this.maxCommitSize = Math.max(this.minCommitSize, maxCommitSize);
+        this.maxJdbcBatchSize = Math.max(1, maxJdbcBatchSize);
+        this.latencies = new long[Math.max(1, window)];
+        this.adaptive = enabled;
+        if (enabled) {
+            int size = clamp(initialCommitSize);
+            apply(size, jdbcBatchFor(size));
+        }
+        Gauge.builder("factory.ingest.adaptive.commit-size", this, t -> t.commitSize)
+                .description("Events per ingest transaction (0: unlimited)")
+                .register(meterRegistry);
+        Gauge.builder("factory.ingest.adaptive.jdbc-batch-size", this, t -> t.jdbcBatchSize)
+                .description("Rows per JDBC batch or multi-row INSERT (0: configured default)")
+                .register(meterRegistry);
+    }
+
+    /** Most events one transaction should carry; Integer.MAX_VALUE when unlimited. */
+    public int commitSize() {
+        int size = commitSize;
+        return size > 0 ? size : Integer.MAX_VALUE;
+    }
+
+    /** Records one committed unit; rows are the events it carried. */
+    public void observe(int rows, long nanos) {
+        if (!adaptive) return;
+        synchronized (this) {
+            latencies[observed++] = nanos;
+            windowRows += rows;
+            windowNanos += nanos;
+            if (observed == latencies.length) {
+                adjust();
+                observed = 0;
+                windowRows = 0;
+                windowNanos = 0;
+            }
+        }
+    }
+
+    private void adjust() {
+        int current = commitSize;
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        long p99 = sorted[(int) Math.ceil(0.99 * sorted.length) - 1];
+        double throughput = windowRows * 1e9 / Math.max(windowNanos, 1);
+
+        int next = current;
+        if (p99 > targetP99Nanos) {
+            next = current / 2;
+            direction = -1;
+            lastThroughput = 0;
+        } else if (windowRows * 2 < (long) current * sorted.length) {
+            // Commits were mostly well under the limit: it did not bind
+        } else {
+            if (lastThroughput > 0 && throughput < lastThroughput * (1 - TOLERANCE)) {
+                direction = -direction;
+            }
+            if (direction < 0) {
+                next = current * 2 / 3;
+            } else if (p99 <= targetP99Nanos * 0.8) {
+                next = current + current / 2;
+            }
+            lastThroughput = throughput;
+        }
+        next = clamp(next);
+        if (next != current) {
+            adjustments++;
+            log.debug("Commit size {} -> {} (p99 {} ms, {} rows/s)", current, next, p99 / 1_000_000, (long) throughput);
+            apply(next, jdbcBatchFor(next));
+        }
+    }
+
+    /**
+     * Pins commitSize and/or jdbcBatchSize (null keeps the current value; 0 means
+     * unlimited / the store default) and turns adaptation off, unless adaptive is
+     * true, which turns it on from the given or current settings.
+     */
+    public synchronized Map<String, Object> set(Integer commitSize, Integer jdbcBatchSize, Boolean adaptive) {
+        if ((commitSize != null && commitSize < 0) || (jdbcBatchSize != null && jdbcBatchSize < 0)) {
+            throw new IllegalArgumentException("commitSize and jdbcBatchSize must be >= 0");
+        }
+        boolean adapt = adaptive != null ? adaptive : commitSize == null && jdbcBatchSize == null && this.adaptive;
+        int size = commitSize != null ? commitSize : this.commitSize;
+        if (adapt) {
+            size = clamp(size > 0 ? size : maxCommitSize);
+            apply(size, jdbcBatchFor(size));
+        } else {
+            apply(size, jdbcBatchSize != null ? jdbcBatchSize : this.jdbcBatchSize);
+        }
+        this.adaptive = adapt;
+        observed = 0;
+        windowRows = 0;
+        windowNanos = 0;
+        lastThroughput = 0;
+        direction = 1;
+        return settings();
+    }
+
+    public Map<String, Object> settings() {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("adaptive", adaptive);
+        settings.put("commitSize", commitSize);
+        settings.put("jdbcBatchSize", jdbcBatchSize);
+        settings.put("targetP99Ms", targetP99Nanos / 1_000_000);
+        settings.put("minCommitSize", minCommitSize);
+        settings.put("maxCommitSize", maxCommitSize);
+        settings.put("maxJdbcBatchSize", maxJdbcBatchSize);
+        synchronized (this) {
+            settings.put("adjustments", adjustments);
+        }
+        return settings;
+    }
+
+    private void apply(int commitSize, int jdbcBatchSize) {
+        this.commitSize = commitSize;
+        if (jdbcBatchSize != this.jdbcBatchSize) {
+            this.jdbcBatchSize = jdbcBatchSize;
+            eventStore.setJdbcBatchSize(jdbcBatchSize);
+        }
+    }
+
+    private int jdbcBatchFor(int commitSize) {
+        return Math.min(commitSize, maxJdbcBatchSize);
+    }
+
+    private int clamp(int size) {
+        return Math.max(minCommitSize, Math.min(maxCommitSize, size));
+    }
+}
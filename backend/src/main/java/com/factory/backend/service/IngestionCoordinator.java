@@ -0,0 +1,117 @@
+package com.factory.backend.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.entity.MachineEvent;
+
+/**
+ * Entry point for concurrent ingestion. Events are mapped by eventId hash onto
+ * stripes, and a call takes the lock of every stripe its batches touch before
+ * it runs one EventService transaction. Two batches that share an eventId
+ * therefore never run their read-compare-write at the same time: the second
+ * one sees the first one's commit and dedupes or applies last-write-wins,
+ * instead of failing on the primary key and rolling back. Batches on disjoint
+ * stripes run in parallel; with the default 256 stripes that is most pairs of
+ * small batches, while large batches touch nearly every stripe and queue.
+ *
+ * Locks are always taken in ascending stripe order, so two callers can never
+ * hold each other's next lock. They are ReentrantLocks, so a virtual-thread
+ * caller waiting for a stripe parks instead of pinning its carrier. The commit
+ * takes a DatabasePermit after the locks, so a caller waiting for a connection
+ * holds no permit it cannot use.
+ *
+ * A client batch is always one transaction, however large, so it commits or
+ * fails as a whole. IngestTuner.commitSize() only bounds how many queued
+ * batches the async and journal writers merge into one call (mergeLimit).
+ */
+@Service
+public class IngestionCoordinator {
+
+    private final EventService eventService;
+    private final DatabasePermits permits;
+    private final IngestTuner tuner;
+    private final IngestMetrics metrics;
+    private final ReentrantLock[] locks;
+
+    public IngestionCoordinator(EventService eventService, DatabasePermits permits, IngestTuner tuner,
+                                IngestMetrics metrics, @Value("${factory.ingest.stripes:256}") int stripes) {
+        this.eventService = eventService;
+        this.permits = permits;
+        this.tuner = tuner;
+        this.metrics = metrics;
+        this.locks = new ReentrantLock[Math.max(1, stripes)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public Map<String, Object> processBatch(List<MachineEvent> events) {
+        return processBatches(List.of(events)).get(0);
+    }
+
+    public Map<String, Object> processRows(List<EventRow> rows) {
+        List<MachineEvent> events = new ArrayList<>(rows.size());
+        for (EventRow row : rows) {
+            events.add(row.toEntity());
+        }
+        return processBatch(events);
+    }
+
+    /** Same contract as EventService.processBatches: one result per batch, applied in list order. */
+    public List<Map<String, Object>> processBatches(List<List<MachineEvent>> batches) {
+        batches.forEach(batch -> metrics.recordBatchSize(batch.size()));
+
+        BitSet stripes = new BitSet(locks.length);
+        for (List<MachineEvent> batch : batches) {
+            for (MachineEvent e : batch) {
+                stripes.set(stripe(e.getEventId()));
+            }
+        }
+        int held = -1;
+        try {
+            for (int s = stripes.nextSetBit(0); s >= 0; s = stripes.nextSetBit(s + 1)) {
+                locks[s].lock();
+                held = s;
+            }
+            return commit(batches);
+        } finally {
+            for (int s = held; s >= 0; s = stripes.previousSetBit(s - 1)) {
+                locks[s].unlock();
+            }
+        }
+    }
+
+    // Client batches are never cut up: the whole call is one transaction, whatever commitSize() says
+    private List<Map<String, Object>> commit(List<List<MachineEvent>> batches) {
+        int events = batches.stream().mapToInt(List::size).sum();
+        return permits.call(() -> {
+            long start = System.nanoTime();
+            List<Map<String, Object>> counts = eventService.processBatches(batches);
+            tuner.observe(events, System.nanoTime() - start);
+            return counts;
+        });
+    }
+
+    public int stripes() {
+        return locks.length;
+    }
+
+    /** Events a writer should merge into one processBatches call: one commit unit, at most max. */
+    public int mergeLimit(int max) {
+        return Math.min(max, tuner.commitSize());
+    }
+
+    private int stripe(String eventId) {
+        int h = Objects.hashCode(eventId);
+        return Math.floorMod(h ^ (h >>> 16), locks.length);
+    }
+}
@@ -0,0 +1,351 @@
+package com.factory.backend.service;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.entity.MachineEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Journaled ingestion: a batch is acknowledged as soon as it is durable in the
+ * IngestJournal, and one applier thread feeds it to the IngestionCoordinator
+ * afterwards, merging queued batches up to max-merge-events per call.
+ *
+ * Records left by the previous run are replayed on ApplicationStartedEvent,
+ * after the derived-state rebuild (which runs before the web server starts),
+ * so replayed batches reach the derived stores through their listeners like
+ * any other. The applier starts once the application accepts traffic; batches
+ * submitted before that wait in the journal. Replaying a batch that was already applied is harmless: every
+ * event comes back deduped. The applied sequence is checkpointed every
+ * checkpoint-interval, which also deletes old segments; with snapshots
+ * enabled, never past the sequence the latest snapshot covers.
+ *
+ * Events that EventService would reject (including ids too long for their
+ * column) are counted at submit time and not journaled, so a journaled batch
+ * should only fail to apply for transient reasons; those are retried until
+ * they succeed. On any other failure the group is bisected down to the batch
+ * that fails, that batch is copied to the journal's dead-letter file and the
+ * applier moves past it. Replay skips dead-lettered batches. Only when the
+ * dead letter cannot be written does the applier stop: the applied sequence
+ * never moves past the batch, health reports DOWN and submit refuses new
+ * batches until a restart.
+ */
+@Service
+@ConditionalOnProperty(name = "factory.ingest.journal.enabled", havingValue = "true")
+public class JournalIngestService implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalIngestService.class);
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+
+    private final IngestionCoordinator coordinator;
+    private final EventService eventService;
+    private final IngestJournal journal;
+    private final long maxPendingEvents;
+    private final int maxMergeEvents;
+    private final Duration checkpointInterval;
+
+    private final Timer ackTimer;
+    private final DistributionSummary applyGroupSize;
+    private final Counter replayedCounter;
+    private final Counter backlogFullCounter;
+    private final Counter deadLetterCounter;
+
+    private volatile long appliedSeq;
+    // Highest sequence a checkpoint may reach; lowered by SnapshotService so its tail stays replayable
+    private volatile long checkpointCeiling = Long.MAX_VALUE;
+    private volatile boolean running;
+    // Sequence of the batch the applier stopped at because it could not dead-letter it; 0 while healthy
+    private volatile long failedSeq;
+    private Thread applier;
+
+    public JournalIngestService(IngestionCoordinator coordinator, EventService eventService, MeterRegistry meterRegistry,
+                                @Value("${factory.ingest.journal.dir:data/journal}") Path dir,
+                                @Value("${factory.ingest.journal.segment-size:64MB}") DataSize segmentSize,
+                                @Value("${factory.ingest.journal.max-pending-events:1000000}") long maxPendingEvents,
+                                @Value("${factory.ingest.journal.max-merge-events:5000}") int maxMergeEvents,
+                                @Value("${factory.ingest.journal.checkpoint-interval:1s}") Duration checkpointInterval) {
+        this.coordinator = coordinator;
+        this.eventService = eventService;
+        this.journal = new IngestJournal(dir, (int) segmentSize.toBytes());
+        this.maxPendingEvents = maxPendingEvents;
+        this.maxMergeEvents = maxMergeEvents;
+        this.checkpointInterval = checkpointInterval;
+        this.appliedSeq = journal.checkpointSequence();
+
+        this.ackTimer = Timer.builder("factory.ingest.journal.ack")
+                .description("Time from submit until the batch is durable in the journal")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.applyGroupSize = DistributionSummary.builder("factory.ingest.journal.apply.batches")
+                .description("Journaled batches applied per coordinator call")
+                .register(meterRegistry);
+        this.replayedCounter = Counter.builder("factory.ingest.journal.replayed")
+                .description("Journaled batches replayed at startup")
+                .register(meterRegistry);
+        this.backlogFullCounter = Counter.builder("factory.ingest.journal.backlog.full")
+                .description("Batches refused because too many journaled events were not applied yet")
+                .register(meterRegistry);
+        this.deadLetterCounter = Counter.builder("factory.ingest.journal.dead-letters")
+                .description("Journaled batches that could not be applied and were dead-lettered")
+                .register(meterRegistry);
+        Gauge.builder("factory.ingest.journal.lag", this, s -> s.journal.durableSequence() - s.appliedSeq)
+                .description("Durable batches not applied to the event store yet")
+                .register(meterRegistry);
+        Gauge.builder("factory.ingest.journal.pending.events", journal, IngestJournal::pendingEvents)
+                .description("Journaled events waiting for the applier")
+                .register(meterRegistry);
+    }
+
+    /** Replays the previous run's records and starts the applier, for use outside a Spring context. */
+    public void start() {
+        replay();
+        startApplier();
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void replay() {
+        Set<Long> deadLetters = journal.deadLetterSequences();
+        List<IngestJournal.Entry> group = new ArrayList<>();
+        int[] events = new int[1];
+        boolean[] stopped = new boolean[1];
+        journal.replay(entry -> {
+            if (stopped[0]) return;
+            if (deadLetters.contains(entry.sequence())) {
+                log.warn("Skipping journal sequence {}: it is in the dead-letter file", entry.sequence());
+                return;
+            }
+            replayedCounter.increment();
+            group.add(entry);
+            events[0] += entry.rows().size();
+            if (events[0] >= maxMergeEvents) {
+                stopped[0] = !applyUninterruptibly(group);
+                group.clear();
+                events[0] = 0;
+            }
+        });
+        if (!stopped[0] && !group.isEmpty()) {
+            stopped[0] = !applyUninterruptibly(group);
+        }
+        if (!stopped[0] && journal.recoveredSequence() > appliedSeq) {
+            // Everything recovered was applied or dead-lettered earlier
+            appliedSeq = journal.recoveredSequence();
+        }
+        checkpoint();
+    }
+
+    // Published after the ApplicationReadyEvent listeners return
+    @EventListener
+    public void onReadiness(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() == ReadinessState.ACCEPTING_TRAFFIC) {
+            startApplier();
+        }
+    }
+
+    private synchronized void startApplier() {
+        if (applier != null || failedSeq != 0) return;
+        running = true;
+        applier = new Thread(this::applyLoop, "journal-applier");
+        // Whatever it has not applied at exit is still in the journal
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    /**
+     * Journals the valid events and returns once they are durable.
+     * Returns null when the applier is too far behind; the caller should retry later.
+     * Throws IllegalStateException once the applier has stopped at a batch it could not dead-letter.
+     */
+    public Map<String, Object> submit(List<EventRow> rows) {
+        if (failedSeq != 0) {
+            throw new IllegalStateException("Journal applier stopped at sequence " + failedSeq);
+        }
+        long start = System.nanoTime();
+        List<EventRow> valid = new ArrayList<>(rows.size());
+        for (EventRow row : rows) {
+            // A missing field comes back null from toEntity, which isValid rejects
+            if (eventService.isValid(row.toEntity())) valid.add(row);
+        }
+
+        Map<String, Object> ack = new LinkedHashMap<>();
+        ack.put("status", "DURABLE");
+        ack.put("events", rows.size());
+        ack.put("rejected", rows.size() - valid.size());
+        if (valid.isEmpty()) {
+            ack.put("sequence", null);
+            return ack;
+        }
+        if (journal.pendingEvents() + valid.size() > maxPendingEvents) {
+            backlogFullCounter.increment();
+            return null;
+        }
+        ack.put("sequence", journal.append(valid));
+        ackTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return ack;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("durableSequence", journal.durableSequence());
+        status.put("appliedSequence", appliedSeq);
+        status.put("checkpointSequence", journal.checkpointSequence());
+        status.put("pendingEvents", journal.pendingEvents());
+        status.put("segments", journal.segmentCount());
+        status.put("failedSequence", failedSeq == 0 ? null : failedSeq);
+        return status;
+    }
+
+    @Override
+    public Health health() {
+        if (failedSeq != 0) {
+            return Health.down().withDetail("failedSequence", failedSeq)
+                    .withDetail("appliedSequence", appliedSeq).build();
+        }
+        return Health.up().withDetail("appliedSequence", appliedSeq).build();
+    }
+
+    public long appliedSequence() {
+        return appliedSeq;
+    }
+
+    /**
+     * Called by SnapshotService with the applied sequence its latest snapshot
+     * covers: later checkpoints stop there, so a restore can replay the rest.
+     */
+    public void snapshotTaken(long sequence) {
+        checkpointCeiling = Math.max(sequence, journal.checkpointSequence());
+    }
+
+    private void applyLoop() {
+        long lastCheckpoint = System.nanoTime();
+        while (running || journal.pendingEvents() > 0) {
+            try {
+                List<IngestJournal.Entry> group = journal.takeDurable(coordinator.mergeLimit(maxMergeEvents), 200);
+                if (!group.isEmpty() && !apply(group)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (System.nanoTime() - lastCheckpoint >= checkpointInterval.toNanos()) {
+                try {
+                    checkpoint();
+                } catch (RuntimeException e) {
+                    log.error("Journal checkpoint failed; retrying at the next interval", e);
+                }
+                lastCheckpoint = System.nanoTime();
+            }
+        }
+    }
+
+    private boolean applyUninterruptibly(List<IngestJournal.Entry> group) {
+        try {
+            return apply(group);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted replaying the ingest journal", e);
+        }
+    }
+
+    /**
+     * Applies the group in order and advances the applied sequence, past any
+     * batch that had to be dead-lettered. Returns false only when such a batch
+     * could not be dead-lettered either: the applied sequence stops before it
+     * and the applier must stop.
+     */
+    private boolean apply(List<IngestJournal.Entry> group) throws InterruptedException {
+        try {
+            applyWithRetry(group);
+        } catch (RuntimeException e) {
+            if (group.size() > 1) {
+                // Already-committed parts of the group come back deduped
+                int half = group.size() / 2;
+                return apply(group.subList(0, half)) && apply(group.subList(half, group.size()));
+            }
+            IngestJournal.Entry entry = group.get(0);
+            try {
+                journal.deadLetter(entry);
+            } catch (RuntimeException deadLetterFailure) {
+                log.error("Journal sequence {} cannot be applied or dead-lettered; stopping the applier",
+                        entry.sequence(), deadLetterFailure);
+                failedSeq = entry.sequence();
+                return false;
+            }
+            deadLetterCounter.increment();
+            log.error("Journal sequence {} cannot be applied; dead-lettered it", entry.sequence(), e);
+            appliedSeq = entry.sequence();
+            return true;
+        }
+        applyGroupSize.record(group.size());
+        appliedSeq = group.get(group.size() - 1).sequence();
+        return true;
+    }
+
+    // Transient failures (no permit, lost connection) are retried until they succeed
+    private void applyWithRetry(List<IngestJournal.Entry> group) throws InterruptedException {
+        List<List<MachineEvent>> batches = new ArrayList<>(group.size());
+        for (IngestJournal.Entry entry : group) {
+            List<MachineEvent> events = new ArrayList<>(entry.rows().size());
+            for (EventRow row : entry.rows()) {
+                events.add(row.toEntity());
+            }
+            batches.add(events);
+        }
+        while (true) {
+            try {
+                coordinator.processBatches(batches);
+                return;
+            } catch (TransientDataAccessException | PartialIngestException e) {
+                // What already committed comes back deduped on the retry
+                if (e instanceof PartialIngestException && !(e.getCause() instanceof TransientDataAccessException)) {
+                    throw e;
+                }
+                log.warn("Applying journal sequences {}..{} failed, retrying in {} ms", group.get(0).sequence(),
+                        group.get(group.size() - 1).sequence(), RETRY_BACKOFF_MILLIS, e);
+                Thread.sleep(RETRY_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    // IngestJournal.checkpoint ignores anything at or below the last checkpoint
+    private void checkpoint() {
+        journal.checkpoint(Math.min(appliedSeq, checkpointCeiling));
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false; // the applier drains what is journaled, then exits
+        if (applier != null) {
+            applier.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        journal.close();
+        checkpoint();
+    }
+}
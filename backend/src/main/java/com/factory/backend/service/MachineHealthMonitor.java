@@ -0,0 +1,225 @@
+package com.factory.backend.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.factory.backend.dto.MachineHealth;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.event.BatchIngestedEvent;
+import com.factory.backend.event.EventChange;
+import com.factory.backend.event.PartitionsDroppedEvent;
+import com.factory.backend.repository.EventStore;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Live Healthy/Warning status per machine over a sliding one-hour window,
+ * pushed to /stats/health/stream subscribers instead of being polled from /stats.
+ *
+ * Each machine keeps a ring of minute buckets fed by every committed batch;
+ * the window is the current minute plus the 59 before it (and accepted future
+ * events), the same alignment as the 1h leaderboard. The rate is defects in
+ * the window per hour, with the /stats threshold. A status change caused by a
+ * batch is published as a "transition" right away. Every update-interval the
+ * windows slide: status changes from events ageing out are published as
+ * transitions, and machines whose counts changed since they were last
+ * published get one coalesced "health" update.
+ */
+@Service
+@ConditionalOnProperty(name = "factory.health.enabled", havingValue = "true", matchIfMissing = true)
+public class MachineHealthMonitor implements DerivedState {
+
+    public static final String TRANSITION = "transition";
+    public static final String HEALTH = "health";
+
+    private static final int MINUTE_SLOTS = 60 + 16;      // 1h back, 15 min ahead
+
+    private final EventStore eventStore;
+    private final HealthBroadcaster broadcaster;
+    private final Counter transitionCounter;
+
+    // Publishing happens under the lock too (it only queues frames), so a new
+    // subscriber's snapshot and the updates after it cannot be reordered
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, MachineWindow> machines = new HashMap<>();
+
+    public MachineHealthMonitor(EventStore eventStore, HealthBroadcaster broadcaster, MeterRegistry meterRegistry) {
+        this.eventStore = eventStore;
+        this.broadcaster = broadcaster;
+        this.transitionCounter = Counter.builder("factory.health.transitions")
+                .description("Machine status changes between Healthy and Warning")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBatchIngested(BatchIngestedEvent batch) {
+        lock.lock();
+        try {
+            Map<String, MachineWindow> touched = new LinkedHashMap<>();
+            for (EventChange change : batch.changes()) {
+                if (change.previous() != null) {
+                    touched.put(change.previous().getMachineId(), add(change.previous(), -1));
+                }
+                touched.put(change.current().getMachineId(), add(change.current(), 1));
+            }
+            long fromMinute = nowMinute() - 59;
+            List<MachineHealth> transitions = new ArrayList<>();
+            touched.forEach((machineId, window) -> {
+                MachineHealth health = window.health(machineId, fromMinute);
+                if (!health.status().equals(window.publishedStatus)) {
+                    transitions.add(window.published(health));
+                }
+            });
+            publish(transitions, List.of());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedRateString = "${factory.health.update-interval:5s}")
+    public void tick() {
+        lock.lock();
+        try {
+            long fromMinute = nowMinute() - 59;
+            List<MachineHealth> transitions = new ArrayList<>();
+            List<MachineHealth> updates = new ArrayList<>();
+            machines.forEach((machineId, window) -> {
+                MachineHealth health = window.health(machineId, fromMinute);
+                if (!health.status().equals(window.publishedStatus)) {
+                    transitions.add(window.published(health));
+                } else if (health.eventsCount() != window.publishedCount || health.defectsCount() != window.publishedDefects) {
+                    updates.add(window.published(health));
+                }
+            });
+            publish(transitions, updates);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Only matters when retention is shorter than the window
+    @EventListener
+    public void onPartitionsDropped(PartitionsDroppedEvent dropped) {
+        if (dropped.before().getEpochSecond() > (nowMinute() - MINUTE_SLOTS) * 60) {
+            rebuild();
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        DerivedStateRebuilder.rebuild(eventStore, List.of(this));
+    }
+
+    @Override
+    public Rebuild startRebuild() {
+        lock.lock();
+        machines.clear();
+        long nowMinute = nowMinute();
+        long since = (nowMinute - MINUTE_SLOTS) * 60;
+        return new Rebuild() {
+            @Override
+            public void accept(MachineEvent e) {
+                if (e.getEventTime().getEpochSecond() >= since) add(e, 1);
+            }
+
+            @Override
+            public void finish() {
+                // Current state is what a new subscriber's snapshot shows; nothing to announce
+                machines.forEach((machineId, window) -> window.published(window.health(machineId, nowMinute - 59)));
+            }
+
+            @Override
+            public void close() {
+                lock.unlock();
+            }
+        };
+    }
+
+    /** Current health of the given machines (all when empty), ordered by machine id. */
+    public List<MachineHealth> snapshot(Set<String> machineIds) {
+        lock.lock();
+        try {
+            return snapshotLocked(machineIds);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Opens a stream that starts with the snapshot and continues with every later update. */
+    public SseEmitter subscribe(Set<String> machineIds) {
+        lock.lock();
+        try {
+            return broadcaster.subscribe(machineIds, snapshotLocked(machineIds));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<MachineHealth> snapshotLocked(Set<String> machineIds) {
+        long fromMinute = nowMinute() - 59;
+        Collection<String> ids = machineIds.isEmpty() ? machines.keySet() : machineIds;
+        List<MachineHealth> result = new ArrayList<>(ids.size());
+        for (String machineId : ids) {
+            MachineWindow window = machines.get(machineId);
+            result.add(window != null
+                    ? window.health(machineId, fromMinute)
+                    : new MachineHealth(machineId, 0, 0, 0.0, MachineHealth.statusOf(0.0)));
+        }
+        result.sort((a, b) -> a.machineId().compareTo(b.machineId()));
+        return result;
+    }
+
+    private void publish(List<MachineHealth> transitions, List<MachineHealth> updates) {
+        transitionCounter.increment(transitions.size());
+        broadcaster.publish(TRANSITION, transitions);
+        broadcaster.publish(HEALTH, updates);
+    }
+
+    private MachineWindow add(MachineEvent e, int sign) {
+        long defects = e.getDefectCount() == -1 ? 0 : e.getDefectCount();
+        MachineWindow window = machines.computeIfAbsent(e.getMachineId(), id -> new MachineWindow());
+        window.minutes.add(Math.floorDiv(e.getEventTime().getEpochSecond(), 60), sign, sign * defects);
+        return window;
+    }
+
+    private static long nowMinute() {
+        return Math.floorDiv(Instant.now().getEpochSecond(), 60);
+    }
+
+    private static final class MachineWindow {
+        private final BucketRing minutes = new BucketRing(MINUTE_SLOTS);
+        private String publishedStatus = MachineHealth.statusOf(0.0);
+        private long publishedCount;
+        private long publishedDefects;
+
+        MachineHealth health(String machineId, long fromMinute) {
+            long[] totals = minutes.totalsFrom(fromMinute);
+            double rate = totals[1]; // defects over a one-hour window
+            return new MachineHealth(machineId, totals[0], totals[1], rate, MachineHealth.statusOf(rate));
+        }
+
+        MachineHealth published(MachineHealth health) {
+            publishedStatus = health.status();
+            publishedCount = health.eventsCount();
+            publishedDefects = health.defectsCount();
+            return health;
+        }
+    }
+}
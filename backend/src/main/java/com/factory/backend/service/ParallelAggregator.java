@@ -0,0 +1,142 @@
+package com.factory.backend.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import com.factory.backend.dto.LineStats;
+import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.repository.EventStore;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Cross-machine top-lines over [from, to), aggregated in shards on a dedicated
+ * fork-join pool of factory.stats.parallelism threads.
+ *
+ * From the database the range is cut into up to parallelism time shards, no
+ * shorter than factory.stats.parallel.min-shard-span. Each shard is one GROUP BY
+ * on its own connection (and database permit); the per-machine partial counts
+ * are summed and the worst limit machines picked with a bounded heap. From the
+ * columnar store the machine set is split instead: shards are disjoint, so each
+ * keeps only its own top limit before the merge.
+ *
+ * A range too short to split runs as the single LIMIT query it always was. The
+ * result is the same rows in the same order as that query.
+ */
+@Service
+public class ParallelAggregator {
+
+    private final EventStore eventStore;
+    private final ColumnarStore columnarStore;
+    private final DatabasePermits permits;
+    private final int parallelism;
+    private final Duration minShardSpan;
+    private final ForkJoinPool pool;
+
+    public ParallelAggregator(EventStore eventStore, ColumnarStore columnarStore, DatabasePermits permits,
+                              @Value("${factory.stats.parallelism:0}") int parallelism,
+                              @Value("${factory.stats.parallel.min-shard-span:1d}") Duration minShardSpan) {
+        this.eventStore = eventStore;
+        this.columnarStore = columnarStore;
+        this.permits = permits;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.minShardSpan = minShardSpan;
+        this.pool = new ForkJoinPool(this.parallelism);
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    public List<LineStats> topLines(Instant from, Instant to, int limit) {
+        return columnarStore.isEnabled() ? fromColumns(from, to, limit) : fromStore(from, to, limit);
+    }
+
+    private List<LineStats> fromStore(Instant from, Instant to, int limit) {
+        int shards = from.isBefore(to)
+                ? (int) Math.min(parallelism, Duration.between(from, to).toMillis() / Math.max(1, minShardSpan.toMillis()))
+                : 1;
+        if (shards <= 1) {
+            return toLineStats(permits.call(() -> eventStore.fetchWorstMachines(from, to, Limit.of(limit))));
+        }
+
+        Duration span = Duration.between(from, to).dividedBy(shards);
+        List<CompletableFuture<List<LineStatsProjection>>> parts = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            Instant shardFrom = from.plus(span.multipliedBy(i));
+            Instant shardTo = i == shards - 1 ? to : from.plus(span.multipliedBy(i + 1));
+            parts.add(submit(() -> permits.call(
+                    () -> eventStore.fetchWorstMachines(shardFrom, shardTo, Limit.unlimited()))));
+        }
+
+        Map<String, long[]> totals = new HashMap<>();
+        for (CompletableFuture<List<LineStatsProjection>> part : parts) {
+            for (LineStatsProjection line : join(part)) {
+                long[] t = totals.computeIfAbsent(line.getLineId(), id -> new long[2]);
+                t[0] += line.getEventCount();
+                t[1] += line.getTotalDefects();
+            }
+        }
+        List<LineStats> merged = new ArrayList<>(totals.size());
+        totals.forEach((machineId, t) -> merged.add(new LineStats(machineId, t[0], t[1])));
+        return LineStats.worst(merged, limit);
+    }
+
+    private List<LineStats> fromColumns(Instant from, Instant to, int limit) {
+        List<String> machineIds = columnarStore.machineIds();
+        int shards = Math.min(parallelism, machineIds.size());
+        if (shards <= 1) {
+            return columnarStore.fetchWorstMachines(machineIds, from, to, limit);
+        }
+
+        List<CompletableFuture<List<LineStats>>> parts = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            List<String> shard = machineIds.subList(i * machineIds.size() / shards, (i + 1) * machineIds.size() / shards);
+            parts.add(submit(() -> columnarStore.fetchWorstMachines(shard, from, to, limit)));
+        }
+        List<LineStats> merged = new ArrayList<>(shards * Math.min(limit, 64));
+        for (CompletableFuture<List<LineStats>> part : parts) {
+            merged.addAll(join(part));
+        }
+        return LineStats.worst(merged, limit);
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, pool);
+    }
+
+    // Rethrows what the shard threw (e.g. no database permit) instead of a CompletionException
+    private static <T> T join(CompletableFuture<T> part) {
+        try {
+            return part.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private static List<LineStats> toLineStats(List<LineStatsProjection> rows) {
+        List<LineStats> result = new ArrayList<>(rows.size());
+        for (LineStatsProjection row : rows) {
+            result.add(new LineStats(row.getLineId(), row.getEventCount(), row.getTotalDefects()));
+        }
+        return result;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+}
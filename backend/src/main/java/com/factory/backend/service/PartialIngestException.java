@@ -0,0 +1,24 @@
+package com.factory.backend.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A streamed upload failed after some of its chunks had committed: each chunk
+ * is its own transaction. committed() holds the counts of what did commit, one
+ * map per batch as in processBatches. Resending the whole body is safe, the
+ * committed events come back deduped.
+ */
+public class PartialIngestException extends RuntimeException {
+
+    private final transient List<Map<String, Object>> committed;
+
+    public PartialIngestException(List<Map<String, Object>> committed, Throwable cause) {
+        super("Batch partly committed " + committed + " before failing: " + cause.getMessage(), cause);
+        this.committed = committed;
+    }
+
+    public List<Map<String, Object>> committed() {
+        return committed;
+    }
+}
@@ -0,0 +1,243 @@
+package com.factory.backend.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.factory.backend.dto.MachineStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.event.BatchIngestedEvent;
+import com.factory.backend.event.EventChange;
+import com.factory.backend.event.PartitionsDroppedEvent;
+import com.factory.backend.repository.EventStore;
+
+/**
+ * Per-machine minute/hour buckets (event count + defect sum, -1 counted as 0).
+ *
+ * A /stats window is answered from whole hour buckets, then whole minute buckets
+ * for the partial hours at each end, and raw rows only for the partial minutes
+ * left over. Minute buckets are kept for minuteRetention only; older edges fall
+ * back to raw rows for the partial hour, which is still bounded per query. Hour
+ * buckets are kept for hourRetention, so the map does not grow with the history
+ * in jpa/jdbc mode, where no partition drop ever prunes it; the part of a window
+ * older than that is read raw as one range.
+ */
+@Service
+public class RollupService implements DerivedState {
+
+    private final EventStore eventStore;
+    private final boolean enabled;
+    private final Duration minuteRetention;
+    private final Duration hourRetention;
+
+    private final Map<String, MachineRollup> machines = new ConcurrentHashMap<>();
+
+    public RollupService(EventStore eventStore,
+                         @Value("${factory.stats.rollups.enabled:true}") boolean enabled,
+                         @Value("${factory.stats.rollups.minute-retention:48h}") Duration minuteRetention,
+                         @Value("${factory.stats.rollups.hour-retention:90d}") Duration hourRetention) {
+        this.eventStore = eventStore;
+        this.enabled = enabled;
+        this.minuteRetention = minuteRetention;
+        this.hourRetention = hourRetention;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Order(0)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBatchIngested(BatchIngestedEvent batch) {
+        if (!enabled) return;
+        Horizon horizon = horizon();
+        for (EventChange change : batch.changes()) {
+            if (change.previous() != null) {
+                add(change.previous(), -1, horizon);
+            }
+            add(change.current(), 1, horizon);
+        }
+    }
+
+    // Retention dropped whole days, so the buckets before the cut are exactly the dropped rows
+    @EventListener
+    public void onPartitionsDropped(PartitionsDroppedEvent dropped) {
+        if (!enabled) return;
+        long before = dropped.before().getEpochSecond();
+        for (MachineRollup rollup : machines.values()) {
+            rollup.lock.lock();
+            try {
+                rollup.hours.headMap(before).clear();
+                rollup.minutes.headMap(before).clear();
+            } finally {
+                rollup.lock.unlock();
+            }
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        DerivedStateRebuilder.rebuild(eventStore, List.of(this));
+    }
+
+    @Override
+    public Rebuild startRebuild() {
+        if (!enabled) return null;
+        machines.clear();
+        Horizon horizon = horizon();
+        return e -> add(e, 1, horizon);
+    }
+
+    public MachineStats getStats(String machineId, Instant start, Instant end) {
+        if (!start.isBefore(end)) {
+            return new MachineStats(0, 0);
+        }
+        MachineRollup rollup = machines.get(machineId);
+        if (rollup == null) {
+            return new MachineStats(0, 0); // never ingested
+        }
+
+        long[] acc = new long[2];
+        List<Instant[]> rawRanges = new ArrayList<>(2);
+        Instant hourEnd = end.truncatedTo(ChronoUnit.HOURS);
+
+        rollup.lock.lock();
+        try {
+            rollup.prune(horizon());
+            Instant from = start;
+            Instant hourFloor = Instant.ofEpochSecond(rollup.hourFloor);
+            if (from.isBefore(hourFloor)) {
+                // Older than the hour buckets: one raw range up to the first hour still kept
+                Instant rawEnd = end.isBefore(hourFloor) ? end : hourFloor;
+                rawRanges.add(new Instant[] {from, rawEnd});
+                from = rawEnd;
+            }
+            Instant hourStart = ceil(from, ChronoUnit.HOURS);
+            if (hourStart.isBefore(hourEnd)) {
+                rollup.sum(rollup.hours, hourStart, hourEnd, acc);
+                rollup.edge(from, hourStart, acc, rawRanges);
+                rollup.edge(hourEnd, end, acc, rawRanges);
+            } else {
+                rollup.edge(from, end, acc, rawRanges);
+            }
+        } finally {
+            rollup.lock.unlock();
+        }
+
+        // Partial minutes at the edges come straight from the table; one range per
+        // query so each is a seek on idx_machine_time (an OR of ranges scans the machine)
+        for (Instant[] range : rawRanges) {
+            MachineStats raw = eventStore.getStats(machineId, range[0], range[1]);
+            acc[0] += raw.eventsCount();
+            acc[1] += raw.defectsCount();
+        }
+        return new MachineStats(acc[0], acc[1]);
+    }
+
+    private void add(MachineEvent e, int sign, Horizon horizon) {
+        long defects = e.getDefectCount() == -1 ? 0 : e.getDefectCount();
+        MachineRollup rollup = machines.computeIfAbsent(e.getMachineId(), id -> new MachineRollup(horizon));
+        rollup.lock.lock();
+        try {
+            rollup.prune(horizon);
+            rollup.add(e.getEventTime().getEpochSecond(), sign, sign * defects);
+        } finally {
+            rollup.lock.unlock();
+        }
+    }
+
+    private Horizon horizon() {
+        Instant now = Instant.now();
+        return new Horizon(now.minus(minuteRetention).truncatedTo(ChronoUnit.MINUTES).getEpochSecond(),
+                now.minus(hourRetention).truncatedTo(ChronoUnit.HOURS).getEpochSecond());
+    }
+
+    // Oldest minute / hour bucket kept, in epoch seconds
+    private record Horizon(long minute, long hour) {}
+
+    private static Instant ceil(Instant t, ChronoUnit unit) {
+        Instant floor = t.truncatedTo(unit);
+        return floor.equals(t) ? t : floor.plus(1, unit);
+    }
+
+    // Guarded by its lock (a ReentrantLock, so a contended virtual thread parks instead of pinning)
+    private static final class MachineRollup {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final TreeMap<Long, long[]> hours = new TreeMap<>();
+        private final TreeMap<Long, long[]> minutes = new TreeMap<>();
+        // Minute / hour buckets are complete for keys >= minuteFloor / hourFloor
+        private long minuteFloor;
+        private long hourFloor;
+
+        MachineRollup(Horizon horizon) {
+            this.minuteFloor = horizon.minute();
+            this.hourFloor = horizon.hour();
+        }
+
+        void add(long epochSecond, long count, long defects) {
+            long hour = Math.floorDiv(epochSecond, 3600) * 3600;
+            if (hour >= hourFloor) {
+                bump(hours, hour, count, defects);
+            }
+            long minute = Math.floorDiv(epochSecond, 60) * 60;
+            if (minute >= minuteFloor) {
+                bump(minutes, minute, count, defects);
+            }
+        }
+
+        void prune(Horizon horizon) {
+            if (horizon.minute() > minuteFloor) {
+                minutes.headMap(horizon.minute()).clear();
+                minuteFloor = horizon.minute();
+            }
+            if (horizon.hour() > hourFloor) {
+                hours.headMap(horizon.hour()).clear();
+                hourFloor = horizon.hour();
+            }
+        }
+
+        void sum(TreeMap<Long, long[]> buckets, Instant from, Instant to, long[] acc) {
+            for (long[] b : buckets.subMap(from.getEpochSecond(), to.getEpochSecond()).values()) {
+                acc[0] += b[0];
+                acc[1] += b[1];
+            }
+        }
+
+        // [from, to) lies within one hour: whole minutes from buckets, the rest raw
+        void edge(Instant from, Instant to, long[] acc, List<Instant[]> rawRanges) {
+            if (!from.isBefore(to)) return;
+            Instant minuteStart = ceil(from, ChronoUnit.MINUTES);
+            Instant minuteEnd = to.truncatedTo(ChronoUnit.MINUTES);
+            if (minuteStart.isBefore(minuteEnd) && minuteStart.getEpochSecond() >= minuteFloor) {
+                sum(minutes, minuteStart, minuteEnd, acc);
+                if (from.isBefore(minuteStart)) rawRanges.add(new Instant[] {from, minuteStart});
+                if (minuteEnd.isBefore(to)) rawRanges.add(new Instant[] {minuteEnd, to});
+            } else {
+                rawRanges.add(new Instant[] {from, to});
+            }
+        }
+
+        private static void bump(TreeMap<Long, long[]> buckets, long key, long count, long defects) {
+            long[] b = buckets.computeIfAbsent(key, k -> new long[2]);
+            b[0] += count;
+            b[1] += defects;
+            if (b[0] == 0) {
+                buckets.remove(key);
+            }
+        }
+    }
+}
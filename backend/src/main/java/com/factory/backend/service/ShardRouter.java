@@ -0,0 +1,271 @@
+package com.factory.backend.service;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.dto.LineStats;
+import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.dto.MachineStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.EventStore;
+
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Sharded mode: every node in factory.cluster.nodes owns an equal range of the
+ * (mixed) machineId hash space and stores only its own machines.
+ *
+ * Any node accepts /events/batch: the rows are split by owner, the other
+ * shards' parts are forwarded in the binary batch format to their
+ * /internal/shard endpoint (in parallel with the local commit) and the counts
+ * are summed. /stats asks the machine's owner. /stats/top-defect-lines asks
+ * every shard for its own top limit lines and merges them: a machine lives on
+ * one shard, so the global top limit is among the shards' top limits.
+ *
+ * Forwarded work is not atomic across shards. When a shard fails the request
+ * fails (502) after the others may have committed; resending the batch is safe,
+ * because copies already stored are deduped.
+ *
+ * Routing is by machineId, so an update that moved an event to a machine of
+ * another shard would leave a second copy on the old one. Before committing,
+ * every shard is therefore asked which of the batch's ids it stores among the
+ * rows it does not own (a dedupe-filter check, then a lookup of the candidates);
+ * such rows change their machine across shards and are rejected. This costs one
+ * parallel round trip per batch before the commit.
+ */
+@Service
+@ConditionalOnProperty(name = "factory.cluster.enabled", havingValue = "true")
+public class ShardRouter {
+
+    public static final String SHARD_PATH = "/internal/shard";
+
+    private static final TypeReference<Map<String, Object>> COUNTS = new TypeReference<>() {};
+    private static final TypeReference<List<LineStats>> LINES = new TypeReference<>() {};
+    private static final TypeReference<List<String>> IDS = new TypeReference<>() {};
+
+    private final IngestionCoordinator coordinator;
+    private final StatsService statsService;
+    private final EventStore eventStore;
+    private final EventIdIndex eventIdIndex;
+    private final BinaryBatchCodec codec;
+    private final JsonMapper jsonMapper;
+    private final List<String> nodes;
+    private final int self;
+    private final Duration timeout;
+    private final HttpClient http;
+
+    public ShardRouter(IngestionCoordinator coordinator, StatsService statsService, EventStore eventStore,
+                       EventIdIndex eventIdIndex, BinaryBatchCodec codec, JsonMapper jsonMapper,
+                       @Value("${factory.cluster.nodes}") List<String> nodes,
+                       @Value("${factory.cluster.node-index:0}") int nodeIndex,
+                       @Value("${factory.cluster.timeout:10s}") Duration timeout) {
+        if (nodeIndex < 0 || nodeIndex >= nodes.size()) {
+            throw new IllegalArgumentException("factory.cluster.node-index " + nodeIndex
+                    + " is not one of the " + nodes.size() + " nodes");
+        }
+        this.coordinator = coordinator;
+        this.statsService = statsService;
+        this.eventStore = eventStore;
+        this.eventIdIndex = eventIdIndex;
+        this.codec = codec;
+        this.jsonMapper = jsonMapper;
+        this.nodes = nodes.stream().map(node -> node.endsWith("/") ? node.substring(0, node.length() - 1) : node).toList();
+        this.self = nodeIndex;
+        this.timeout = timeout;
+        this.http = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    /** Index of the node that stores machineId; rows without one stay on the receiving node. */
+    public int owner(String machineId) {
+        return machineId == null ? self : owner(machineId, nodes.size());
+    }
+
+    // Equal ranges of the 32-bit hash; String.hashCode is mixed first because similar ids hash close together
+    static int owner(String machineId, int nodeCount) {
+        int h = machineId.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (int) (((h & 0xFFFFFFFFL) * nodeCount) >>> 32);
+    }
+
+    public int nodeCount() {
+        return nodes.size();
+    }
+
+    /** Same summary as a single-node /events/batch, summed over the shards. */
+    public Map<String, Object> ingest(List<EventRow> rows) {
+        Set<String> moved = movedAcrossShards(rows);
+        List<List<EventRow>> byNode = new ArrayList<>(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) byNode.add(new ArrayList<>());
+        for (EventRow row : rows) {
+            if (!moved.contains(row.eventId())) byNode.get(owner(row.machineId())).add(row);
+        }
+
+        Map<Integer, CompletableFuture<Map<String, Object>>> forwarded = new LinkedHashMap<>();
+        for (int node = 0; node < nodes.size(); node++) {
+            if (node == self || byNode.get(node).isEmpty()) continue;
+            HttpRequest request = request(node, "/events/batch")
+                    .header("Content-Type", BinaryBatchCodec.CONTENT_TYPE)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(codec.encode(byNode.get(node), false)))
+                    .build();
+            forwarded.put(node, send(node, request, COUNTS));
+        }
+
+        Map<String, Object> totals = new LinkedHashMap<>(Map.of("accepted", 0, "deduped", 0, "updated", 0, "rejected", 0));
+        if (!moved.isEmpty()) {
+            int rejected = 0;
+            for (EventRow row : rows) {
+                if (moved.contains(row.eventId())) rejected++;
+            }
+            totals.put("rejected", rejected);
+        }
+        if (!byNode.get(self).isEmpty()) {
+            addCounts(totals, coordinator.processRows(byNode.get(self)));
+        }
+        forwarded.forEach((node, response) -> addCounts(totals, join(node, response)));
+        return totals;
+    }
+
+    /** Which of the given ids this shard stores. */
+    public List<String> storedHere(Collection<String> eventIds) {
+        return eventStore.findExisting(eventIdIndex.maybeExisting(eventIds)).stream()
+                .map(MachineEvent::getEventId)
+                .toList();
+    }
+
+    // Ids stored on a shard other than the one their row now routes to, or sent for two shards in this batch
+    private Set<String> movedAcrossShards(List<EventRow> rows) {
+        if (nodes.size() == 1) return Set.of();
+        Set<String> moved = new HashSet<>();
+        Map<String, Integer> owners = new HashMap<>();
+        List<Set<String>> notOwned = new ArrayList<>(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) notOwned.add(new HashSet<>());
+        for (EventRow row : rows) {
+            if (row.eventId() == null || row.machineId() == null) continue;
+            int owner = owner(row.machineId());
+            if (owners.merge(row.eventId(), owner, (first, next) -> first) != owner) {
+                moved.add(row.eventId());
+            }
+            for (int node = 0; node < nodes.size(); node++) {
+                if (node != owner) notOwned.get(node).add(row.eventId());
+            }
+        }
+
+        Map<Integer, CompletableFuture<List<String>>> probes = new LinkedHashMap<>();
+        for (int node = 0; node < nodes.size(); node++) {
+            if (node == self || notOwned.get(node).isEmpty()) continue;
+            HttpRequest request = request(node, "/events/stored")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(jsonMapper.writeValueAsBytes(notOwned.get(node))))
+                    .build();
+            probes.put(node, send(node, request, IDS));
+        }
+        moved.addAll(storedHere(notOwned.get(self)));
+        probes.forEach((node, probe) -> moved.addAll(join(node, probe)));
+        return moved;
+    }
+
+    public MachineStats getStats(String machineId, Instant start, Instant end) {
+        int node = owner(machineId);
+        if (node == self) {
+            return statsService.getStats(machineId, start, end);
+        }
+        HttpRequest request = request(node, "/stats?machineId=" + encode(machineId)
+                + "&start=" + encode(start) + "&end=" + encode(end)).GET().build();
+        return join(node, send(node, request, new TypeReference<MachineStats>() {}));
+    }
+
+    /** Top lines over the whole cluster: a rolling window when window is set, otherwise [from, to). */
+    public List<LineStats> topDefectLines(TopDefectEngine.Window window, Instant from, Instant to, int limit) {
+        String query = "/top-defect-lines?limit=" + limit + (window != null
+                ? "&window=" + window.label()
+                : "&from=" + encode(from) + "&to=" + encode(to));
+        Map<Integer, CompletableFuture<List<LineStats>>> partials = new LinkedHashMap<>();
+        for (int node = 0; node < nodes.size(); node++) {
+            if (node != self) partials.put(node, send(node, request(node, query).GET().build(), LINES));
+        }
+
+        // Partial aggregates merged per line; a no-op unless a machine's rows sit on several shards
+        Map<String, long[]> merged = new HashMap<>();
+        List<List<LineStats>> gathered = new ArrayList<>(nodes.size());
+        gathered.add(localTopDefectLines(window, from, to, limit));
+        partials.forEach((node, partial) -> gathered.add(join(node, partial)));
+        for (List<LineStats> lines : gathered) {
+            for (LineStats line : lines) {
+                long[] totals = merged.computeIfAbsent(line.lineId(), id -> new long[2]);
+                totals[0] += line.eventCount();
+                totals[1] += line.totalDefects();
+            }
+        }
+        List<LineStats> lines = new ArrayList<>(merged.size());
+        merged.forEach((lineId, totals) -> lines.add(new LineStats(lineId, totals[0], totals[1])));
+        return LineStats.worst(lines, limit);
+    }
+
+    /** This shard's part of topDefectLines. */
+    public List<LineStats> localTopDefectLines(TopDefectEngine.Window window, Instant from, Instant to, int limit) {
+        List<? extends LineStatsProjection> lines = window != null
+                ? statsService.topDefectLines(window, limit)
+                : statsService.topDefectLines(from, to, limit);
+        return lines.stream()
+                .map(line -> new LineStats(line.getLineId(), line.getEventCount(), line.getTotalDefects()))
+                .toList();
+    }
+
+    private HttpRequest.Builder request(int node, String path) {
+        return HttpRequest.newBuilder(URI.create(nodes.get(node) + SHARD_PATH + path)).timeout(timeout);
+    }
+
+    private <T> CompletableFuture<T> send(int node, HttpRequest request, TypeReference<T> type) {
+        return http.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new ShardUnavailableException(nodes.get(node) + " answered " + response.statusCode()
+                        + ": " + new String(response.body(), StandardCharsets.UTF_8));
+            }
+            return jsonMapper.readValue(response.body(), type);
+        });
+    }
+
+    private <T> T join(int node, CompletableFuture<T> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ShardUnavailableException unavailable) throw unavailable;
+            throw new ShardUnavailableException(nodes.get(node) + " failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    private static String encode(Object value) {
+        return URLEncoder.encode(String.valueOf(value), StandardCharsets.UTF_8);
+    }
+
+    private static void addCounts(Map<String, Object> totals, Map<String, Object> counts) {
+        counts.forEach((key, value) -> totals.merge(key, value,
+                (a, b) -> ((Number) a).intValue() + ((Number) b).intValue()));
+    }
+}
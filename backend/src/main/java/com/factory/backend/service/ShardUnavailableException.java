@@ -0,0 +1,13 @@
+package com.factory.backend.service;
+
+/** A shard did not answer a forwarded request, or answered with an error. */
+public class ShardUnavailableException extends RuntimeException {
+
+    public ShardUnavailableException(String message) {
+        super(message);
+    }
+
+    public ShardUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
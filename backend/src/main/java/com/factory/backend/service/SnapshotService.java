@@ -0,0 +1,255 @@
+package com.factory.backend.service;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.event.BatchIngestedEvent;
+import com.factory.backend.event.PartitionsDroppedEvent;
+import com.factory.backend.repository.EventStore;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Warm restarts from an EventSnapshot of machine_events.
+ *
+ * With factory.snapshot.enabled, every interval (when something was ingested
+ * since the last one) and at shutdown the stored events are streamed into a new
+ * snapshot file. At startup, after the singletons exist and before the web
+ * server takes requests, an empty event store is bulk-loaded from the snapshot
+ * in parallel chunks through EventStore.bulkInsert (multi-row INSERTs, no
+ * existence checks). DerivedStateRebuilder then rebuilds every derived store
+ * from the restored rows in one scan, before the web server starts, as after
+ * any start, and the journal replays its tail on ApplicationStartedEvent.
+ *
+ * A snapshot is taken while ingest goes on, so it may hold some batches after
+ * its journal sequence; replaying those is harmless (deduped). So that the tail
+ * is still there, JournalIngestService does not checkpoint past the journal
+ * sequence of the last snapshot. Without the journal, events ingested after the
+ * last snapshot are lost on restart, as before.
+ *
+ * factory.startup.time-to-ready is recorded either way: JVM start until the
+ * application accepts traffic, i.e. after the rebuild and the journal replay.
+ */
+@Service
+public class SnapshotService implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotService.class);
+
+    private final EventStore eventStore;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate readOnly;
+    private final ObjectProvider<JournalIngestService> journalService;
+    private final boolean enabled;
+    private final Path file;
+    private final int restoreBatchSize;
+    private final int restoreThreads;
+    private final boolean onShutdown;
+
+    private final Timer writeTimer;
+    private final Timer restoreTimer;
+
+    // Not synchronized: a snapshot does file and database I/O, which would pin a virtual thread's carrier
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private volatile boolean dirty = true;
+    private volatile long restoredEvents;
+    private volatile double timeToReadyMillis = Double.NaN;
+
+    public SnapshotService(EventStore eventStore, PlatformTransactionManager transactionManager,
+                           ObjectProvider<JournalIngestService> journalService, MeterRegistry meterRegistry,
+                           @Value("${factory.snapshot.enabled:false}") boolean enabled,
+                           @Value("${factory.snapshot.file:data/snapshot/events.snap}") Path file,
+                           @Value("${factory.snapshot.restore-batch-size:10000}") int restoreBatchSize,
+                           @Value("${factory.snapshot.restore-threads:0}") int restoreThreads,
+                           @Value("${factory.snapshot.on-shutdown:true}") boolean onShutdown) {
+        this.eventStore = eventStore;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.journalService = journalService;
+        this.enabled = enabled;
+        this.file = file;
+        this.restoreBatchSize = Math.max(1, restoreBatchSize);
+        this.restoreThreads = restoreThreads > 0 ? restoreThreads : Runtime.getRuntime().availableProcessors();
+        this.onShutdown = onShutdown;
+
+        this.writeTimer = Timer.builder("factory.snapshot.write")
+                .description("Time to write a snapshot of the event store")
+                .register(meterRegistry);
+        this.restoreTimer = Timer.builder("factory.snapshot.restore")
+                .description("Time to load the event store from the snapshot at startup")
+                .register(meterRegistry);
+        TimeGauge.builder("factory.startup.time-to-ready", this, TimeUnit.MILLISECONDS, s -> s.timeToReadyMillis)
+                .description("JVM start until the application accepted traffic")
+                .register(meterRegistry);
+    }
+
+    // Before any lifecycle bean starts, so no request can insert ahead of the restore
+    @Override
+    public void afterSingletonsInstantiated() {
+        JournalIngestService journal = journalService.getIfAvailable();
+        if (!restore() && enabled && journal != null) {
+            // No snapshot covers anything yet: keep the journal from dropping what it has
+            journal.snapshotTaken(0);
+        }
+    }
+
+    /** Loads the snapshot into an empty event store; false when there was nothing to restore. */
+    public boolean restore() {
+        if (!enabled || !Files.exists(file)) return false;
+        boolean empty = readOnly.execute(status -> {
+            try (Stream<String> ids = eventStore.streamEventIds()) {
+                return ids.findAny().isEmpty();
+            }
+        });
+        if (!empty) {
+            log.info("Event store already holds events; not restoring {}", file);
+            return false;
+        }
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(restoreThreads);
+        Semaphore inFlight = new Semaphore(restoreThreads * 2);
+        List<Future<?>> chunks = new ArrayList<>();
+        EventSnapshot.Header header;
+        try {
+            header = EventSnapshot.read(file, restoreBatchSize, batch -> {
+                inFlight.acquireUninterruptibly();
+                chunks.add(pool.submit(() -> {
+                    try {
+                        transaction.executeWithoutResult(status -> eventStore.bulkInsert(batch));
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            });
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Restoring " + file + " failed; move it away to start cold", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted restoring " + file, e);
+        } finally {
+            pool.shutdownNow();
+        }
+        if (header == null) {
+            log.warn("{} is not a complete snapshot; starting cold", file);
+            return false;
+        }
+
+        long nanos = System.nanoTime() - start;
+        restoreTimer.record(nanos, TimeUnit.NANOSECONDS);
+        restoredEvents = header.eventCount();
+        dirty = false;
+        JournalIngestService journal = journalService.getIfAvailable();
+        if (journal != null) {
+            journal.snapshotTaken(header.journalSequence());
+        }
+        log.info("Restored {} events from {} in {} ms (journal sequence {})", header.eventCount(), file,
+                nanos / 1_000_000, header.journalSequence());
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${factory.snapshot.interval:5m}", initialDelayString = "${factory.snapshot.interval:5m}")
+    public void scheduledSnapshot() {
+        if (enabled && dirty) {
+            snapshot();
+        }
+    }
+
+    /** Writes a snapshot of every stored event now and returns its header. */
+    public EventSnapshot.Header snapshot() {
+        snapshotLock.lock();
+        try {
+            return writeSnapshot();
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private EventSnapshot.Header writeSnapshot() {
+        long start = System.nanoTime();
+        dirty = false;
+        // Read before the rows: every batch up to this sequence is committed and in the stream
+        JournalIngestService journal = journalService.getIfAvailable();
+        long journalSequence = journal != null ? journal.appliedSequence() : 0;
+        EventSnapshot.Header header;
+        try (EventSnapshot.Writer writer = new EventSnapshot.Writer(file, journalSequence)) {
+            header = readOnly.execute(status -> {
+                try (Stream<MachineEvent> events = eventStore.streamEvents(null)) {
+                    events.forEach(writer::append);
+                }
+                return writer.commit();
+            });
+        } catch (RuntimeException e) {
+            dirty = true;
+            throw e;
+        }
+        if (journal != null) {
+            journal.snapshotTaken(journalSequence);
+        }
+        long nanos = System.nanoTime() - start;
+        writeTimer.record(nanos, TimeUnit.NANOSECONDS);
+        log.info("Snapshot of {} events written to {} in {} ms ({} bytes)", header.eventCount(), file,
+                nanos / 1_000_000, header.fileLength());
+        return header;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBatchIngested(BatchIngestedEvent batch) {
+        dirty = true;
+    }
+
+    @EventListener
+    public void onPartitionsDropped(PartitionsDroppedEvent dropped) {
+        dirty = true;
+    }
+
+    // Published right after the ApplicationReadyEvent listeners return
+    @EventListener
+    public void onReadiness(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() == ReadinessState.ACCEPTING_TRAFFIC && Double.isNaN(timeToReadyMillis)) {
+            timeToReadyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            log.info("Ready {} ms after JVM start ({} events restored from snapshot)", (long) timeToReadyMillis,
+                    restoredEvents);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (enabled && onShutdown && dirty) {
+            snapshot();
+        }
+    }
+}
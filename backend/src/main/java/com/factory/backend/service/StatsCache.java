@@ -0,0 +1,163 @@
+package com.factory.backend.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.factory.backend.dto.MachineStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.event.BatchIngestedEvent;
+import com.factory.backend.event.EventChange;
+import com.factory.backend.event.PartitionsDroppedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Read-through cache for /stats results, bounded by size (W-TinyLFU) and TTL.
+ *
+ * After each ingest commit only the entries of the touched machines whose
+ * window contains one of the changed eventTimes (old and new version of an
+ * update) are evicted. They are found through a per-machine index of the cached
+ * keys, so a commit costs the touched machines' entries, not the whole cache.
+ * The index changes only inside the cache's atomic per-key operations (store,
+ * eviction, invalidation), so it never misses a cached key. A per-machine
+ * generation closes the race with a reader that computed its value before the
+ * commit: the invalidation bumps the generation before walking the index, and
+ * a value is only stored if, after its key is indexed, the generation it was
+ * computed under is still current. Invalidation runs in the committing
+ * thread, after the rollups were updated, so once processBatch returns no
+ * reader can see the old counts.
+ */
+@Service
+public class StatsCache {
+
+    private record Key(String machineId, Instant start, Instant end) {}
+
+    private final boolean enabled;
+    private final Cache<Key, MachineStats> cache;
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final Map<String, Set<Key>> keysByMachine = new ConcurrentHashMap<>();
+    private final Counter invalidations;
+
+    public StatsCache(MeterRegistry meterRegistry,
+                      @Value("${factory.stats.cache.enabled:true}") boolean enabled,
+                      @Value("${factory.stats.cache.max-size:10000}") long maxSize,
+                      @Value("${factory.stats.cache.ttl:60s}") Duration ttl) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .evictionListener((Key key, MachineStats value, RemovalCause cause) -> keys(key.machineId()).remove(key))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "stats");
+        this.invalidations = Counter.builder("factory.stats.cache.invalidations")
+                .description("Cached /stats windows evicted because an ingest touched them")
+                .register(meterRegistry);
+    }
+
+    public MachineStats get(String machineId, Instant start, Instant end, Supplier<MachineStats> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Key key = new Key(machineId, start, end);
+        MachineStats cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        AtomicLong generation = generations.computeIfAbsent(machineId, id -> new AtomicLong());
+        long seen = generation.get();
+        MachineStats loaded = loader.get();
+        // Atomic with invalidate(key). The key is indexed before the generation is
+        // re-read: either we see the bump, or the invalidation that bumped it
+        // finds the key afterwards and evicts our entry
+        cache.asMap().compute(key, (k, current) -> {
+            Set<Key> keys = keys(machineId);
+            keys.add(k);
+            if (generation.get() != seen) {
+                if (current == null) keys.remove(k);
+                return current;
+            }
+            return loaded;
+        });
+        return loaded;
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBatchIngested(BatchIngestedEvent batch) {
+        if (!enabled) return;
+        Map<String, List<Instant>> touched = new HashMap<>();
+        for (EventChange change : batch.changes()) {
+            if (change.previous() != null) {
+                record(touched, change.previous());
+            }
+            record(touched, change.current());
+        }
+        touched.forEach((machineId, times) -> {
+            generations.computeIfAbsent(machineId, id -> new AtomicLong()).incrementAndGet();
+            Collections.sort(times);
+            Set<Key> keys = keys(machineId);
+            for (Key key : keys) {
+                if (containsAny(times, key.start(), key.end())) {
+                    cache.asMap().compute(key, (k, current) -> {
+                        keys.remove(k);
+                        if (current != null) invalidations.increment();
+                        return null;
+                    });
+                }
+            }
+        });
+    }
+
+    @EventListener
+    public void onPartitionsDropped(PartitionsDroppedEvent dropped) {
+        generations.values().forEach(AtomicLong::incrementAndGet);
+        for (Key key : cache.asMap().keySet()) {
+            cache.asMap().compute(key, (k, current) -> {
+                keys(k.machineId()).remove(k);
+                return null;
+            });
+        }
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private Set<Key> keys(String machineId) {
+        return keysByMachine.computeIfAbsent(machineId, id -> ConcurrentHashMap.newKeySet());
+    }
+
+    private static void record(Map<String, List<Instant>> touched, MachineEvent e) {
+        touched.computeIfAbsent(e.getMachineId(), id -> new ArrayList<>()).add(e.getEventTime());
+    }
+
+    // Is any of the sorted times in [start, end)?
+    private static boolean containsAny(List<Instant> sorted, Instant start, Instant end) {
+        int i = Collections.binarySearch(sorted, start);
+        int first = i >= 0 ? i : -i - 1;
+        return first < sorted.size() && sorted.get(first).isBefore(end);
+    }
+}
@@ -0,0 +1,108 @@
+package com.factory.backend.service;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.factory.backend.dto.DurationStats;
+import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.dto.MachineStats;
+import com.factory.backend.repository.EventStore;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Read side for the stats endpoints. Picks the cheapest source that gives the
+ * same answer as the raw query.
+ */
+@Service
+public class StatsService {
+
+    private final EventStore eventStore;
+    private final RollupService rollupService;
+    private final TopDefectEngine topDefectEngine;
+    private final ColumnarStore columnarStore;
+    private final ParallelAggregator aggregator;
+    private final DurationAnalytics durationAnalytics;
+    private final StatsCache statsCache;
+    private final IngestChangelog changelog;
+    private final IngestMetrics metrics;
+    private final DatabasePermits permits;
+    private final Cache<TopLinesKey, MaterializedLines> materializedTopLines;
+
+    private record TopLinesKey(Instant from, Instant to, int limit) {}
+
+    private record MaterializedLines(long sequence, List<? extends LineStatsProjection> lines) {}
+
+    public StatsService(EventStore eventStore, RollupService rollupService,
+                        TopDefectEngine topDefectEngine, ColumnarStore columnarStore, ParallelAggregator aggregator,
+                        DurationAnalytics durationAnalytics, StatsCache statsCache, IngestChangelog changelog,
+                        IngestMetrics metrics, DatabasePermits permits,
+                        @Value("${factory.stats.top-lines.materialized-max-size:1000}") long materializedMaxSize) {
+        this.eventStore = eventStore;
+        this.rollupService = rollupService;
+        this.topDefectEngine = topDefectEngine;
+        this.columnarStore = columnarStore;
+        this.aggregator = aggregator;
+        this.durationAnalytics = durationAnalytics;
+        this.statsCache = statsCache;
+        this.changelog = changelog;
+        this.metrics = metrics;
+        this.permits = permits;
+        this.materializedTopLines = Caffeine.newBuilder().maximumSize(materializedMaxSize).build();
+    }
+
+    public MachineStats getStats(String machineId, Instant start, Instant end) {
+        return metrics.timeQuery("stats",
+                () -> statsCache.get(machineId, start, end, () -> computeStats(machineId, start, end)));
+    }
+
+    // Cache misses only; hits and the columnar store never wait for a database permit
+    private MachineStats computeStats(String machineId, Instant start, Instant end) {
+        if (columnarStore.isEnabled()) {
+            return columnarStore.getStats(machineId, start, end);
+        }
+        return permits.call(() -> rollupService.isEnabled()
+                ? rollupService.getStats(machineId, start, end)
+                : eventStore.getStats(machineId, start, end));
+    }
+
+    // Rolling window, answered from the in-memory leaderboard
+    public List<? extends LineStatsProjection> topDefectLines(TopDefectEngine.Window window, int limit) {
+        if (!topDefectEngine.isEnabled()) {
+            throw new IllegalStateException("factory.stats.top-k.enabled is false");
+        }
+        return metrics.timeQuery("top-lines-window", () -> topDefectEngine.top(window, limit));
+    }
+
+    // Arbitrary range: sharded over the columnar store or the database, see ParallelAggregator.
+    // Results are kept with the changelog sequence they were computed at and reused until a
+    // later batch dirties [from, to), so a late upload only recomputes the ranges it touched
+    public List<? extends LineStatsProjection> topDefectLines(Instant from, Instant to, int limit) {
+        return metrics.timeQuery("top-lines", () -> {
+            if (!changelog.isEnabled()) {
+                return aggregator.topLines(from, to, limit);
+            }
+            TopLinesKey key = new TopLinesKey(from, to, limit);
+            MaterializedLines materialized = materializedTopLines.getIfPresent(key);
+            if (materialized != null && !changelog.changedSince(materialized.sequence(), from, to)) {
+                return materialized.lines();
+            }
+            long sequence = changelog.sequence();
+            List<? extends LineStatsProjection> lines = aggregator.topLines(from, to, limit);
+            materializedTopLines.put(key, new MaterializedLines(sequence, lines));
+            return lines;
+        });
+    }
+
+    // Sketches for whole hours plus raw partial hours; without sketches, exact over raw durations
+    public DurationStats getDurations(Collection<String> machineIds, Instant start, Instant end) {
+        return metrics.timeQuery("durations", () -> permits.call(() -> durationAnalytics.isEnabled()
+                ? durationAnalytics.getDurations(machineIds, start, end)
+                : DurationStats.exact(eventStore.findDurations(machineIds, start, end).stream()
+                        .mapToLong(Long::longValue).toArray())));
+    }
+}
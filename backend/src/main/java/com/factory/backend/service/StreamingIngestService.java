@@ -0,0 +1,72 @@
+package com.factory.backend.service;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.factory.backend.dto.EventRow;
+
+/**
+ * Ingests an arbitrarily large body without binding it all at once.
+ * Accepts NDJSON (one event per line) or a single JSON array; events are read
+ * one at a time and handed to processBatch in chunks of chunkSize, each chunk
+ * committed before the next is read, so heap use depends on chunkSize and not on body size.
+ * A failure after some chunks committed, a malformed line included, is a
+ * PartialIngestException with their counts and the failure as its cause.
+ */
+@Service
+public class StreamingIngestService {
+
+    private final IngestionCoordinator coordinator;
+    private final EventRowCodec codec;
+    private final int chunkSize;
+
+    public StreamingIngestService(IngestionCoordinator coordinator, EventRowCodec codec,
+                                  @Value("${factory.ingest.stream.chunk-size:1000}") int chunkSize) {
+        this.coordinator = coordinator;
+        this.codec = codec;
+        this.chunkSize = chunkSize;
+    }
+
+    public Map<String, Object> ingest(InputStream body) {
+        Map<String, Object> totals = new LinkedHashMap<>(Map.of("accepted", 0, "deduped", 0, "updated", 0, "rejected", 0));
+        List<EventRow> chunk = new ArrayList<>(chunkSize);
+
+        int committedChunks = 0;
+        // The reader walks root-level objects, and unwraps a root-level array
+        try {
+            try (EventRowCodec.Reader events = codec.open(body)) {
+                for (EventRow row = events.next(); row != null; row = events.next()) {
+                    chunk.add(row);
+                    if (chunk.size() == chunkSize) {
+                        addCounts(totals, coordinator.processRows(chunk));
+                        committedChunks++;
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                addCounts(totals, coordinator.processRows(chunk));
+            }
+        } catch (PartialIngestException e) {
+            addCounts(totals, e.committed().get(0));
+            throw new PartialIngestException(List.of(totals), e.getCause());
+        } catch (RuntimeException e) {
+            // Also a malformed tail: the chunks before it are stored, and the caller must know
+            if (committedChunks > 0) {
+                throw new PartialIngestException(List.of(totals), e);
+            }
+            throw e;
+        }
+        return totals;
+    }
+
+    private void addCounts(Map<String, Object> totals, Map<String, Object> counts) {
+        counts.forEach((key, value) -> totals.merge(key, value, (a, b) -> (int) a + (int) b));
+    }
+}
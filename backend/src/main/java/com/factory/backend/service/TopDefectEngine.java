@@ -0,0 +1,299 @@
+package com.factory.backend.service;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.factory.backend.dto.LineStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.event.BatchIngestedEvent;
+import com.factory.backend.event.EventChange;
+import com.factory.backend.event.PartitionsDroppedEvent;
+import com.factory.backend.repository.EventStore;
+
+/**
+ * Live top-K leaderboard of machines by defects for the rolling windows.
+ *
+ * Each machine keeps ring buffers of minute buckets (last hour) and hour buckets
+ * (last 7 days). Every window keeps a sorted set of per-machine totals, updated
+ * when an ingest touches the machine. As the windows slide, only the machines
+ * with counts in the buckets that just left a window are re-ranked for it: an
+ * index of bucket -> machines says which. A scheduled tick does that right after
+ * each minute boundary, so a query normally just reads the first K entries.
+ *
+ * Windows are whole buckets, not sliding instants, and are named for that:
+ * MINUTE_BUCKETS_60 ("1h") is the current minute plus the 59 before it,
+ * HOUR_BUCKETS_24 ("24h") and HOUR_BUCKETS_168 ("7d") the current hour plus the
+ * 23/167 before it, so "24h" asked at 10:59 covers almost 25 hours. Accepted
+ * future events (up to 15 minutes ahead) are included. Updates subtract the
+ * previous version, so the counts stay exact when a defectCount changes.
+ */
+@Service
+public class TopDefectEngine implements DerivedState {
+
+    public enum Window {
+        MINUTE_BUCKETS_60("1h"), HOUR_BUCKETS_24("24h"), HOUR_BUCKETS_168("7d");
+
+        private final String label;
+
+        Window(String label) {
+            this.label = label;
+        }
+
+        public static Window fromLabel(String label) {
+            for (Window w : values()) {
+                if (w.label.equals(label)) return w;
+            }
+            throw new IllegalArgumentException("Unknown window '" + label + "', expected 1h, 24h or 7d");
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private static final int MINUTE_SLOTS = 60 + 16;      // 1h back, 15 min ahead
+    private static final int HOUR_SLOTS = 168 + 2;        // 7d back, next hour ahead
+
+    private final EventStore eventStore;
+    private final boolean enabled;
+    private final Clock clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, MachineCounters> machines = new HashMap<>();
+    private final Map<Window, TreeSet<LineStats>> rankings = new HashMap<>();
+    private final Map<Window, Map<String, LineStats>> current = new HashMap<>();
+    // Machines with counts per minute / hour bucket that is still inside some window
+    private final NavigableMap<Long, Set<String>> machinesByMinute = new TreeMap<>();
+    private final NavigableMap<Long, Set<String>> machinesByHour = new TreeMap<>();
+    private long rankedAtMinute = Long.MIN_VALUE;
+
+    @Autowired
+    public TopDefectEngine(EventStore eventStore,
+                           @Value("${factory.stats.top-k.enabled:true}") boolean enabled) {
+        this(eventStore, enabled, Clock.systemUTC());
+    }
+
+    // Tests move the clock across minute boundaries instead of waiting for them
+    TopDefectEngine(EventStore eventStore, boolean enabled, Clock clock) {
+        this.eventStore = eventStore;
+        this.enabled = enabled;
+        this.clock = clock;
+        for (Window w : Window.values()) {
+            rankings.put(w, new TreeSet<>(LineStats.WORST_FIRST));
+            current.put(w, new HashMap<>());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBatchIngested(BatchIngestedEvent batch) {
+        if (!enabled) return;
+        lock.lock();
+        try {
+            long nowMinute = nowMinute();
+            slide(nowMinute);
+            List<String> touched = new ArrayList<>();
+            for (EventChange change : batch.changes()) {
+                if (change.previous() != null) {
+                    touched.add(add(change.previous(), -1, nowMinute));
+                }
+                touched.add(add(change.current(), 1, nowMinute));
+            }
+            for (String machineId : touched) {
+                rank(machineId, nowMinute);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Expires the buckets that left the windows, off the query and ingest paths
+    @Scheduled(fixedDelayString = "${factory.stats.top-k.tick:1s}")
+    public void tick() {
+        if (!enabled) return;
+        lock.lock();
+        try {
+            slide(nowMinute());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Only matters when retention is shorter than the 7 day window
+    @EventListener
+    public void onPartitionsDropped(PartitionsDroppedEvent dropped) {
+        if (enabled && dropped.before().getEpochSecond() > (nowMinute() / 60 - HOUR_SLOTS) * 3600) {
+            rebuild();
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        DerivedStateRebuilder.rebuild(eventStore, List.of(this));
+    }
+
+    @Override
+    public Rebuild startRebuild() {
+        if (!enabled) return null;
+        lock.lock();
+        machines.clear();
+        rankings.values().forEach(TreeSet::clear);
+        current.values().forEach(Map::clear);
+        machinesByMinute.clear();
+        machinesByHour.clear();
+        long nowMinute = nowMinute();
+        long since = (nowMinute / 60 - HOUR_SLOTS) * 3600;
+        return new Rebuild() {
+            @Override
+            public void accept(MachineEvent e) {
+                if (e.getEventTime().getEpochSecond() >= since) add(e, 1, nowMinute);
+            }
+
+            @Override
+            public void finish() {
+                rankedAtMinute = Long.MIN_VALUE;
+                slide(nowMinute);
+            }
+
+            @Override
+            public void close() {
+                lock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Worst machines for the window, O(limit). Only when no tick ran since the
+     * last minute boundary does the query expire the old buckets itself first.
+     */
+    public List<LineStats> top(Window window, int limit) {
+        lock.lock();
+        try {
+            slide(nowMinute());
+            List<LineStats> result = new ArrayList<>(Math.min(limit, 64));
+            for (LineStats line : rankings.get(window)) {
+                if (result.size() >= limit) break;
+                result.add(line);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Re-ranks the machines with counts in the buckets that left a window since the last slide
+    private void slide(long nowMinute) {
+        if (nowMinute == rankedAtMinute) return;
+        long nowHour = Math.floorDiv(nowMinute, 60);
+        if (rankedAtMinute == Long.MIN_VALUE || nowMinute < rankedAtMinute) {
+            // First ranking, or the clock went back and buckets re-entered: rank everything
+            rankedAtMinute = nowMinute;
+            for (String machineId : machines.keySet()) {
+                rank(machineId, nowMinute);
+            }
+            return;
+        }
+        long rankedHour = Math.floorDiv(rankedAtMinute, 60);
+        rankedAtMinute = nowMinute;
+        expire(machinesByMinute.headMap(nowMinute - 59), Window.MINUTE_BUCKETS_60, nowMinute);
+        expire(machinesByHour.subMap(rankedHour - 23, true, nowHour - 23, false), Window.HOUR_BUCKETS_24, nowMinute);
+        expire(machinesByHour.headMap(nowHour - 167), Window.HOUR_BUCKETS_168, nowMinute);
+        // Nothing older than the 1h / 7d window start is needed again
+        machinesByMinute.headMap(nowMinute - 59).clear();
+        machinesByHour.headMap(nowHour - 167).clear();
+    }
+
+    private void expire(Map<Long, Set<String>> expired, Window window, long nowMinute) {
+        Set<String> seen = new HashSet<>();
+        for (Set<String> machineIds : expired.values()) {
+            for (String machineId : machineIds) {
+                if (seen.add(machineId)) rank(machineId, window, nowMinute);
+            }
+        }
+    }
+
+    private String add(MachineEvent e, int sign, long nowMinute) {
+        long defects = e.getDefectCount() == -1 ? 0 : e.getDefectCount();
+        long epochMinute = Math.floorDiv(e.getEventTime().getEpochSecond(), 60);
+        long epochHour = Math.floorDiv(epochMinute, 60);
+        machines.computeIfAbsent(e.getMachineId(), id -> new MachineCounters())
+                .add(epochMinute, sign, sign * defects);
+        // Buckets already outside every window never expire, so they are not indexed
+        if (epochMinute >= nowMinute - 59) {
+            machinesByMinute.computeIfAbsent(epochMinute, m -> new HashSet<>()).add(e.getMachineId());
+        }
+        if (epochHour >= Math.floorDiv(nowMinute, 60) - 167) {
+            machinesByHour.computeIfAbsent(epochHour, h -> new HashSet<>()).add(e.getMachineId());
+        }
+        return e.getMachineId();
+    }
+
+    private void rank(String machineId, long nowMinute) {
+        for (Window window : Window.values()) {
+            rank(machineId, window, nowMinute);
+        }
+    }
+
+    private void rank(String machineId, Window window, long nowMinute) {
+        MachineCounters counters = machines.get(machineId);
+        long nowHour = Math.floorDiv(nowMinute, 60);
+        long[] totals = switch (window) {
+            case MINUTE_BUCKETS_60 -> counters.minuteTotals(nowMinute - 59);
+            case HOUR_BUCKETS_24 -> counters.hourTotals(nowHour - 23);
+            case HOUR_BUCKETS_168 -> counters.hourTotals(nowHour - 167);
+        };
+        LineStats previous = current.get(window).remove(machineId);
+        if (previous != null) {
+            rankings.get(window).remove(previous);
+        }
+        if (totals[0] > 0) {
+            LineStats line = new LineStats(machineId, totals[0], totals[1]);
+            current.get(window).put(machineId, line);
+            rankings.get(window).add(line);
+        }
+    }
+
+    private long nowMinute() {
+        return Math.floorDiv(clock.millis(), 60_000);
+    }
+
+    // Ring buffers keyed by epoch minute / epoch hour; a slot is reset when a newer key claims it
+    private static final class MachineCounters {
+        private final BucketRing minutes = new BucketRing(MINUTE_SLOTS);
+        private final BucketRing hours = new BucketRing(HOUR_SLOTS);
+
+        void add(long epochMinute, long count, long defects) {
+            minutes.add(epochMinute, count, defects);
+            hours.add(Math.floorDiv(epochMinute, 60), count, defects);
+        }
+
+        long[] minuteTotals(long fromMinute) {
+            return minutes.totalsFrom(fromMinute);
+        }
+
+        long[] hourTotals(long fromHour) {
+            return hours.totalsFrom(fromHour);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.factory.backend.util;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -47,4 +48,87 @@ public class DataGenerator {
         }
         return events;
     }
-}
\ No newline at end of file
+
+    /**
+     * Shape of a synthetic workload.
+     * hotMachineShare of the machines receive hotTrafficShare of the events;
+     * lateArrivalRatio of the events have an eventTime up to maxLateness before
+     * receivedTime (the rest arrive within a few seconds); resendRatio of the
+     * events are exact copies of events generated earlier in the same call.
+     * Non-late events are spread over history.
+     */
+    public record Workload(int machines, double hotMachineShare, double hotTrafficShare,
+                           double lateArrivalRatio, Duration maxLateness,
+                           double resendRatio, Duration history) {
+
+        public static Workload uniform(int machines) {
+            return new Workload(machines, 0, 0, 0, Duration.ZERO, 0, Duration.ofHours(1));
+        }
+
+        // 5% of the machines produce 80% of the events
+        public static Workload hotMachines(int machines) {
+            return new Workload(machines, 0.05, 0.8, 0, Duration.ZERO, 0, Duration.ofHours(1));
+        }
+
+        // Gateway flushing a buffer: 30% of events are up to 6 hours late
+        public static Workload lateArrivals(int machines) {
+            return new Workload(machines, 0, 0, 0.3, Duration.ofHours(6), 0, Duration.ofHours(1));
+        }
+
+        // Reconnect after an outage: half the batch was already sent
+        public static Workload resendStorm(int machines) {
+            return new Workload(machines, 0, 0, 0, Duration.ZERO, 0.5, Duration.ofHours(1));
+        }
+
+        public Workload withHistory(Duration history) {
+            return new Workload(machines, hotMachineShare, hotTrafficShare, lateArrivalRatio, maxLateness, resendRatio, history);
+        }
+
+        public Workload withResendRatio(double resendRatio) {
+            return new Workload(machines, hotMachineShare, hotTrafficShare, lateArrivalRatio, maxLateness, resendRatio, history);
+        }
+    }
+
+    // Seeded generator for reproducible benchmark runs: same seed, same events
+    public static List<MachineEvent> generateWorkload(int count, Workload workload, long seed, Instant now) {
+        Random rnd = new Random(seed);
+        List<MachineEvent> events = new ArrayList<>(count);
+        int hotMachines = (int) Math.ceil(workload.machines() * workload.hotMachineShare());
+        long historyMillis = Math.max(workload.history().toMillis(), 1);
+
+        for (int i = 0; i < count; i++) {
+            if (!events.isEmpty() && rnd.nextDouble() < workload.resendRatio()) {
+                events.add(events.get(rnd.nextInt(events.size())).toBuilder().build());
+                continue;
+            }
+
+            int machine;
+            if (hotMachines > 0 && rnd.nextDouble() < workload.hotTrafficShare()) {
+                machine = rnd.nextInt(hotMachines);
+            } else {
+                machine = hotMachines + rnd.nextInt(Math.max(workload.machines() - hotMachines, 1));
+            }
+
+            Instant receivedTime;
+            Instant eventTime;
+            if (rnd.nextDouble() < workload.lateArrivalRatio()) {
+                receivedTime = now;
+                eventTime = now.minusMillis((long) (rnd.nextDouble() * workload.maxLateness().toMillis()));
+            } else {
+                eventTime = now.minusMillis((long) (rnd.nextDouble() * historyMillis));
+                receivedTime = eventTime.plusMillis(rnd.nextInt(5000));
+                if (receivedTime.isAfter(now)) receivedTime = now;
+            }
+
+            events.add(MachineEvent.builder()
+                    .eventId(new UUID(rnd.nextLong(), rnd.nextLong()).toString())
+                    .machineId(String.format("M-%05d", machine))
+                    .eventTime(eventTime)
+                    .receivedTime(receivedTime)
+                    .durationMs(100 + rnd.nextInt(20_000_000))
+                    .defectCount(rnd.nextInt(10) == 0 ? -1 : rnd.nextInt(5))
+                    .build());
+        }
+        return events;
+    }
+}
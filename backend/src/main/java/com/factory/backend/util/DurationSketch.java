@@ -0,0 +1,145 @@
+package com.factory.backend.util;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch for non-negative durations with a relative error
+ * guarantee (logarithmic buckets, as in DDSketch).
+ *
+ * Bucket i counts the values in (gamma^(i-1), gamma^i] with
+ * gamma = (1 + a) / (1 - a); reporting the bucket's midpoint 2 gamma^i / (gamma + 1)
+ * is then within a * v of any value v it holds. A quantile is therefore within
+ * relative accuracy a of the exact value at the same rank (rounded to whole
+ * milliseconds), for any data, any number of merges and any number of removals.
+ * Counts are exact, so removing a value that was added (count -1) restores the
+ * sketch exactly, which is what updates and retention need.
+ *
+ * Buckets are a dense array over the occupied index range: durations up to 6 hours
+ * need at most ~850 buckets at 1%, and a machine's cycle times usually occupy a
+ * handful. Not thread-safe.
+ */
+public class DurationSketch {
+
+    private static final long[] EMPTY = new long[0];
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+
+    private long zeroCount;
+    private long[] counts = EMPTY;
+    private int offset;           // bucket index of counts[0]
+    private long total;
+
+    public DurationSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("relativeAccuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    public void add(long value) {
+        add(value, 1);
+    }
+
+    /** Adds count occurrences of value; a negative count removes previously added ones. */
+    public void add(long value, long count) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative duration " + value);
+        }
+        if (value == 0) {
+            zeroCount += count;
+        } else {
+            int index = index(value);
+            ensure(index, index);
+            counts[index - offset] += count;
+        }
+        total += count;
+    }
+
+    public void merge(DurationSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches of accuracy " + relativeAccuracy
+                    + " and " + other.relativeAccuracy);
+        }
+        if (other.counts.length > 0) {
+            ensure(other.offset, other.offset + other.counts.length - 1);
+            int shift = other.offset - offset;
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[shift + i] += other.counts[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        total += other.total;
+    }
+
+    /**
+     * Estimate of the value at rank floor(q * (count - 1)) in sorted order,
+     * or -1 when the sketch is empty.
+     */
+    public long quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be in [0, 1]: " + q);
+        }
+        if (total <= 0) {
+            return -1;
+        }
+        long rank = (long) Math.floor(q * (total - 1));
+        long seen = zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                return Math.round(2 * Math.pow(gamma, offset + i) / (gamma + 1));
+            }
+        }
+        // Only reachable if more was removed than added
+        throw new IllegalStateException("Sketch counts do not add up to " + total);
+    }
+
+    /** Number of allocated buckets, for sizing. */
+    public int buckets() {
+        return counts.length;
+    }
+
+    private int index(long value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    // Grows the dense range to cover [low, high], with some headroom on the growing side
+    private void ensure(int low, int high) {
+        if (counts.length == 0) {
+            counts = new long[Math.max(4, high - low + 1)];
+            offset = low;
+            return;
+        }
+        int end = offset + counts.length - 1;
+        if (low >= offset && high <= end) {
+            return;
+        }
+        int newOffset = Math.min(offset, low < offset ? low - 4 : offset);
+        int newEnd = Math.max(end, high > end ? high + 4 : end);
+        long[] grown = new long[newEnd - newOffset + 1];
+        System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+        counts = grown;
+        offset = newOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "DurationSketch[count=" + total + ", zero=" + zeroCount + ", offset=" + offset
+                + ", counts=" + Arrays.toString(counts) + "]";
+    }
+}
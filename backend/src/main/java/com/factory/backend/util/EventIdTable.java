@@ -0,0 +1,97 @@
+package com.factory.backend.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Open-addressing table that numbers distinct ids 0, 1, 2, ... in the order
+ * they are first seen. Slots are an int[] of ordinal + 1 (0 is empty) with the
+ * key hashes cached alongside, so a probe compares ints and only touches the
+ * String on a hash match; there is no entry object per id. Linear probing at a
+ * load factor of at most 1/2. A null id is an ordinary key. Not thread-safe.
+ */
+public class EventIdTable {
+
+    private int[] slots;
+    private int[] hashes;
+    private String[] keys;
+    private int size;
+    private int mask;
+
+    public EventIdTable(int expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedKeys) - 1) << 2;
+        this.slots = new int[capacity];
+        this.hashes = new int[capacity];
+        this.keys = new String[Math.max(8, expectedKeys)];
+        this.mask = capacity - 1;
+    }
+
+    /** Ordinal of id, assigning the next one if id has not been seen. */
+    public int ordinal(String id) {
+        int hash = hash(id);
+        int slot = hash & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            if (hashes[slot] == hash && Objects.equals(keys[entry - 1], id)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        keys[size] = id;
+        slots[slot] = ++size;
+        hashes[slot] = hash;
+        if (size * 2 > slots.length) {
+            grow();
+        }
+        return size - 1;
+    }
+
+    /** Ordinal of id, or -1 if it has not been seen. */
+    public int find(String id) {
+        int hash = hash(id);
+        int slot = hash & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            if (hashes[slot] == hash && Objects.equals(keys[entry - 1], id)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public String key(int ordinal) {
+        Objects.checkIndex(ordinal, size);
+        return keys[ordinal];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        int[] oldSlots = slots;
+        int[] oldHashes = hashes;
+        slots = new int[oldSlots.length * 2];
+        hashes = new int[oldSlots.length * 2];
+        mask = slots.length - 1;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] == 0) continue;
+            int slot = oldHashes[i] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = oldSlots[i];
+            hashes[slot] = oldHashes[i];
+        }
+    }
+
+    // String hashes are cached per instance; the spread keeps low bits useful for the mask
+    private static int hash(String id) {
+        int h = id == null ? 0 : id.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
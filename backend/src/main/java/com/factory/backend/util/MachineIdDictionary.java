@@ -0,0 +1,58 @@
+package com.factory.backend.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free intern table for machine ids looked up straight from a
+ * parser's char buffer, so a known id costs a hash and a compare instead of a
+ * new String. Slots are claimed with CAS and never replaced; when the probe
+ * run for an id is full the id is simply returned as a fresh String.
+ */
+public class MachineIdDictionary {
+
+    private static final int MAX_PROBES = 8;
+
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+
+    public MachineIdDictionary(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        this.table = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public String intern(char[] chars, int offset, int length) {
+        int hash = hash(chars, offset, length);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (hash + probe) & mask;
+            String existing = table.get(slot);
+            if (existing == null) {
+                String created = new String(chars, offset, length);
+                if (table.compareAndSet(slot, null, created)) {
+                    return created;
+                }
+                existing = table.get(slot);
+            }
+            if (matches(existing, chars, offset, length)) {
+                return existing;
+            }
+        }
+        return new String(chars, offset, length);
+    }
+
+    private static int hash(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + chars[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(String s, char[] chars, int offset, int length) {
+        if (s.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) != chars[offset + i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,105 @@
+package com.factory.backend.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * File format for recorded HTTP traffic: NDJSON, one request per line, in the
+ * order they were sent. offsetMicros is the send time relative to the start of
+ * the capture, so a replay can reproduce the original pacing; the body is
+ * base64. Written by TrafficCaptureFilter from live traffic and by the load
+ * generator from synthetic traffic, read by the replay harness.
+ */
+public final class TrafficCapture {
+
+    private static final JsonMapper MAPPER = JsonMapper.builder().build();
+
+    public record Request(long offsetMicros, String method, String uri, String contentType,
+                          String contentEncoding, byte[] body) {
+
+        /** "POST /events/batch": method and path without the query, for grouping latencies. */
+        public String endpoint() {
+            int query = uri.indexOf('?');
+            return method + " " + (query < 0 ? uri : uri.substring(0, query));
+        }
+    }
+
+    private TrafficCapture() {}
+
+    /** The requests of a capture file, lazily; the caller closes the stream. */
+    public static Stream<Request> read(Path file) {
+        try {
+            return Files.lines(file, StandardCharsets.UTF_8)
+                    .filter(line -> !line.isBlank())
+                    .map(line -> MAPPER.readValue(line, Request.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Appends requests to a new capture file; offsets count from when it was opened. Thread-safe. */
+    public static final class Writer implements AutoCloseable {
+
+        private final BufferedWriter out;
+        // A lock rather than synchronized, so a virtual request thread writing here parks instead of pinning
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long startNanos = System.nanoTime();
+
+        public Writer(Path file) {
+            try {
+                Path parent = file.toAbsolutePath().getParent();
+                if (parent != null) Files.createDirectories(parent);
+                this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public long offsetMicros() {
+            return (System.nanoTime() - startNanos) / 1000;
+        }
+
+        public void append(Request request) {
+            lock.lock();
+            try {
+                out.write(MAPPER.writeValueAsString(request));
+                out.newLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void flush() {
+            lock.lock();
+            try {
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
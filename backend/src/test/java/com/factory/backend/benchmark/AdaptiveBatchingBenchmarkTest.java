@@ -0,0 +1,128 @@
+package com.factory.backend.benchmark;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.service.EventIdIndex;
+import com.factory.backend.service.IngestTuner;
+import com.factory.backend.service.IngestionCoordinator;
+import com.factory.backend.service.RollupService;
+import com.factory.backend.util.DataGenerator;
+import com.factory.backend.util.DataGenerator.Workload;
+
+// A write-behind backlog of small, mixed and large client batches of new events, drained the way the
+// async and journal writers do it (merged up to mergeLimit, never split): fixed settings (merges up to
+// MAX_MERGE, hibernate.jdbc.batch_size=50) against IngestTuner
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:adaptivebench;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED, matches = "true")
+public class AdaptiveBatchingBenchmarkTest {
+
+    private static final int MAX_MERGE = 20_000;
+
+    @Autowired
+    private IngestionCoordinator coordinator;
+
+    @Autowired
+    private IngestTuner tuner;
+
+    @Autowired
+    private EventIdIndex eventIdIndex;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    private long seed;
+
+    @Test
+    public void runBenchmark() {
+        List<String> rows = new ArrayList<>();
+        try {
+            for (String mix : new String[] {"small", "mixed", "large"}) {
+                tuner.set(0, 0, false);
+                String fixed = run(mix);
+                tuner.set(1000, null, true);
+                run(mix); // lets the tuner settle on this mix, not reported
+                String adaptive = run(mix);
+                rows.add(mix + " | " + fixed + " | " + adaptive + " (commit size " + tuner.commitSize() + ")");
+            }
+        } finally {
+            tuner.set(1000, null, true);
+            jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+            eventIdIndex.rebuild();
+            rollupService.rebuild();
+        }
+
+        Benchmarks.header("ADAPTIVE BATCHING BENCHMARK (events/s, p99 per commit)");
+        System.out.println("Mix | Fixed | Adaptive");
+        rows.forEach(System.out::println);
+        Benchmarks.footer();
+    }
+
+    private String run(String mix) {
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+        eventIdIndex.rebuild();
+        Random random = new Random(23);
+        List<Integer> sizes = new ArrayList<>();
+        switch (mix) {
+            case "small" -> { for (int i = 0; i < 500; i++) sizes.add(10); }
+            case "large" -> { sizes.add(15_000); sizes.add(15_000); }
+            default -> {
+                // Log-uniform from 10 to 20,000 events, about 30,000 in total
+                for (int total = 0; total < 30_000; ) {
+                    int size = (int) Math.round(Math.pow(10, 1 + random.nextDouble() * Math.log10(2_000)));
+                    sizes.add(size);
+                    total += size;
+                }
+            }
+        }
+
+        List<List<MachineEvent>> backlog = new ArrayList<>(sizes.size());
+        for (int size : sizes) {
+            backlog.add(DataGenerator.generateWorkload(size, Workload.uniform(500), ++seed, now));
+        }
+        long[] latencies = new long[backlog.size()];
+        int commits = 0;
+        long events = 0;
+        long elapsed = 0;
+        for (int next = 0; next < backlog.size(); commits++) {
+            List<List<MachineEvent>> group = new ArrayList<>();
+            int merged = 0;
+            int limit = coordinator.mergeLimit(MAX_MERGE);
+            do {
+                merged += backlog.get(next).size();
+                group.add(backlog.get(next++));
+            } while (merged < limit && next < backlog.size());
+            long start = System.nanoTime();
+            List<Map<String, Object>> results = coordinator.processBatches(group);
+            latencies[commits] = System.nanoTime() - start;
+            elapsed += latencies[commits];
+            events += merged;
+            for (int b = 0; b < group.size(); b++) {
+                assertEquals(group.get(b).size(), (int) results.get(b).get("accepted") + (int) results.get(b).get("rejected"));
+            }
+        }
+        latencies = Arrays.copyOf(latencies, commits);
+        Arrays.sort(latencies);
+        long p99 = latencies[Math.max(0, (int) Math.ceil(0.99 * latencies.length) - 1)];
+        return String.format("%,.0f/s, %,d ms", events * 1e9 / elapsed, p99 / 1_000_000);
+    }
+}
@@ -0,0 +1,54 @@
+package com.factory.backend.benchmark;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.factory.backend.entity.MachineEvent;
+
+/**
+ * Shared pieces of the in-process benchmark tests. They run only with
+ * -Dfactory.benchmark=true, so a plain mvn test skips them.
+ */
+final class Benchmarks {
+
+    static final String ENABLED = "factory.benchmark";
+
+    private static final int WARMUPS = 5;
+    private static final String RULE = "========================================";
+
+    private Benchmarks() {
+    }
+
+    static void header(String title) {
+        System.out.println("\n\n" + RULE);
+        System.out.println(title);
+    }
+
+    static void footer() {
+        System.out.println(RULE + "\n\n");
+    }
+
+    /**
+     * Microseconds per call of query, after a few warmup calls. Every call gets
+     * a different i (negative for warmups), which callers add to their window in
+     * ms so H2 cannot serve a cached result.
+     */
+    static long microsPerQuery(int queries, LongConsumer query) {
+        for (int i = -WARMUPS; i < 0; i++) query.accept(i);
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) query.accept(i);
+        return (System.nanoTime() - start) / queries / 1000;
+    }
+
+    // Straight into machine_events, bypassing ingest; callers rebuild the derived state they measure
+    static void insertEvents(JdbcTemplate jdbcTemplate, List<MachineEvent> events) {
+        jdbcTemplate.batchUpdate("INSERT INTO machine_events " +
+                "(event_id, machine_id, event_time, received_time, duration_ms, defect_count) VALUES (?, ?, ?, ?, ?, ?)",
+                events.stream().map(e -> new Object[] {e.getEventId(), e.getMachineId(),
+                        Timestamp.from(e.getEventTime()), Timestamp.from(e.getReceivedTime()),
+                        e.getDurationMs(), e.getDefectCount()}).toList());
+    }
+}
@@ -0,0 +1,111 @@
+package com.factory.backend.benchmark;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.service.EventIdIndex;
+import com.factory.backend.service.EventService;
+import com.factory.backend.service.RollupService;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED, matches = "true")
+public class DedupeIndexBenchmarkTest {
+
+    private static final int STORED = 100_000;
+    private static final int BATCHES = 20;
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private EventIdIndex eventIdIndex;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Random random = new Random(11);
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @Test
+    public void runBenchmark() {
+        // 1. Preload history the resends can hit
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+        List<MachineEvent> stored = new ArrayList<>(STORED);
+        for (int i = 0; i < STORED; i++) {
+            stored.add(event(UUID.randomUUID().toString()));
+        }
+        Benchmarks.insertEvents(jdbcTemplate, stored);
+        eventIdIndex.rebuild();
+        rollupService.rebuild();
+
+        Benchmarks.header("DEDUPE INDEX BENCHMARK (" + STORED + " stored, " + BATCHES + " x " + BATCH_SIZE + " events)");
+        for (double resendRatio : new double[] {0.02, 0.8}) {
+            long withoutIndex = run(stored, resendRatio, false);
+            long withIndex = run(stored, resendRatio, true);
+            System.out.println("Resend Ratio:     " + (int) (resendRatio * 100) + "%");
+            System.out.println("  findAllById:    " + withoutIndex + " ms/batch");
+            System.out.println("  Bloom filter:   " + withIndex + " ms/batch");
+        }
+        Benchmarks.footer();
+
+        eventIdIndex.setEnabled(true);
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+        eventIdIndex.rebuild();
+        rollupService.rebuild();
+    }
+
+    private long run(List<MachineEvent> stored, double resendRatio, boolean indexEnabled) {
+        eventIdIndex.setEnabled(indexEnabled);
+        long total = 0;
+        for (int b = -3; b < BATCHES; b++) { // 3 warmup batches
+            List<MachineEvent> batch = new ArrayList<>(BATCH_SIZE);
+            int resends = 0;
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                if (random.nextDouble() < resendRatio) {
+                    batch.add(stored.get(random.nextInt(stored.size())).toBuilder().build());
+                    resends++;
+                } else {
+                    batch.add(event(UUID.randomUUID().toString()));
+                }
+            }
+            long start = System.nanoTime();
+            Map<String, Object> result = eventService.processBatch(batch);
+            if (b >= 0) total += System.nanoTime() - start;
+
+            // Identical resends must still be deduped, new ids accepted
+            assertEquals(BATCH_SIZE, (int) result.get("accepted") + (int) result.get("deduped"));
+            assertEquals(resends, result.get("deduped"));
+        }
+        return total / BATCHES / 1_000_000;
+    }
+
+    private MachineEvent event(String id) {
+        return MachineEvent.builder()
+                .eventId(id)
+                .machineId("M-" + random.nextInt(50))
+                .eventTime(now.minusSeconds(random.nextInt(86400)))
+                .receivedTime(now)
+                .durationMs(100 + random.nextInt(5000))
+                .defectCount(random.nextInt(5))
+                .build();
+    }
+}
@@ -0,0 +1,117 @@
+package com.factory.backend.benchmark;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.service.EventIdIndex;
+import com.factory.backend.service.EventService;
+import com.factory.backend.service.RollupService;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED, matches = "true")
+public class DuplicateCollapseBenchmarkTest {
+
+    private static final int BATCHES = 20;
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private EventIdIndex eventIdIndex;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Random random = new Random(17);
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @Test
+    public void runBenchmark() {
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+        eventIdIndex.rebuild();
+        rollupService.rebuild();
+
+        Benchmarks.header("DUPLICATE COLLAPSE BENCHMARK (" + BATCHES + " x " + BATCH_SIZE + " events, 50% repeated ids)");
+        for (double resendRatio : new double[] {0.0, 0.8}) {
+            long sequential = run(resendRatio, false);
+            long collapsed = run(resendRatio, true);
+            System.out.println("Stored-id Resends: " + (int) (resendRatio * 100) + "% of distinct ids");
+            System.out.println("  Copy by copy:    " + sequential + " ms/batch");
+            System.out.println("  Collapsed:       " + collapsed + " ms/batch");
+        }
+        Benchmarks.footer();
+
+        eventService.setCollapseDuplicates(true);
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+        eventIdIndex.rebuild();
+        rollupService.rebuild();
+    }
+
+    // Each batch has BATCH_SIZE / 2 distinct ids, every one sent twice: half of the second
+    // copies are identical retries, half a newer version. resendRatio of the ids were stored before.
+    private long run(double resendRatio, boolean collapse) {
+        eventService.setCollapseDuplicates(collapse);
+        List<MachineEvent> history = new ArrayList<>();
+        long total = 0;
+        for (int b = -3; b < BATCHES; b++) { // 3 warmup batches
+            List<MachineEvent> batch = new ArrayList<>(BATCH_SIZE);
+            int fresh = 0;
+            for (int i = 0; i < BATCH_SIZE / 2; i++) {
+                MachineEvent original;
+                if (!history.isEmpty() && random.nextDouble() < resendRatio) {
+                    original = history.get(random.nextInt(history.size())).toBuilder().build();
+                } else {
+                    original = event(UUID.randomUUID().toString(), now);
+                    history.add(original.toBuilder().build());
+                    fresh++;
+                }
+                MachineEvent second = random.nextBoolean() ? original.toBuilder().build()
+                        : event(original.getEventId(), original.getReceivedTime().plusMillis(1));
+                batch.add(original);
+                batch.add(second);
+            }
+            Collections.shuffle(batch.subList(BATCH_SIZE / 2, BATCH_SIZE), random);
+
+            long start = System.nanoTime();
+            Map<String, Object> result = eventService.processBatch(batch);
+            if (b >= 0) total += System.nanoTime() - start;
+
+            assertEquals(fresh, result.get("accepted"));
+            assertEquals(BATCH_SIZE, (int) result.get("accepted") + (int) result.get("deduped")
+                    + (int) result.get("updated"));
+            assertEquals(0, result.get("rejected"));
+        }
+        return total / BATCHES / 1_000_000;
+    }
+
+    private MachineEvent event(String id, Instant receivedTime) {
+        return MachineEvent.builder()
+                .eventId(id)
+                .machineId("M-" + random.nextInt(50))
+                .eventTime(now.minusSeconds(random.nextInt(86400)))
+                .receivedTime(receivedTime)
+                .durationMs(100 + random.nextInt(5000))
+                .defectCount(random.nextInt(5))
+                .build();
+    }
+}
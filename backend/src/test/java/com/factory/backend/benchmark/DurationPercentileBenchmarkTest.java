@@ -0,0 +1,111 @@
+package com.factory.backend.benchmark;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.dto.DurationStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.service.DurationAnalytics;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED, matches = "true")
+public class DurationPercentileBenchmarkTest {
+
+    private static final int QUERIES = 20;
+    private static final String EXACT_SQL = "SELECT COUNT(*), " +
+            "PERCENTILE_DISC(0.5) WITHIN GROUP (ORDER BY duration_ms), " +
+            "PERCENTILE_DISC(0.95) WITHIN GROUP (ORDER BY duration_ms), " +
+            "PERCENTILE_DISC(0.99) WITHIN GROUP (ORDER BY duration_ms) " +
+            "FROM machine_events WHERE event_time >= ? AND event_time < ?";
+
+    @Autowired
+    private DurationAnalytics durationAnalytics;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void runBenchmark() {
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+
+        Random random = new Random(7);
+        Instant now = Instant.now();
+        // 6-day window with ragged edges, inside the default 7 day sketch retention
+        Instant start = now.minusSeconds(6L * 86400).plusMillis(12_345);
+        Instant end = now.minusMillis(6_789);
+
+        Benchmarks.header("DURATION PERCENTILE BENCHMARK (6-day window, p50/p95/p99)");
+        int stored = 0;
+        for (int target : new int[] {100_000, 400_000}) {
+            while (stored < target) {
+                int size = Math.min(10_000, target - stored);
+                insertEvents(size, now, random);
+                stored += size;
+            }
+            durationAnalytics.rebuild();
+
+            DurationStats exact = exact(null, start, end);
+            DurationStats sketched = durationAnalytics.getDurations(Set.of(), start, end);
+            assertEquals(exact.eventsCount(), sketched.eventsCount());
+            assertTrue(Math.abs(sketched.p99() - exact.p99()) <= 0.01 * exact.p99() + 1, exact + " vs " + sketched);
+
+            long sqlAll = Benchmarks.microsPerQuery(QUERIES,
+                    i -> exact(null, start.plusMillis(i), end.plusMillis(i)));
+            long sketchAll = Benchmarks.microsPerQuery(QUERIES,
+                    i -> durationAnalytics.getDurations(Set.of(), start.plusMillis(i), end.plusMillis(i)));
+            long sqlHot = Benchmarks.microsPerQuery(QUERIES,
+                    i -> exact("M-HOT", start.plusMillis(i), end.plusMillis(i)));
+            long sketchHot = Benchmarks.microsPerQuery(QUERIES,
+                    i -> durationAnalytics.getDurations(Set.of("M-HOT"), start.plusMillis(i), end.plusMillis(i)));
+
+            System.out.println("Stored Events:         " + stored);
+            System.out.println("  All machines, SQL:   " + sqlAll + " us/query " + exact);
+            System.out.println("  All machines, sketch:" + sketchAll + " us/query " + sketched);
+            System.out.println("  M-HOT, SQL:          " + sqlHot + " us/query");
+            System.out.println("  M-HOT, sketch:       " + sketchHot + " us/query");
+        }
+        Benchmarks.footer();
+
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+        durationAnalytics.rebuild();
+    }
+
+    private DurationStats exact(String machineId, Instant start, Instant end) {
+        String sql = machineId == null ? EXACT_SQL : EXACT_SQL + " AND machine_id = ?";
+        Object[] args = machineId == null
+                ? new Object[] {Timestamp.from(start), Timestamp.from(end)}
+                : new Object[] {Timestamp.from(start), Timestamp.from(end), machineId};
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) ->
+                new DurationStats(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), 0), args);
+    }
+
+    private void insertEvents(int count, Instant now, Random random) {
+        List<MachineEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(MachineEvent.builder()
+                    .eventId(UUID.randomUUID().toString())
+                    .machineId(random.nextInt(5) == 0 ? "M-" + random.nextInt(50) : "M-HOT")
+                    .eventTime(now.minusSeconds(random.nextInt(7 * 86400)))
+                    .receivedTime(now)
+                    .durationMs(random.nextInt(20) == 0 ? 60_000 + random.nextInt(600_000) : 800 + random.nextInt(400))
+                    .defectCount(random.nextInt(5))
+                    .build());
+        }
+        Benchmarks.insertEvents(jdbcTemplate, events);
+    }
+}
@@ -7,16 +7,21 @@ import java.util.Random;
 import java.util.UUID;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
 import com.factory.backend.entity.MachineEvent;
 import com.factory.backend.repository.MachineEventRepository;
 import com.factory.backend.service.EventService;
+import com.factory.backend.service.RollupService;
 
 @SpringBootTest
 @ActiveProfiles("test")
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED, matches = "true")
 public class IngestionBenchmarkTest {
 
     @Autowired
@@ -25,31 +30,45 @@ public class IngestionBenchmarkTest {
     @Autowired
     private MachineEventRepository repository;
 
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${factory.ingest.persistence:jpa}")
+    private String persistence;
+
     @Test
     public void runBenchmark() {
         // 1. Clear DB to ensure a clean slate (optional, but good for consistency)
         repository.deleteAll();
 
-        // 2. Generate 1,000 dummy events
-        int batchSize = 1000;
-        System.out.println("Generating " + batchSize + " events...");
-        List<MachineEvent> batch = generateEvents(batchSize);
-
-        // 3. Measure Execution Time
-        long startTime = System.currentTimeMillis();
-        
-        eventService.processBatch(batch);
-        
-        long endTime = System.currentTimeMillis();
-        long duration = endTime - startTime;
-
-        // 4. Print Results to Console
-        System.out.println("\n\n========================================");
-        System.out.println("BENCHMARK RESULT");
-        System.out.println("Events Processed: " + batchSize);
-        System.out.println("Time Taken:       " + duration + " ms");
-        System.out.println("Events/Second:    " + (batchSize / (duration / 1000.0)));
-        System.out.println("========================================\n\n");
+        for (int batchSize : new int[] {1_000, 10_000, 100_000}) {
+            // 2. Generate dummy events
+            System.out.println("Generating " + batchSize + " events...");
+            List<MachineEvent> batch = generateEvents(batchSize);
+
+            // 3. Measure Execution Time
+            long startTime = System.currentTimeMillis();
+
+            eventService.processBatch(batch);
+
+            long endTime = System.currentTimeMillis();
+            long duration = Math.max(endTime - startTime, 1);
+
+            // 4. Print Results to Console
+            System.out.println("\n\n========================================");
+            System.out.println("BENCHMARK RESULT (" + persistence + ")");
+            System.out.println("Events Processed: " + batchSize);
+            System.out.println("Time Taken:       " + duration + " ms");
+            System.out.println("Events/Second:    " + (batchSize / (duration / 1000.0)));
+            System.out.println("========================================\n\n");
+
+            // deleteAll() would load every entity first
+            jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+        }
+        rollupService.rebuild();
     }
 
     // --- Helper: Data Generator ---
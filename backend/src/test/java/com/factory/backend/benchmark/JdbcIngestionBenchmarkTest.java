@@ -0,0 +1,15 @@
+package com.factory.backend.benchmark;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+// Same benchmark through JdbcEventStore (own in-memory database)
+@SpringBootTest(properties = {
+    "factory.ingest.persistence=jdbc",
+    "spring.datasource.url=jdbc:h2:mem:jdbcbench;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED, matches = "true")
+public class JdbcIngestionBenchmarkTest extends IngestionBenchmarkTest {
+}
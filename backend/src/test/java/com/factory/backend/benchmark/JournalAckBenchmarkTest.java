@@ -0,0 +1,123 @@
+package com.factory.backend.benchmark;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.unit.DataSize;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.service.EventService;
+import com.factory.backend.service.IngestionCoordinator;
+import com.factory.backend.service.JournalIngestService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Ack latency under sustained load: synchronous processRows against a journal ack
+@SpringBootTest
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED, matches = "true")
+public class JournalAckBenchmarkTest {
+
+    private static final int CLIENTS = 16;
+    private static final int BATCH_SIZE = 100;
+    private static final long RUN_MILLIS = 5_000;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private IngestionCoordinator coordinator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path dir;
+
+    private final long now = Instant.now().truncatedTo(ChronoUnit.MILLIS).toEpochMilli();
+
+    @Test
+    public void runBenchmark() throws Exception {
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+        long[] sync = run(coordinator::processRows);
+
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+        JournalIngestService journal = new JournalIngestService(coordinator, eventService, new SimpleMeterRegistry(),
+                dir, DataSize.ofMegabytes(64), Long.MAX_VALUE, 5000, Duration.ofSeconds(1));
+        journal.start();
+        long[] journaled = run(journal::submit);
+        long acked = (long) journal.status().get("durableSequence");
+        long deadline = System.currentTimeMillis() + 120_000;
+        while (journal.appliedSequence() < acked && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        journal.stop();
+        assertEquals(acked, journal.appliedSequence());
+        assertEquals(journaled.length * (long) BATCH_SIZE,
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM machine_events", Long.class));
+
+        Benchmarks.header("JOURNAL ACK BENCHMARK (" + CLIENTS + " clients, " + BATCH_SIZE + " events/batch, "
+                + RUN_MILLIS / 1000 + "s)");
+        print("processRows (sync)", sync);
+        print("journal ack", journaled);
+        Benchmarks.footer();
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+    }
+
+    // Closed loop: every client sends its next batch as soon as the previous one is acknowledged
+    private long[] run(Consumer<List<EventRow>> send) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+        long end = System.currentTimeMillis() + RUN_MILLIS;
+        List<Future<List<Long>>> clients = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++) {
+            clients.add(pool.submit(() -> {
+                List<Long> latencies = new ArrayList<>();
+                while (System.currentTimeMillis() < end) {
+                    List<EventRow> batch = batch();
+                    long start = System.nanoTime();
+                    send.accept(batch);
+                    latencies.add(System.nanoTime() - start);
+                }
+                return latencies;
+            }));
+        }
+        List<Long> all = new ArrayList<>();
+        for (Future<List<Long>> client : clients) all.addAll(client.get());
+        pool.shutdown();
+        long[] sorted = all.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private List<EventRow> batch() {
+        List<EventRow> rows = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            rows.add(new EventRow(UUID.randomUUID().toString(), "M-" + (i % 20), now - i * 1000L, now, 1000, i % 4));
+        }
+        return rows;
+    }
+
+    private static void print(String label, long[] sorted) {
+        System.out.printf("%-20s %6d batches (%,.0f events/s)  p50 %6.2f ms  p99 %7.2f ms%n", label, sorted.length,
+                sorted.length * (double) BATCH_SIZE * 1000 / RUN_MILLIS,
+                sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.99)] / 1e6);
+    }
+}
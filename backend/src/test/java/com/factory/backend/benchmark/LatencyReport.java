@@ -0,0 +1,73 @@
+package com.factory.backend.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Per-endpoint HDR histograms of one load run, in microseconds. latency counts
+ * from the request's intended send time, service from when it was actually
+ * sent; the gap between the two is queueing in the client, which a
+ * closed-loop test never sees.
+ */
+final class LatencyReport {
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentSkipListMap<>();
+
+    private static final class Endpoint {
+        final Histogram latency = new ConcurrentHistogram(3);
+        final Histogram service = new ConcurrentHistogram(3);
+        final LongAdder errors = new LongAdder();
+    }
+
+    void record(String endpoint, long latencyNanos, long serviceNanos, boolean ok) {
+        Endpoint e = endpoints.computeIfAbsent(endpoint, k -> new Endpoint());
+        if (!ok) {
+            e.errors.increment();
+            return;
+        }
+        e.latency.recordValue(Math.max(0, latencyNanos / 1000));
+        e.service.recordValue(Math.max(0, serviceNanos / 1000));
+    }
+
+    void print(String title, Duration period, PrintStream out) {
+        double seconds = Math.max(period.toMillis(), 1) / 1000.0;
+        out.println("\n\n========================================");
+        out.println(title);
+        out.println("Endpoint | Requests/s | p50 | p90 | p99 | p99.9 | max | p99 service | Errors");
+        endpoints.forEach((name, e) -> out.printf("%s | %,.1f | %s | %s | %s | %s | %s | %s | %d%n",
+                name, e.latency.getTotalCount() / seconds,
+                ms(e.latency.getValueAtPercentile(50)), ms(e.latency.getValueAtPercentile(90)),
+                ms(e.latency.getValueAtPercentile(99)), ms(e.latency.getValueAtPercentile(99.9)),
+                ms(e.latency.getMaxValue()), ms(e.service.getValueAtPercentile(99)), e.errors.sum()));
+        out.println("========================================\n\n");
+    }
+
+    /** One HdrHistogram percentile file (milliseconds) per endpoint, e.g. POST_events_batch.hgrm. */
+    void write(Path dir) {
+        try {
+            Files.createDirectories(dir);
+            for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+                String file = entry.getKey().replaceAll("[^A-Za-z0-9-]+", "_") + ".hgrm";
+                try (PrintStream out = new PrintStream(Files.newOutputStream(dir.resolve(file)))) {
+                    entry.getValue().latency.outputPercentileDistribution(out, 1000.0);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String ms(long micros) {
+        return String.format("%.1f ms", micros / 1000.0);
+    }
+}
@@ -0,0 +1,104 @@
+package com.factory.backend.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.factory.backend.util.TrafficCapture;
+
+/**
+ * Open-loop HTTP driver. Every request carries its intended send time (its
+ * offset from the start of the run), and it is sent at that time whether or not
+ * earlier requests have been answered. Latency is measured from the intended
+ * time, so a server stall shows up as queueing in the percentiles instead of
+ * silently lowering the offered rate (coordinated omission).
+ *
+ * Each source gets its own dispatcher thread; responses complete on a shared
+ * callback pool. At most maxInFlight requests are outstanding: beyond that a
+ * dispatcher waits, and the wait counts towards the latency of the requests
+ * it delays.
+ */
+final class OpenLoopDriver {
+
+    private final String baseUrl;
+    private final int maxInFlight;
+    private final LatencyReport report;
+    private final TrafficCapture.Writer recorder;   // null unless recording
+
+    OpenLoopDriver(String baseUrl, int maxInFlight, LatencyReport report, TrafficCapture.Writer recorder) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.maxInFlight = maxInFlight;
+        this.report = report;
+        this.recorder = recorder;
+    }
+
+    /** Sends every source's requests at their offsets from a common start; returns once all are answered. */
+    void run(List<? extends Iterator<TrafficCapture.Request>> sources) throws InterruptedException {
+        ExecutorService callbacks = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(callbacks)
+                .build();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        try {
+            List<Thread> dispatchers = new ArrayList<>(sources.size());
+            for (Iterator<TrafficCapture.Request> source : sources) {
+                Thread dispatcher = new Thread(() -> dispatch(http, inFlight, start, source), "loadgen-dispatcher-" + dispatchers.size());
+                dispatcher.start();
+                dispatchers.add(dispatcher);
+            }
+            for (Thread dispatcher : dispatchers) {
+                dispatcher.join();
+            }
+            inFlight.acquire(maxInFlight); // every response is in
+        } finally {
+            callbacks.shutdownNow();
+        }
+    }
+
+    private void dispatch(HttpClient http, Semaphore inFlight, long start, Iterator<TrafficCapture.Request> source) {
+        while (source.hasNext()) {
+            TrafficCapture.Request request = source.next();
+            long intended = start + request.offsetMicros() * 1000;
+            for (long wait; (wait = intended - System.nanoTime()) > 0; ) {
+                LockSupport.parkNanos(wait);
+            }
+            inFlight.acquireUninterruptibly();
+            if (recorder != null) {
+                recorder.append(request);
+            }
+            String endpoint = request.endpoint();
+            long sent = System.nanoTime();
+            http.sendAsync(toHttp(request), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        long done = System.nanoTime();
+                        inFlight.release();
+                        report.record(endpoint, done - intended, done - sent,
+                                failure == null && response.statusCode() < 400);
+                    });
+        }
+    }
+
+    private HttpRequest toHttp(TrafficCapture.Request request) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + request.uri()))
+                .timeout(Duration.ofSeconds(60));
+        if (request.contentType() != null) builder.header("Content-Type", request.contentType());
+        if (request.contentEncoding() != null) builder.header("Content-Encoding", request.contentEncoding());
+        byte[] body = request.body();
+        return builder.method(request.method(), body == null || body.length == 0
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofByteArray(body)).build();
+    }
+}
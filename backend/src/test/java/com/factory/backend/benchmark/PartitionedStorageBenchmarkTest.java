@@ -0,0 +1,96 @@
+package com.factory.backend.benchmark;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.dto.LineStats;
+import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.MachineEventRepository;
+import com.factory.backend.repository.PartitionedEventStore;
+import com.factory.backend.util.DataGenerator;
+
+// Same 90 days of data in machine_events and in daily partitions (own database)
+@SpringBootTest(properties = {
+    "factory.ingest.persistence=partitioned",
+    "spring.datasource.url=jdbc:h2:mem:partitionbench;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED, matches = "true")
+public class PartitionedStorageBenchmarkTest {
+
+    private static final int DAYS = 90;
+    private static final int EVENTS_PER_DAY = 5_000;
+    private static final int QUERIES = 10;
+
+    @Autowired
+    private PartitionedEventStore store;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void runBenchmark() {
+        Instant now = Instant.now();
+        DataGenerator.Workload workload = DataGenerator.Workload.hotMachines(200)
+                .withHistory(Duration.ofDays(DAYS));
+        for (int chunk = 0; chunk < DAYS; chunk++) {
+            List<MachineEvent> events = DataGenerator.generateWorkload(EVENTS_PER_DAY, workload, chunk, now);
+            store.write(events, List.of());
+            Benchmarks.insertEvents(jdbcTemplate, events);
+        }
+
+        Benchmarks.header("PARTITIONED STORAGE BENCHMARK (" + (DAYS * EVENTS_PER_DAY) + " events, "
+                + store.partitionTables().size() + " daily partitions)");
+        for (int days : new int[] {1, 7, 30}) {
+            Instant start = now.minus(days, ChronoUnit.DAYS).plusMillis(12_345);
+            Instant end = now.minusMillis(6_789);
+            assertEquals(lines(repository.fetchWorstMachines(start, end, Limit.of(10))),
+                    lines(store.fetchWorstMachines(start, end, Limit.of(10))));
+
+            long single = Benchmarks.microsPerQuery(QUERIES,
+                    i -> repository.fetchWorstMachines(start.plusMillis(i), end.plusMillis(i), Limit.of(10)));
+            long partitioned = Benchmarks.microsPerQuery(QUERIES,
+                    i -> store.fetchWorstMachines(start.plusMillis(i), end.plusMillis(i), Limit.of(10)));
+            System.out.println("Top lines, " + days + " day window:");
+            System.out.println("  Single table:   " + single + " us/query");
+            System.out.println("  Partitioned:    " + partitioned + " us/query");
+        }
+
+        // Retention: expire the 30 oldest days
+        Instant cutoff = now.minus(DAYS - 30, ChronoUnit.DAYS).truncatedTo(ChronoUnit.DAYS);
+        long startTime = System.nanoTime();
+        int deleted = jdbcTemplate.update("DELETE FROM machine_events WHERE event_time < ?", Timestamp.from(cutoff));
+        long deleteNanos = System.nanoTime() - startTime;
+        startTime = System.nanoTime();
+        store.expirePartitions(cutoff);
+        long dropNanos = System.nanoTime() - startTime;
+        System.out.println("Retention (" + deleted + " events):");
+        System.out.println("  DELETE rows:    " + (deleteNanos / 1_000_000) + " ms");
+        System.out.println("  DROP partitions: " + (dropNanos / 1_000_000) + " ms");
+        Benchmarks.footer();
+
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+        store.expirePartitions(now.plus(1, ChronoUnit.DAYS));
+    }
+
+    private List<LineStats> lines(List<LineStatsProjection> rows) {
+        return rows.stream().map(l -> new LineStats(l.getLineId(), l.getEventCount(), l.getTotalDefects())).toList();
+    }
+
+}
@@ -0,0 +1,192 @@
+package com.factory.backend.benchmark;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.server.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.factory.backend.BackendApplication;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.EventStore;
+import com.factory.backend.service.DerivedStateRebuilder;
+import com.factory.backend.util.DataGenerator;
+import com.factory.backend.util.DataGenerator.Workload;
+import com.factory.backend.util.TrafficCapture;
+
+/**
+ * Load generator and replay harness at plant scale.
+ *
+ * Without factory.loadgen.url it starts the server on a random port (JDBC
+ * persistence) and bulk-preloads factory.loadgen.preload historical events,
+ * generated in seeded chunks on preload-threads threads and written through the
+ * EventStore, then rebuilds the derived in-memory state. It then drives the
+ * server open-loop (see OpenLoopDriver) at factory.loadgen.rate requests/s for
+ * factory.loadgen.seconds, with a seeded mix of /events/batch posts and stats
+ * reads (SyntheticTraffic), or replays a capture file (factory.loadgen.replay,
+ * written by TrafficCaptureFilter or by factory.loadgen.record) at
+ * factory.loadgen.speed times its original pace. It prints p50..max per
+ * endpoint and writes one .hgrm file per endpoint to factory.loadgen.report-dir.
+ *
+ * Not part of the normal build; run with
+ * ./mvnw -Dtest=ScaleLoadTest -Dfactory.loadgen=true test
+ * Every option and its default is read in the fields below. Ten million
+ * preloaded rows need a heap of several GB for H2 and the in-memory stores
+ * (-DargLine=-Xmx8g).
+ */
+@EnabledIfSystemProperty(named = "factory.loadgen", matches = "true")
+public class ScaleLoadTest {
+
+    private static final int PRELOAD_CHUNK = 10_000;
+
+    private final String url = System.getProperty("factory.loadgen.url", "");
+    private final long seed = Long.getLong("factory.loadgen.seed", 1);
+    private final int machines = Integer.getInteger("factory.loadgen.machines", 5_000);
+    private final double hotMachineShare = doubleProperty("factory.loadgen.hot-machine-share", 0.05);
+    private final double hotTrafficShare = doubleProperty("factory.loadgen.hot-traffic-share", 0.8);
+    private final double lateRatio = doubleProperty("factory.loadgen.late-ratio", 0.1);
+    private final Duration maxLateness = Duration.parse(System.getProperty("factory.loadgen.max-lateness", "PT6H"));
+    private final Duration history = Duration.ofDays(Long.getLong("factory.loadgen.history-days", 90));
+    private final long preload = Long.getLong("factory.loadgen.preload", 10_000_000);
+    private final int preloadThreads = Integer.getInteger("factory.loadgen.preload-threads",
+            Runtime.getRuntime().availableProcessors());
+    private final double rate = doubleProperty("factory.loadgen.rate", 200);
+    private final Duration period = Duration.ofSeconds(Long.getLong("factory.loadgen.seconds", 60));
+    private final int threads = Integer.getInteger("factory.loadgen.threads", 4);
+    private final int maxInFlight = Integer.getInteger("factory.loadgen.max-in-flight", 1_000);
+    private final int batchSize = Integer.getInteger("factory.loadgen.batch-size", 100);
+    private final double resendRatio = doubleProperty("factory.loadgen.resend-ratio", 0.02);
+    private final double resendBatches = doubleProperty("factory.loadgen.resend-batches", 0.1);
+    private final SyntheticTraffic.Mix mix = SyntheticTraffic.Mix.parse(
+            System.getProperty("factory.loadgen.mix", "batch:70,stats:20,top-lines:5,durations:5"));
+    private final String record = System.getProperty("factory.loadgen.record", "");
+    private final String replay = System.getProperty("factory.loadgen.replay", "");
+    private final double speed = doubleProperty("factory.loadgen.speed", 1.0);
+    private final Path reportDir = Path.of(System.getProperty("factory.loadgen.report-dir", "target/loadgen"));
+
+    @Test
+    public void run() throws Exception {
+        // Live batches are recent; history only shapes the preload and the read windows
+        Workload live = new Workload(machines, hotMachineShare, hotTrafficShare, lateRatio, maxLateness,
+                resendRatio, Duration.ofHours(1));
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+        ConfigurableApplicationContext context = url.isBlank() ? start() : null;
+        try {
+            String baseUrl = url;
+            if (context != null) {
+                baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+                preload(context, live.withHistory(history).withResendRatio(0), now);
+            }
+
+            LatencyReport report = new LatencyReport();
+            try (TrafficCapture.Writer recorder = record.isBlank() ? null : new TrafficCapture.Writer(Path.of(record))) {
+                OpenLoopDriver driver = new OpenLoopDriver(baseUrl, maxInFlight, report, recorder);
+                Instant liveStart = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+                long started = System.nanoTime();
+                if (replay.isBlank()) {
+                    long total = (long) (rate * period.toSeconds());
+                    List<SyntheticTraffic> sources = new ArrayList<>(threads);
+                    for (int i = 0; i < threads; i++) {
+                        sources.add(new SyntheticTraffic(live, mix, batchSize, resendBatches, history,
+                                seed, liveStart, rate, total, i, threads));
+                    }
+                    driver.run(sources);
+                } else {
+                    try (Stream<TrafficCapture.Request> captured = TrafficCapture.read(Path.of(replay))) {
+                        Iterator<TrafficCapture.Request> paced = captured
+                                .map(r -> new TrafficCapture.Request((long) (r.offsetMicros() / speed), r.method(),
+                                        r.uri(), r.contentType(), r.contentEncoding(), r.body()))
+                                .iterator();
+                        driver.run(List.of(paced));
+                    }
+                }
+                String title = replay.isBlank()
+                        ? String.format("LOAD TEST RESULT (%,.0f req/s offered for %ds, %,d machines, %,d preloaded)",
+                                rate, period.toSeconds(), machines, context != null ? preload : 0)
+                        : "REPLAY RESULT (" + replay + " at " + speed + "x)";
+                report.print(title, Duration.ofNanos(System.nanoTime() - started), System.out);
+                report.write(reportDir);
+            }
+        } finally {
+            if (context != null) context.close();
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(BackendApplication.class)
+                .profiles("test")
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:loadgen;DB_CLOSE_DELAY=-1",
+                        "factory.ingest.persistence=jdbc",
+                        "factory.ingest.dedupe-index.expected-events=" + Math.max(preload * 2, 1_000_000),
+                        "server.tomcat.accept-count=10000",
+                        "spring.h2.console.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+    }
+
+    // Chunks are generated and written independently, so the rows do not depend on the thread count
+    private void preload(ConfigurableApplicationContext context, Workload workload, Instant now) throws Exception {
+        EventStore store = context.getBean(EventStore.class);
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        long chunks = (preload + PRELOAD_CHUNK - 1) / PRELOAD_CHUNK;
+        AtomicLong nextChunk = new AtomicLong();
+        long started = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(preloadThreads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < preloadThreads; t++) {
+                workers.add(pool.submit(() -> {
+                    for (long chunk; (chunk = nextChunk.getAndIncrement()) < chunks; ) {
+                        int size = (int) Math.min(PRELOAD_CHUNK, preload - chunk * PRELOAD_CHUNK);
+                        List<MachineEvent> events = DataGenerator.generateWorkload(size, workload, seedOf(seed, 0, chunk), now);
+                        tx.executeWithoutResult(status -> store.write(events, List.of()));
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        long loaded = System.nanoTime();
+
+        context.getBean(DerivedStateRebuilder.class).rebuild();
+        System.out.printf("Preloaded %,d events over %d days in %,d ms (%,.0f events/s), derived state rebuilt in %,d ms%n",
+                preload, history.toDays(), (loaded - started) / 1_000_000,
+                preload / Math.max((loaded - started) / 1e9, 1e-9), (System.nanoTime() - loaded) / 1_000_000);
+    }
+
+    /** Independent seed for each (run seed, stream, index): preload chunks, dispatchers and batches never share one. */
+    static long seedOf(long seed, int stream, long index) {
+        long h = seed * 0x9E3779B97F4A7C15L + stream;
+        h = h * 0x9E3779B97F4A7C15L + index;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
@@ -0,0 +1,95 @@
+package com.factory.backend.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.util.unit.DataSize;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.repository.MachineEventRepository;
+import com.factory.backend.service.BinaryBatchCodec;
+import com.factory.backend.service.LocalCluster;
+
+// Ingest throughput of 1, 2 and 4 sharded nodes on localhost; clients spread batches over all nodes.
+// Starts seven application contexts, so it is not part of the normal build: -Dfactory.cluster.benchmark=true
+@EnabledIfSystemProperty(named = "factory.cluster.benchmark", matches = "true")
+public class ShardedIngestBenchmarkTest {
+
+    private static final int CLIENTS = 4;
+    private static final int BATCHES = 80;
+    private static final int BATCH_SIZE = 1000;
+    private static final int MACHINES = 500;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final BinaryBatchCodec codec = new BinaryBatchCodec(DataSize.ofMegabytes(16));
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @Test
+    public void runBenchmark() throws Exception {
+        System.out.println("\n\n========================================");
+        System.out.println("SHARDED INGEST BENCHMARK (" + CLIENTS + " clients, " + BATCHES + " x " + BATCH_SIZE
+                + " events, " + MACHINES + " machines, " + Runtime.getRuntime().availableProcessors() + " cores)");
+        for (int nodes : new int[] {1, 2, 4}) {
+            try (LocalCluster cluster = new LocalCluster("sharded-bench-" + nodes, nodes)) {
+                run(cluster, 10); // warmup
+                long start = System.nanoTime();
+                run(cluster, BATCHES);
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                long stored = 0;
+                for (int node = 0; node < nodes; node++) {
+                    stored += cluster.bean(node, MachineEventRepository.class).count();
+                }
+                assertEquals((10L + BATCHES) * BATCH_SIZE, stored);
+                System.out.println("Nodes: " + nodes + "  ->  " + Math.round(BATCHES * BATCH_SIZE / seconds) + " events/sec");
+            }
+        }
+        System.out.println("========================================\n\n");
+    }
+
+    private void run(LocalCluster cluster, int batches) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int b = 0; b < batches; b++) {
+                String url = cluster.url(b % cluster.size()) + "/events/batch";
+                byte[] body = codec.encode(batch(new Random(b)), false);
+                done.add(clients.submit(() -> {
+                    HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(url))
+                            .header("Content-Type", BinaryBatchCodec.CONTENT_TYPE)
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build(),
+                            HttpResponse.BodyHandlers.ofString());
+                    assertEquals(200, response.statusCode(), response.body());
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) f.get();
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    private List<EventRow> batch(Random random) {
+        List<EventRow> rows = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            rows.add(new EventRow(UUID.randomUUID().toString(), "M-" + random.nextInt(MACHINES),
+                    now.minusSeconds(random.nextInt(86400)).toEpochMilli(), now.toEpochMilli(),
+                    100 + random.nextInt(5000), random.nextInt(5)));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,91 @@
+package com.factory.backend.benchmark;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.MachineEventRepository;
+import com.factory.backend.service.RollupService;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED, matches = "true")
+public class StatsRollupBenchmarkTest {
+
+    private static final int QUERIES = 20;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void runBenchmark() {
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+
+        Random random = new Random(7);
+        Instant now = Instant.now();
+        // 30-day window with ragged edges, the typical dashboard query
+        Instant start = now.minusSeconds(30L * 86400).plusMillis(12_345);
+        Instant end = now.minusMillis(6_789);
+
+        Benchmarks.header("STATS BENCHMARK (30-day window, one busy machine)");
+        int stored = 0;
+        for (int target : new int[] {25_000, 100_000, 400_000}) {
+            // 1. Grow the history of the same machine (bulk insert, then rebuild the buckets)
+            while (stored < target) {
+                int size = Math.min(10_000, target - stored);
+                insertEvents(size, now, random);
+                stored += size;
+            }
+            rollupService.rebuild();
+
+            // 2. Both paths must agree before timing them
+            assertEquals(repository.getStats("M-HOT", start, end), rollupService.getStats("M-HOT", start, end));
+
+            long raw = Benchmarks.microsPerQuery(QUERIES,
+                    i -> repository.getStats("M-HOT", start.plusMillis(i), end.plusMillis(i)));
+            long rollup = Benchmarks.microsPerQuery(QUERIES,
+                    i -> rollupService.getStats("M-HOT", start.plusMillis(i), end.plusMillis(i)));
+
+            System.out.println("Stored Events:    " + stored);
+            System.out.println("  Raw query:      " + raw + " us/query");
+            System.out.println("  Rollup query:   " + rollup + " us/query");
+        }
+        Benchmarks.footer();
+
+        // deleteAll() would load every entity first
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+        rollupService.rebuild();
+    }
+
+    private void insertEvents(int count, Instant now, Random random) {
+        List<MachineEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(MachineEvent.builder()
+                    .eventId(UUID.randomUUID().toString())
+                    .machineId(random.nextInt(5) == 0 ? "M-" + random.nextInt(10) : "M-HOT")
+                    .eventTime(now.minusSeconds(random.nextInt(32 * 86400)))
+                    .receivedTime(now)
+                    .durationMs(100 + random.nextInt(5000))
+                    .defectCount(random.nextInt(10) == 0 ? -1 : random.nextInt(5))
+                    .build());
+        }
+        Benchmarks.insertEvents(jdbcTemplate, events);
+    }
+}
@@ -0,0 +1,185 @@
+package com.factory.backend.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.util.DataGenerator;
+import com.factory.backend.util.DataGenerator.Workload;
+import com.factory.backend.util.TrafficCapture;
+
+/**
+ * One dispatcher's share of a seeded synthetic request mix. Request g of the run
+ * is due at g / rate seconds; with n dispatchers this one produces requests
+ * index, index + n, ... so the dispatchers together offer exactly rate.
+ *
+ * Batches come from DataGenerator.generateWorkload (hot machines, late
+ * arrivals, in-batch resends); resendBatches of the batch posts repeat one of
+ * the dispatcher's recent bodies verbatim, like a gateway reconnecting. Reads
+ * pick their machine with the same skew and a window somewhere in history.
+ * Same seed, same requests.
+ */
+final class SyntheticTraffic implements Iterator<TrafficCapture.Request> {
+
+    private static final int RECENT_BODIES = 64;
+    private static final Duration[] WINDOWS = {
+            Duration.ofHours(1), Duration.ofHours(24), Duration.ofDays(7), Duration.ofDays(30)};
+    private static final String[] LEADERBOARD_WINDOWS = {"1h", "24h", "7d"};
+
+    /** Relative weights of the request types, parsed from "batch:70,stats:20,top-lines:5,durations:5". */
+    record Mix(int batch, int stats, int topLines, int durations) {
+
+        static Mix parse(String spec) {
+            int batch = 0, stats = 0, topLines = 0, durations = 0;
+            for (String part : spec.split(",")) {
+                String[] kv = part.trim().split(":");
+                int weight = Integer.parseInt(kv[1].trim());
+                switch (kv[0].trim()) {
+                    case "batch" -> batch = weight;
+                    case "stats" -> stats = weight;
+                    case "top-lines" -> topLines = weight;
+                    case "durations" -> durations = weight;
+                    default -> throw new IllegalArgumentException("Unknown request type " + kv[0]);
+                }
+            }
+            if (batch + stats + topLines + durations <= 0) {
+                throw new IllegalArgumentException("Empty request mix " + spec);
+            }
+            return new Mix(batch, stats, topLines, durations);
+        }
+
+        int total() {
+            return batch + stats + topLines + durations;
+        }
+    }
+
+    private final Workload workload;
+    private final Mix mix;
+    private final int batchSize;
+    private final double resendBatches;
+    private final Duration history;
+    private final long seed;
+    private final Instant start;
+    private final double intervalMicros;
+    private final long total;
+    private final int stride;
+    private final Random random;
+    private final List<byte[]> recent = new ArrayList<>();
+    private final int hotMachines;
+    private long next;
+
+    /**
+     * workload shapes the posted batches (its history should be short: live traffic);
+     * history is how far back the read windows reach.
+     */
+    SyntheticTraffic(Workload workload, Mix mix, int batchSize, double resendBatches, Duration history,
+                     long seed, Instant start, double rate, long total, int index, int stride) {
+        this.workload = workload;
+        this.mix = mix;
+        this.batchSize = batchSize;
+        this.resendBatches = resendBatches;
+        this.history = history;
+        this.seed = seed;
+        this.start = start;
+        this.intervalMicros = 1_000_000.0 / rate;
+        this.total = total;
+        this.stride = stride;
+        this.random = new Random(ScaleLoadTest.seedOf(seed, 1, index));
+        this.hotMachines = (int) Math.ceil(workload.machines() * workload.hotMachineShare());
+        this.next = index;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next < total;
+    }
+
+    @Override
+    public TrafficCapture.Request next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        long g = next;
+        next += stride;
+        long offsetMicros = (long) (g * intervalMicros);
+        Instant now = start.plus(offsetMicros, ChronoUnit.MICROS).truncatedTo(ChronoUnit.MILLIS);
+
+        int pick = random.nextInt(mix.total());
+        if ((pick -= mix.batch()) < 0) {
+            return post(offsetMicros, batchBody(g, now));
+        }
+        if ((pick -= mix.stats()) < 0) {
+            Instant[] window = window(now);
+            return get(offsetMicros, "/stats?machineId=" + machine() + "&start=" + window[0] + "&end=" + window[1]);
+        }
+        if ((pick -= mix.topLines()) < 0) {
+            if (random.nextBoolean()) {
+                return get(offsetMicros, "/stats/top-defect-lines?window="
+                        + LEADERBOARD_WINDOWS[random.nextInt(LEADERBOARD_WINDOWS.length)] + "&limit=10");
+            }
+            Instant[] window = window(now);
+            return get(offsetMicros, "/stats/top-defect-lines?from=" + window[0] + "&to=" + window[1] + "&limit=10");
+        }
+        Instant[] window = window(now);
+        return get(offsetMicros, "/stats/durations?" + (random.nextBoolean() ? "machineId=" + machine() + "&" : "")
+                + "start=" + window[0] + "&end=" + window[1]);
+    }
+
+    private byte[] batchBody(long g, Instant now) {
+        if (!recent.isEmpty() && random.nextDouble() < resendBatches) {
+            return recent.get(random.nextInt(recent.size()));
+        }
+        byte[] body = toJson(DataGenerator.generateWorkload(batchSize, workload, ScaleLoadTest.seedOf(seed, 2, g), now));
+        if (recent.size() == RECENT_BODIES) {
+            recent.set(random.nextInt(RECENT_BODIES), body);
+        } else {
+            recent.add(body);
+        }
+        return body;
+    }
+
+    // Same skew as DataGenerator.generateWorkload
+    private String machine() {
+        int machine;
+        if (hotMachines > 0 && random.nextDouble() < workload.hotTrafficShare()) {
+            machine = random.nextInt(hotMachines);
+        } else {
+            machine = hotMachines + random.nextInt(Math.max(workload.machines() - hotMachines, 1));
+        }
+        return String.format("M-%05d", machine);
+    }
+
+    private Instant[] window(Instant now) {
+        Duration length = WINDOWS[random.nextInt(WINDOWS.length)];
+        long back = (long) (random.nextDouble() * Math.max(history.minus(length).toSeconds(), 0));
+        Instant end = now.truncatedTo(ChronoUnit.SECONDS).minusSeconds(back);
+        return new Instant[] {end.minus(length), end};
+    }
+
+    private static TrafficCapture.Request post(long offsetMicros, byte[] body) {
+        return new TrafficCapture.Request(offsetMicros, "POST", "/events/batch", "application/json", null, body);
+    }
+
+    private static TrafficCapture.Request get(long offsetMicros, String uri) {
+        return new TrafficCapture.Request(offsetMicros, "GET", uri, null, null, null);
+    }
+
+    static byte[] toJson(List<MachineEvent> events) {
+        StringBuilder body = new StringBuilder(events.size() * 200).append('[');
+        for (MachineEvent e : events) {
+            if (body.length() > 1) body.append(',');
+            body.append("{\"eventId\":\"").append(e.getEventId())
+                    .append("\",\"machineId\":\"").append(e.getMachineId())
+                    .append("\",\"eventTime\":\"").append(e.getEventTime())
+                    .append("\",\"receivedTime\":\"").append(e.getReceivedTime())
+                    .append("\",\"durationMs\":").append(e.getDurationMs())
+                    .append(",\"defectCount\":").append(e.getDefectCount()).append('}');
+        }
+        return body.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,211 @@
+package com.factory.backend.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.server.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.factory.backend.BackendApplication;
+
+/**
+ * Closed-loop HTTP load against the real server, once with platform threads and
+ * once with virtual threads (spring.threads.virtual.enabled). Every client sends
+ * a 10-event /events/batch POST followed by a /stats GET, back to back, for the
+ * measured period. eventIds come from a bounded pool, so after the first pass
+ * most events are gateway retries (dedupes/updates) and the table stays small.
+ *
+ * Not part of the normal build; run with
+ * ./mvnw -Dtest=ThreadModeLoadTest -Dfactory.loadtest=true test
+ * Optional: -Dfactory.loadtest.clients=100,1000,10000 -Dfactory.loadtest.seconds=15
+ * Client and server share the process, so 10,000 clients need roughly 20,000
+ * file descriptors (ulimit -n).
+ */
+@EnabledIfSystemProperty(named = "factory.loadtest", matches = "true")
+public class ThreadModeLoadTest {
+
+    private static final int EVENTS_PER_POST = 10;
+    private static final int EVENT_ID_POOL = 200_000;
+    private static final int MACHINES = 50;
+
+    @Test
+    public void compareThreadModes() throws Exception {
+        int[] clientCounts = Arrays.stream(System.getProperty("factory.loadtest.clients", "100,1000,10000").split(","))
+                .mapToInt(c -> Integer.parseInt(c.trim())).toArray();
+        Duration period = Duration.ofSeconds(Long.getLong("factory.loadtest.seconds", 15));
+
+        List<String> rows = new ArrayList<>();
+        for (boolean virtual : new boolean[] {false, true}) {
+            String mode = virtual ? "virtual" : "platform";
+            try (ConfigurableApplicationContext context = start(mode, virtual)) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                run(port, 100, Duration.ofSeconds(5)); // warm-up, not reported
+                for (int clients : clientCounts) {
+                    Result result = run(port, clients, period);
+                    String row = mode + " | " + clients + " | " + result;
+                    rows.add(row);
+                    System.out.println(row);
+                }
+            }
+        }
+
+        System.out.println("\n\n========================================");
+        System.out.println("LOAD TEST RESULT (" + period.toSeconds() + "s per level)");
+        System.out.println("Mode | Clients | Requests/s | p50 | p99 | Errors");
+        rows.forEach(System.out::println);
+        System.out.println("========================================\n\n");
+    }
+
+    private ConfigurableApplicationContext start(String mode, boolean virtual) {
+        return new SpringApplicationBuilder(BackendApplication.class)
+                .profiles("test")
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + virtual,
+                        "spring.datasource.url=jdbc:h2:mem:loadtest-" + mode + ";DB_CLOSE_DELAY=-1",
+                        "server.tomcat.accept-count=10000",
+                        "spring.h2.console.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+    }
+
+    private Result run(int port, int clients, Duration period) throws InterruptedException {
+        ExecutorService callbacks = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(60))
+                .executor(callbacks)
+                .build();
+        try {
+            URI batchUri = URI.create("http://localhost:" + port + "/events/batch");
+            String statsBase = "http://localhost:" + port + "/stats?machineId=";
+            long deadline = System.nanoTime() + period.toNanos();
+            AtomicLong errors = new AtomicLong();
+            List<Client> all = new ArrayList<>(clients);
+            List<CompletableFuture<Void>> done = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                Client client = new Client(http, batchUri, statsBase, deadline, errors);
+                all.add(client);
+                done.add(client.loop());
+            }
+            CompletableFuture.allOf(done.toArray(CompletableFuture[]::new)).join();
+
+            int total = all.stream().mapToInt(c -> c.count).sum();
+            long[] latencies = new long[total];
+            int offset = 0;
+            for (Client c : all) {
+                System.arraycopy(c.latencies, 0, latencies, offset, c.count);
+                offset += c.count;
+            }
+            Arrays.sort(latencies);
+            return new Result(total / (double) period.toSeconds(), percentile(latencies, 0.50),
+                    percentile(latencies, 0.99), errors.get());
+        } finally {
+            callbacks.shutdownNow();
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private record Result(double throughput, long p50Micros, long p99Micros, long errors) {
+        @Override
+        public String toString() {
+            return String.format("%,.0f | %.1f ms | %.1f ms | %d", throughput, p50Micros / 1000.0, p99Micros / 1000.0, errors);
+        }
+    }
+
+    // One closed-loop client; its callbacks run one after another, so no locking
+    private static final class Client {
+        private final HttpClient http;
+        private final URI batchUri;
+        private final String statsBase;
+        private final long deadline;
+        private final AtomicLong errors;
+        private long[] latencies = new long[256];
+        private int count;
+        private boolean post = true;
+
+        Client(HttpClient http, URI batchUri, String statsBase, long deadline, AtomicLong errors) {
+            this.http = http;
+            this.batchUri = batchUri;
+            this.statsBase = statsBase;
+            this.deadline = deadline;
+            this.errors = errors;
+        }
+
+        CompletableFuture<Void> loop() {
+            if (System.nanoTime() >= deadline) {
+                return CompletableFuture.completedFuture(null);
+            }
+            HttpRequest request = post ? batchRequest() : statsRequest();
+            post = !post;
+            long start = System.nanoTime();
+            return http.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, failure) -> {
+                        if (failure != null || response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        } else if (System.nanoTime() < deadline) {
+                            record((System.nanoTime() - start) / 1000);
+                        }
+                        return null;
+                    })
+                    .thenCompose(ignored -> loop());
+        }
+
+        private void record(long micros) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = micros;
+        }
+
+        private HttpRequest batchRequest() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+            StringBuilder body = new StringBuilder("[");
+            for (int i = 0; i < EVENTS_PER_POST; i++) {
+                if (i > 0) body.append(',');
+                body.append("{\"eventId\":\"LT-").append(random.nextInt(EVENT_ID_POOL))
+                        .append("\",\"machineId\":\"M-").append(random.nextInt(MACHINES))
+                        .append("\",\"eventTime\":\"").append(now.minusSeconds(random.nextInt(3600)))
+                        .append("\",\"receivedTime\":\"").append(now)
+                        .append("\",\"durationMs\":").append(100 + random.nextInt(5000))
+                        .append(",\"defectCount\":").append(random.nextInt(5)).append('}');
+            }
+            body.append(']');
+            return HttpRequest.newBuilder(batchUri)
+                    .timeout(Duration.ofSeconds(60))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                    .build();
+        }
+
+        private HttpRequest statsRequest() {
+            Instant end = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+            return HttpRequest.newBuilder(URI.create(statsBase + "M-" + ThreadLocalRandom.current().nextInt(MACHINES)
+                            + "&start=" + end.minus(1, ChronoUnit.HOURS) + "&end=" + end))
+                    .timeout(Duration.ofSeconds(60))
+                    .GET()
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.factory.backend.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.factory.backend.BackendApplication;
+import com.factory.backend.repository.MachineEventRepository;
+import com.factory.backend.service.EventSnapshot;
+import com.factory.backend.util.DataGenerator;
+import com.factory.backend.util.DataGenerator.Workload;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Time to ready after a restart from a snapshot.
+ *
+ * Writes a snapshot of factory.restart.events generated events (90 days, 5,000
+ * machines with hot lines, unique ids) with EventSnapshot.Writer, then starts
+ * the application against an empty file-backed H2 database with snapshots on
+ * (JPA persistence, the default). It reports the restore (bulk INSERTs), the
+ * single-scan rebuild of the derived stores, and the total from starting the
+ * context until it accepts traffic.
+ *
+ * Not part of the normal build; run with
+ * ./mvnw -Dtest=WarmRestartBenchmarkTest -Dfactory.restart=true -DargLine=-Xmx4g test
+ * The database goes to a file so that ten million rows do not have to fit the heap;
+ * -Dfactory.restart.url=--spring.datasource.url=... points it elsewhere (see BenchMark.md).
+ */
+@EnabledIfSystemProperty(named = "factory.restart", matches = "true")
+public class WarmRestartBenchmarkTest {
+
+    private static final int CHUNK = 10_000;
+
+    private final long events = Long.getLong("factory.restart.events", 10_000_000);
+    private final Path dir = Path.of(System.getProperty("factory.restart.dir", "target/warm-restart"));
+
+    @Test
+    public void timeToReady() throws Exception {
+        clean(dir);
+        Path file = dir.resolve("events.snap");
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Workload workload = Workload.hotMachines(5_000).withHistory(Duration.ofDays(90));
+
+        long started = System.nanoTime();
+        EventSnapshot.Header header;
+        try (EventSnapshot.Writer writer = new EventSnapshot.Writer(file, 0)) {
+            for (long done = 0, chunk = 0; done < events; done += CHUNK, chunk++) {
+                int size = (int) Math.min(CHUNK, events - done);
+                DataGenerator.generateWorkload(size, workload, ScaleLoadTest.seedOf(1, 0, chunk), now).forEach(writer::append);
+            }
+            header = writer.commit();
+        }
+        System.out.printf("Snapshot of %,d events written in %,d ms (%,d bytes)%n", header.eventCount(),
+                (System.nanoTime() - started) / 1_000_000, header.fileLength());
+
+        started = System.nanoTime();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BackendApplication.class)
+                .profiles("test")
+                // Arguments, since default properties would lose to application.properties
+                .run("--server.port=0",
+                        System.getProperty("factory.restart.url", "--spring.datasource.url=jdbc:h2:file:" + dir.toAbsolutePath().resolve("db")),
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--factory.snapshot.enabled=true",
+                        "--factory.snapshot.file=" + file.toAbsolutePath(),
+                        "--factory.snapshot.on-shutdown=false",
+                        "--factory.ingest.dedupe-index.expected-events=" + Math.max(events * 2, 1_000_000),
+                        "--spring.h2.console.enabled=false")) {
+            long ready = System.nanoTime() - started;
+            MeterRegistry meters = context.getBean(MeterRegistry.class);
+            assertEquals(events, context.getBean(MachineEventRepository.class).count());
+
+            System.out.println("\n=== WARM RESTART (" + String.format("%,d", events) + " events) ===");
+            System.out.printf("Restore (bulk INSERT): %,.0f ms%n",
+                    meters.get("factory.snapshot.restore").timer().totalTime(TimeUnit.MILLISECONDS));
+            System.out.printf("Context start to ready (restore + rebuild): %,d ms%n", ready / 1_000_000);
+        }
+    }
+
+    private static void clean(Path dir) throws Exception {
+        if (Files.exists(dir)) {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+        Files.createDirectories(dir);
+    }
+}
@@ -0,0 +1,151 @@
+package com.factory.backend.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.MachineEventRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AsyncIngestServiceTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private DatabasePermits permits;
+
+    @Autowired
+    private IngestTuner tuner;
+
+    @Autowired
+    private IngestMetrics metrics;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    private AsyncIngestService asyncService;
+
+    private final Instant base = Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MILLIS);
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        asyncService.stop();
+    }
+
+    // Once on platform writers, once on virtual ones
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void mergedBatchesKeepTheirOwnCounts(boolean virtualThreads) throws InterruptedException {
+        asyncService = new AsyncIngestService(eventService, new IngestionCoordinator(eventService, permits, tuner, metrics, 4), new SimpleMeterRegistry(), 100, 1, 5000, 100, virtualThreads);
+        asyncService.start();
+
+        List<IngestTicket> tickets = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            // Every batch re-sends E-0 (deduped after the first) plus one new id and one invalid event
+            tickets.add(asyncService.submit(List.of(
+                    event("E-0", 1000, 0),
+                    event("E-" + (i + 1), 1000, 1),
+                    event("E-BAD-" + i, -1, 0))));
+        }
+
+        for (int i = 0; i < tickets.size(); i++) {
+            IngestTicket ticket = await(tickets.get(i));
+            assertEquals(IngestTicket.Status.DONE, ticket.getStatus());
+            assertEquals(i == 0 ? 2 : 1, (int) ticket.toMap().get("accepted"));
+            assertEquals(i == 0 ? 0 : 1, (int) ticket.toMap().get("deduped"));
+            assertEquals(1, (int) ticket.toMap().get("rejected"));
+        }
+        assertEquals(21, repository.count());
+    }
+
+    @Test
+    void fullQueueIsRefused() {
+        // No writers, so nothing drains the two slots
+        asyncService = new AsyncIngestService(eventService, new IngestionCoordinator(eventService, permits, tuner, metrics, 4), new SimpleMeterRegistry(), 2, 0, 5000, 100, false);
+        asyncService.start();
+
+        assertNotNull(asyncService.submit(List.of(event("Q-1", 1000, 0))));
+        assertNotNull(asyncService.submit(List.of(event("Q-2", 1000, 0))));
+        assertNull(asyncService.submit(List.of(event("Q-3", 1000, 0))));
+        assertEquals(2, asyncService.queueDepth());
+    }
+
+    @Test
+    void partialCommitIsFoldedIntoTheTickets() throws InterruptedException {
+        // Fails the first merged group after its first batch and one event of the second had committed
+        IngestionCoordinator partlyFailing = new IngestionCoordinator(eventService, permits, tuner, metrics, 4) {
+            private boolean failed;
+
+            @Override
+            public List<Map<String, Object>> processBatches(List<List<MachineEvent>> batches) {
+                if (failed || batches.size() < 2) {
+                    return super.processBatches(batches);
+                }
+                failed = true;
+                List<Map<String, Object>> committed = new ArrayList<>(
+                        super.processBatches(List.of(batches.get(0), batches.get(1).subList(0, 1))));
+                while (committed.size() < batches.size()) {
+                    committed.add(Map.of("accepted", 0, "deduped", 0, "updated", 0, "rejected", 0));
+                }
+                throw new PartialIngestException(committed, new IllegalStateException("connection lost"));
+            }
+        };
+        asyncService = new AsyncIngestService(eventService, partlyFailing, new SimpleMeterRegistry(), 100, 1, 5000, 100, false);
+        // Queued before the writer starts, so it merges all three into one group
+        IngestTicket first = asyncService.submit(List.of(event("F-1", 1000, 0), event("F-2", 1000, 0)));
+        IngestTicket second = asyncService.submit(List.of(event("F-3", 1000, 0), event("F-4", 1000, 0), event("F-BAD", -1, 0)));
+        IngestTicket third = asyncService.submit(List.of(event("F-5", 1000, 0)));
+        asyncService.start();
+
+        assertEquals(2, (int) await(first).toMap().get("accepted"));
+        Map<String, Object> retried = await(second).toMap();
+        assertEquals(IngestTicket.Status.DONE.name(), retried.get("status"));
+        assertEquals(2, (int) retried.get("accepted"));
+        assertEquals(0, (int) retried.get("deduped"));
+        assertEquals(1, (int) retried.get("rejected"));
+        assertEquals(1, (int) await(third).toMap().get("accepted"));
+        assertEquals(5, repository.count());
+    }
+
+    private IngestTicket await(IngestTicket ticket) throws InterruptedException {
+        for (int i = 0; i < 500 && ticket.getStatus() == IngestTicket.Status.QUEUED; i++) {
+            Thread.sleep(10);
+        }
+        return asyncService.getTicket(ticket.getTicketId());
+    }
+
+    private MachineEvent event(String id, long duration, int defects) {
+        return MachineEvent.builder()
+                .eventId(id)
+                .machineId("M-1")
+                .eventTime(base)
+                .receivedTime(base)
+                .durationMs(duration)
+                .defectCount(defects)
+                .build();
+    }
+}
@@ -0,0 +1,100 @@
+package com.factory.backend.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.util.DataGenerator;
+
+import tools.jackson.databind.json.JsonMapper;
+
+class BinaryBatchCodecTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final EventRowCodec jsonCodec = new EventRowCodec(jsonMapper, 1024);
+    private final BinaryBatchCodec codec = new BinaryBatchCodec(DataSize.ofMegabytes(16));
+
+    @Test
+    void decodesToTheSameRowsAsJson() {
+        List<MachineEvent> events = DataGenerator.generateWorkload(2_000,
+                DataGenerator.Workload.lateArrivals(500), 7, Instant.now().truncatedTo(ChronoUnit.MILLIS));
+        byte[] json = jsonMapper.writeValueAsBytes(events);
+        List<EventRow> rows = jsonCodec.readAll(new ByteArrayInputStream(json));
+
+        byte[] binary = codec.encode(rows, false);
+        assertEquals(rows, codec.decode(ByteBuffer.wrap(binary)));
+        assertEquals(rows, codec.decode(new ByteArrayInputStream(codec.encode(rows, true)), true));
+        assertTrue(binary.length * 3 < json.length, binary.length + " binary bytes vs " + json.length + " JSON");
+    }
+
+    @Test
+    void keepsNonUuidIdsMissingFieldsAndOutOfOrderTimes() {
+        List<EventRow> rows = List.of(
+                new EventRow("E-1", "M-1", 1_768_471_200_000L, 1_768_471_205_250L, 100, -1),
+                new EventRow("0F8FAD5B-D9CB-469F-A165-70867728950E", "M-2", 1_768_471_100_000L, 1_768_471_100_000L, 0, 3),
+                new EventRow("0f8fad5b-d9cb-469f-a165-70867728950e", null, EventRow.MISSING_TIME, 1_768_471_300_000L, -5, 0),
+                new EventRow(null, "M-1", -86_400_000L, EventRow.MISSING_TIME, Long.MAX_VALUE, Integer.MIN_VALUE),
+                new EventRow("Ä-ü", "M-ß", 0, 0, 0, 0));
+
+        assertEquals(rows, codec.decode(ByteBuffer.wrap(codec.encode(rows, false))));
+        assertEquals(List.of(), codec.decode(ByteBuffer.wrap(codec.encode(List.of(), false))));
+    }
+
+    @Test
+    void malformedInputIsAnIllegalArgument() {
+        byte[] valid = codec.encode(List.of(new EventRow("E-1", "M-1", 1_000, 2_000, 10, 1)), false);
+
+        assertThrows(IllegalArgumentException.class, () -> decode("JSON".getBytes()));
+        assertThrows(IllegalArgumentException.class, () -> decode(Arrays.copyOf(valid, valid.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> decode(Arrays.copyOf(valid, valid.length + 1)));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new ByteArrayInputStream(valid), true));
+
+        byte[] badIndex = valid.clone();
+        badIndex[4 + 1 + 1 + 3 + 1 + 1 + 1 + 3] = 7; // machine index of the only event
+        assertThrows(IllegalArgumentException.class, () -> decode(badIndex));
+
+        byte[] hugeCount = {'F', 'E', 'B', '1', (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        assertThrows(IllegalArgumentException.class, () -> decode(hugeCount));
+    }
+
+    @Test
+    void bodyOverTheLimitIsRefusedBeforeItIsInflated() {
+        List<EventRow> rows = List.of(new EventRow("E-1", "M-1", 1_000, 2_000, 10, 1));
+        byte[] plain = codec.encode(rows, false);
+        BinaryBatchCodec exact = new BinaryBatchCodec(DataSize.ofBytes(plain.length));
+        assertEquals(rows, exact.decode(new ByteArrayInputStream(codec.encode(rows, true)), true));
+
+        BinaryBatchCodec small = new BinaryBatchCodec(DataSize.ofBytes(plain.length - 1));
+        assertThrows(BatchTooLargeException.class, () -> small.decode(new ByteArrayInputStream(plain), false));
+
+        // 64 MB of zeros gzips to about 64 KB; only the first megabyte is ever inflated
+        ByteArrayOutputStream bomb = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bomb)) {
+            byte[] zeros = new byte[1 << 20];
+            for (int i = 0; i < 64; i++) gzip.write(zeros);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        BinaryBatchCodec capped = new BinaryBatchCodec(DataSize.ofMegabytes(1));
+        assertThrows(BatchTooLargeException.class, () -> capped.decode(new ByteArrayInputStream(bomb.toByteArray()), true));
+    }
+
+    private List<EventRow> decode(byte[] bytes) {
+        return codec.decode(ByteBuffer.wrap(bytes));
+    }
+}
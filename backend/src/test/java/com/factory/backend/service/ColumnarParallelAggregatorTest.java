@@ -0,0 +1,21 @@
+package com.factory.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+// The ParallelAggregatorTest scenario with machine shards over the columnar store
+@SpringBootTest(properties = {
+    "factory.stats.parallelism=4",
+    "factory.stats.columnar.enabled=true",
+    "spring.datasource.url=jdbc:h2:mem:parallelcolumnar;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("test")
+class ColumnarParallelAggregatorTest extends ParallelAggregatorTest {
+
+    @BeforeEach
+    void columnarIsServing() {
+        assertTrue(columnarStore.isEnabled());
+    }
+}
@@ -0,0 +1,109 @@
+package com.factory.backend.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.dto.LineStats;
+import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.dto.MachineStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.MachineEventRepository;
+
+// Columnar answers against the SQL queries, incrementally and after a rebuild
+@SpringBootTest(properties = {
+    "factory.stats.columnar.enabled=true",
+    "spring.datasource.url=jdbc:h2:mem:columnar;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("test")
+class ColumnarStoreTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private ColumnarStore columnarStore;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    private final Random random = new Random(21);
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        columnarStore.rebuild();
+    }
+
+    @Test
+    void matchesSqlIncludingUpdatesAndRebuild() {
+        List<MachineEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            batch.add(event("C-" + i, "M-" + random.nextInt(5), now.minusMillis(random.nextInt(3 * 86400_000)),
+                    now.minusSeconds(600), random.nextInt(10) == 0 ? -1 : random.nextInt(5)));
+        }
+        eventService.processBatch(batch);
+        assertMatchesSql();
+
+        // In-place corrections (same machine and time) plus updates that move rows
+        List<MachineEvent> updates = new ArrayList<>();
+        for (int i = 0; i < 3000; i += 5) {
+            MachineEvent old = batch.get(i);
+            updates.add(i % 2 == 0
+                    ? event(old.getEventId(), old.getMachineId(), old.getEventTime(), now, random.nextInt(9))
+                    : event(old.getEventId(), "M-" + random.nextInt(5),
+                            now.minusMillis(random.nextInt(3 * 86400_000)), now, random.nextInt(9)));
+        }
+        eventService.processBatch(updates);
+        assertMatchesSql();
+
+        long rows = columnarStore.rows();
+        columnarStore.rebuild();
+        assertTrue(columnarStore.isEnabled(), "startup verification against SQL failed");
+        assertEquals(rows, columnarStore.rows());
+        assertEquals(repository.count(), rows);
+        assertMatchesSql();
+    }
+
+    private void assertMatchesSql() {
+        for (int i = 0; i < 200; i++) {
+            String machineId = "M-" + random.nextInt(6);
+            Instant start = now.minusMillis((long) (random.nextDouble() * 4 * 86400_000L));
+            Instant end = start.plusMillis((long) (random.nextDouble() * 2 * 86400_000L));
+            MachineStats raw = repository.getStats(machineId, start, end);
+            assertEquals(raw, columnarStore.getStats(machineId, start, end), machineId + " [" + start + ", " + end + ")");
+
+            List<LineStats> columnar = columnarStore.fetchWorstMachines(start, end, 3);
+            List<LineStatsProjection> sql = repository.fetchWorstMachines(start, end, Limit.of(3));
+            assertEquals(sql.size(), columnar.size());
+            for (int j = 0; j < sql.size(); j++) {
+                assertEquals(sql.get(j).getLineId(), columnar.get(j).getLineId());
+                assertEquals(sql.get(j).getEventCount(), columnar.get(j).getEventCount());
+                assertEquals(sql.get(j).getTotalDefects(), columnar.get(j).getTotalDefects());
+            }
+        }
+    }
+
+    private MachineEvent event(String id, String machineId, Instant eventTime, Instant receivedTime, int defects) {
+        return MachineEvent.builder()
+                .eventId(id)
+                .machineId(machineId)
+                .eventTime(eventTime)
+                .receivedTime(receivedTime)
+                .durationMs(1000 + random.nextInt(3))
+                .defectCount(defects)
+                .build();
+    }
+}
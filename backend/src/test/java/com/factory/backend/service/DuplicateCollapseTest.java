@@ -0,0 +1,122 @@
+package com.factory.backend.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.MachineEventRepository;
+
+// Collapsed batches must count and store exactly what copy-by-copy processing does
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:collapse;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+class DuplicateCollapseTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private EventIdIndex eventIdIndex;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @AfterEach
+    void tearDown() {
+        eventService.setCollapseDuplicates(true);
+    }
+
+    @Test
+    void countsAndRowsMatchCopyByCopyProcessing() {
+        for (long seed = 1; seed <= 20; seed++) {
+            eventService.setCollapseDuplicates(false);
+            Run sequential = run(seed);
+            eventService.setCollapseDuplicates(true);
+            Run collapsed = run(seed);
+
+            assertEquals(sequential.results(), collapsed.results(), "seed " + seed);
+            assertEquals(sequential.rows(), collapsed.rows(), "seed " + seed);
+        }
+    }
+
+    @Test
+    void retriedBatchKeepsItsCounts() {
+        MachineEvent first = event("R-1", 1000, now);
+        MachineEvent newer = event("R-1", 2000, now.plusSeconds(1));
+        MachineEvent older = event("R-1", 3000, now.minusSeconds(1));
+        MachineEvent invalid = event("R-1", -5, now.plusSeconds(2));
+        List<MachineEvent> batch = List.of(first, newer, first.toBuilder().build(), newer.toBuilder().build(),
+                older, invalid, newer.toBuilder().build());
+
+        Map<String, Object> result = eventService.processBatch(batch);
+
+        assertEquals(Map.of("accepted", 1, "deduped", 4, "updated", 1, "rejected", 1), result);
+        assertEquals(2000, repository.findById("R-1").orElseThrow().getDurationMs());
+        repository.deleteAll();
+        eventIdIndex.rebuild();
+    }
+
+    // Stored rows plus three batches of heavily repeated ids with a few payload and receivedTime variants
+    private Run run(long seed) {
+        repository.deleteAll();
+        eventIdIndex.rebuild();
+        Random random = new Random(seed);
+
+        List<MachineEvent> stored = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            stored.add(variant("C-" + i, random));
+        }
+        eventService.processBatch(stored);
+
+        List<List<MachineEvent>> batches = new ArrayList<>();
+        for (int b = 0; b < 3; b++) {
+            List<MachineEvent> batch = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                batch.add(variant("C-" + random.nextInt(40), random));
+            }
+            batches.add(batch);
+        }
+        List<Map<String, Object>> results = eventService.processBatches(batches);
+
+        List<String> rows = repository.findAll().stream()
+                .sorted(Comparator.comparing(MachineEvent::getEventId))
+                .map(e -> e.getEventId() + " " + e.getMachineId() + " " + e.getEventTime() + " "
+                        + e.getReceivedTime() + " " + e.getDurationMs() + " " + e.getDefectCount())
+                .toList();
+        return new Run(results, rows);
+    }
+
+    private MachineEvent variant(String id, Random random) {
+        int payload = random.nextInt(3);
+        MachineEvent e = event(id, random.nextInt(15) == 0 ? -1 : 1000 + payload, now.plusSeconds(random.nextInt(4)));
+        e.setMachineId("M-" + payload);
+        return e;
+    }
+
+    private MachineEvent event(String id, long durationMs, Instant receivedTime) {
+        return MachineEvent.builder()
+                .eventId(id)
+                .machineId("M-1")
+                .eventTime(now.minusSeconds(60))
+                .receivedTime(receivedTime)
+                .durationMs(durationMs)
+                .defectCount(0)
+                .build();
+    }
+
+    private record Run(List<Map<String, Object>> results, List<String> rows) {
+    }
+}
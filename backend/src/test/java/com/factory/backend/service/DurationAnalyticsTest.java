@@ -0,0 +1,112 @@
+package com.factory.backend.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.dto.DurationStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.EventStore;
+import com.factory.backend.repository.MachineEventRepository;
+
+// Sketch percentiles against exact ones over the same rows, incrementally and after a rebuild
+@SpringBootTest(properties = {
+    "factory.stats.durations.retention=2d",
+    "spring.datasource.url=jdbc:h2:mem:durations;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("test")
+class DurationAnalyticsTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private DurationAnalytics durationAnalytics;
+
+    @Autowired
+    private EventStore eventStore;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    private final Random random = new Random(5);
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        durationAnalytics.rebuild();
+    }
+
+    @Test
+    void matchesExactPercentilesWithinTheBound() {
+        // Three days of history, so windows also reach past the 2 day sketch retention
+        List<MachineEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            batch.add(event("D-" + i, "M-" + random.nextInt(4), now.minusMillis(random.nextInt(3 * 86400_000)), now));
+        }
+        eventService.processBatch(batch);
+        assertMatchesExact();
+
+        // Updates that change the duration and move events between machines and hours
+        List<MachineEvent> updates = new ArrayList<>();
+        for (int i = 0; i < 4000; i += 7) {
+            updates.add(event("D-" + i, "M-" + random.nextInt(4), now.minusMillis(random.nextInt(3 * 86400_000)),
+                    now.plusSeconds(1)));
+        }
+        eventService.processBatch(updates);
+        assertMatchesExact();
+
+        durationAnalytics.rebuild();
+        assertMatchesExact();
+    }
+
+    private void assertMatchesExact() {
+        for (int i = 0; i < 100; i++) {
+            Set<String> machineIds = switch (i % 3) {
+                case 0 -> Set.of();
+                case 1 -> Set.of("M-" + random.nextInt(5));
+                default -> Set.of("M-0", "M-" + (1 + random.nextInt(3)));
+            };
+            Instant start = now.minusMillis((long) (random.nextDouble() * 4 * 86400_000L));
+            Instant end = start.plusMillis((long) (random.nextDouble() * 2 * 86400_000L));
+
+            DurationStats sketched = durationAnalytics.getDurations(machineIds, start, end);
+            DurationStats exact = DurationStats.exact(eventStore.findDurations(machineIds, start, end).stream()
+                    .mapToLong(Long::longValue).toArray());
+            String label = machineIds + " [" + start + ", " + end + ")";
+            assertEquals(exact.eventsCount(), sketched.eventsCount(), label);
+            if (exact.eventsCount() > 0) {
+                assertClose(exact.p50(), sketched.p50(), label);
+                assertClose(exact.p95(), sketched.p95(), label);
+                assertClose(exact.p99(), sketched.p99(), label);
+            }
+        }
+    }
+
+    private static void assertClose(long exact, long estimate, String label) {
+        assertTrue(Math.abs(estimate - exact) <= 0.01 * exact + 1, label + ": exact " + exact + ", sketch " + estimate);
+    }
+
+    private MachineEvent event(String id, String machineId, Instant eventTime, Instant receivedTime) {
+        return MachineEvent.builder()
+                .eventId(id)
+                .machineId(machineId)
+                .eventTime(eventTime)
+                .receivedTime(receivedTime)
+                .durationMs(random.nextInt(20) == 0 ? 60_000 + random.nextInt(600_000) : 800 + random.nextInt(400))
+                .defectCount(random.nextInt(3))
+                .build();
+    }
+}
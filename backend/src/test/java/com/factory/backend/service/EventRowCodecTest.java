@@ -0,0 +1,87 @@
+package com.factory.backend.service;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.util.DataGenerator;
+
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+class EventRowCodecTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final EventRowCodec codec = new EventRowCodec(jsonMapper, 1024);
+
+    @Test
+    void matchesJacksonBindingForGeneratedBatches() {
+        List<MachineEvent> events = DataGenerator.generateWorkload(2_000,
+                DataGenerator.Workload.lateArrivals(50), 7, Instant.now().truncatedTo(ChronoUnit.MILLIS));
+        byte[] body = jsonMapper.writeValueAsBytes(events);
+
+        List<MachineEvent> bound = jsonMapper.readValue(body, new TypeReference<List<MachineEvent>>() {});
+        List<MachineEvent> decoded = codec.readAll(new ByteArrayInputStream(body)).stream().map(EventRow::toEntity).toList();
+
+        assertEquals(bound, decoded);
+    }
+
+    @Test
+    void ndjsonAndArrayGiveTheSameRows() {
+        String a = "{\"eventId\":\"E-1\",\"machineId\":\"M-1\",\"eventTime\":\"2026-01-15T10:00:00Z\",\"receivedTime\":\"2026-01-15T10:00:05.250Z\",\"durationMs\":100,\"defectCount\":-1}";
+        String b = "{\"eventId\":\"E-2\",\"machineId\":\"M-1\",\"eventTime\":\"2026-01-15T10:00:01Z\",\"receivedTime\":\"2026-01-15T10:00:06Z\",\"durationMs\":200,\"defectCount\":3}";
+
+        List<EventRow> ndjson = read(a + "\n" + b + "\n");
+        List<EventRow> array = read("[" + a + "," + b + "]");
+
+        assertEquals(ndjson, array);
+        assertEquals(2, ndjson.size());
+        assertSame(ndjson.get(0).machineId(), array.get(1).machineId());
+        assertEquals(Instant.parse("2026-01-15T10:00:05.250Z").toEpochMilli(), ndjson.get(0).receivedTimeMillis());
+    }
+
+    @Test
+    void acceptsWhatTheEntityBindingAccepted() {
+        EventRow row = read("{\"eventId\":\"E-1\",\"extra\":{\"nested\":[1,2]},\"machineId\":\"M-1\","
+                + "\"eventTime\":\"2026-01-15T12:00:00.1234567+02:00\",\"receivedTime\":1768471200.5,"
+                + "\"durationMs\":\"250\",\"defectCount\":null}").get(0);
+
+        assertEquals(Instant.parse("2026-01-15T10:00:00.123Z").toEpochMilli(), row.eventTimeMillis());
+        assertEquals(1768471200500L, row.receivedTimeMillis());
+        assertEquals(250, row.durationMs());
+        assertEquals(0, row.defectCount());
+        assertNull(read("{\"eventId\":\"E-1\"}").get(0).toEntity().getEventTime());
+    }
+
+    @Test
+    void fastTimestampPathAgreesWithInstantParse() {
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            Instant instant = Instant.ofEpochSecond(random.nextLong(-2_000_000_000L, 8_000_000_000L), random.nextInt(1_000_000_000));
+            char[] text = instant.toString().toCharArray();
+            assertEquals(instant.toEpochMilli(), EventRowCodec.parseIsoMillis(text, 0, text.length), instant.toString());
+        }
+    }
+
+    @Test
+    void malformedInputIsAnIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> read("[{\"eventId\":\"E-1\","));
+        assertThrows(IllegalArgumentException.class, () -> read("[{\"eventId\":\"E-1\",\"eventTime\":\"2026-02-30T00:00:00Z\"}]"));
+        assertThrows(IllegalArgumentException.class, () -> read("[42]"));
+    }
+
+    private List<EventRow> read(String body) {
+        return codec.readAll(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}
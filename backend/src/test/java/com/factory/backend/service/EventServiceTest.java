@@ -30,6 +30,10 @@ class EventServiceTest {
     @Autowired
     private MachineEventRepository repository;
 
+    // One instant for every event a test creates, so copies of an event have identical payloads.
+    // Millisecond precision, as the stores keep it
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
     @BeforeEach
     void setUp() {
         // Clear database before each test to ensure isolation
@@ -129,7 +133,7 @@ class EventServiceTest {
     @Test
     void test7_TimeWindowBoundaries() {
         // Scenario: start inclusive, end exclusive [cite: 74, 110]
-        Instant baseTime = Instant.now();
+        Instant baseTime = now;
         
         // Event 1: Exactly at Start Time
         MachineEvent e1 = createEvent("E-TIME-1", "M-BOUND", 1000, 0);
@@ -180,8 +184,8 @@ class EventServiceTest {
         return MachineEvent.builder()
                 .eventId(id)
                 .machineId(machineId)
-                .eventTime(Instant.now())
-                .receivedTime(Instant.now())
+                .eventTime(now)
+                .receivedTime(now)
                 .durationMs(duration)
                 .defectCount(defects)
                 .build();
@@ -0,0 +1,44 @@
+package com.factory.backend.service;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+import com.factory.backend.dto.MachineHealth;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import tools.jackson.databind.json.JsonMapper;
+
+class HealthBroadcasterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void slowSubscriberIsDroppedWithoutAffectingOthers() {
+        // Senders never run, so nothing leaves the buffers
+        HealthBroadcaster broadcaster = new HealthBroadcaster(JsonMapper.builder().build(), registry, 3, 60_000, task -> {});
+        broadcaster.subscribe(Set.of(), List.of());
+        broadcaster.subscribe(Set.of("M-2"), List.of());
+        assertEquals(2, broadcaster.subscribers());
+
+        // The firehose gets snapshot + 2 updates, then overflows on the 3rd
+        for (int i = 0; i < 3; i++) {
+            broadcaster.publish(MachineHealthMonitor.HEALTH, List.of(health("M-1", i)));
+        }
+        assertEquals(1, broadcaster.subscribers());
+        assertEquals(1.0, registry.get("factory.health.stream.dropped").counter().count());
+
+        // M-2's subscriber saw none of those
+        broadcaster.publish(MachineHealthMonitor.TRANSITION, List.of(health("M-2", 5)));
+        broadcaster.publish(MachineHealthMonitor.HEALTH, List.of(health("M-2", 6)));
+        assertEquals(1, broadcaster.subscribers());
+        broadcaster.publish(MachineHealthMonitor.HEALTH, List.of(health("M-2", 7)));
+        assertEquals(0, broadcaster.subscribers());
+    }
+
+    private static MachineHealth health(String machineId, long defects) {
+        return new MachineHealth(machineId, 10, defects, defects, MachineHealth.statusOf(defects));
+    }
+}
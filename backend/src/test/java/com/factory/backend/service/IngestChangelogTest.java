@@ -0,0 +1,137 @@
+package com.factory.backend.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.dto.MachineWatermark;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.event.DirtyRange;
+import com.factory.backend.event.EventChange;
+import com.factory.backend.repository.MachineEventRepository;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:changelog;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+class IngestChangelogTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private IngestChangelog changelog;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    // Minute-aligned, so the expected ranges are exact
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        changelog.rebuild();
+    }
+
+    @Test
+    void dirtyRangesCoalesceMinutesAndCoverBothVersions() {
+        MachineEvent before = event("X-1", "M-A", now.minusSeconds(600), now);
+        MachineEvent after = event("X-1", "M-B", now.minusSeconds(60), now.plusSeconds(1));
+        List<DirtyRange> ranges = DirtyRange.of(List.of(
+                EventChange.inserted(event("X-2", "M-A", now.minusSeconds(590), now)),
+                EventChange.inserted(event("X-3", "M-A", now.minusSeconds(530), now)),
+                EventChange.updated(before, after)));
+
+        assertEquals(List.of(
+                new DirtyRange("M-A", now.minusSeconds(600), now.minusSeconds(480)),
+                new DirtyRange("M-B", now.minusSeconds(60), now)), ranges);
+    }
+
+    @Test
+    void lateBatchOnlyDirtiesItsOwnRangeAndMovesNoWatermark() {
+        List<MachineEvent> onTime = new ArrayList<>();
+        for (int i = 29; i >= 0; i--) {
+            onTime.add(event("L-" + i, "M-L", now.minusSeconds(60L * i), now));
+        }
+        eventService.processBatch(onTime);
+        long sequence = changelog.sequence();
+        MachineWatermark before = changelog.watermarks(Set.of("M-L")).get(0);
+        assertEquals(now, before.watermark());
+        assertEquals(30, before.eventsCount());
+
+        // A gateway flushes events buffered 5 hours ago
+        Instant late = now.minus(5, ChronoUnit.HOURS);
+        eventService.processBatch(List.of(
+                event("LATE-1", "M-L", late, now.plusSeconds(5)),
+                event("LATE-2", "M-L", late.plusSeconds(30), now.plusSeconds(5))));
+
+        IngestChangelog.Changes changes = changelog.changesSince(sequence);
+        assertTrue(changes.complete());
+        assertEquals(sequence + 1, changes.sequence());
+        assertEquals(List.of(new DirtyRange("M-L", late, late.plusSeconds(60))), changes.ranges());
+        assertTrue(changelog.changedSince(sequence, late.minusSeconds(3600), late.plusSeconds(1)));
+        assertFalse(changelog.changedSince(sequence, now.minusSeconds(3600), now.plusSeconds(60)));
+        assertFalse(changelog.changedSince(changes.sequence(), late.minusSeconds(3600), now));
+
+        MachineWatermark after = changelog.watermarks(Set.of("M-L")).get(0);
+        assertEquals(now, after.watermark());
+        assertEquals(32, after.eventsCount());
+        assertEquals(2, after.outOfOrderEvents());
+        long lateness = now.plusSeconds(5).toEpochMilli() - late.toEpochMilli();
+        assertTrue(Math.abs(after.latenessMaxMs() - lateness) <= lateness / 100, String.valueOf(after.latenessMaxMs()));
+
+        // Rebuilt from the stored rows: same watermark and lateness, out-of-order count kept
+        changelog.rebuild();
+        assertEquals(after, changelog.watermarks(Set.of("M-L")).get(0));
+    }
+
+    @Test
+    void materializedTopLinesAreReusedUntilTheirRangeChanges() {
+        eventService.processBatch(List.of(
+                event("T-1", "M-1", now.minusSeconds(7200), now),
+                event("T-2", "M-2", now.minusSeconds(60), now)));
+        Instant from = now.minus(3, ChronoUnit.HOURS);
+        Instant to = now.minus(1, ChronoUnit.HOURS);
+
+        List<? extends LineStatsProjection> first = statsService.topDefectLines(from, to, 5);
+        assertEquals(1, first.size());
+        assertSame(first, statsService.topDefectLines(from, to, 5));
+
+        // Outside [from, to): still the materialized result
+        eventService.processBatch(List.of(event("T-3", "M-3", now.minusSeconds(120), now)));
+        assertSame(first, statsService.topDefectLines(from, to, 5));
+
+        // A late event inside the range is picked up
+        eventService.processBatch(List.of(event("T-4", "M-4", now.minusSeconds(9000), now)));
+        List<? extends LineStatsProjection> recomputed = statsService.topDefectLines(from, to, 5);
+        assertNotSame(first, recomputed);
+        assertEquals(2, recomputed.size());
+    }
+
+    private MachineEvent event(String id, String machineId, Instant eventTime, Instant receivedTime) {
+        return MachineEvent.builder()
+                .eventId(id)
+                .machineId(machineId)
+                .eventTime(eventTime)
+                .receivedTime(receivedTime)
+                .durationMs(1000)
+                .defectCount(2)
+                .build();
+    }
+}
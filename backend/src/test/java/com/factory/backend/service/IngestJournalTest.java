@@ -0,0 +1,130 @@
+package com.factory.backend.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.factory.backend.dto.EventRow;
+
+class IngestJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concurrentAppendsAreDurableInOrderAndReplayAfterReopen() throws Exception {
+        List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+        // Small segments so appends rotate while other threads wait on a force
+        try (IngestJournal journal = new IngestJournal(dir, 4096)) {
+            ExecutorService pool = Executors.newFixedThreadPool(16);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        sequences.add(journal.append(List.of(row("J-" + thread + "-" + i), row("J-" + thread + "-" + i + "b"))));
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+            pool.shutdown();
+
+            assertEquals(800, journal.durableSequence());
+            assertEquals(1600, journal.pendingEvents());
+            long expected = 1;
+            List<IngestJournal.Entry> taken;
+            while (!(taken = journal.takeDurable(100, 10)).isEmpty()) {
+                for (IngestJournal.Entry entry : taken) {
+                    assertEquals(expected++, entry.sequence());
+                }
+            }
+            assertEquals(801, expected);
+            assertTrue(journal.segmentCount() > 1);
+        }
+        Collections.sort(sequences);
+        for (int i = 0; i < sequences.size(); i++) {
+            assertEquals(i + 1, (long) sequences.get(i));
+        }
+
+        try (IngestJournal reopened = new IngestJournal(dir, 4096)) {
+            assertEquals(800, reopened.recoveredSequence());
+            List<IngestJournal.Entry> replayed = new ArrayList<>();
+            reopened.replay(replayed::add);
+            assertEquals(800, replayed.size());
+            assertEquals(row("J-0-0"), replayed.stream()
+                    .flatMap(e -> e.rows().stream()).filter(r -> r.eventId().equals("J-0-0")).findFirst().orElseThrow());
+
+            // New records continue the sequence in a fresh segment
+            assertEquals(801, reopened.append(List.of(row("J-new"))));
+        }
+    }
+
+    @Test
+    void checkpointDropsAppliedSegmentsAndReplaySkipsThem() {
+        try (IngestJournal journal = new IngestJournal(dir, 1024)) {
+            for (int i = 0; i < 100; i++) {
+                journal.append(List.of(row("C-" + i)));
+            }
+            int before = journal.segmentCount();
+            journal.checkpoint(60);
+            assertTrue(journal.segmentCount() < before);
+        }
+        try (IngestJournal reopened = new IngestJournal(dir, 1024)) {
+            List<Long> replayed = new ArrayList<>();
+            reopened.replay(e -> replayed.add(e.sequence()));
+            assertEquals(40, replayed.size());
+            assertEquals(61, (long) replayed.get(0));
+            assertEquals(100, (long) replayed.get(39));
+        }
+    }
+
+    @Test
+    void tornTailIsIgnored() throws IOException {
+        try (IngestJournal journal = new IngestJournal(dir, 1 << 16)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(List.of(row("T-" + i)));
+            }
+        }
+        // A half-written record: length and sequence present, payload and checksum not
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(f -> f.toString().endsWith(".seg")).findFirst().orElseThrow();
+        }
+        int end = 0;
+        byte[] bytes = Files.readAllBytes(segment);
+        ByteBuffer records = ByteBuffer.wrap(bytes);
+        while (records.getInt(end) > 0) {
+            end += 16 + records.getInt(end);
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(16).putInt(40).putInt(0).putLong(11).flip();
+            channel.write(torn, end);
+        }
+
+        try (IngestJournal reopened = new IngestJournal(dir, 1 << 16)) {
+            List<IngestJournal.Entry> replayed = new ArrayList<>();
+            reopened.replay(replayed::add);
+            assertEquals(10, replayed.size());
+            assertEquals(10, reopened.recoveredSequence());
+        }
+    }
+
+    private static EventRow row(String id) {
+        return new EventRow(id, "M-1", 1_700_000_000_000L, 1_700_000_000_500L, 1000, id.hashCode() & 3);
+    }
+}
@@ -0,0 +1,133 @@
+package com.factory.backend.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.factory.backend.entity.MachineEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class IngestMetricsTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private IngestionCoordinator coordinator;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void batchRecordsStagesOutcomesAndBatchSize() {
+        String machine = "MET-" + System.nanoTime();
+        Instant now = Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MILLIS);
+        long batches = meterRegistry.get("factory.ingest.batch.size").summary().count();
+        long derived = stage("derive").count();
+
+        eventService.processBatch(List.of(
+                event(machine + "-1", machine, now, 1000),
+                event(machine + "-2", machine, now, 1000),
+                event(machine + "-3", machine, now, -5)));
+        eventService.processBatch(List.of(event(machine + "-1", machine, now, 1000)));
+
+        assertEquals(2.0, outcome(machine, "accepted"));
+        assertEquals(1.0, outcome(machine, "deduped"));
+        assertEquals(1.0, outcome(machine, "rejected"));
+        for (String stage : List.of("lookup", "dedupe", "write", "commit")) {
+            assertTrue(stage(stage).count() > 0, stage);
+        }
+        // Only batches with changes publish to the after-commit listeners
+        assertEquals(derived + 2, stage("derive").count());
+
+        // Sizes are client batches, recorded once however many stripe transactions they take
+        List<MachineEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            batch.add(event(machine + "-B" + i, machine, now, 1000));
+        }
+        coordinator.processBatch(batch);
+        coordinator.processBatch(List.of());
+        assertEquals(batches + 2, meterRegistry.get("factory.ingest.batch.size").summary().count());
+    }
+
+    @Test
+    void outcomesAreCountedOnlyOnceCommitted() {
+        String machine = "MET-RB-" + System.nanoTime();
+        Instant now = Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MILLIS);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            eventService.processBatch(List.of(event(machine + "-1", machine, now, 1000)));
+            status.setRollbackOnly();
+        });
+        assertNull(meterRegistry.find("factory.ingest.events").tag("machine", machine).counter());
+
+        eventService.processBatch(List.of(event(machine + "-1", machine, now, 1000)));
+        assertEquals(1.0, outcome(machine, "accepted"));
+    }
+
+    @Test
+    void queriesAreTimedAndHibernateStatisticsAreBound() {
+        long before = meterRegistry.find("factory.stats.query").tag("query", "stats").timers().stream()
+                .mapToLong(Timer::count).sum();
+        statsService.getStats("MET-Q", Instant.now().minusSeconds(3600), Instant.now());
+
+        assertEquals(before + 1, meterRegistry.get("factory.stats.query").tag("query", "stats").timer().count());
+        assertNotNull(meterRegistry.find("hibernate.statements").functionCounter());
+    }
+
+    @Test
+    void machineTagsAreCappedIntoOther() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IngestMetrics metrics = new IngestMetrics(registry, 2);
+        int[] accepted = {1, 0, 0, 0};
+        for (int i = 0; i < 5; i++) {
+            metrics.recordOutcomes("M-" + i, accepted);
+        }
+        metrics.recordOutcomes("M-0", accepted);
+
+        assertEquals(2.0, registry.get("factory.ingest.events").tags("machine", "M-0", "outcome", "accepted").counter().count());
+        assertEquals(3.0, registry.get("factory.ingest.events").tags("machine", "other", "outcome", "accepted").counter().count());
+        assertNull(registry.find("factory.ingest.events").tag("machine", "M-4").counter());
+    }
+
+    private double outcome(String machine, String outcome) {
+        return meterRegistry.get("factory.ingest.events").tags("machine", machine, "outcome", outcome).counter().count();
+    }
+
+    private Timer stage(String stage) {
+        return meterRegistry.get("factory.ingest.stage").tag("stage", stage).timer();
+    }
+
+    private MachineEvent event(String id, String machine, Instant time, long durationMs) {
+        return MachineEvent.builder()
+                .eventId(id)
+                .machineId(machine)
+                .eventTime(time)
+                .receivedTime(time)
+                .durationMs(durationMs)
+                .defectCount(1)
+                .build();
+    }
+}
@@ -0,0 +1,131 @@
+package com.factory.backend.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.EventStore;
+import com.factory.backend.repository.MachineEventRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:tuner;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+class IngestTunerTest {
+
+    @Autowired
+    private IngestionCoordinator coordinator;
+
+    @Autowired
+    private IngestTuner tuner;
+
+    @Autowired
+    private IngestChangelog changelog;
+
+    @Autowired
+    private EventStore eventStore;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    private final Instant now = Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MILLIS);
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tuner.set(1000, null, true);
+    }
+
+    @Test
+    void commitSizeNeverSplitsAClientBatch() {
+        // A commit size of one event still commits both batches, with every copy of an id, together
+        tuner.set(1, null, false);
+        List<MachineEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            batch.add(event("S-" + i, 1000, now));
+        }
+        for (int i = 0; i < 20; i += 2) {
+            batch.add(event("S-" + i, 1000, now));                   // identical retry
+            batch.add(event("S-" + (i + 1), 2000, now.plusMillis(1))); // newer version
+        }
+        batch.add(event("S-BAD", -1, now));
+        long sequence = changelog.sequence();
+
+        Map<String, Object> counts = coordinator.processBatches(List.of(batch, List.of(event("S-0", 3000, now.plusMillis(2))))).get(0);
+
+        assertEquals(20, counts.get("accepted"));
+        assertEquals(10, counts.get("deduped"));
+        assertEquals(10, counts.get("updated"));
+        assertEquals(1, counts.get("rejected"));
+        assertEquals(20, repository.count());
+        assertEquals(3000, repository.findById("S-0").orElseThrow().getDurationMs());
+        assertEquals(2000, repository.findById("S-1").orElseThrow().getDurationMs());
+        // One transaction, so one committed batch in the changelog
+        assertEquals(1, changelog.sequence() - sequence);
+    }
+
+    @Test
+    void growsWhileThroughputImprovesAndBacksOffOverTarget() {
+        int storeBatch = (int) tuner.settings().get("jdbcBatchSize");
+        try {
+            IngestTuner local = new IngestTuner(eventStore, new SimpleMeterRegistry(), true,
+                    Duration.ofMillis(100), 1000, 100, 20_000, 500, 4);
+            assertEquals(1000, local.commitSize());
+            assertEquals(500, local.settings().get("jdbcBatchSize"));
+
+            observe(local, 1000, 10);      // 100k rows/s, p99 well under target
+            assertEquals(1500, local.commitSize());
+            observe(local, 1500, 12);      // 125k rows/s: keep going
+            assertEquals(2250, local.commitSize());
+            observe(local, 2250, 200);     // over target: halve
+            assertEquals(1125, local.commitSize());
+            observe(local, 10, 1);         // small client batches: the limit did not bind
+            assertEquals(1125, local.commitSize());
+
+            local.set(300, 50, null);      // pinned: no more adaptation
+            observe(local, 300, 500);
+            assertEquals(300, local.commitSize());
+            assertEquals(false, local.settings().get("adaptive"));
+            assertEquals(50, local.settings().get("jdbcBatchSize"));
+
+            local.set(null, null, true);   // resumes from the pinned size
+            assertEquals(300, local.commitSize());
+            assertEquals(300, local.settings().get("jdbcBatchSize"));
+        } finally {
+            eventStore.setJdbcBatchSize(storeBatch);
+        }
+    }
+
+    private static void observe(IngestTuner tuner, int rows, long millis) {
+        for (int i = 0; i < 4; i++) {
+            tuner.observe(rows, Duration.ofMillis(millis).toNanos());
+        }
+    }
+
+    private MachineEvent event(String id, long duration, Instant receivedTime) {
+        return MachineEvent.builder()
+                .eventId(id)
+                .machineId("M-T")
+                .eventTime(now)
+                .receivedTime(receivedTime)
+                .durationMs(duration)
+                .defectCount(1)
+                .build();
+    }
+}
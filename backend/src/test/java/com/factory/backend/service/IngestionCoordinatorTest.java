@@ -0,0 +1,202 @@
+package com.factory.backend.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.EventStore;
+import com.factory.backend.repository.MachineEventRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class IngestionCoordinatorTest {
+
+    private static final int THREADS = 32;
+    private static final int IDS = 1_000;
+    private static final int BATCH = 100;
+    private static final String POISON = "P-POISON";
+
+    @Autowired
+    private IngestionCoordinator coordinator;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private DatabasePermits permits;
+
+    @Autowired
+    private IngestMetrics metrics;
+
+    @Autowired
+    private EventStore eventStore;
+
+    private final Instant eventTime = Instant.now().minus(2, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MILLIS);
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+        rollupService.rebuild();
+        // A failure EventService cannot foresee
+        jdbcTemplate.execute("ALTER TABLE machine_events ADD CONSTRAINT poison CHECK (event_id <> '" + POISON + "')");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("ALTER TABLE machine_events DROP CONSTRAINT IF EXISTS poison");
+    }
+
+    @Test
+    void overlappingBatchesFromManyThreadsGiveExactCounts() throws Exception {
+        // Phase 1: every thread sends the same 1,000 new events (plus 10 invalid ones of its own)
+        long[] totals = run(t -> {
+            List<MachineEvent> events = new ArrayList<>();
+            for (int i = 0; i < IDS; i++) {
+                events.add(event("C-" + i, 0, 1000, i % 5));
+            }
+            for (int i = 0; i < 10; i++) {
+                events.add(event("BAD-" + t + "-" + i, 0, -1, 0));
+            }
+            return events;
+        });
+        assertEquals(IDS, totals[0]);                       // accepted exactly once each
+        assertEquals((long) IDS * (THREADS - 1), totals[1]); // every other copy deduped
+        assertEquals(0, totals[2]);
+        assertEquals(10L * THREADS, totals[3]);
+        assertEquals(IDS, repository.count());
+
+        // Phase 2: each thread sends its own newer version of every id
+        totals = run(t -> {
+            List<MachineEvent> events = new ArrayList<>();
+            for (int i = 0; i < IDS; i++) {
+                events.add(event("C-" + i, 1 + t, 2000 + t, t % 7));
+            }
+            return events;
+        });
+        assertEquals(0, totals[0]);
+        assertEquals((long) IDS * THREADS, totals[1] + totals[2]);
+        assertTrue(totals[2] >= IDS, "every id must be updated at least once");
+        // Last write wins: the highest receivedTime (thread 31) is what is stored
+        for (MachineEvent stored : repository.findAll()) {
+            assertEquals(2000 + THREADS - 1, stored.getDurationMs(), stored.getEventId());
+            assertEquals((THREADS - 1) % 7, stored.getDefectCount(), stored.getEventId());
+        }
+        // Derived state saw every committed change exactly once
+        Instant start = eventTime.minus(1, ChronoUnit.HOURS);
+        Instant end = eventTime.plus(1, ChronoUnit.HOURS);
+        assertEquals(repository.getStats("M-1", start, end), statsService.getStats("M-1", start, end));
+    }
+
+    @Test
+    void failingBatchCommitsNothing() {
+        // 250 events over many stripes, one of them refused by the database: one transaction, rolled back
+        List<MachineEvent> events = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            events.add(event("A-" + i, 0, 1000, 1));
+        }
+        events.set(150, event(POISON, 0, 1000, 1));
+
+        assertThrows(RuntimeException.class, () -> coordinator.processBatch(events));
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    void batchLargerThanTheCommitSizeStaysOneTransaction() {
+        // Fixed units of 100 only bound what writers merge; a 250-event batch still commits or fails whole
+        IngestTuner fixed = new IngestTuner(eventStore, new SimpleMeterRegistry(), false, Duration.ofMillis(250),
+                1000, 100, 20000, 500, 32);
+        fixed.set(100, null, false);
+        IngestionCoordinator small = new IngestionCoordinator(eventService, permits, fixed, metrics, 1);
+        assertEquals(100, small.mergeLimit(5000));
+        List<MachineEvent> events = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            events.add(event("P-" + i, 0, 1000, 1));
+        }
+        events.set(150, event(POISON, 0, 1000, 1));
+
+        RuntimeException failure = assertThrows(RuntimeException.class, () -> small.processBatch(events));
+        assertFalse(failure instanceof PartialIngestException);
+        assertEquals(0, repository.count());
+
+        events.set(150, event("P-150", 0, 1000, 1));
+        assertEquals(250, small.processBatch(events).get("accepted"));
+    }
+
+    // Each thread sends its events shuffled, in batches of BATCH; returns summed accepted/deduped/updated/rejected
+    private long[] run(IntFunction<List<MachineEvent>> eventsForThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                List<MachineEvent> events = eventsForThread.apply(t);
+                Collections.shuffle(events, new Random(t));
+                futures.add(executor.submit(() -> {
+                    long[] sums = new long[4];
+                    for (int i = 0; i < events.size(); i += BATCH) {
+                        Map<String, Object> result = coordinator.processBatch(events.subList(i, Math.min(i + BATCH, events.size())));
+                        sums[0] += (int) result.get("accepted");
+                        sums[1] += (int) result.get("deduped");
+                        sums[2] += (int) result.get("updated");
+                        sums[3] += (int) result.get("rejected");
+                    }
+                    return sums;
+                }));
+            }
+            long[] totals = new long[4];
+            for (Future<long[]> f : futures) {
+                long[] sums = f.get(); // rethrows any ingest failure
+                for (int i = 0; i < 4; i++) totals[i] += sums[i];
+            }
+            return totals;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private MachineEvent event(String id, int receivedOffsetSeconds, long duration, int defects) {
+        return MachineEvent.builder()
+                .eventId(id)
+                .machineId("M-1")
+                .eventTime(eventTime)
+                .receivedTime(eventTime.plusSeconds(10 + receivedOffsetSeconds))
+                .durationMs(duration)
+                .defectCount(defects)
+                .build();
+    }
+}
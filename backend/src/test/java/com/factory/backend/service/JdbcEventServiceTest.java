@@ -0,0 +1,13 @@
+package com.factory.backend.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+// The EventServiceTest scenarios against JdbcEventStore (own in-memory database)
+@SpringBootTest(properties = {
+    "factory.ingest.persistence=jdbc",
+    "spring.datasource.url=jdbc:h2:mem:jdbcstore;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("test")
+class JdbcEventServiceTest extends EventServiceTest {
+}
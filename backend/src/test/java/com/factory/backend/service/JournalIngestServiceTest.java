@@ -0,0 +1,202 @@
+package com.factory.backend.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.health.contributor.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.unit.DataSize;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.repository.MachineEventRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class JournalIngestServiceTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private IngestionCoordinator coordinator;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path dir;
+
+    private static final String POISON = "D-POISON";
+
+    private final long base = Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MILLIS).toEpochMilli();
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        // A failure EventService cannot foresee, so the batch holding POISON fails to apply
+        jdbcTemplate.execute("ALTER TABLE machine_events ADD CONSTRAINT poison CHECK (event_id <> '" + POISON + "')");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("ALTER TABLE machine_events DROP CONSTRAINT IF EXISTS poison");
+    }
+
+    @Test
+    void acknowledgedBatchesAreAppliedAndInvalidOnesRejected() throws InterruptedException {
+        JournalIngestService service = service(1_000_000);
+        service.start();
+
+        long lastSeq = 0;
+        for (int i = 0; i < 20; i++) {
+            Map<String, Object> ack = service.submit(List.of(row("J-" + i, 1000), row("J-0", 1000), row("J-BAD-" + i, -1)));
+            assertEquals("DURABLE", ack.get("status"));
+            assertEquals(1, ack.get("rejected"));
+            lastSeq = (long) ack.get("sequence");
+        }
+        awaitApplied(service, lastSeq);
+        assertEquals(20, repository.count());
+        service.stop();
+    }
+
+    @Test
+    void unappliedBatchesAreReplayedAfterRestart() throws InterruptedException {
+        // Never started: acknowledged batches stay in the journal only, as after a crash
+        JournalIngestService crashed = service(1_000_000);
+        List<EventRow> rows = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            rows.add(row("R-" + i, 1000));
+        }
+        crashed.submit(rows.subList(0, 250));
+        crashed.submit(rows.subList(250, 500));
+        crashed.stop();
+        assertEquals(0, repository.count());
+
+        JournalIngestService restarted = service(1_000_000);
+        restarted.start();
+        assertEquals(500, repository.count());
+        assertEquals(2, restarted.appliedSequence());
+
+        // A second restart has nothing left to replay past the checkpoint
+        restarted.stop();
+        JournalIngestService again = service(1_000_000);
+        again.start();
+        assertEquals(2L, again.status().get("checkpointSequence"));
+        again.stop();
+    }
+
+    @Test
+    void fullBacklogIsRefused() throws InterruptedException {
+        JournalIngestService service = service(10); // no applier running, so nothing drains
+        assertEquals(1L, service.submit(List.of(row("B-1", 1000), row("B-2", 1000))).get("sequence"));
+        assertNull(service.submit(List.of(row("B-3", 1000), row("B-4", 1000), row("B-5", 1000),
+                row("B-6", 1000), row("B-7", 1000), row("B-8", 1000), row("B-9", 1000), row("B-10", 1000),
+                row("B-11", 1000))));
+        service.stop();
+    }
+
+    @Test
+    void idTooLongForItsColumnIsRejectedAtSubmit() throws InterruptedException {
+        JournalIngestService service = service(1_000_000);
+        service.start();
+        Map<String, Object> ack = service.submit(List.of(row("L-1", 1000), row("X".repeat(300), 1000)));
+        assertEquals(1, ack.get("rejected"));
+        awaitApplied(service, (long) ack.get("sequence"));
+        assertEquals(Status.UP, service.health().getStatus());
+        assertTrue(repository.existsById("L-1"));
+        service.stop();
+    }
+
+    @Test
+    void unapplicableBatchIsDeadLetteredAndSkipped() throws InterruptedException {
+        JournalIngestService crashed = service(1_000_000);
+        crashed.submit(List.of(row("D-1", 1000), row("D-2", 1000)));
+        crashed.submit(List.of(row("D-3", 1000), row(POISON, 1000)));
+        crashed.submit(List.of(row("D-4", 1000)));
+        crashed.stop();
+
+        // Replay bisects the group: 1 applies, 2 is dead-lettered, 3 applies after it
+        JournalIngestService replayed = service(1_000_000);
+        replayed.start();
+        assertEquals(3, replayed.appliedSequence());
+        assertEquals(Status.UP, replayed.health().getStatus());
+        assertTrue(repository.existsById("D-4"));
+        assertFalse(repository.existsById("D-3"));
+
+        // The applier keeps going after a dead letter at runtime too
+        long seq = (long) replayed.submit(List.of(row("D-5", 1000), row(POISON, 1000))).get("sequence");
+        long next = (long) replayed.submit(List.of(row("D-6", 1000))).get("sequence");
+        awaitApplied(replayed, next);
+        assertTrue(seq < next);
+        assertTrue(repository.existsById("D-6"));
+        replayed.stop();
+
+        // A restart does not try the dead letters again
+        JournalIngestService restarted = service(1_000_000);
+        restarted.start();
+        assertEquals(next, restarted.appliedSequence());
+        restarted.stop();
+    }
+
+    @Test
+    void applierStopsWhenADeadLetterCannotBeWritten() throws Exception {
+        JournalIngestService stopped = service(1_000_000);
+        stopped.start();
+        Files.createDirectory(dir.resolve("dead-letter.log")); // not a file, so the dead letter cannot be written
+        stopped.submit(List.of(row("S-1", 1000)));
+        stopped.submit(List.of(row(POISON, 1000)));
+        stopped.submit(List.of(row("S-2", 1000)));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (stopped.status().get("failedSequence") == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2L, stopped.status().get("failedSequence"));
+        assertEquals(1, stopped.appliedSequence());
+        assertEquals(Status.DOWN, stopped.health().getStatus());
+        assertThrows(IllegalStateException.class, () -> stopped.submit(List.of(row("S-3", 1000))));
+        assertFalse(repository.existsById("S-2"));
+        stopped.stop();
+        assertEquals(1L, stopped.status().get("checkpointSequence"));
+    }
+
+    private JournalIngestService service(long maxPendingEvents) {
+        return new JournalIngestService(coordinator, eventService, new SimpleMeterRegistry(), dir,
+                DataSize.ofKilobytes(64), maxPendingEvents, 5000, Duration.ofMillis(50));
+    }
+
+    private void awaitApplied(JournalIngestService service, long seq) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (service.appliedSequence() < seq && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(seq, service.appliedSequence());
+    }
+
+    private EventRow row(String id, long durationMs) {
+        return new EventRow(id, "M-1", base, base + 1000, durationMs, 1);
+    }
+}
@@ -0,0 +1,67 @@
+package com.factory.backend.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.factory.backend.BackendApplication;
+
+/** Sharded nodes on localhost ports, each with its own in-memory database, inside the test JVM. */
+public class LocalCluster implements AutoCloseable {
+
+    private final List<String> urls = new ArrayList<>();
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    public LocalCluster(String name, int size) {
+        List<Integer> ports = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ports.add(freePort());
+            urls.add("http://localhost:" + ports.get(i));
+        }
+        String nodeList = urls.stream().collect(Collectors.joining(","));
+        for (int i = 0; i < size; i++) {
+            nodes.add(new SpringApplicationBuilder(BackendApplication.class)
+                    .profiles("test")
+                    // Arguments, not builder properties, so they win over application.properties
+                    .run("--server.port=" + ports.get(i),
+                            "--spring.datasource.url=jdbc:h2:mem:" + name + "-" + i + ";DB_CLOSE_DELAY=-1",
+                            "--factory.cluster.enabled=true",
+                            "--factory.cluster.nodes=" + nodeList,
+                            "--factory.cluster.node-index=" + i,
+                            "--factory.ingest.dedupe-index.expected-events=1000000",
+                            "--factory.health.enabled=false",
+                            "--spring.main.banner-mode=off"));
+        }
+    }
+
+    public String url(int node) {
+        return urls.get(node);
+    }
+
+    public <T> T bean(int node, Class<T> type) {
+        return nodes.get(node).getBean(type);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public void close() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.factory.backend.service;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.dto.MachineHealth;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.MachineEventRepository;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "factory.health.update-interval=1h",
+    "spring.datasource.url=jdbc:h2:mem:health;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("test")
+class MachineHealthMonitorTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private MachineHealthMonitor monitor;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        monitor.rebuild();
+    }
+
+    @Test
+    void windowMatchesStatsRuleAndFollowsUpdates() {
+        eventService.processBatch(List.of(
+                event("H-1", "M-H", now.minusSeconds(600), 1),
+                event("H-2", "M-H", now.minusSeconds(7200), 5),    // outside the hour
+                event("H-3", "M-OK", now.minusSeconds(60), -1)));
+
+        assertEquals(List.of(new MachineHealth("M-H", 1, 1, 1.0, "Healthy")), monitor.snapshot(Set.of("M-H")));
+        assertEquals("Healthy", monitor.snapshot(Set.of("M-OK")).get(0).status());
+
+        // Newer version of H-1 with more defects replaces the old count
+        eventService.processBatch(List.of(event("H-1", "M-H", now.minusSeconds(600), 4).toBuilder()
+                .receivedTime(now.plusSeconds(1)).build()));
+        assertEquals(List.of(new MachineHealth("M-H", 1, 4, 4.0, "Warning")), monitor.snapshot(Set.of("M-H")));
+        assertEquals(2, monitor.snapshot(Set.of()).size());
+    }
+
+    @Test
+    void streamStartsWithSnapshotAndPushesTransitions() throws Exception {
+        eventService.processBatch(List.of(event("S-1", "M-S", now.minusSeconds(300), 1)));
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/stats/health/stream?machineId=M-S"))
+                .timeout(Duration.ofSeconds(20))
+                .build();
+        HttpResponse<InputStream> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, response.statusCode());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            String[] snapshot = nextEvent(reader);
+            assertEquals("event:snapshot", snapshot[0]);
+            assertTrue(snapshot[1].contains("\"machineId\":\"M-S\"") && snapshot[1].contains("\"status\":\"Healthy\""), snapshot[1]);
+
+            // Other machines are not delivered to this subscriber
+            eventService.processBatch(List.of(event("S-2", "M-OTHER", now.minusSeconds(300), 9)));
+            eventService.processBatch(List.of(event("S-3", "M-S", now.minusSeconds(200), 2)));
+
+            String[] transition = nextEvent(reader);
+            assertEquals("event:" + MachineHealthMonitor.TRANSITION, transition[0]);
+            assertTrue(transition[1].contains("\"machineId\":\"M-S\"") && transition[1].contains("\"defectsCount\":3")
+                    && transition[1].contains("\"status\":\"Warning\""), transition[1]);
+        } finally {
+            response.body().close();
+        }
+    }
+
+    // {event line, data line} of the next SSE event
+    private static String[] nextEvent(BufferedReader reader) throws Exception {
+        String name = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("event:")) {
+                name = line;
+            } else if (line.startsWith("data:") && name != null) {
+                return new String[] {name, line};
+            }
+        }
+        throw new AssertionError("stream ended");
+    }
+
+    private MachineEvent event(String id, String machineId, Instant eventTime, int defects) {
+        return MachineEvent.builder()
+                .eventId(id)
+                .machineId(machineId)
+                .eventTime(eventTime)
+                .receivedTime(now)
+                .durationMs(1000)
+                .defectCount(defects)
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package com.factory.backend.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.dto.LineStats;
+import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.MachineEventRepository;
+
+// Sharded top-lines against the single GROUP BY query (time shards of at least 1h)
+@SpringBootTest(properties = {
+    "factory.stats.parallelism=4",
+    "factory.stats.parallel.min-shard-span=1h",
+    "spring.datasource.url=jdbc:h2:mem:parallel;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("test")
+class ParallelAggregatorTest {
+
+    @Autowired
+    protected EventService eventService;
+
+    @Autowired
+    protected ParallelAggregator aggregator;
+
+    @Autowired
+    protected ColumnarStore columnarStore;
+
+    @Autowired
+    protected MachineEventRepository repository;
+
+    private final Random random = new Random(17);
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        columnarStore.rebuild();
+    }
+
+    @Test
+    void shardedTopLinesMatchSingleQuery() {
+        List<MachineEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            // Few defect values, so ties broken by machineId are common
+            batch.add(MachineEvent.builder()
+                    .eventId("PA-" + i)
+                    .machineId("M-" + random.nextInt(40))
+                    .eventTime(now.minusMillis(random.nextInt(3 * 86400_000)))
+                    .receivedTime(now)
+                    .durationMs(1000)
+                    .defectCount(random.nextInt(10) == 0 ? -1 : random.nextInt(3))
+                    .build());
+        }
+        eventService.processBatch(batch);
+
+        for (int i = 0; i < 100; i++) {
+            Instant from = now.minusMillis((long) (random.nextDouble() * 4 * 86400_000L));
+            Instant to = from.plusMillis((long) (random.nextDouble() * 3 * 86400_000L));
+            int limit = 1 + random.nextInt(50);
+            List<LineStatsProjection> sql = repository.fetchWorstMachines(from, to, Limit.of(limit));
+            List<LineStats> sharded = aggregator.topLines(from, to, limit);
+            assertEquals(sql.size(), sharded.size(), "[" + from + ", " + to + ") limit " + limit);
+            for (int j = 0; j < sql.size(); j++) {
+                assertEquals(new LineStats(sql.get(j).getLineId(), sql.get(j).getEventCount(),
+                        sql.get(j).getTotalDefects()), sharded.get(j));
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.factory.backend.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.dto.LineStats;
+import com.factory.backend.dto.LineStatsProjection;
+import com.factory.backend.dto.MachineStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.PartitionedEventStore;
+
+// Partitioned storage against an in-memory model of the expected table contents
+@SpringBootTest(properties = {
+    "factory.ingest.persistence=partitioned",
+    "spring.datasource.url=jdbc:h2:mem:partitioned;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("test")
+class PartitionedEventStoreTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private PartitionedEventStore store;
+
+    private final Random random = new Random(11);
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    private final Map<String, MachineEvent> expected = new HashMap<>();
+
+    @Test
+    void queriesMatchTheModelAcrossPartitionsUpdatesAndRetention() {
+        List<MachineEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            batch.add(event("P-" + i, now.minusSeconds(random.nextInt(12 * 86400)), now.minusSeconds(600)));
+        }
+        ingest(batch);
+        // Created ahead from the retention cut-off (90d) through tomorrow
+        assertTrue(store.partitionTables().size() >= 91);
+        assertMatchesModel();
+
+        // Newer versions, most of them moving to another day's partition; plus stale ones
+        List<MachineEvent> updates = new ArrayList<>();
+        for (int i = 0; i < 3000; i += 4) {
+            updates.add(event("P-" + i, now.minusSeconds(random.nextInt(12 * 86400)), now.minusSeconds(random.nextInt(1200))));
+        }
+        ingest(updates);
+        assertMatchesModel();
+
+        // The lookup skips partitions whose id filter rules the id out, and still finds moved rows
+        List<String> ids = updates.stream().map(MachineEvent::getEventId).toList();
+        assertEquals(ids.size(), store.findExisting(ids).size());
+        assertTrue(store.findExisting(List.of("P-none-1", "P-none-2")).isEmpty());
+
+        // Retention: everything before the cut goes, in whole partitions
+        Instant cutoff = now.minus(5, ChronoUnit.DAYS);
+        store.expirePartitions(cutoff);
+        Instant dropped = cutoff.truncatedTo(ChronoUnit.DAYS);
+        expected.values().removeIf(e -> e.getEventTime().isBefore(dropped));
+        assertMatchesModel();
+
+        // A late event for a dropped day is rejected instead of recreating its partition
+        int partitionsBefore = store.partitionTables().size();
+        assertEquals(1, (int) eventService.processBatch(List.of(event("P-late", now.minus(10, ChronoUnit.DAYS), now)))
+                .get("rejected"));
+        assertEquals(partitionsBefore, store.partitionTables().size());
+        assertMatchesModel();
+    }
+
+    private void ingest(List<MachineEvent> events) {
+        eventService.processBatch(events);
+        for (MachineEvent e : events) {
+            MachineEvent stored = expected.get(e.getEventId());
+            if (stored == null || (!stored.hasSamePayload(e) && e.getReceivedTime().isAfter(stored.getReceivedTime()))) {
+                expected.put(e.getEventId(), e);
+            }
+        }
+    }
+
+    private void assertMatchesModel() {
+        for (int q = 0; q < 40; q++) {
+            Instant start = now.minusSeconds(random.nextInt(13 * 86400)).minusMillis(random.nextInt(1000));
+            Instant end = start.plusSeconds(random.nextInt(6 * 86400)).plusMillis(random.nextInt(1000));
+            String machineId = "M-" + random.nextInt(5);
+
+            long count = 0, defects = 0;
+            Map<String, long[]> lines = new TreeMap<>();
+            for (MachineEvent e : expected.values()) {
+                if (e.getEventTime().isBefore(start) || !e.getEventTime().isBefore(end)) continue;
+                long d = e.getDefectCount() == -1 ? 0 : e.getDefectCount();
+                long[] line = lines.computeIfAbsent(e.getMachineId(), k -> new long[2]);
+                line[0]++;
+                line[1] += d;
+                if (e.getMachineId().equals(machineId)) {
+                    count++;
+                    defects += d;
+                }
+            }
+            List<LineStats> worst = lines.entrySet().stream()
+                    .map(l -> new LineStats(l.getKey(), l.getValue()[0], l.getValue()[1]))
+                    .sorted(Comparator.comparingLong(LineStats::totalDefects).reversed().thenComparing(LineStats::lineId))
+                    .toList();
+
+            assertEquals(new MachineStats(count, defects), store.getStats(machineId, start, end));
+            assertEquals(new MachineStats(count, defects), statsService.getStats(machineId, start, end));
+            assertEquals(worst, List.copyOf(store.fetchWorstMachines(start, end, Limit.unlimited())));
+            List<? extends LineStatsProjection> top3 = statsService.topDefectLines(start, end, 3);
+            assertEquals(worst.subList(0, Math.min(3, worst.size())), top3);
+        }
+    }
+
+    private MachineEvent event(String id, Instant eventTime, Instant receivedTime) {
+        return MachineEvent.builder()
+                .eventId(id)
+                .machineId("M-" + random.nextInt(5))
+                .eventTime(eventTime)
+                .receivedTime(receivedTime)
+                .durationMs(100 + random.nextInt(1000))
+                .defectCount(random.nextInt(10) - 1)
+                .build();
+    }
+}
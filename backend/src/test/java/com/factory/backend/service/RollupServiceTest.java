@@ -0,0 +1,143 @@
+package com.factory.backend.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.factory.backend.dto.MachineStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.EventStore;
+import com.factory.backend.repository.MachineEventRepository;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RollupServiceTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private EventStore eventStore;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Random random = new Random(42);
+    private final Instant now = Instant.now();
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        rollupService.rebuild();
+    }
+
+    @Test
+    void rollupStatsMatchRawQuery() {
+        // 3 days of history so both the minute buckets and the raw fallback beyond minute retention are used
+        List<MachineEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            batch.add(event("E-" + i, "M-" + random.nextInt(3), now.minusSeconds(random.nextInt(3 * 86400)),
+                    now.minusSeconds(600), random.nextInt(10) == 0 ? -1 : random.nextInt(5)));
+        }
+        eventService.processBatch(batch);
+
+        // Last-write-wins updates that move events across machines, buckets and defect values
+        List<MachineEvent> updates = new ArrayList<>();
+        for (int i = 0; i < 3000; i += 7) {
+            updates.add(event("E-" + i, "M-" + random.nextInt(3), now.minusSeconds(random.nextInt(3 * 86400)),
+                    now, random.nextInt(10) == 0 ? -1 : random.nextInt(5)));
+        }
+        eventService.processBatch(updates);
+
+        for (int i = 0; i < 200; i++) {
+            String machineId = "M-" + random.nextInt(3);
+            Instant start = now.minusMillis((long) (random.nextDouble() * 4 * 86400_000L));
+            Instant end = start.plusMillis((long) (random.nextDouble() * 2 * 86400_000L));
+            if (i % 4 == 0) {
+                start = start.truncatedTo(ChronoUnit.HOURS);
+                end = end.truncatedTo(ChronoUnit.MINUTES);
+            }
+            assertSameStats(machineId, start, end);
+        }
+        assertSameStats("M-0", now.minusSeconds(4 * 86400), now.plusSeconds(3600));
+        assertSameStats("M-UNKNOWN", now.minusSeconds(4 * 86400), now);
+    }
+
+    @Test
+    void rebuildMatchesIncrementalState() {
+        List<MachineEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            batch.add(event("R-" + i, "M-0", now.minusSeconds(random.nextInt(7200)), now, random.nextInt(4) - 1));
+        }
+        eventService.processBatch(batch);
+        MachineStats incremental = rollupService.getStats("M-0", now.minusSeconds(7200), now);
+
+        rollupService.rebuild();
+
+        assertEquals(incremental, rollupService.getStats("M-0", now.minusSeconds(7200), now));
+        assertEquals(incremental, repository.getStats("M-0", now.minusSeconds(7200), now));
+    }
+
+    @Test
+    void windowsOlderThanHourRetentionAreReadRaw() {
+        List<MachineEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            batch.add(event("H-" + i, "M-" + random.nextInt(2), now.minusSeconds(random.nextInt(3 * 86400)),
+                    now, random.nextInt(10) == 0 ? -1 : random.nextInt(5)));
+        }
+        eventService.processBatch(batch);
+
+        // Hour buckets for the last day only: anything before that is one raw range
+        RollupService shortRetention = new RollupService(eventStore, true, Duration.ofHours(6), Duration.ofDays(1));
+        transactionTemplate.executeWithoutResult(status -> shortRetention.rebuild());
+        for (int i = 0; i < 200; i++) {
+            String machineId = "M-" + random.nextInt(2);
+            Instant start = now.minusMillis((long) (random.nextDouble() * 4 * 86400_000L));
+            Instant end = start.plusMillis((long) (random.nextDouble() * 2 * 86400_000L));
+            if (i % 4 == 0) {
+                start = start.truncatedTo(ChronoUnit.HOURS);
+            }
+            assertSameStats(shortRetention, machineId, start, end);
+        }
+        assertSameStats(shortRetention, "M-0", now.minusSeconds(4 * 86400), now.plusSeconds(3600));
+        assertSameStats(shortRetention, "M-1", now.minusSeconds(3 * 86400), now.minusSeconds(2 * 86400));
+    }
+
+    private void assertSameStats(String machineId, Instant start, Instant end) {
+        assertSameStats(rollupService, machineId, start, end);
+    }
+
+    private void assertSameStats(RollupService rollups, String machineId, Instant start, Instant end) {
+        MachineStats raw = repository.getStats(machineId, start, end);
+        MachineStats rolled = rollups.getStats(machineId, start, end);
+        assertEquals(raw, rolled, machineId + " [" + start + ", " + end + ")");
+    }
+
+    private MachineEvent event(String id, String machineId, Instant eventTime, Instant receivedTime, int defects) {
+        return MachineEvent.builder()
+                .eventId(id)
+                .machineId(machineId)
+                .eventTime(eventTime)
+                .receivedTime(receivedTime)
+                .durationMs(1000)
+                .defectCount(defects)
+                .build();
+    }
+}
@@ -0,0 +1,140 @@
+package com.factory.backend.service;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.dto.LineStats;
+import com.factory.backend.repository.MachineEventRepository;
+
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+// Three sharded nodes on localhost: routed ingest, owner-only storage and merged stats
+class ShardRouterTest {
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final Random random = new Random(21);
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @Test
+    void ownerRangesAreBalanced() {
+        int[] perNode = new int[4];
+        for (int i = 0; i < 10_000; i++) {
+            perNode[ShardRouter.owner(String.format("M-%04d", i), 4)]++;
+        }
+        for (int count : perNode) {
+            assertTrue(count > 2_300 && count < 2_700, "unbalanced: " + java.util.Arrays.toString(perNode));
+        }
+    }
+
+    @Test
+    void routesIngestAndMergesStatsAcrossNodes() throws Exception {
+        try (LocalCluster cluster = new LocalCluster("shard-test", 3)) {
+            List<EventRow> rows = new ArrayList<>();
+            for (int i = 0; i < 3000; i++) {
+                rows.add(new EventRow("S-" + i, "M-" + random.nextInt(60),
+                        now.minusSeconds(random.nextInt(1800)).toEpochMilli(), now.toEpochMilli(),
+                        100 + random.nextInt(1000), random.nextInt(5)));
+            }
+            List<EventRow> batch = new ArrayList<>(rows);
+            batch.addAll(rows.subList(0, 500)); // retried copies
+            batch.add(new EventRow("S-bad", "M-1", now.toEpochMilli(), now.toEpochMilli(), -1, 0));
+
+            Map<String, Object> result = post(cluster.url(0) + "/events/batch",
+                    cluster.bean(0, BinaryBatchCodec.class).encode(batch, false));
+            assertEquals(Map.of("accepted", 3000, "deduped", 500, "updated", 0, "rejected", 1), result);
+
+            // Every node stores exactly the machines it owns
+            ShardRouter router = cluster.bean(0, ShardRouter.class);
+            long stored = 0;
+            for (int node = 0; node < cluster.size(); node++) {
+                int owner = node;
+                MachineEventRepository repository = cluster.bean(node, MachineEventRepository.class);
+                assertTrue(repository.findAll().stream().allMatch(e -> router.owner(e.getMachineId()) == owner));
+                stored += repository.count();
+            }
+            assertEquals(3000, stored);
+
+            Map<String, long[]> expected = new HashMap<>();
+            for (EventRow row : rows) {
+                long[] totals = expected.computeIfAbsent(row.machineId(), id -> new long[2]);
+                totals[0]++;
+                totals[1] += row.defectCount();
+            }
+
+            // /stats from a node that usually is not the owner
+            Instant start = now.minus(1, ChronoUnit.HOURS);
+            Instant end = now.plusSeconds(1);
+            for (int m = 0; m < 60; m += 7) {
+                Map<String, Object> stats = get(cluster.url(1) + "/stats?machineId=M-" + m
+                        + "&start=" + encode(start) + "&end=" + encode(end), new TypeReference<>() {});
+                assertEquals(expected.get("M-" + m)[0], ((Number) stats.get("eventsCount")).longValue());
+                assertEquals(expected.get("M-" + m)[1], ((Number) stats.get("defectsCount")).longValue());
+            }
+
+            List<LineStats> all = new ArrayList<>();
+            expected.forEach((machineId, totals) -> all.add(new LineStats(machineId, totals[0], totals[1])));
+            List<LineStats> top = LineStats.worst(all, 5);
+            for (String query : List.of("window=1h", "from=" + encode(start) + "&to=" + encode(end))) {
+                List<Map<String, Object>> lines = get(cluster.url(2) + "/stats/top-defect-lines?limit=5&" + query,
+                        new TypeReference<>() {});
+                assertEquals(top.size(), lines.size(), query);
+                for (int i = 0; i < top.size(); i++) {
+                    assertEquals(top.get(i).lineId(), lines.get(i).get("lineId"), query);
+                    assertEquals(top.get(i).totalDefects(), ((Number) lines.get(i).get("totalDefects")).longValue());
+                    assertEquals(top.get(i).eventCount(), ((Number) lines.get(i).get("eventCount")).longValue());
+                }
+            }
+
+            // A newer version on a machine of another shard would leave two copies: rejected
+            EventRow original = rows.get(0);
+            String elsewhere = "M-0";
+            for (int m = 0; router.owner(elsewhere) == router.owner(original.machineId()); m++) {
+                elsewhere = "M-" + m;
+            }
+            EventRow moved = new EventRow(original.eventId(), elsewhere, original.eventTimeMillis(),
+                    original.receivedTimeMillis() + 1000, original.durationMs(), original.defectCount());
+            result = post(cluster.url(1) + "/events/batch", cluster.bean(1, BinaryBatchCodec.class).encode(List.of(moved), false));
+            assertEquals(Map.of("accepted", 0, "deduped", 0, "updated", 0, "rejected", 1), result);
+            assertEquals(original.machineId(), cluster.bean(router.owner(original.machineId()), MachineEventRepository.class)
+                    .findById(original.eventId()).orElseThrow().getMachineId());
+            assertTrue(cluster.bean(router.owner(elsewhere), MachineEventRepository.class).findById(original.eventId()).isEmpty());
+        }
+    }
+
+    private Map<String, Object> post(String url, byte[] body) throws Exception {
+        HttpResponse<byte[]> response = http.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", BinaryBatchCodec.CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, response.statusCode(), new String(response.body(), StandardCharsets.UTF_8));
+        return jsonMapper.readValue(response.body(), new TypeReference<Map<String, Object>>() {});
+    }
+
+    private <T> T get(String url, TypeReference<T> type) throws Exception {
+        HttpResponse<byte[]> response = http.send(HttpRequest.newBuilder(URI.create(url)).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, response.statusCode(), new String(response.body(), StandardCharsets.UTF_8));
+        return jsonMapper.readValue(response.body(), type);
+    }
+
+    private static String encode(Instant instant) {
+        return URLEncoder.encode(instant.toString(), StandardCharsets.UTF_8);
+    }
+}
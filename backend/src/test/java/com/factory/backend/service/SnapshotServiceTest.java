@@ -0,0 +1,165 @@
+package com.factory.backend.service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import com.factory.backend.dto.EventRow;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.EventStore;
+import com.factory.backend.repository.MachineEventRepository;
+import com.factory.backend.util.DataGenerator;
+import com.factory.backend.util.DataGenerator.Workload;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:snapshot;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+class SnapshotServiceTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private IngestionCoordinator coordinator;
+
+    @Autowired
+    private EventStore eventStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @TempDir
+    Path dir;
+
+    private final long base = Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MILLIS).toEpochMilli();
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void fileRoundTripsEveryEventAcrossBlocks() throws IOException {
+        Path file = dir.resolve("events.snap");
+        // The format keeps microseconds, as the database column does
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        List<MachineEvent> events = new ArrayList<>(DataGenerator.generateWorkload(30_000, Workload.uniform(200), 7, now));
+        events.add(new MachineEvent("not-a-uuid", "M-é", Instant.parse("1969-12-31T23:59:59.999999Z"),
+                Instant.parse("2026-01-01T00:00:00.000001Z"), -5, -1));
+        try (EventSnapshot.Writer writer = new EventSnapshot.Writer(file, 42)) {
+            events.forEach(writer::append);
+            assertEquals(events.size(), writer.commit().eventCount());
+        }
+
+        List<MachineEvent> read = new ArrayList<>();
+        EventSnapshot.Header header = EventSnapshot.read(file, 7_000, read::addAll);
+        assertEquals(42, header.journalSequence());
+        assertEquals(events, read);
+
+        // A file cut short is not a snapshot, and nothing is read from it
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        assertNull(EventSnapshot.read(file, 7_000, batch -> { throw new AssertionError("read a partial file"); }));
+    }
+
+    @Test
+    void restoreLoadsTheSnapshotAndTheJournalReplaysTheTail() throws InterruptedException {
+        Path journalDir = dir.resolve("journal");
+        JournalIngestService journal = journal(journalDir);
+        SnapshotService snapshots = snapshots(journal);
+        snapshots.afterSingletonsInstantiated(); // nothing to restore yet
+        journal.start();
+
+        long seq = (long) journal.submit(rows("A-", 100)).get("sequence");
+        awaitApplied(journal, seq);
+        EventSnapshot.Header header = snapshots.snapshot();
+        assertEquals(100, header.eventCount());
+        assertEquals(seq, header.journalSequence());
+
+        // Applied after the snapshot: only the journal has these
+        long tail = (long) journal.submit(rows("B-", 50)).get("sequence");
+        awaitApplied(journal, tail);
+        journal.stop();
+        assertEquals(seq, journal.status().get("checkpointSequence"));
+
+        // Restart against an empty in-memory database
+        repository.deleteAll();
+        JournalIngestService restarted = journal(journalDir);
+        snapshots(restarted).afterSingletonsInstantiated();
+        assertEquals(100, repository.count());
+        assertEquals(1000, repository.findById("A-7").orElseThrow().getDurationMs());
+        restarted.start();
+        assertEquals(150, repository.count());
+        assertEquals(tail, restarted.appliedSequence());
+        restarted.stop();
+    }
+
+    @Test
+    void storeWithEventsIsNotOverwritten() {
+        SnapshotService snapshots = snapshots(null);
+        coordinator.processBatch(rows("C-", 10).stream().map(EventRow::toEntity).toList());
+        snapshots.snapshot();
+
+        coordinator.processBatch(List.of(new EventRow("C-NEW", "M-S", base, base, 1000, 0).toEntity()));
+        assertFalse(snapshots.restore());
+        assertEquals(11, repository.count());
+
+        repository.deleteAll();
+        assertTrue(snapshots.restore());
+        assertEquals(10, repository.count());
+    }
+
+    private SnapshotService snapshots(JournalIngestService journal) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory(
+                journal != null ? Map.<String, Object>of("journal", journal) : Map.of());
+        return new SnapshotService(eventStore, transactionManager, beans.getBeanProvider(JournalIngestService.class),
+                new SimpleMeterRegistry(), true, dir.resolve("snapshot/events.snap"), 7, 2, false);
+    }
+
+    private JournalIngestService journal(Path journalDir) {
+        return new JournalIngestService(coordinator, eventService, new SimpleMeterRegistry(), journalDir,
+                DataSize.ofKilobytes(64), 1_000_000, 5000, Duration.ofMillis(50));
+    }
+
+    private List<EventRow> rows(String prefix, int count) {
+        List<EventRow> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new EventRow(prefix + i, "M-S" + (i % 3), base + i, base + i, 1000, i % 4 - 1));
+        }
+        return rows;
+    }
+
+    private void awaitApplied(JournalIngestService service, long seq) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (service.appliedSequence() < seq && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(seq, service.appliedSequence());
+    }
+}
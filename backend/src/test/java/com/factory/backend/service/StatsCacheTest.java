@@ -0,0 +1,135 @@
+package com.factory.backend.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.MachineEventRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class StatsCacheTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private StatsCache statsCache;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Instant base = Instant.now().minus(3, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MILLIS);
+    private int sequence;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE TABLE machine_events");
+        rollupService.rebuild();
+    }
+
+    @Test
+    void onlyWindowsContainingTheChangedEventsAreEvicted() {
+        eventService.processBatch(List.of(event("M-C1", base.plusSeconds(10), 2), event("M-C2", base.plusSeconds(10), 1)));
+        Instant firstHourEnd = base.plus(1, ChronoUnit.HOURS);
+        Instant secondHourEnd = base.plus(2, ChronoUnit.HOURS);
+
+        statsService.getStats("M-C1", base, firstHourEnd);
+        statsService.getStats("M-C1", firstHourEnd, secondHourEnd);
+        statsService.getStats("M-C2", base, firstHourEnd);
+        double hits = hits();
+        statsService.getStats("M-C1", base, firstHourEnd);
+        assertEquals(hits + 1, hits());
+
+        // New event for M-C1 in the second hour: only that window of that machine goes
+        double invalidations = meterRegistry.get("factory.stats.cache.invalidations").counter().count();
+        eventService.processBatch(List.of(event("M-C1", firstHourEnd.plusSeconds(5), 3)));
+        assertEquals(invalidations + 1, meterRegistry.get("factory.stats.cache.invalidations").counter().count());
+
+        hits = hits();
+        statsService.getStats("M-C1", base, firstHourEnd);
+        statsService.getStats("M-C2", base, firstHourEnd);
+        assertEquals(hits + 2, hits());
+        assertEquals(repository.getStats("M-C1", firstHourEnd, secondHourEnd),
+                statsService.getStats("M-C1", firstHourEnd, secondHourEnd));
+
+        // An update moving an event out of a window evicts both its old and new window
+        MachineEvent moved = event("M-C1", base.plusSeconds(20), 4);
+        eventService.processBatch(List.of(moved));
+        statsService.getStats("M-C1", base, firstHourEnd);
+        statsService.getStats("M-C1", firstHourEnd, secondHourEnd);
+        eventService.processBatch(List.of(moved.toBuilder().eventTime(firstHourEnd.plusSeconds(30))
+                .receivedTime(moved.getReceivedTime().plusSeconds(1)).build()));
+        assertEquals(repository.getStats("M-C1", base, firstHourEnd), statsService.getStats("M-C1", base, firstHourEnd));
+        assertEquals(repository.getStats("M-C1", firstHourEnd, secondHourEnd),
+                statsService.getStats("M-C1", firstHourEnd, secondHourEnd));
+    }
+
+    @Test
+    void neverStaleOnceIngestReturnsWhileReadersRefillTheCache() throws Exception {
+        Instant start = base;
+        Instant end = base.plus(2, ChronoUnit.HOURS);
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int r = 0; r < 8; r++) {
+            futures.add(readers.submit(() -> {
+                while (running.get()) statsService.getStats("M-RACE", start, end);
+            }));
+        }
+        try {
+            for (int i = 0; i < 300; i++) {
+                eventService.processBatch(List.of(event("M-RACE", base.plusSeconds(i), i % 3)));
+                assertEquals(repository.getStats("M-RACE", start, end), statsService.getStats("M-RACE", start, end));
+            }
+        } finally {
+            running.set(false);
+            readers.shutdown();
+        }
+        for (Future<?> f : futures) f.get();
+        assertEquals(true, statsCache.size() > 0);
+    }
+
+    private double hits() {
+        return meterRegistry.get("cache.gets").tag("cache", "stats").tag("result", "hit").functionCounter().count();
+    }
+
+    private MachineEvent event(String machineId, Instant eventTime, int defects) {
+        return MachineEvent.builder()
+                .eventId("SC-" + (++sequence))
+                .machineId(machineId)
+                .eventTime(eventTime)
+                .receivedTime(base.plus(4, ChronoUnit.HOURS))
+                .durationMs(100)
+                .defectCount(defects)
+                .build();
+    }
+}
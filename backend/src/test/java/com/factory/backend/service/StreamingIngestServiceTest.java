@@ -0,0 +1,113 @@
+package com.factory.backend.service;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.repository.MachineEventRepository;
+
+import tools.jackson.databind.json.JsonMapper;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class StreamingIngestServiceTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private DatabasePermits permits;
+
+    @Autowired
+    private IngestTuner tuner;
+
+    @Autowired
+    private IngestMetrics metrics;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    private StreamingIngestService streamingService;
+
+    private final Instant eventTime = Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MILLIS);
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        // Tiny chunks so duplicates and updates straddle commit boundaries
+        streamingService = new StreamingIngestService(new IngestionCoordinator(eventService, permits, tuner, metrics, 4), new EventRowCodec(jsonMapper, 64), 2);
+    }
+
+    @Test
+    void ndjsonIsIngestedChunkByChunk() {
+        String body = String.join("\n",
+                json("S-1", 1000, 0, 100),
+                json("S-2", 1000, 1, 100),
+                json("S-1", 1000, 0, 100),   // identical -> deduped (next chunk)
+                json("S-2", 2000, 3, 200),   // newer -> updated
+                json("S-3", -5, 0, 100),     // invalid duration -> rejected
+                json("S-2", 3000, 4, 150))   // older than stored version -> deduped
+                + "\n";
+
+        Map<String, Object> result = streamingService.ingest(stream(body));
+
+        assertEquals(Map.of("accepted", 2, "deduped", 2, "updated", 1, "rejected", 1), result);
+        assertEquals(2, repository.count());
+        assertEquals(2000, repository.findById("S-2").orElseThrow().getDurationMs());
+    }
+
+    @Test
+    void jsonArrayIsAccepted() {
+        String body = "[" + json("A-1", 1000, 0, 100) + "," + json("A-2", 1000, 0, 100) + ","
+                + json("A-3", 1000, 0, 100) + "]";
+
+        Map<String, Object> result = streamingService.ingest(stream(body));
+
+        assertEquals(3, (int) result.get("accepted"));
+        assertEquals(3, repository.count());
+    }
+
+    @Test
+    void malformedTailAfterCommittedChunksReportsThem() {
+        String body = json("T-1", 1000, 0, 100) + "\n" + json("T-2", 1000, 0, 100) + "\n"
+                + json("T-3", 1000, 0, 100) + "\n{\"eventId\": \"T-4\", oops\n";
+
+        PartialIngestException partial = assertThrows(PartialIngestException.class,
+                () -> streamingService.ingest(stream(body)));
+
+        assertEquals(2, partial.committed().get(0).get("accepted"));
+        assertInstanceOf(IllegalArgumentException.class, partial.getCause());
+        assertEquals(2, repository.count());
+    }
+
+    @Test
+    void malformedBodyBeforeAnyCommitIsAnIllegalArgument() {
+        assertThrows(IllegalArgumentException.class,
+                () -> streamingService.ingest(stream(json("U-1", 1000, 0, 100) + "\n{oops\n")));
+        assertEquals(0, repository.count());
+    }
+
+    private String json(String id, long duration, int defects, int receivedOffsetSeconds) {
+        return "{\"eventId\":\"" + id + "\",\"machineId\":\"M-1\",\"eventTime\":\"" + eventTime
+                + "\",\"receivedTime\":\"" + eventTime.plusSeconds(receivedOffsetSeconds)
+                + "\",\"durationMs\":" + duration + ",\"defectCount\":" + defects + "}";
+    }
+
+    private ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,160 @@
+package com.factory.backend.service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.factory.backend.dto.LineStats;
+import com.factory.backend.entity.MachineEvent;
+import com.factory.backend.repository.EventStore;
+import com.factory.backend.repository.MachineEventRepository;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TopDefectEngineTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private TopDefectEngine engine;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private EventStore eventStore;
+
+    private final Random random = new Random(5);
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        engine.rebuild();
+    }
+
+    @Test
+    void windowsMatchSqlIncludingUpdates() {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        List<MachineEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            batch.add(event("T-" + i, now.minusSeconds(random.nextInt(8 * 86400)), now.minusSeconds(60)));
+        }
+        eventService.processBatch(batch);
+        assertMatchesSql();
+
+        // Last-write-wins corrections move defects between machines and buckets
+        List<MachineEvent> updates = new ArrayList<>();
+        for (int i = 0; i < 2000; i += 3) {
+            updates.add(event("T-" + i, now.minusSeconds(random.nextInt(2 * 86400)), now));
+        }
+        eventService.processBatch(updates);
+        assertMatchesSql();
+
+        // A rebuild from the table gives the same leaderboard
+        engine.rebuild();
+        assertMatchesSql();
+    }
+
+    @Test
+    void expiredBucketsLeaveTheWindowsAfterTheMinuteBoundary() {
+        // Dense around the 1h edge, so the next minute moves machines in the ranking
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        List<MachineEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            batch.add(event("S-" + i, now.minusSeconds(3300 + random.nextInt(600)), now));
+        }
+        eventService.processBatch(batch);
+
+        // Its own engine on a clock the test moves, fed the same events
+        MovableClock clock = new MovableClock(now);
+        TopDefectEngine local = new TopDefectEngine(eventStore, true, clock);
+        try (DerivedState.Rebuild rebuild = local.startRebuild()) {
+            batch.forEach(rebuild::accept);
+            rebuild.finish();
+        }
+        assertMatchesSql(local, now);
+
+        // Past the boundary, then the scheduled tick, which expires the minute that left
+        clock.set(now.truncatedTo(ChronoUnit.MINUTES).plus(1, ChronoUnit.MINUTES).plusMillis(500));
+        local.tick();
+        assertMatchesSql(local, clock.instant());
+    }
+
+    // The shared engine runs on the system clock: retry once if the minute rolled over while comparing
+    private void assertMatchesSql() {
+        Instant now = Instant.now();
+        try {
+            assertMatchesSql(engine, now);
+        } catch (AssertionError e) {
+            if (now.truncatedTo(ChronoUnit.MINUTES).equals(Instant.now().truncatedTo(ChronoUnit.MINUTES))) throw e;
+            assertMatchesSql(engine, Instant.now());
+        }
+    }
+
+    private void assertMatchesSql(TopDefectEngine engine, Instant now) {
+        Instant minute = now.truncatedTo(ChronoUnit.MINUTES);
+        Instant hour = minute.truncatedTo(ChronoUnit.HOURS);
+        Instant until = minute.plus(1, ChronoUnit.DAYS);
+        assertEquals(sql(minute.minus(59, ChronoUnit.MINUTES), until), engine.top(TopDefectEngine.Window.MINUTE_BUCKETS_60, 5));
+        assertEquals(sql(hour.minus(23, ChronoUnit.HOURS), until), engine.top(TopDefectEngine.Window.HOUR_BUCKETS_24, 5));
+        assertEquals(sql(hour.minus(167, ChronoUnit.HOURS), until), engine.top(TopDefectEngine.Window.HOUR_BUCKETS_168, 5));
+    }
+
+    private List<LineStats> sql(Instant from, Instant to) {
+        return repository.fetchWorstMachines(from, to, Limit.of(5)).stream()
+                .map(l -> new LineStats(l.getLineId(), l.getEventCount(), l.getTotalDefects()))
+                .toList();
+    }
+
+    private static final class MovableClock extends Clock {
+        private volatile Instant now;
+
+        MovableClock(Instant now) {
+            this.now = now;
+        }
+
+        void set(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private MachineEvent event(String id, Instant eventTime, Instant receivedTime) {
+        return MachineEvent.builder()
+                .eventId(id)
+                .machineId("M-" + random.nextInt(12))
+                .eventTime(eventTime)
+                .receivedTime(receivedTime)
+                .durationMs(1000)
+                .defectCount(random.nextInt(10) == 0 ? -1 : random.nextInt(7))
+                .build();
+    }
+}
@@ -0,0 +1,87 @@
+package com.factory.backend.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class DurationSketchTest {
+
+    private static final double[] QUANTILES = {0, 0.01, 0.25, 0.5, 0.9, 0.95, 0.99, 0.999, 1};
+
+    private final Random random = new Random(11);
+
+    @Test
+    void quantilesStayWithinRelativeAccuracy() {
+        for (double accuracy : new double[] {0.01, 0.05}) {
+            long[] uniform = random.longs(20_000, 0, 21_600_001).toArray();
+            long[] skewed = new long[20_000];
+            for (int i = 0; i < skewed.length; i++) {
+                // Mostly ~1s cycles, some zeros, a long tail of stalls
+                skewed[i] = i % 50 == 0 ? 0 : (long) Math.min(21_600_000, Math.exp(7 + random.nextGaussian() * 1.5));
+            }
+            assertWithinBound(uniform, accuracy);
+            assertWithinBound(skewed, accuracy);
+        }
+    }
+
+    @Test
+    void mergeAndRemovalAreExact() {
+        long[] values = random.longs(5_000, 0, 100_000).toArray();
+        DurationSketch whole = sketchOf(values, 0.01);
+
+        DurationSketch merged = new DurationSketch(0.01);
+        for (int part = 0; part < 5; part++) {
+            merged.merge(sketchOf(Arrays.copyOfRange(values, part * 1000, (part + 1) * 1000), 0.01));
+        }
+        for (double q : QUANTILES) {
+            assertEquals(whole.quantile(q), merged.quantile(q), "q=" + q);
+        }
+        assertEquals(whole.count(), merged.count());
+
+        // Removing what was added (an update's previous version) leaves no trace
+        DurationSketch restored = sketchOf(values, 0.01);
+        restored.add(7, 3);
+        restored.add(123_456, 2);
+        restored.add(7, -3);
+        restored.add(123_456, -2);
+        for (double q : QUANTILES) {
+            assertEquals(whole.quantile(q), restored.quantile(q), "q=" + q);
+        }
+    }
+
+    @Test
+    void emptyAndInvalidInput() {
+        DurationSketch sketch = new DurationSketch(0.01);
+        assertEquals(-1, sketch.quantile(0.5));
+        sketch.add(0);
+        assertEquals(0, sketch.quantile(0.99));
+        assertThrows(IllegalArgumentException.class, () -> sketch.add(-1));
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(new DurationSketch(0.02)));
+        assertThrows(IllegalArgumentException.class, () -> new DurationSketch(0));
+    }
+
+    private void assertWithinBound(long[] values, double accuracy) {
+        DurationSketch sketch = sketchOf(values, accuracy);
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double q : QUANTILES) {
+            long exact = sorted[(int) Math.floor(q * (sorted.length - 1))];
+            long estimate = sketch.quantile(q);
+            assertTrue(Math.abs(estimate - exact) <= accuracy * exact + 1,
+                    "q=" + q + " exact=" + exact + " estimate=" + estimate + " accuracy=" + accuracy);
+        }
+        assertTrue(sketch.buckets() <= Math.log(21_600_000) / Math.log((1 + accuracy) / (1 - accuracy)) + 10);
+    }
+
+    private static DurationSketch sketchOf(long[] values, double accuracy) {
+        DurationSketch sketch = new DurationSketch(accuracy);
+        for (long value : values) {
+            sketch.add(value);
+        }
+        return sketch;
+    }
+}
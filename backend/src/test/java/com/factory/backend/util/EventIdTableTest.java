@@ -0,0 +1,43 @@
+package com.factory.backend.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+class EventIdTableTest {
+
+    @Test
+    void numbersDistinctIdsInFirstSeenOrder() {
+        // Starts tiny so the table grows several times
+        EventIdTable table = new EventIdTable(1);
+        Map<String, Integer> expected = new HashMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 50_000; i++) {
+            String id = "E-" + random.nextInt(20_000);
+            int ordinal = table.ordinal(id);
+            assertEquals(expected.computeIfAbsent(id, k -> expected.size()), ordinal, id);
+        }
+        assertEquals(expected.size(), table.size());
+        expected.forEach((id, ordinal) -> {
+            assertEquals(id, table.key(ordinal));
+            assertEquals(ordinal, table.find(id));
+        });
+        assertEquals(-1, table.find("E-missing"));
+    }
+
+    @Test
+    void nullAndCollidingIdsAreOrdinaryKeys() {
+        EventIdTable table = new EventIdTable(4);
+        // "Aa" and "BB" share a hashCode
+        assertEquals(0, table.ordinal("Aa"));
+        assertEquals(1, table.ordinal(null));
+        assertEquals(2, table.ordinal("BB"));
+        assertEquals(1, table.ordinal(null));
+        assertEquals(0, table.find("Aa"));
+        assertEquals(2, table.find("BB"));
+        assertEquals(3, table.size());
+    }
+}
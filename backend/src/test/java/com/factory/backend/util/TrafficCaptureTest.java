@@ -0,0 +1,83 @@
+package com.factory.backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import com.factory.backend.controller.TrafficCaptureFilter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TrafficCaptureTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void requestsRoundTripInOrder() {
+        Path file = dir.resolve("capture.ndjson");
+        byte[] binary = {0, 1, (byte) 0xFF, '\n', '"'};
+        try (TrafficCapture.Writer writer = new TrafficCapture.Writer(file)) {
+            writer.append(new TrafficCapture.Request(5, "POST", "/events/batch", "application/x-factory-batch", "gzip", binary));
+            writer.append(new TrafficCapture.Request(7, "GET", "/stats?machineId=M-1&start=2026-01-01T00:00:00Z", null, null, null));
+        }
+
+        List<TrafficCapture.Request> read;
+        try (Stream<TrafficCapture.Request> requests = TrafficCapture.read(file)) {
+            read = requests.toList();
+        }
+        assertEquals(2, read.size());
+        assertEquals(5, read.get(0).offsetMicros());
+        assertEquals("gzip", read.get(0).contentEncoding());
+        assertArrayEquals(binary, read.get(0).body());
+        assertEquals("POST /events/batch", read.get(0).endpoint());
+        assertEquals("GET /stats", read.get(1).endpoint());
+        assertNull(read.get(1).body());
+    }
+
+    @Test
+    void filterRecordsWhatTheControllerReads() throws Exception {
+        Path file = dir.resolve("live.ndjson");
+        TrafficCaptureFilter filter = new TrafficCaptureFilter(new SimpleMeterRegistry(), file, DataSize.ofBytes(64));
+        byte[] body = "[{\"eventId\":\"E-1\"}]".getBytes(StandardCharsets.UTF_8);
+
+        filter.doFilter(post("/events/batch", body), new MockHttpServletResponse(),
+                (request, response) -> request.getInputStream().readAllBytes());
+        // Over max-body-size: not recorded
+        filter.doFilter(post("/events/batch", new byte[65]), new MockHttpServletResponse(),
+                (request, response) -> request.getInputStream().readAllBytes());
+        MockHttpServletRequest stats = new MockHttpServletRequest("GET", "/stats");
+        stats.setQueryString("machineId=M-1");
+        filter.doFilter(stats, new MockHttpServletResponse(), (request, response) -> {});
+        filter.doFilter(new MockHttpServletRequest("GET", "/stats/health/stream"), new MockHttpServletResponse(),
+                (request, response) -> {});
+        filter.destroy();
+
+        List<TrafficCapture.Request> read;
+        try (Stream<TrafficCapture.Request> requests = TrafficCapture.read(file)) {
+            read = requests.toList();
+        }
+        assertEquals(2, read.size());
+        assertEquals("application/json", read.get(0).contentType());
+        assertArrayEquals(body, read.get(0).body());
+        assertEquals("/stats?machineId=M-1", read.get(1).uri());
+        assertEquals(0, read.get(1).body().length);
+    }
+
+    private static MockHttpServletRequest post(String uri, byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.setContentType("application/json");
+        request.setContent(body);
+        return request;
+    }
+}